@@ -1,6 +1,7 @@
 package com.whatswater.async.future;
 
 
+import com.whatswater.sql.executor.Context;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
@@ -125,6 +126,10 @@ public class TaskFutureImpl<T> extends TaskFutureBase<T> {
 
     @Override
     public void addListener(Listener<T> listener) {
+        Context context = Context.current();
+        if (context != null && !(listener instanceof ContextListener)) {
+            listener = new ContextListener<>(context, listener);
+        }
         Object v;
         synchronized (this) {
             v = value;
@@ -228,6 +233,38 @@ public class TaskFutureImpl<T> extends TaskFutureBase<T> {
         }
     }
 
+    /**
+     * 回调执行时重新安装注册回调时的上下文
+     */
+    private static class ContextListener<T> implements Listener<T> {
+        private final Context context;
+        private final Listener<T> listener;
+
+        ContextListener(Context context, Listener<T> listener) {
+            this.context = context;
+            this.listener = listener;
+        }
+
+        @Override
+        public void onSuccess(T value) {
+            Context previous = Context.install(context);
+            try {
+                listener.onSuccess(value);
+            } finally {
+                Context.restore(previous);
+            }
+        }
+        @Override
+        public void onFailure(Throwable failure) {
+            Context previous = Context.install(context);
+            try {
+                listener.onFailure(failure);
+            } finally {
+                Context.restore(previous);
+            }
+        }
+    }
+
     private static class CauseHolder {
 
         private final Throwable cause;
@@ -2,6 +2,7 @@ package com.whatswater.async.handler;
 
 
 import com.whatswater.async.Task;
+import com.whatswater.sql.executor.Context;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
 
@@ -9,16 +10,24 @@ public class AwaitTaskHandler<T> implements Handler<AsyncResult<T>> {
     private Task task;
     private int position;
     private AsyncResult<T> result;
+    // 状态机在await处创建handler，恢复执行时重新安装此时的上下文
+    private final Context context;
 
     public AwaitTaskHandler(Task task, int position) {
         this.task = task;
         this.position = position;
+        this.context = Context.current();
     }
 
     @Override
     public void handle(AsyncResult<T> result) {
         this.result = result;
-        this.task.moveToNext(this.position);
+        Context previous = Context.install(context);
+        try {
+            this.task.moveToNext(this.position);
+        } finally {
+            Context.restore(previous);
+        }
     }
 
     public boolean succeeded() {
@@ -1,17 +1,19 @@
 package com.whatswater.async.type;
 
 
+import io.vertx.core.Context;
 import io.vertx.core.Future;
 
 import java.util.concurrent.*;
 
 public class Async {
-    public static ExecutorService executor = Executors.newFixedThreadPool(2);
+    // 未转换方法由Transformer生成的代码提交到此执行器
+    public static ExecutorService executor = new ContextExecutorService(AwaitFallback.newExecutor());
     public static void init(ExecutorService executor) {
-        Async.executor = executor;
+        Async.executor = executor instanceof ContextExecutorService ? executor : new ContextExecutorService(executor);
     }
     public static void initExecutorService() {
-        Async.executor = Executors.newFixedThreadPool(2);
+        Async.executor = new ContextExecutorService(AwaitFallback.newExecutor());
     }
     public static final Future<Void> EMPTY_FUTURE = Future.succeededFuture();
 
@@ -32,7 +34,22 @@ public class Async {
         return Future.succeededFuture(t.apply());
     }
 
+    /**
+     * 未被转换的方法中的await会阻塞当前线程，因此禁止在事件循环线程上调用
+     */
     public static <T> T await(Future<T> t) {
+        if (t.isComplete()) {
+            AwaitFallback.recordFastPath();
+            if (t.succeeded()) {
+                return t.result();
+            }
+            throw asRuntimeException(t.cause());
+        }
+        if (Context.isOnEventLoopThread()) {
+            AwaitFallback.recordRefused();
+            throw new IllegalStateException("await would block the event loop thread: " + Thread.currentThread().getName());
+        }
+
         CompletableFuture<T> completableFuture = new CompletableFuture<>();
         t.onComplete((ar) -> {
             if (ar.succeeded()) {
@@ -42,10 +59,26 @@ public class Async {
             }
         });
 
+        long start = AwaitFallback.beginBlocking();
         try {
             return completableFuture.get();
-        } catch (InterruptedException | ExecutionException e) {
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
             throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw asRuntimeException(e.getCause());
+        } finally {
+            AwaitFallback.endBlocking(start);
+        }
+    }
+
+    private static RuntimeException asRuntimeException(Throwable throwable) {
+        if (throwable instanceof RuntimeException) {
+            return (RuntimeException) throwable;
+        }
+        if (throwable instanceof Error) {
+            throw (Error) throwable;
         }
+        return new RuntimeException(throwable);
     }
 }
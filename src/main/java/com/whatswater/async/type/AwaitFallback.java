@@ -0,0 +1,200 @@
+package com.whatswater.async.type;
+
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 未被Transformer转换的async方法的执行环境
+ * 运行在Java 21及以上时使用虚拟线程，阻塞的await只挂起虚拟线程；否则使用可伸缩的平台线程池：
+ * 常驻async.fallback.coreThreads个线程，任务到达时没有空闲线程就先新建线程，直到async.fallback.threads个，
+ * 之后才进入长度为async.fallback.queueSize的队列，队列满时拒绝；空闲60秒的非常驻线程退出
+ * 阻塞的await占用线程，先排队再扩容会让任务排在阻塞的线程之后，因此先扩容再排队
+ * 同时统计走阻塞路径的await次数，用于发现需要改写的方法，见toPrometheus
+ */
+public final class AwaitFallback {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AwaitFallback.class);
+    public static final String THREAD_SIZE_PROPERTY = "async.fallback.threads";
+    public static final String CORE_THREAD_SIZE_PROPERTY = "async.fallback.coreThreads";
+    public static final String QUEUE_SIZE_PROPERTY = "async.fallback.queueSize";
+
+    private static final LongAdder FAST_PATH_COUNT = new LongAdder();
+    private static final LongAdder BLOCKED_COUNT = new LongAdder();
+    private static final LongAdder BLOCKED_NANOS = new LongAdder();
+    private static final LongAdder REFUSED_COUNT = new LongAdder();
+    private static final LongAdder REJECTED_COUNT = new LongAdder();
+    private static final AtomicInteger BLOCKING_NOW = new AtomicInteger();
+
+    private AwaitFallback() {
+    }
+
+    public static ExecutorService newExecutor() {
+        ExecutorService virtual = newVirtualThreadExecutor();
+        if (virtual != null) {
+            LOGGER.info("async fallback executor: virtual threads");
+            return virtual;
+        }
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        int threads = Integer.getInteger(THREAD_SIZE_PROPERTY, Math.max(16, processors * 8));
+        int coreThreads = Math.min(threads, Integer.getInteger(CORE_THREAD_SIZE_PROPERTY, processors));
+        int queueSize = Integer.getInteger(QUEUE_SIZE_PROPERTY, 1024);
+        LOGGER.info("async fallback executor: platform threads, core: {}, max: {}, queue: {}", coreThreads, threads, queueSize);
+        return newPlatformExecutor(coreThreads, threads, queueSize);
+    }
+
+    static ThreadPoolExecutor newPlatformExecutor(int coreThreads, int maxThreads, int queueSize) {
+        GrowFirstQueue queue = new GrowFirstQueue(queueSize);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            coreThreads,
+            maxThreads,
+            60L,
+            TimeUnit.SECONDS,
+            queue,
+            new FallbackThreadFactory(),
+            (task, rejectedBy) -> {
+                // offer返回false后线程数恰好被其他提交占满时，仍按容量排队
+                if (!rejectedBy.isShutdown() && queue.forceOffer(task)) {
+                    return;
+                }
+                REJECTED_COUNT.increment();
+                throw new RejectedExecutionException("async fallback executor is full, threads: " + rejectedBy.getPoolSize() + ", queued: " + rejectedBy.getQueue().size());
+            }
+        );
+        queue.executor = executor;
+        return executor;
+    }
+
+    /**
+     * 编译目标为1.8，通过反射获取虚拟线程执行器，低版本JDK返回null
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Object executor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            return (ExecutorService) executor;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    static void recordFastPath() {
+        FAST_PATH_COUNT.increment();
+    }
+
+    static void recordRefused() {
+        REFUSED_COUNT.increment();
+    }
+
+    static long beginBlocking() {
+        BLOCKED_COUNT.increment();
+        BLOCKING_NOW.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    static void endBlocking(long startNanos) {
+        BLOCKING_NOW.decrementAndGet();
+        BLOCKED_NANOS.add(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * 调用时Future已完成、无需阻塞的await次数
+     */
+    public static long fastPathCount() {
+        return FAST_PATH_COUNT.sum();
+    }
+
+    /**
+     * 阻塞等待的await次数
+     */
+    public static long blockedCount() {
+        return BLOCKED_COUNT.sum();
+    }
+
+    public static long blockedNanos() {
+        return BLOCKED_NANOS.sum();
+    }
+
+    /**
+     * 在事件循环线程上被拒绝的await次数
+     */
+    public static long refusedCount() {
+        return REFUSED_COUNT.sum();
+    }
+
+    public static int blockingNow() {
+        return BLOCKING_NOW.get();
+    }
+
+    /**
+     * 线程和队列都已满、被拒绝执行的任务数
+     */
+    public static long rejectedCount() {
+        return REJECTED_COUNT.sum();
+    }
+
+    /**
+     * Prometheus文本格式，与SQL耗时统计一起由/metrics输出
+     */
+    public static String toPrometheus() {
+        return "# TYPE async_await_fast_path_total counter\n"
+            + "async_await_fast_path_total " + fastPathCount() + "\n"
+            + "# TYPE async_await_blocked_total counter\n"
+            + "async_await_blocked_total " + blockedCount() + "\n"
+            + "# TYPE async_await_blocked_seconds_total counter\n"
+            + "async_await_blocked_seconds_total " + blockedNanos() / 1e9 + "\n"
+            + "# TYPE async_await_refused_total counter\n"
+            + "async_await_refused_total " + refusedCount() + "\n"
+            + "# TYPE async_await_blocking gauge\n"
+            + "async_await_blocking " + blockingNow() + "\n"
+            + "# TYPE async_fallback_rejected_total counter\n"
+            + "async_fallback_rejected_total " + rejectedCount() + "\n";
+    }
+
+    /**
+     * 有空闲线程时排队，由空闲线程取走；没有空闲线程且线程数未到上限时offer返回false，ThreadPoolExecutor据此新建线程
+     * 线程数已到上限时才按容量排队
+     */
+    static final class GrowFirstQueue extends LinkedBlockingQueue<Runnable> {
+        private volatile ThreadPoolExecutor executor;
+
+        GrowFirstQueue(int capacity) {
+            super(capacity);
+        }
+
+        @Override
+        public boolean offer(Runnable task) {
+            ThreadPoolExecutor current = executor;
+            if (current != null
+                && current.getActiveCount() >= current.getPoolSize()
+                && current.getPoolSize() < current.getMaximumPoolSize()) {
+                return false;
+            }
+            return super.offer(task);
+        }
+
+        boolean forceOffer(Runnable task) {
+            return super.offer(task);
+        }
+    }
+
+    private static final class FallbackThreadFactory implements ThreadFactory {
+        private final AtomicInteger index = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "async-await-fallback-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -12,6 +12,8 @@ public class CrudConst {
     public static final String FAIL_MSG = "02";
 
     public static final String HEADER_TOKEN = "X-Token";
+    public static final String COOKIE_TOKEN = "X-Token";
+    public static final String HEADER_TRACE_ID = "X-Trace-Id";
     public static final String RC_KEY_USER_TOKEN = "userToken";
     public static final String PATH_SPLIT_CHAR = "/";
 
@@ -7,10 +7,10 @@ import com.whatswater.curd.project.common.RestExceptionHandler;
 import com.whatswater.curd.project.common.SkipNullBeanProvider;
 import com.whatswater.curd.project.sys.permission.PermissionCheckHandler;
 import com.zandero.rest.RestBuilder;
+import io.vertx.core.DeploymentOptions;
 import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
 import io.vertx.core.http.HttpMethod;
-import io.vertx.core.http.HttpServer;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.Router;
 import com.whatswater.asyncmodule.Module;
@@ -29,7 +29,6 @@ public class HttpServerModule implements Module {
     private Promise<Void> startPromise;
     private Vertx vertx;
 
-    private HttpServer httpServer;
     private Router router;
     private PermissionCheckHandler permissionCheckHandler;
     private WebClient workflowWebClient;
@@ -81,20 +80,30 @@ public class HttpServerModule implements Module {
                 .routeHandler(permissionCheckHandler)
                 .provideWith(SkipNullBeanProvider.class).build();
 
-            consumer.exportObject("httpServer", httpServer);
             consumer.exportObject("router", router);
             consumer.exportObject("workflowWebClient", workflowWebClient);
         }
     }
 
+    /**
+     * 部署多个HTTP服务实例，默认与CPU核数相同，实例共用同一个Router和模块系统中的服务对象
+     * 模块在之后注册的路由对所有实例立即可见
+     * 权限快照构建成功后才部署，避免启动期间的请求在没有权限数据时被处理
+     */
     public void createHttpServer() {
-        HttpServer server = vertx.createHttpServer();
         Router router = Router.router(vertx);
 
         String host = config.getString("http.host");
         Integer port = config.getInteger("http.port");
+        int instances = config.getInteger("http.instances", 0);
+        if (instances <= 0) {
+            instances = Runtime.getRuntime().availableProcessors();
+        }
 
-        server.requestHandler(router).listen(port, host).onComplete(result -> {
+        DeploymentOptions options = new DeploymentOptions().setInstances(instances);
+        permissionCheckHandler.ready().compose(v -> {
+            return vertx.deployVerticle(() -> new HttpServerVerticle(router, host, port), options);
+        }).onComplete(result -> {
             if(result.succeeded()) {
                 startPromise.complete();
             } else {
@@ -102,7 +111,6 @@ public class HttpServerModule implements Module {
             }
         });
         this.router = router;
-        this.httpServer = server;
     }
 
     public void createWebClient() {
@@ -0,0 +1,31 @@
+package com.whatswater.curd;
+
+
+import io.vertx.core.AbstractVerticle;
+import io.vertx.core.Promise;
+import io.vertx.ext.web.Router;
+
+/**
+ * HTTP服务实例，每个实例绑定一个事件循环，多个实例监听同一端口时由Vert.x轮流分发连接
+ * 所有实例共用同一个Router，Router的路由表是不可变对象，注册路由时整体替换，请求处理时无需加锁
+ */
+public class HttpServerVerticle extends AbstractVerticle {
+    private final Router router;
+    private final String host;
+    private final int port;
+
+    public HttpServerVerticle(Router router, String host, int port) {
+        this.router = router;
+        this.host = host;
+        this.port = port;
+    }
+
+    @Override
+    public void start(Promise<Void> startPromise) {
+        vertx.createHttpServer()
+            .requestHandler(router)
+            .listen(port, host)
+            .<Void>mapEmpty()
+            .onComplete(startPromise);
+    }
+}
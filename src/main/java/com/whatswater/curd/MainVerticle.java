@@ -11,7 +11,7 @@ import com.whatswater.asyncmodule.ModuleSystem;
 import java.util.Map;
 import java.util.TreeMap;
 
-// 目前只是单Verticle运行，多Verticle运行需考虑vertx、router、startPromise的共享问题（GlobalModule可能不太适用了，并且router需要注册多次？）
+// 模块系统只加载一次，HTTP服务由HttpServerModule部署多个HttpServerVerticle实例，共用同一个Router
 // 需要有动态的直接添加module对象的能力
 public class MainVerticle extends AbstractVerticle {
     private static ModuleSystem moduleSystem;
@@ -0,0 +1,87 @@
+package com.whatswater.curd.datasource;
+
+
+/**
+ * 根据一个统计窗口内的排队时间和执行时间调整并发上限
+ * - 排队时间超过目标值，且执行时间不超过基线的5/4：按1/4增加上限
+ * - 执行时间超过基线的3/2：数据库已饱和，增加连接只会更慢，按基线与当前执行时间的比例缩小上限
+ * - 排队时间很短且窗口内的最大并发不到上限的3/4：逐步缩小到最大并发的5/4，释放空闲连接
+ *
+ * 基线是最近BASELINE_WINDOWS个窗口执行时间的最小值，偶然一个很快的窗口过期后基线会回升，查询整体变慢后基线也会跟着变化
+ * 连续PROBE_INTERVAL个窗口排队时把上限减半一次，在较低的并发下重新测量执行时间，
+ * 否则数据库一直饱和时窗口内只有饱和后的执行时间，基线会被抬高，无法发现上限过大
+ */
+public class AdaptiveLimit {
+    static final int BASELINE_WINDOWS = 30;
+    static final int PROBE_INTERVAL = 10;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetWaitMicros;
+    private final long[] executeWindows = new long[BASELINE_WINDOWS];
+
+    private int limit;
+    private int executeWindowIndex;
+    private int pressureWindows;
+
+    /**
+     * @param initialLimit 初始上限，通常为连接池大小，与不做限流时的行为一致
+     */
+    public AdaptiveLimit(int minLimit, int maxLimit, int initialLimit, long targetWaitMicros) {
+        if (minLimit <= 0 || minLimit > maxLimit) {
+            throw new IllegalArgumentException("invalid limit range: [" + minLimit + ", " + maxLimit + "]");
+        }
+        if (initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("initial limit " + initialLimit + " out of range: [" + minLimit + ", " + maxLimit + "]");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.targetWaitMicros = targetWaitMicros;
+        this.limit = initialLimit;
+    }
+
+    /**
+     * @param waitMicros 窗口内排队时间的p90
+     * @param executeMicros 窗口内执行时间的p90，窗口内没有执行时为0
+     * @param peakInFlight 窗口内的最大并发数
+     * @return 新的并发上限
+     */
+    public synchronized int update(long waitMicros, long executeMicros, int peakInFlight) {
+        if (executeMicros > 0) {
+            executeWindows[executeWindowIndex] = executeMicros;
+            executeWindowIndex = (executeWindowIndex + 1) % BASELINE_WINDOWS;
+        }
+        long baselineExecuteMicros = baseline();
+
+        if (waitMicros <= targetWaitMicros) {
+            pressureWindows = 0;
+        }
+        if (executeMicros * 2 > baselineExecuteMicros * 3) {
+            limit = (int) Math.max(minLimit, limit * baselineExecuteMicros / executeMicros);
+        } else if (waitMicros > targetWaitMicros) {
+            if (++pressureWindows >= PROBE_INTERVAL) {
+                pressureWindows = 0;
+                limit = Math.max(minLimit, limit / 2);
+            } else if (executeMicros * 4 <= baselineExecuteMicros * 5) {
+                limit = Math.min(maxLimit, limit + Math.max(1, limit / 4));
+            }
+        } else if (waitMicros <= targetWaitMicros / 4 && peakInFlight * 4 < limit * 3) {
+            limit = Math.max(minLimit, Math.max(peakInFlight * 5 / 4, limit - Math.max(1, limit / 4)));
+        }
+        return limit;
+    }
+
+    private long baseline() {
+        long baseline = 0;
+        for (long executeMicros: executeWindows) {
+            if (executeMicros > 0 && (baseline == 0 || executeMicros < baseline)) {
+                baseline = executeMicros;
+            }
+        }
+        return baseline;
+    }
+
+    public synchronized int getLimit() {
+        return limit;
+    }
+}
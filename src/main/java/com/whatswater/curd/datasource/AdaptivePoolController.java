@@ -0,0 +1,223 @@
+package com.whatswater.curd.datasource;
+
+
+import com.whatswater.async.future.TaskFutureImpl;
+import com.whatswater.curd.project.common.ErrorCodeEnum;
+import com.whatswater.sql.dialect.Dialect.SQL;
+import com.whatswater.sql.executor.Context;
+import com.whatswater.sql.executor.Executor;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 连接池的自适应并发控制，Vert.x的连接池不能在运行时修改大小，因此连接池按上限创建，由这里限制同时执行的语句数
+ * 每个统计窗口结束时根据排队时间调整上限，见AdaptiveLimit
+ * 排队数量超过maxQueueSize时立即失败，返回DB_BUSY
+ * 经dbExecutor执行的查询，以及CommonSQL经datasource（SessionAwarePool）直接执行的语句，共用同一个上限，见submit
+ *
+ * 事务中的语句使用已持有的连接，不参与限流
+ */
+public class AdaptivePoolController implements Executor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdaptivePoolController.class);
+
+    private final Executor delegate;
+    private final AdaptiveLimit adaptiveLimit;
+    private final int maxQueueSize;
+
+    private final ArrayDeque<Pending<?>> queue = new ArrayDeque<>();
+    private int inFlight;
+    private int peakInFlight;
+    private int limit;
+    private boolean draining;
+    private LatencyHistogram waitHistogram = new LatencyHistogram();
+    private LatencyHistogram executeHistogram = new LatencyHistogram();
+
+    public AdaptivePoolController(Executor delegate, AdaptiveLimit adaptiveLimit, int maxQueueSize) {
+        this.delegate = delegate;
+        this.adaptiveLimit = adaptiveLimit;
+        this.maxQueueSize = maxQueueSize;
+        this.limit = adaptiveLimit.getLimit();
+    }
+
+    @Override
+    public Future<RowSet<Row>> query(SQL sql) {
+        Context context = Context.current();
+        if (context != null && context.get(Context.SQL_CONNECTION) != null) {
+            return delegate.query(sql);
+        }
+        return submit(() -> delegate.query(sql));
+    }
+
+    /**
+     * 在并发上限内执行一条语句，超过上限时排队，task返回的Future完成后释放
+     * 排队的task在其他语句完成的回调中执行，执行时安装调用方自己的上下文
+     * @param task 执行语句，只在获得执行许可后调用一次
+     * @return 语句的结果，排队已满时为DB_BUSY
+     */
+    public <T> Future<T> submit(Supplier<Future<T>> task) {
+        Context context = Context.current();
+        Pending<T> pending = new Pending<>(task, context);
+        boolean run;
+        synchronized (this) {
+            run = inFlight < limit;
+            if (run) {
+                acquire();
+            } else if (queue.size() >= maxQueueSize) {
+                return Future.failedFuture(ErrorCodeEnum.DB_BUSY.toException());
+            } else {
+                queue.add(pending);
+            }
+        }
+        if (run) {
+            execute(pending);
+        }
+        return context == null ? pending.promise.future() : withContext(pending.promise.future());
+    }
+
+    private void acquire() {
+        inFlight++;
+        if (inFlight > peakInFlight) {
+            peakInFlight = inFlight;
+        }
+    }
+
+    private <T> void execute(Pending<T> pending) {
+        long start = System.nanoTime();
+        LatencyHistogram wait;
+        LatencyHistogram execute;
+        synchronized (this) {
+            wait = waitHistogram;
+            execute = executeHistogram;
+        }
+        wait.record(TimeUnit.NANOSECONDS.toMicros(start - pending.enqueueNanos));
+
+        // 排队的语句可能在其他请求的回调中执行，安装调用方自己的上下文，读写分离据此判断是否走主库
+        Future<T> result;
+        Context previous = Context.install(pending.context);
+        try {
+            result = pending.task.get();
+        } catch (Throwable e) {
+            result = Future.failedFuture(e);
+        } finally {
+            Context.restore(previous);
+        }
+        result.onComplete(ar -> {
+            execute.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+            release();
+            pending.promise.handle(ar);
+        });
+    }
+
+    private void release() {
+        synchronized (this) {
+            inFlight--;
+        }
+        drain();
+    }
+
+    /**
+     * 在上限内依次执行排队中的语句
+     * 语句可能同步完成，完成回调中的release再次进入这里时直接返回，由外层的循环继续执行，排队再长也不会递归加深调用栈
+     */
+    private void drain() {
+        synchronized (this) {
+            if (draining) {
+                return;
+            }
+            draining = true;
+        }
+        while (true) {
+            Pending<?> next;
+            synchronized (this) {
+                next = inFlight < limit ? queue.poll() : null;
+                if (next == null) {
+                    draining = false;
+                    return;
+                }
+                acquire();
+            }
+            execute(next);
+        }
+    }
+
+    /**
+     * 每个统计窗口调整一次上限
+     * @return 定时器id
+     */
+    public long start(Vertx vertx, long windowMillis) {
+        return vertx.setPeriodic(windowMillis, id -> adjust());
+    }
+
+    private void adjust() {
+        LatencyHistogram wait;
+        LatencyHistogram execute;
+        int peak;
+        synchronized (this) {
+            wait = waitHistogram;
+            execute = executeHistogram;
+            peak = peakInFlight;
+            waitHistogram = new LatencyHistogram();
+            executeHistogram = new LatencyHistogram();
+            peakInFlight = inFlight;
+        }
+
+        int newLimit = adaptiveLimit.update(wait.percentile(90), execute.percentile(90), peak);
+        int oldLimit;
+        synchronized (this) {
+            oldLimit = limit;
+            limit = newLimit;
+        }
+        if (newLimit != oldLimit) {
+            LOGGER.info("pool limit changed from {} to {}, wait p90: {}us, execute p90: {}us, peak: {}",
+                oldLimit, newLimit, wait.percentile(90), execute.percentile(90), peak);
+        }
+        // 上限变大时立即执行排队中的语句
+        drain();
+    }
+
+    @Override
+    public void tableModified(String tableName) {
+        delegate.tableModified(tableName);
+    }
+
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    public synchronized int getQueueSize() {
+        return queue.size();
+    }
+
+    private static <T> Future<T> withContext(Future<T> shared) {
+        TaskFutureImpl<T> future = new TaskFutureImpl<>();
+        shared.onComplete(ar -> {
+            if (ar.succeeded()) {
+                future.tryComplete(ar.result());
+            } else {
+                future.tryFail(ar.cause());
+            }
+        });
+        return future;
+    }
+
+    private static final class Pending<T> {
+        private final Supplier<Future<T>> task;
+        private final long enqueueNanos = System.nanoTime();
+        private final Promise<T> promise = Promise.promise();
+        private final Context context;
+
+        private Pending(Supplier<Future<T>> task, Context context) {
+            this.task = task;
+            this.context = context;
+        }
+    }
+}
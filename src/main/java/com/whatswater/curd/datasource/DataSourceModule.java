@@ -1,7 +1,11 @@
 package com.whatswater.curd.datasource;
 
 
+import com.whatswater.sql.executor.CachingExecutor;
+import com.whatswater.sql.executor.Executor;
+import com.whatswater.sql.executor.SingleFlightExecutor;
 import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.mysqlclient.MySQLConnectOptions;
 import io.vertx.mysqlclient.MySQLPool;
@@ -9,10 +13,19 @@ import io.vertx.sqlclient.PoolOptions;
 import com.whatswater.asyncmodule.Module;
 import com.whatswater.asyncmodule.ModuleInfo;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
 public class DataSourceModule implements Module {
     private JsonObject config;
     private Vertx vertx;
     private MySQLPool pool;
+    private AdaptivePoolController poolController;
 
     @Override
     public void register(ModuleInfo moduleInfo) {
@@ -29,29 +42,134 @@ public class DataSourceModule implements Module {
 
         if (config != null && vertx != null) {
             MySQLPool pool = createDataSource();
-            consumer.exportObject("datasource", pool);
-            VertxExecutor vertxExecutor = new VertxExecutor(pool);
-            consumer.exportObject("dbExecutor", vertxExecutor);
+            SqlMetrics sqlMetrics = new SqlMetrics(config.getLong("datasource.slowQueryMillis", 500L));
+            Executor dbExecutor = createExecutor(pool, createReplicaDataSources(), sqlMetrics);
+            // CommonSQL直接使用datasource，包装后在@Transactional方法中使用会话连接，记录语句耗时，并与dbExecutor共用并发上限
+            consumer.exportObject("datasource", new SessionAwarePool(pool, sqlMetrics, poolController));
+            consumer.exportObject("sqlMetrics", sqlMetrics);
+            consumer.exportObject("dbExecutor", dbExecutor);
+        }
+    }
+
+    /**
+     * 配置了从库时查询按datasource.replica.balance分发到从库，见ReplicaRoutingExecutor
+     * datasource.pool.adaptive.enabled为true时按排队时间调整同时执行的语句数，见AdaptivePoolController
+     * datasource.singleFlight为true时合并进行中的相同查询
+     * 配置了datasource.cache.tables时，在最外层包装查询结果缓存，命中缓存的查询不再进入合并
+     */
+    public Executor createExecutor(MySQLPool pool, List<MySQLPool> replicaPools, SqlMetrics sqlMetrics) {
+        Executor executor;
+        if (replicaPools.isEmpty()) {
+            executor = new VertxExecutor(pool, sqlMetrics);
+        } else {
+            ReplicaRoutingExecutor routingExecutor = new ReplicaRoutingExecutor(
+                pool,
+                replicaPools,
+                "leastOutstanding".equals(config.getString("datasource.replica.balance"))
+                    ? ReplicaRoutingExecutor.Balance.LEAST_OUTSTANDING
+                    : ReplicaRoutingExecutor.Balance.ROUND_ROBIN,
+                sqlMetrics
+            );
+            routingExecutor.startLagCheck(
+                vertx,
+                config.getLong("datasource.replica.lagCheckMillis", 2000L),
+                config.getLong("datasource.replica.maxLagSeconds", 5L)
+            );
+            executor = routingExecutor;
+        }
+        if (config.getBoolean("datasource.pool.adaptive.enabled", false)) {
+            AdaptivePoolController controller = new AdaptivePoolController(
+                executor,
+                new AdaptiveLimit(
+                    config.getInteger("datasource.pool.adaptive.minSize", 2),
+                    config.getInteger("datasource.pool.maxSize"),
+                    config.getInteger("datasource.pool.maxSize"),
+                    TimeUnit.MILLISECONDS.toMicros(config.getLong("datasource.pool.adaptive.targetWaitMillis", 5L))
+                ),
+                config.getInteger("datasource.pool.maxWaitQueueSize", 256)
+            );
+            controller.start(vertx, config.getLong("datasource.pool.adaptive.windowMillis", 1000L));
+            poolController = controller;
+            executor = controller;
+        }
+        if (config.getBoolean("datasource.singleFlight", false)) {
+            executor = new SingleFlightExecutor(executor);
+        }
+        JsonArray cacheTables = config.getJsonArray("datasource.cache.tables");
+        if (cacheTables == null || cacheTables.isEmpty()) {
+            return executor;
+        }
+
+        Set<String> tableNames = new HashSet<>();
+        for (Object tableName: cacheTables) {
+            tableNames.add((String) tableName);
         }
+        return new CachingExecutor(
+            executor,
+            tableNames,
+            config.getLong("datasource.cache.maxSize", 10000L),
+            Duration.ofSeconds(config.getLong("datasource.cache.ttlSeconds", 60L)),
+            replicaPools.isEmpty() ? Duration.ZERO : replicaLag()
+        );
+    }
+
+    /**
+     * 从库可能落后的最长时间：允许的最大延迟，加上两次延迟检查之间可能增加的延迟
+     */
+    private Duration replicaLag() {
+        return Duration.ofSeconds(config.getLong("datasource.replica.maxLagSeconds", 5L))
+            .plusMillis(config.getLong("datasource.replica.lagCheckMillis", 2000L));
     }
 
     public MySQLPool createDataSource() {
+        return createDataSource(new JsonObject(), "crud-primary");
+    }
+
+    /**
+     * datasource.replicas中每一项是一个从库的host、port、database、user、password，未配置的项与主库相同
+     */
+    public List<MySQLPool> createReplicaDataSources() {
+        JsonArray replicas = config.getJsonArray("datasource.replicas");
+        if (replicas == null) {
+            return Collections.emptyList();
+        }
+        List<MySQLPool> pools = new ArrayList<>(replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            pools.add(createDataSource(replicas.getJsonObject(i), "crud-replica-" + i));
+        }
+        return pools;
+    }
+
+    /**
+     * 连接池参数：
+     * - pipeliningLimit：一个连接上同时发出的语句数，默认1即不使用管道
+     * - cachePreparedStatements：缓存预编译语句，语句集合固定时可以省去每次prepare的往返
+     * - maxWaitQueueSize：等待连接的请求数上限，超过时立即失败，避免请求在池中无限堆积
+     * - shared：同名连接池在多个HTTP服务实例之间共用，连接总数不随实例数成倍增加
+     */
+    private MySQLPool createDataSource(JsonObject override, String name) {
         MySQLConnectOptions connectOptions = new MySQLConnectOptions()
-            .setPort(config.getInteger("datasource.connection.port"))
-            .setHost(config.getString("datasource.connection.host"))
-            .setDatabase(config.getString("datasource.connection.database"))
-            .setUser(config.getString("datasource.connection.user"))
-            .setPassword(config.getString("datasource.connection.password"))
+            .setPort(override.getInteger("port", config.getInteger("datasource.connection.port")))
+            .setHost(override.getString("host", config.getString("datasource.connection.host")))
+            .setDatabase(override.getString("database", config.getString("datasource.connection.database")))
+            .setUser(override.getString("user", config.getString("datasource.connection.user")))
+            .setPassword(override.getString("password", config.getString("datasource.connection.password")))
             .setCharset(config.getString("datasource.connection.encoding"))
             .setCollation(config.getString("datasource.connection.collation"))
             .setSsl(false)
             .setReconnectAttempts(2)
             .setReconnectInterval(1000L)
+            .setPipeliningLimit(config.getInteger("datasource.connection.pipeliningLimit", 1))
+            .setCachePreparedStatements(config.getBoolean("datasource.connection.cachePreparedStatements", true))
+            .setPreparedStatementCacheMaxSize(config.getInteger("datasource.connection.preparedStatementCacheMaxSize", 256))
             .addProperty("serverTimeZone", config.getString("datasource.connection.serverTimeZone"));
 
         PoolOptions poolOptions = new PoolOptions()
             .setMaxSize(config.getInteger("datasource.pool.maxSize"))
-            .setIdleTimeout(config.getInteger("datasource.pool.idleTimeout"));
+            .setIdleTimeout(config.getInteger("datasource.pool.idleTimeout"))
+            .setMaxWaitQueueSize(config.getInteger("datasource.pool.maxWaitQueueSize", 256))
+            .setShared(config.getBoolean("datasource.pool.shared", true))
+            .setName(name);
         return MySQLPool.pool(vertx, connectOptions, poolOptions);
     }
 }
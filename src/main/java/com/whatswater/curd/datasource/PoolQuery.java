@@ -0,0 +1,120 @@
+package com.whatswater.curd.datasource;
+
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.sqlclient.PreparedQuery;
+import io.vertx.sqlclient.Query;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.SqlResult;
+import io.vertx.sqlclient.Tuple;
+
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+
+/**
+ * SessionAwarePool返回的Query，CommonSQL直接经连接池执行的语句通过它：
+ * - 配置了AdaptivePoolController时在其并发上限内执行，与dbExecutor的查询共用上限
+ * - 配置了SqlMetrics时记录排队时间和执行时间
+ * 两者都为null时SessionAwarePool直接返回连接池的Query，不经过这里
+ */
+class PoolQuery<T> implements Query<T> {
+    private final Query<T> query;
+    final String sql;
+    final SqlMetrics metrics;
+    final AdaptivePoolController controller;
+
+    PoolQuery(Query<T> query, String sql, SqlMetrics metrics, AdaptivePoolController controller) {
+        this.query = query;
+        this.sql = sql;
+        this.metrics = metrics;
+        this.controller = controller;
+    }
+
+    @Override
+    public Future<T> execute() {
+        return run(query::execute, 0);
+    }
+
+    @Override
+    public void execute(Handler<AsyncResult<T>> handler) {
+        execute().onComplete(handler);
+    }
+
+    @Override
+    public <R> Query<SqlResult<R>> collecting(Collector<Row, ?, R> collector) {
+        return new PoolQuery<>(query.collecting(collector), sql, metrics, controller);
+    }
+
+    @Override
+    public <U> Query<RowSet<U>> mapping(Function<Row, U> mapper) {
+        return new PoolQuery<>(query.mapping(mapper), sql, metrics, controller);
+    }
+
+    /**
+     * 连接在连接池内部获取，等待连接的时间无法单独区分，计入执行时间；排队时间只包含在AdaptivePoolController中等待的时间
+     */
+    Future<T> run(Supplier<Future<T>> task, int paramCount) {
+        long submitTime = System.nanoTime();
+        long[] startTime = { submitTime };
+        Supplier<Future<T>> timedTask = () -> {
+            startTime[0] = System.nanoTime();
+            return task.get();
+        };
+        Future<T> result = controller == null ? timedTask.get() : controller.submit(timedTask);
+        if (metrics == null) {
+            return result;
+        }
+        return result.onComplete(ar -> metrics.record(
+            sql,
+            paramCount,
+            startTime[0] - submitTime,
+            System.nanoTime() - startTime[0],
+            ar.succeeded() && ar.result() instanceof SqlResult ? ((SqlResult<?>) ar.result()).size() : 0,
+            ar.failed() ? ar.cause() : null
+        ));
+    }
+
+    static class Prepared<T> extends PoolQuery<T> implements PreparedQuery<T> {
+        private final PreparedQuery<T> query;
+
+        Prepared(PreparedQuery<T> query, String sql, SqlMetrics metrics, AdaptivePoolController controller) {
+            super(query, sql, metrics, controller);
+            this.query = query;
+        }
+
+        @Override
+        public Future<T> execute(Tuple tuple) {
+            return run(() -> query.execute(tuple), tuple.size());
+        }
+
+        @Override
+        public void execute(Tuple tuple, Handler<AsyncResult<T>> handler) {
+            execute(tuple).onComplete(handler);
+        }
+
+        @Override
+        public Future<T> executeBatch(List<Tuple> batch) {
+            return run(() -> query.executeBatch(batch), batch.isEmpty() ? 0 : batch.get(0).size() * batch.size());
+        }
+
+        @Override
+        public void executeBatch(List<Tuple> batch, Handler<AsyncResult<T>> handler) {
+            executeBatch(batch).onComplete(handler);
+        }
+
+        @Override
+        public <R> PreparedQuery<SqlResult<R>> collecting(Collector<Row, ?, R> collector) {
+            return new Prepared<>(query.collecting(collector), sql, metrics, controller);
+        }
+
+        @Override
+        public <U> PreparedQuery<RowSet<U>> mapping(Function<Row, U> mapper) {
+            return new Prepared<>(query.mapping(mapper), sql, metrics, controller);
+        }
+    }
+}
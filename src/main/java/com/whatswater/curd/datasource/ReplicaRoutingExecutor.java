@@ -0,0 +1,174 @@
+package com.whatswater.curd.datasource;
+
+
+import com.whatswater.sql.dialect.Dialect.SQL;
+import com.whatswater.sql.executor.Context;
+import com.whatswater.sql.executor.Executor;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.mysqlclient.MySQLPool;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowIterator;
+import io.vertx.sqlclient.RowSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 读写分离：查询发往从库，修改语句发往主库
+ * 以下情况查询仍走主库：
+ * - 事务中，VertxExecutor会使用上下文中的事务连接
+ * - 当前上下文中已执行过修改语句，从库可能还没有同步，见Context.WRITE_MARK
+ * - 没有可用的从库：从库复制停止、延迟超过maxLagSeconds或检查失败
+ *
+ * 只有经过Executor的SQL会被路由：各服务的按Id、按编码查询经过dbExecutor，可以读从库
+ * 分页列表等直接使用datasource（CommonSQL）的查询不路由，始终访问主库；这些SQL由vertx-sql-assist生成，拿不到表名，也不经过缓存
+ * CommonSQL的修改成功后调用tableModified，同样标记WRITE_MARK
+ */
+public class ReplicaRoutingExecutor implements Executor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplicaRoutingExecutor.class);
+
+    public enum Balance {
+        ROUND_ROBIN,
+        LEAST_OUTSTANDING
+    }
+
+    private final Executor primary;
+    private final List<Replica> replicas;
+    private final Balance balance;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaRoutingExecutor(MySQLPool primary, List<MySQLPool> replicaPools, Balance balance, SqlMetrics metrics) {
+        this.primary = new VertxExecutor(primary, metrics);
+        List<Replica> replicas = new ArrayList<>(replicaPools.size());
+        for (int i = 0; i < replicaPools.size(); i++) {
+            replicas.add(new Replica(i, replicaPools.get(i), metrics));
+        }
+        this.replicas = Collections.unmodifiableList(replicas);
+        this.balance = balance;
+    }
+
+    @Override
+    public Future<RowSet<Row>> query(SQL sql) {
+        Context context = Context.current();
+        if (sql.isModify()) {
+            markWrite(context);
+            return primary.query(sql);
+        }
+        if (context != null && context.requiresPrimary()) {
+            return primary.query(sql);
+        }
+
+        Replica replica = select();
+        if (replica == null) {
+            return primary.query(sql);
+        }
+        replica.outstanding.incrementAndGet();
+        return replica.executor.query(sql).onComplete(ar -> replica.outstanding.decrementAndGet());
+    }
+
+    /**
+     * CommonSQL的修改不经过这里，修改成功后通过此方法标记，同一上下文之后的查询走主库
+     */
+    @Override
+    public void tableModified(String tableName) {
+        markWrite(Context.current());
+    }
+
+    private static void markWrite(Context context) {
+        if (context != null) {
+            AtomicBoolean writeMark = context.get(Context.WRITE_MARK);
+            if (writeMark != null) {
+                writeMark.set(true);
+            }
+        }
+    }
+
+    private Replica select() {
+        if (balance == Balance.LEAST_OUTSTANDING) {
+            Replica selected = null;
+            for (Replica replica: replicas) {
+                if (replica.available && (selected == null || replica.outstanding.get() < selected.outstanding.get())) {
+                    selected = replica;
+                }
+            }
+            return selected;
+        }
+
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.available) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 定时检查从库复制延迟，Seconds_Behind_Master为null表示复制没有运行，同样视为不可用
+     * 启动时立即检查一次，检查通过前查询都走主库
+     * @return 定时器id
+     */
+    public long startLagCheck(Vertx vertx, long intervalMillis, long maxLagSeconds) {
+        checkLag(maxLagSeconds);
+        return vertx.setPeriodic(intervalMillis, id -> checkLag(maxLagSeconds));
+    }
+
+    private void checkLag(long maxLagSeconds) {
+        for (Replica replica: replicas) {
+            replica.checkLag(maxLagSeconds);
+        }
+    }
+
+    public int getAvailableReplicaCount() {
+        int count = 0;
+        for (Replica replica: replicas) {
+            if (replica.available) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static final class Replica {
+        private final int index;
+        private final MySQLPool pool;
+        private final Executor executor;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        /**
+         * 首次延迟检查成功前不可用，避免启动时把读请求发往复制未运行或延迟很大的从库
+         */
+        private volatile boolean available = false;
+
+        private Replica(int index, MySQLPool pool, SqlMetrics metrics) {
+            this.index = index;
+            this.pool = pool;
+            this.executor = new VertxExecutor(pool, metrics);
+        }
+
+        private void checkLag(long maxLagSeconds) {
+            pool.query("show slave status").execute().onComplete(ar -> {
+                boolean available;
+                if (ar.failed()) {
+                    LOGGER.warn("replica {} lag check failed", index, ar.cause());
+                    available = false;
+                } else {
+                    RowIterator<Row> iterator = ar.result().iterator();
+                    Long lag = iterator.hasNext() ? iterator.next().getLong("Seconds_Behind_Master") : null;
+                    available = lag != null && lag <= maxLagSeconds;
+                }
+                if (available != this.available) {
+                    LOGGER.warn("replica {} available changed to {}", index, available);
+                    this.available = available;
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.whatswater.curd.datasource;
+
+
+import com.whatswater.sql.executor.Context;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.mysqlclient.MySQLPool;
+import io.vertx.sqlclient.PreparedQuery;
+import io.vertx.sqlclient.Query;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.SqlClient;
+import io.vertx.sqlclient.SqlConnection;
+
+import java.util.function.Function;
+
+/**
+ * 导出为datasource的连接池，CommonSQL等直接使用连接池的代码通过它加入SqlSession开启的会话
+ * 上下文中有会话连接（Context.SQL_CONNECTION）时：
+ * - query、preparedQuery在会话连接上执行
+ * - withTransaction、withConnection直接在会话连接上执行，加入会话的事务，不再单独开启事务或归还连接
+ * - getConnection返回失败，会话中另取连接会在事务之外执行，提交、回滚都不受会话控制
+ * 没有会话时全部交给被包装的连接池
+ * query、preparedQuery执行的语句经PoolQuery记录耗时（SqlMetrics），没有会话时还在AdaptivePoolController的并发上限内执行，
+ * 与经过dbExecutor的语句一起统计、共用上限；withTransaction、withConnection、getConnection持有连接的时间由调用方决定，不参与限流
+ */
+public class SessionAwarePool implements MySQLPool {
+    private final MySQLPool pool;
+    private final SqlMetrics metrics;
+    private final AdaptivePoolController controller;
+
+    public SessionAwarePool(MySQLPool pool) {
+        this(pool, null, null);
+    }
+
+    /**
+     * @param metrics 不为null时记录每条语句的耗时
+     * @param controller 不为null时，会话之外的语句在其并发上限内执行
+     */
+    public SessionAwarePool(MySQLPool pool, SqlMetrics metrics, AdaptivePoolController controller) {
+        this.pool = pool;
+        this.metrics = metrics;
+        this.controller = controller;
+    }
+
+    @Override
+    public Query<RowSet<Row>> query(String sql) {
+        SqlClient connection = sessionConnection();
+        Query<RowSet<Row>> query = connection == null ? pool.query(sql) : connection.query(sql);
+        AdaptivePoolController limiter = connection == null ? controller : null;
+        return metrics == null && limiter == null ? query : new PoolQuery<>(query, sql, metrics, limiter);
+    }
+
+    @Override
+    public PreparedQuery<RowSet<Row>> preparedQuery(String sql) {
+        SqlClient connection = sessionConnection();
+        PreparedQuery<RowSet<Row>> query = connection == null ? pool.preparedQuery(sql) : connection.preparedQuery(sql);
+        AdaptivePoolController limiter = connection == null ? controller : null;
+        return metrics == null && limiter == null ? query : new PoolQuery.Prepared<>(query, sql, metrics, limiter);
+    }
+
+    @Override
+    public Future<SqlConnection> getConnection() {
+        if (sessionConnection() != null) {
+            return Future.failedFuture(new IllegalStateException("getConnection in a sql session, use withTransaction or the pool's query methods instead"));
+        }
+        return pool.getConnection();
+    }
+
+    @Override
+    public void getConnection(Handler<AsyncResult<SqlConnection>> handler) {
+        getConnection().onComplete(handler);
+    }
+
+    @Override
+    public <T> Future<T> withTransaction(Function<SqlConnection, Future<T>> function) {
+        SqlClient connection = sessionConnection();
+        return connection == null ? pool.withTransaction(function) : apply(connection, function);
+    }
+
+    @Override
+    public <T> void withTransaction(Function<SqlConnection, Future<T>> function, Handler<AsyncResult<T>> handler) {
+        withTransaction(function).onComplete(handler);
+    }
+
+    @Override
+    public <T> Future<T> withConnection(Function<SqlConnection, Future<T>> function) {
+        SqlClient connection = sessionConnection();
+        return connection == null ? pool.withConnection(function) : apply(connection, function);
+    }
+
+    @Override
+    public <T> void withConnection(Function<SqlConnection, Future<T>> function, Handler<AsyncResult<T>> handler) {
+        withConnection(function).onComplete(handler);
+    }
+
+    @Override
+    public MySQLPool connectHandler(Handler<SqlConnection> handler) {
+        pool.connectHandler(handler);
+        return this;
+    }
+
+    @Override
+    public MySQLPool connectionProvider(Function<io.vertx.core.Context, Future<SqlConnection>> provider) {
+        pool.connectionProvider(provider);
+        return this;
+    }
+
+    @Override
+    public int size() {
+        return pool.size();
+    }
+
+    @Override
+    public Future<Void> close() {
+        return pool.close();
+    }
+
+    @Override
+    public void close(Handler<AsyncResult<Void>> handler) {
+        pool.close(handler);
+    }
+
+    private static SqlClient sessionConnection() {
+        Context context = Context.current();
+        return context == null ? null : context.get(Context.SQL_CONNECTION);
+    }
+
+    private static <T> Future<T> apply(SqlClient connection, Function<SqlConnection, Future<T>> function) {
+        try {
+            return function.apply((SqlConnection) connection);
+        } catch (Throwable e) {
+            return Future.failedFuture(e);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.whatswater.curd.datasource;
+
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * 按SQL形状统计耗时：等待连接池的时间、执行时间、返回行数、失败次数
+ * SQL形状是把字符串、数字常量替换为?，再把in (?,?,...)折叠为in (?...)后的SQL文本，同一条语句不同参数个数归为一类
+ * Dialect会把StringValue直接拼接到SQL中，因此统计项、/metrics和慢查询日志都只使用SQL形状，不输出原始SQL
+ * 超过slowQueryMillis的语句写入慢查询日志，参数只记录个数，不记录值
+ */
+public class SqlMetrics {
+    private static final Logger SLOW_LOG = LoggerFactory.getLogger("sql.slow");
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^'\\\\]++|\\\\.|'')*+'|\"(?:[^\"\\\\]++|\\\\.|\"\")*+\"");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern PARAM_LIST = Pattern.compile("\\(\\s*\\?(\\s*,\\s*\\?)+\\s*\\)");
+    // 形状数量的上限，防止拼接了常量的SQL无限增加统计项
+    private static final int MAX_SHAPE_COUNT = 1000;
+    private static final String OTHER_SHAPE = "<other>";
+    private static final double[] QUANTILES = {50, 90, 99, 99.9};
+
+    private final ConcurrentMap<String, Stats> statsMap = new ConcurrentHashMap<>();
+    private final long slowQueryNanos;
+
+    public SqlMetrics(long slowQueryMillis) {
+        this.slowQueryNanos = TimeUnit.MILLISECONDS.toNanos(slowQueryMillis);
+    }
+
+    public static String shapeOf(String sql) {
+        String shape = STRING_LITERAL.matcher(sql).replaceAll("?");
+        shape = NUMBER_LITERAL.matcher(shape).replaceAll("?");
+        return PARAM_LIST.matcher(shape).replaceAll("(?...)");
+    }
+
+    public void record(String sql, int paramCount, long waitNanos, long executeNanos, int rows, Throwable failure) {
+        String shape = shapeOf(sql);
+        Stats stats = statsMap.get(shape);
+        if (stats == null) {
+            stats = statsMap.size() < MAX_SHAPE_COUNT
+                ? statsMap.computeIfAbsent(shape, k -> new Stats())
+                : statsMap.computeIfAbsent(OTHER_SHAPE, k -> new Stats());
+        }
+        stats.wait.record(TimeUnit.NANOSECONDS.toMicros(waitNanos));
+        stats.execute.record(TimeUnit.NANOSECONDS.toMicros(executeNanos));
+        stats.rows.add(rows);
+        if (failure != null) {
+            stats.errors.increment();
+        }
+
+        if (waitNanos + executeNanos >= slowQueryNanos) {
+            SLOW_LOG.warn(
+                "slow sql, wait: {}ms, execute: {}ms, rows: {}, params: <{} redacted>, failed: {}, sql: {}",
+                TimeUnit.NANOSECONDS.toMillis(waitNanos),
+                TimeUnit.NANOSECONDS.toMillis(executeNanos),
+                rows,
+                paramCount,
+                failure != null,
+                shape
+            );
+        }
+    }
+
+    /**
+     * 按总执行时间倒序输出前limit条，供shell命令使用
+     */
+    public String toText(int limit) {
+        List<Map.Entry<String, Stats>> entries = new ArrayList<>(statsMap.entrySet());
+        entries.sort(Comparator.comparingLong((Map.Entry<String, Stats> e) -> e.getValue().execute.getSum()).reversed());
+
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%10s %10s %10s %10s %10s %10s %8s  %s%n", "count", "total(ms)", "p50(us)", "p99(us)", "max(us)", "wait99(us)", "errors", "sql"));
+        for (int i = 0; i < entries.size() && i < limit; i++) {
+            Stats stats = entries.get(i).getValue();
+            builder.append(String.format(
+                "%10d %10d %10d %10d %10d %10d %8d  %s%n",
+                stats.execute.getCount(),
+                stats.execute.getSum() / 1000,
+                stats.execute.percentile(50),
+                stats.execute.percentile(99),
+                stats.execute.getMax(),
+                stats.wait.percentile(99),
+                stats.errors.sum(),
+                entries.get(i).getKey()
+            ));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Prometheus文本格式，耗时以summary输出，单位秒
+     */
+    public String toPrometheus() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("# TYPE sql_execute_seconds summary\n");
+        for (Map.Entry<String, Stats> entry: statsMap.entrySet()) {
+            appendSummary(builder, "sql_execute_seconds", entry.getKey(), entry.getValue().execute);
+        }
+        builder.append("# TYPE sql_pool_wait_seconds summary\n");
+        for (Map.Entry<String, Stats> entry: statsMap.entrySet()) {
+            appendSummary(builder, "sql_pool_wait_seconds", entry.getKey(), entry.getValue().wait);
+        }
+        builder.append("# TYPE sql_rows_total counter\n");
+        for (Map.Entry<String, Stats> entry: statsMap.entrySet()) {
+            appendSample(builder, "sql_rows_total", entry.getKey(), null, entry.getValue().rows.sum());
+        }
+        builder.append("# TYPE sql_errors_total counter\n");
+        for (Map.Entry<String, Stats> entry: statsMap.entrySet()) {
+            appendSample(builder, "sql_errors_total", entry.getKey(), null, entry.getValue().errors.sum());
+        }
+        return builder.toString();
+    }
+
+    private static void appendSummary(StringBuilder builder, String name, String shape, LatencyHistogram histogram) {
+        for (double quantile: QUANTILES) {
+            appendSample(builder, name, shape, String.valueOf(quantile / 100), histogram.percentile(quantile) / 1e6);
+        }
+        appendSample(builder, name + "_sum", shape, null, histogram.getSum() / 1e6);
+        appendSample(builder, name + "_count", shape, null, histogram.getCount());
+    }
+
+    private static void appendSample(StringBuilder builder, String name, String shape, String quantile, Object value) {
+        builder.append(name).append("{sql=\"").append(escapeLabel(shape)).append('"');
+        if (quantile != null) {
+            builder.append(",quantile=\"").append(quantile).append('"');
+        }
+        builder.append("} ").append(value).append('\n');
+    }
+
+    private static String escapeLabel(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    private static final class Stats {
+        private final LatencyHistogram wait = new LatencyHistogram();
+        private final LatencyHistogram execute = new LatencyHistogram();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+    }
+}
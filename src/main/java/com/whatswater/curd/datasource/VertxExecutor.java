@@ -1,25 +1,86 @@
 package com.whatswater.curd.datasource;
 
 
+import com.whatswater.async.future.TaskFutureImpl;
 import com.whatswater.sql.dialect.Dialect.SQL;
+import com.whatswater.sql.executor.Context;
 import com.whatswater.sql.executor.Executor;
 import io.vertx.core.Future;
 import io.vertx.mysqlclient.MySQLPool;
 import io.vertx.sqlclient.Row;
 import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.SqlClient;
 import io.vertx.sqlclient.Tuple;
 
 public class VertxExecutor implements Executor {
     private MySQLPool pool;
+    private SqlMetrics metrics;
 
     public VertxExecutor(MySQLPool pool) {
+        this(pool, null);
+    }
+
+    /**
+     * @param metrics 不为null时记录每条语句的等待连接时间和执行时间
+     */
+    public VertxExecutor(MySQLPool pool, SqlMetrics metrics) {
         this.pool = pool;
+        this.metrics = metrics;
     }
 
     @Override
     public Future<RowSet<Row>> query(SQL sql) {
-        return pool
+        Context context = Context.current();
+        if (context == null) {
+            return executeOnPool(sql);
+        }
+
+        // 上下文中有事务连接时使用该连接，结果通过TaskFutureImpl返回，后续回调会重新安装上下文
+        SqlClient connection = context.get(Context.SQL_CONNECTION);
+        TaskFutureImpl<RowSet<Row>> future = new TaskFutureImpl<>();
+        Future<RowSet<Row>> result = connection == null ? executeOnPool(sql) : execute(connection, sql, 0L);
+        result.onComplete(ar -> {
+            if (ar.succeeded()) {
+                future.tryComplete(ar.result());
+            } else {
+                future.tryFail(ar.cause());
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 记录耗时时先单独获取连接，以区分等待连接池的时间和执行时间
+     */
+    private Future<RowSet<Row>> executeOnPool(SQL sql) {
+        if (metrics == null) {
+            return execute(pool, sql, 0L);
+        }
+        long start = System.nanoTime();
+        return pool.getConnection().compose(connection -> {
+            long waitNanos = System.nanoTime() - start;
+            return execute(connection, sql, waitNanos).onComplete(ar -> connection.close());
+        }, failure -> {
+            metrics.record(sql.getSqlValue(), sql.getParams().size(), System.nanoTime() - start, 0L, 0, failure);
+            return Future.failedFuture(failure);
+        });
+    }
+
+    private Future<RowSet<Row>> execute(SqlClient client, SQL sql, long waitNanos) {
+        long start = System.nanoTime();
+        Future<RowSet<Row>> result = client
             .preparedQuery(sql.getSqlValue())
             .execute(Tuple.tuple(sql.getParams()));
+        if (metrics == null) {
+            return result;
+        }
+        return result.onComplete(ar -> metrics.record(
+            sql.getSqlValue(),
+            sql.getParams().size(),
+            waitNanos,
+            System.nanoTime() - start,
+            ar.succeeded() ? ar.result().size() : 0,
+            ar.failed() ? ar.cause() : null
+        ));
     }
 }
@@ -0,0 +1,244 @@
+package com.whatswater.curd.project.common;
+
+
+import com.zandero.rest.bean.BeanDefinition;
+import com.zandero.rest.data.ArgumentProvider;
+import com.zandero.rest.data.ClassFactory;
+import com.zandero.rest.data.ClassUtils;
+import com.zandero.rest.data.MethodParameter;
+import com.zandero.rest.exception.ClassFactoryException;
+import com.zandero.rest.injection.InjectionProvider;
+import io.vertx.core.cli.impl.ReflectionUtils;
+import io.vertx.ext.web.RoutingContext;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 预编译的@BeanParam绑定器，每个类只解析一次注解，字段、setter、构造器都转换为MethodHandle
+ * 绑定时只需依次取参数值、转换类型、调用MethodHandle
+ */
+final class BeanBinder {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType CONSTRUCTOR_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+    private static final ClassValue<BeanBinder> BINDERS = new ClassValue<BeanBinder>() {
+        @Override
+        protected BeanBinder computeValue(Class<?> type) {
+            return compile(type);
+        }
+    };
+
+    private final Class<?> type;
+    // 为null时通过ClassFactory创建实例
+    private final MethodHandle constructor;
+    private final Binding[] constructorBindings;
+    private final Binding[] memberBindings;
+
+    private BeanBinder(Class<?> type, MethodHandle constructor, Binding[] constructorBindings, Binding[] memberBindings) {
+        this.type = type;
+        this.constructor = constructor;
+        this.constructorBindings = constructorBindings;
+        this.memberBindings = memberBindings;
+    }
+
+    static BeanBinder of(Class<?> type) {
+        return BINDERS.get(type);
+    }
+
+    Object bind(RoutingContext context, InjectionProvider injectionProvider) throws Throwable {
+        Object instance;
+        if (constructor == null || injectionProvider != null) {
+            instance = ClassFactory.newInstanceOf(type, injectionProvider, context);
+        } else {
+            Object[] args = new Object[constructorBindings.length];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = constructorBindings[i].read(context);
+            }
+            try {
+                instance = (Object) constructor.invokeExact(args);
+            } catch (NullPointerException | ClassCastException e) {
+                throw new ClassFactoryException("Failed to instantiate class: " + type.getName() + ", parameter missing or mismatched", e);
+            }
+        }
+
+        for (Binding binding: memberBindings) {
+            Object value = binding.read(context);
+            if (value == null) {
+                continue;
+            }
+            try {
+                binding.setter.invokeExact(instance, value);
+            } catch (ClassCastException e) {
+                throw new ClassFactoryException("Can't set field: '" + binding.parameter.getName() + "', value to: " + value, e);
+            }
+        }
+        return instance;
+    }
+
+    private static BeanBinder compile(Class<?> type) {
+        BeanDefinition definition = new BeanDefinition(type);
+        List<Binding> memberBindings = new ArrayList<>();
+        try {
+            for (Field field: type.getDeclaredFields()) {
+                MethodParameter parameter = definition.get(field);
+                if (parameter == null || Modifier.isStatic(field.getModifiers())) {
+                    continue;
+                }
+                field.setAccessible(true);
+                memberBindings.add(new Binding(parameter, field.getType(), fieldSetter(field)));
+            }
+            for (Method method: type.getDeclaredMethods()) {
+                if (!ReflectionUtils.isSetter(method)) {
+                    continue;
+                }
+                MethodParameter parameter = definition.get(method);
+                if (parameter == null) {
+                    continue;
+                }
+                method.setAccessible(true);
+                MethodHandle setter = LOOKUP.unreflect(method).asType(SETTER_TYPE);
+                memberBindings.add(new Binding(parameter, parameter.getDataType(), setter));
+            }
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Failed to compile bean binder: " + type.getName(), e);
+        }
+
+        MethodHandle constructor = null;
+        Binding[] constructorBindings = new Binding[0];
+        Constructor<?> selected = selectConstructor(type);
+        if (selected != null) {
+            try {
+                selected.setAccessible(true);
+                int count = selected.getParameterCount();
+                constructor = LOOKUP.unreflectConstructor(selected)
+                    .asSpreader(Object[].class, count)
+                    .asType(CONSTRUCTOR_TYPE);
+                if (count > 0) {
+                    BeanDefinition constructorDefinition = new BeanDefinition(selected);
+                    Class<?>[] parameterTypes = selected.getParameterTypes();
+                    constructorBindings = new Binding[count];
+                    for (int i = 0; i < count; i++) {
+                        constructorBindings[i] = new Binding(constructorDefinition.get(i), parameterTypes[i], null);
+                    }
+                }
+            } catch (IllegalAccessException | RuntimeException e) {
+                constructor = null;
+                constructorBindings = new Binding[0];
+            }
+        }
+        return new BeanBinder(type, constructor, constructorBindings, memberBindings.toArray(new Binding[0]));
+    }
+
+    /**
+     * 优先使用无参构造器，否则使用所有参数都有注解的构造器；都没有时返回null，由ClassFactory处理
+     */
+    private static Constructor<?> selectConstructor(Class<?> type) {
+        if (type.isInterface() || Modifier.isAbstract(type.getModifiers())) {
+            return null;
+        }
+        Constructor<?>[] constructors = type.getDeclaredConstructors();
+        for (Constructor<?> constructor: constructors) {
+            if (constructor.getParameterCount() == 0) {
+                return constructor;
+            }
+        }
+        for (Constructor<?> constructor: constructors) {
+            BeanDefinition definition = new BeanDefinition(constructor);
+            boolean allAnnotated = true;
+            for (int i = 0; i < constructor.getParameterCount(); i++) {
+                if (definition.get(i) == null) {
+                    allAnnotated = false;
+                    break;
+                }
+            }
+            if (allAnnotated) {
+                return constructor;
+            }
+        }
+        return null;
+    }
+
+    private static MethodHandle fieldSetter(Field field) throws IllegalAccessException {
+        if (!Modifier.isFinal(field.getModifiers())) {
+            return LOOKUP.unreflectSetter(field).asType(SETTER_TYPE);
+        }
+        // final字段不能通过unreflectSetter写入，退回到Field.set
+        try {
+            return LOOKUP.findVirtual(Field.class, "set", SETTER_TYPE).bindTo(field);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 常用类型直接调用valueOf，其他类型（char、枚举等）交给ClassUtils.stringToPrimitiveType，结果与其一致
+     */
+    static Converter converterOf(Class<?> dataType) {
+        if (dataType == String.class) {
+            return value -> value;
+        }
+        if (dataType == int.class || dataType == Integer.class) {
+            return Integer::valueOf;
+        }
+        if (dataType == long.class || dataType == Long.class) {
+            return Long::valueOf;
+        }
+        if (dataType == boolean.class || dataType == Boolean.class) {
+            return Boolean::valueOf;
+        }
+        if (dataType == double.class || dataType == Double.class) {
+            return Double::valueOf;
+        }
+        if (dataType == float.class || dataType == Float.class) {
+            return Float::valueOf;
+        }
+        if (dataType == short.class || dataType == Short.class) {
+            return Short::valueOf;
+        }
+        if (dataType == byte.class || dataType == Byte.class) {
+            return Byte::valueOf;
+        }
+        return value -> ClassUtils.stringToPrimitiveType(value, dataType);
+    }
+
+    @FunctionalInterface
+    interface Converter {
+        Object convert(String value) throws Exception;
+    }
+
+    private static final class Binding {
+        private final MethodParameter parameter;
+        private final Converter converter;
+        // (Object, Object)void，构造器参数为null
+        private final MethodHandle setter;
+
+        private Binding(MethodParameter parameter, Class<?> dataType, MethodHandle setter) {
+            this.parameter = parameter;
+            this.converter = converterOf(dataType);
+            this.setter = setter;
+        }
+
+        Object read(RoutingContext context) throws ClassFactoryException {
+            String value = ArgumentProvider.getValue(null, parameter, context, parameter.getDefaultValue());
+            if (value == null) {
+                return null;
+            }
+            try {
+                return converter.convert(value);
+            } catch (ClassFactoryException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new ClassFactoryException("Failed to convert value: '" + value + "', to: '" + parameter.getDataType().getName() + "'", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.whatswater.curd.project.common;
+
+
+import com.whatswater.sql.executor.SqlSession;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 数据变更监听器列表，服务在写操作成功后调用fire，用于使内存中的缓存、快照失效
+ * 在@Transactional方法的会话中调用时，监听器在提交后执行，回滚时不执行，见SqlSession.afterCommit
+ */
+public class ChangeListeners {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChangeListeners.class);
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+    public void add(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    public void fire() {
+        SqlSession.afterCommit(this::fireNow);
+    }
+
+    private void fireNow() {
+        for (Runnable listener: listeners) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                LOGGER.error("执行数据变更监听器失败", e);
+            }
+        }
+    }
+
+    /**
+     * 写操作成功后触发变更
+     * @param result 写操作结果
+     * @param <T> 结果类型
+     * @return 原结果
+     */
+    public <T> T fireAndReturn(T result) {
+        fire();
+        return result;
+    }
+}
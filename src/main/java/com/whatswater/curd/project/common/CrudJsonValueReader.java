@@ -1,12 +1,21 @@
 package com.whatswater.curd.project.common;
 
 
-import com.zandero.rest.reader.ValueReader;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.zandero.rest.reader.BufferValueReader;
+import com.zandero.rest.reader.JsonBodyParser;
 import com.zandero.utils.StringUtils;
 import com.zandero.utils.extra.JsonUtils;
+import io.vertx.core.buffer.Buffer;
 
-public class CrudJsonValueReader extends ObjectMapperHolder implements ValueReader<Object> {
-
+public class CrudJsonValueReader extends ObjectMapperHolder implements BufferValueReader<Object> {
+    // 每个类型的ObjectReader只创建一次，ObjectReader不可变，可在多个事件循环间共用
+    private static final ClassValue<ObjectReader> READERS = new ClassValue<ObjectReader>() {
+        @Override
+        protected ObjectReader computeValue(Class<?> type) {
+            return mapper.readerFor(type);
+        }
+    };
 
     @Override
     public Object read(String value, Class<Object> type) throws Throwable {
@@ -16,4 +25,12 @@ public class CrudJsonValueReader extends ObjectMapperHolder implements ValueRead
 
         return JsonUtils.fromJson(value, type, mapper);
     }
+
+    /**
+     * 直接从请求体的字节解析，不先转换为String
+     */
+    @Override
+    public Object read(Buffer body, Class<Object> type) {
+        return JsonBodyParser.parse(READERS.get(type), body);
+    }
 }
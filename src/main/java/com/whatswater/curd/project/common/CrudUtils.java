@@ -5,9 +5,14 @@ import cn.hutool.core.util.StrUtil;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
 import io.vertx.core.impl.future.FailedFuture;
 import io.vertx.ext.sql.assist.SqlAssist;
+import io.vertx.mysqlclient.MySQLClient;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import io.vertx.sqlclient.SqlClient;
 import org.apache.commons.codec.digest.DigestUtils;
 
 import java.time.LocalDate;
@@ -143,6 +148,36 @@ public final class CrudUtils {
         return sqlAssist;
     }
 
+    /**
+     * 批量插入，一次提交所有参数，按顺序返回每一行的自增Id
+     * @param client 数据库客户端
+     * @param insertSql 单行插入语句
+     * @param batch 每一行的参数
+     * @return 自增Id列表
+     */
+    public static Future<List<Long>> batchInsert(SqlClient client, String insertSql, List<io.vertx.sqlclient.Tuple> batch) {
+        if (batch.isEmpty()) {
+            return Future.succeededFuture(new ArrayList<>());
+        }
+        return client.preparedQuery(insertSql).executeBatch(batch).map(rowSet -> {
+            List<Long> idList = new ArrayList<>(batch.size());
+            for (RowSet<Row> current = rowSet; current != null; current = current.next()) {
+                idList.add(current.property(MySQLClient.LAST_INSERTED_ID));
+            }
+            return idList;
+        });
+    }
+
+    /**
+     * 并发等待同类型的Future，全部成功后按顺序返回结果，任一失败则失败
+     * @param futureList Future列表
+     * @return 结果列表
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public static <T> Future<List<T>> all(List<Future<T>> futureList) {
+        return CompositeFuture.all((List<Future>) (List) futureList).map(CompositeFuture::list);
+    }
+
     public static <T1, T2> Future<Tuple2<T1, T2>> successFuture(T1 t1, T2 t2) {
         return Future.succeededFuture(Tuple2.of(t1, t2));
     }
@@ -12,11 +12,15 @@ public enum ErrorCodeEnum {
 
     NOT_LOGIN("0301", "未登录"),
     PERMISSION_DENY("0302", "权限不足"),
+    PERMISSION_NOT_READY("0303", "权限数据加载中，请稍后再试"),
 
     USER_NOT_EXISTS("0401", "用户不存在"),
     USER_DISABLED("0402", "用户已停用"),
     USER_HAS_NOT_ROLE("0403", "用户没有角色"),
     USER_PASSWORD_ERROR("0404", "用户密码错误"),
+    LOGIN_BUSY("0405", "登录人数过多，请稍后再试"),
+
+    DB_BUSY("0501", "数据库繁忙，请稍后再试"),
     ;
 
     private String errCode;
@@ -0,0 +1,93 @@
+package com.whatswater.curd.project.common;
+
+
+import com.whatswater.sql.dialect.Dialect.SQL;
+import io.vertx.core.json.JsonObject;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 交给dbExecutor执行的单表查询，条件写法与SqlAssist的andEq、andIn一致，查询全部列
+ * 经过dbExecutor的查询才会使用缓存、合并、读写分离和耗时统计；条件复杂的查询、分页查询仍使用CommonSQL
+ * 结果按列名转换为JsonObject，与CommonSQL的selectAll相同，实体的JsonObject构造函数可以直接使用
+ */
+public final class ExecutorSQL {
+    private final String tableName;
+    private final StringBuilder where = new StringBuilder();
+    private final List<Object> params = new ArrayList<>();
+    private int rowSize;
+
+    private ExecutorSQL(String tableName) {
+        this.tableName = tableName;
+    }
+
+    public static ExecutorSQL select(String tableName) {
+        return new ExecutorSQL(tableName);
+    }
+
+    public ExecutorSQL andEq(String column, Object value) {
+        appendAnd().append('`').append(column).append("` = ?");
+        params.add(value);
+        return this;
+    }
+
+    /**
+     * @param values 不能为空，调用方需要先判断空集合
+     */
+    public ExecutorSQL andIn(String column, Collection<?> values) {
+        if (values.isEmpty()) {
+            throw new IllegalArgumentException("in条件的值不能为空: " + column);
+        }
+        appendAnd().append('`').append(column).append("` in (");
+        for (Object value: values) {
+            where.append("?, ");
+            params.add(value);
+        }
+        where.setLength(where.length() - 2);
+        where.append(')');
+        return this;
+    }
+
+    public ExecutorSQL setRowSize(int rowSize) {
+        this.rowSize = rowSize;
+        return this;
+    }
+
+    private StringBuilder appendAnd() {
+        return where.append(where.length() == 0 ? " where " : " and ");
+    }
+
+    public SQL toSql() {
+        StringBuilder sql = new StringBuilder("select * from `").append(tableName).append('`').append(where);
+        if (rowSize > 0) {
+            sql.append(" limit ").append(rowSize);
+        }
+        return new SQL(sql, new ArrayList<>(params)).addTableName(tableName);
+    }
+
+    public static List<JsonObject> toJsonList(RowSet<Row> rowSet) {
+        if (rowSet == null || rowSet.size() == 0) {
+            return Collections.emptyList();
+        }
+        List<JsonObject> jsonList = new ArrayList<>(rowSet.size());
+        for (Row row: rowSet) {
+            jsonList.add(row.toJson());
+        }
+        return jsonList;
+    }
+
+    /**
+     * @return 没有结果时返回null
+     */
+    public static JsonObject first(RowSet<Row> rowSet) {
+        if (rowSet == null || rowSet.size() == 0) {
+            return null;
+        }
+        return rowSet.iterator().next().toJson();
+    }
+}
@@ -0,0 +1,129 @@
+package com.whatswater.curd.project.common;
+
+
+import cn.hutool.core.util.HexUtil;
+import cn.hutool.core.util.StrUtil;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import io.vertx.core.json.JsonObject;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 密码哈希，在独立的有界工作线程池中计算，不占用事件循环
+ * 新密码使用配置的算法，校验时按存储格式识别算法，兼容CrudUtils.hashPassword生成的旧密码
+ * 存储格式：旧密码为64位十六进制；pbkdf2为pbkdf2$迭代次数$盐$哈希
+ */
+public class PasswordHasher {
+    public static final String KDF_SHA256 = "sha256";
+    public static final String KDF_PBKDF2 = "pbkdf2";
+    private static final String PBKDF2_ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final String SEPARATOR = "$";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final WorkerExecutor workerExecutor;
+    private final String kdf;
+    private final int iterations;
+    private final int maxPending;
+    private final AtomicInteger pending = new AtomicInteger();
+
+    public PasswordHasher(Vertx vertx, String kdf, int iterations, int poolSize, int maxPending) {
+        this.workerExecutor = vertx.createSharedWorkerExecutor("password-hasher", poolSize);
+        this.kdf = kdf;
+        this.iterations = iterations;
+        this.maxPending = maxPending;
+    }
+
+    public static PasswordHasher create(Vertx vertx, JsonObject config) {
+        return new PasswordHasher(
+            vertx,
+            config.getString("login.password.kdf", KDF_PBKDF2),
+            config.getInteger("login.password.iterations", 120000),
+            config.getInteger("login.password.workerPoolSize", 4),
+            config.getInteger("login.password.maxPending", 64)
+        );
+    }
+
+    public Future<String> hash(String password) {
+        return execute(() -> hash(kdf, iterations, password));
+    }
+
+    public Future<Boolean> verify(String stored, String password) {
+        if (StrUtil.isEmpty(stored) || password == null) {
+            return Future.succeededFuture(false);
+        }
+        return execute(() -> verifySync(stored, password));
+    }
+
+    /**
+     * 排队中的计算超过上限时直接失败，登录高峰时不让请求无限堆积在线程池队列中
+     */
+    private <T> Future<T> execute(Callable<T> callable) {
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            return CrudUtils.failedFuture(ErrorCodeEnum.LOGIN_BUSY);
+        }
+        Future<T> future = workerExecutor.executeBlocking(promise -> {
+            try {
+                promise.complete(callable.call());
+            } catch (Exception e) {
+                promise.fail(e);
+            }
+        }, false);
+        return future.onComplete(ar -> pending.decrementAndGet());
+    }
+
+    public static String hash(String kdf, int iterations, String password) {
+        if (KDF_SHA256.equals(kdf)) {
+            return CrudUtils.hashPassword(password);
+        }
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        byte[] hash = pbkdf2(password, salt, iterations);
+        return KDF_PBKDF2 + SEPARATOR + iterations + SEPARATOR + HexUtil.encodeHexStr(salt) + SEPARATOR + HexUtil.encodeHexStr(hash);
+    }
+
+    public static boolean verifySync(String stored, String password) {
+        if (!stored.startsWith(KDF_PBKDF2 + SEPARATOR)) {
+            return MessageDigest.isEqual(stored.getBytes(StandardCharsets.UTF_8), CrudUtils.hashPassword(password).getBytes(StandardCharsets.UTF_8));
+        }
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4) {
+            return false;
+        }
+        int storedIterations;
+        try {
+            storedIterations = Integer.parseInt(parts[1]);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        byte[] salt = HexUtil.decodeHex(parts[2]);
+        byte[] expected = HexUtil.decodeHex(parts[3]);
+        return MessageDigest.isEqual(expected, pbkdf2(password, salt, storedIterations));
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(PBKDF2_ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    public void close() {
+        workerExecutor.close();
+    }
+}
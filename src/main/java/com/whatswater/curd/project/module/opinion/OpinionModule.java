@@ -6,7 +6,6 @@ import com.whatswater.asyncmodule.ModuleInfo;
 import com.whatswater.curd.NewInstanceModuleFactory;
 import com.whatswater.curd.project.module.opinion.OpinionService;
 import com.whatswater.curd.project.module.workflow.flowEngine.FlowEngineService;
-import com.whatswater.curd.project.sys.permission.UserTokenService;
 import com.zandero.rest.RestRouter;
 import io.vertx.ext.sql.assist.SQLExecute;
 import io.vertx.ext.web.Router;
@@ -22,7 +21,6 @@ public class OpinionModule implements Module {
         moduleInfo.require(NewInstanceModuleFactory.MODULE_PATH_DATA_SOURCE, "datasource");
         moduleInfo.require(NewInstanceModuleFactory.MODULE_PATH_HTTP_SERVER, "router");
         moduleInfo.require(NewInstanceModuleFactory.MODULE_PATH_FLOW_ENGINE, "flowEngineService");
-        moduleInfo.require(NewInstanceModuleFactory.MODULE_PATH_PERMISSION, "userTokenService");
 
         moduleInfo.exportObject("opinionService", opinionService);
     }
@@ -40,8 +38,6 @@ public class OpinionModule implements Module {
             RestRouter.register(router, rest);
         } else if ("flowEngineService".equals(name)) {
             opinionService.setFlowEngineService((FlowEngineService) obj);
-        } else if ("userTokenService".equals(name)) {
-            opinionService.setUserTokenService((UserTokenService) obj);
         }
     }
 }
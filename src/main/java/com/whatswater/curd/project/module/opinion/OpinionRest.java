@@ -51,16 +51,16 @@ public class OpinionRest {
     @Path("/insert")
     @Produces(CrudConst.APPLICATION_JSON_UTF8)
     @Consumes(MediaType.APPLICATION_JSON)
-    public Future<RestResult<Long>> insert(@HeaderParam(CrudConst.HEADER_TOKEN) String token, Opinion opinion) {
-        return opinionService.fillAndInsertWithCheck(token, opinion).map(RestResult::success);
+    public Future<RestResult<Long>> insert(Opinion opinion) {
+        return opinionService.fillAndInsertWithCheck(opinion).map(RestResult::success);
     }
 
     @POST
     @Path("/update")
     @Produces(CrudConst.APPLICATION_JSON_UTF8)
     @Consumes(MediaType.APPLICATION_JSON)
-    public Future<RestResult<Integer>> update(@HeaderParam(CrudConst.HEADER_TOKEN) String token, Opinion opinion) {
+    public Future<RestResult<Integer>> update(Opinion opinion) {
         Assert.assertNotNull(opinion.getId(), "Id不能为空");
-        return opinionService.updateWithCheck(token, opinion).map(RestResult::success);
+        return opinionService.updateWithCheck(opinion).map(RestResult::success);
     }
 }
@@ -11,7 +11,6 @@ import com.whatswater.curd.project.module.workflow.flowInstanceTask.FlowInstance
 import com.whatswater.curd.project.module.workflow.flowLink.FlowLink;
 import com.whatswater.curd.project.sys.employee.Employee;
 import com.whatswater.curd.project.sys.permission.UserToken;
-import com.whatswater.curd.project.sys.permission.UserTokenService;
 import io.vertx.core.Future;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.sql.assist.SQLExecute;
@@ -29,7 +28,6 @@ import java.util.stream.Collectors;
 public class OpinionService {
     private OpinionSQL opinionSQL;
     private FlowEngineService flowEngineService;
-    private UserTokenService userTokenService;
 
     public OpinionService() {
     }
@@ -123,8 +121,8 @@ public class OpinionService {
         });
     }
 
-    public Future<Long> fillAndInsertWithCheck(String token, Opinion opinion) {
-        UserToken userToken = userTokenService.getUserToken(token);
+    public Future<Long> fillAndInsertWithCheck(Opinion opinion) {
+        UserToken userToken = UserToken.current();
         if (userToken == null) {
             return Future.failedFuture("当前用户未登录，请重新登录");
         }
@@ -140,8 +138,8 @@ public class OpinionService {
         return opinionSQL.insertNonEmptyGeneratedKeys(opinion, MySQLClient.LAST_INSERTED_ID);
     }
 
-    public Future<Integer> updateWithCheck(String token, Opinion opinion) {
-        UserToken userToken = userTokenService.getUserToken(token);
+    public Future<Integer> updateWithCheck(Opinion opinion) {
+        UserToken userToken = UserToken.current();
         if (userToken == null) {
             return Future.failedFuture("当前用户未登录，请重新登录");
         }
@@ -167,8 +165,4 @@ public class OpinionService {
     public void setFlowEngineService(FlowEngineService flowEngineService) {
         this.flowEngineService = flowEngineService;
     }
-
-    public void setUserTokenService(UserTokenService userTokenService) {
-        this.userTokenService = userTokenService;
-    }
 }
@@ -8,7 +8,6 @@ import com.whatswater.curd.NewInstanceModuleFactory;
 import com.whatswater.curd.project.module.workflow.flowEngine.FlowEngineService;
 import com.whatswater.curd.project.sys.attachment.AttachmentService;
 import com.whatswater.curd.project.sys.organization.OrganizationService;
-import com.whatswater.curd.project.sys.permission.UserTokenService;
 import com.whatswater.curd.project.sys.serial.SerialService;
 import com.zandero.rest.RestRouter;
 import io.vertx.ext.sql.assist.SQLExecute;
@@ -24,7 +23,6 @@ public class ProjectRewardApplyModule implements Module {
         moduleInfo.require(NewInstanceModuleFactory.MODULE_PATH_HTTP_SERVER, "router");
 
         moduleInfo.require(NewInstanceModuleFactory.MODULE_PATH_ORGANIZATION, "organizationService");
-        moduleInfo.require(NewInstanceModuleFactory.MODULE_PATH_PERMISSION, "userTokenService");
         moduleInfo.require(NewInstanceModuleFactory.MODULE_PATH_FLOW_ENGINE, "flowEngineService");
         moduleInfo.require(NewInstanceModuleFactory.MODULE_PATH_SERIAL, "serialService");
         moduleInfo.require(NewInstanceModuleFactory.MODULE_PATH_ATTACHMENT, "attachmentService");
@@ -42,6 +40,11 @@ public class ProjectRewardApplyModule implements Module {
             Router router = (Router) obj;
             ProjectRewardApplyRest rest = new ProjectRewardApplyRest(projectRewardApplyService);
             RestRouter.register(router, rest);
+        } else if ("attachmentService".equals(name)) {
+            AttachmentService attachmentService = (AttachmentService) obj;
+            // 能查看申请单的用户才能下载申请单的附件
+            attachmentService.registerBusinessViewPath(ProjectRewardApplyService.BUSINESS_TYPE, "/business/projectRewardApply/getVoById");
+            projectRewardApplyService.setAttachmentService(attachmentService);
         } else {
             ReflectUtil.setFieldValue(projectRewardApplyService, name, obj);
         }
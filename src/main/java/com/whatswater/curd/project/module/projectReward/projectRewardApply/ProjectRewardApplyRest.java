@@ -33,11 +33,11 @@ public class ProjectRewardApplyRest {
     @POST
     @Path("/initApply")
     @Produces(CrudConst.APPLICATION_JSON_UTF8)
-    public Future<RestResult<ProjectRewardApply>> initApply(@HeaderParam(CrudConst.HEADER_TOKEN) String token, @QueryParam("id") Long applyId) {
+    public Future<RestResult<ProjectRewardApply>> initApply(@QueryParam("id") Long applyId) {
         if (applyId != null && applyId > 0L) {
             return projectRewardApplyService.initApply(applyId).map(RestResult::success);
         }
-        return projectRewardApplyService.initApply(token).map(RestResult::success);
+        return projectRewardApplyService.initApply().map(RestResult::success);
     }
 
     @POST
@@ -58,8 +58,8 @@ public class ProjectRewardApplyRest {
     @Path("/insert")
     @Produces(CrudConst.APPLICATION_JSON_UTF8)
     @Consumes(MediaType.APPLICATION_JSON)
-    public Future<RestResult<Long>> insert(@HeaderParam(CrudConst.HEADER_TOKEN) String token, ProjectRewardApply projectRewardApply) {
-        return projectRewardApplyService.fillAndInsertWithCheck(token, projectRewardApply).map(RestResult::success);
+    public Future<RestResult<Long>> insert(ProjectRewardApply projectRewardApply) {
+        return projectRewardApplyService.fillAndInsertWithCheck(projectRewardApply).map(RestResult::success);
     }
 
     @POST
@@ -72,8 +72,8 @@ public class ProjectRewardApplyRest {
     @POST
     @Path("/firstCommit")
     @Produces(CrudConst.APPLICATION_JSON_UTF8)
-    public Future<RestResult<ProjectRewardApply>> firstCommit(@HeaderParam(CrudConst.HEADER_TOKEN) String token, @QueryParam("id") Long projectRewardApplyId) {
-        return projectRewardApplyService.firstCommit(token, projectRewardApplyId).map(RestResult::success);
+    public Future<RestResult<ProjectRewardApply>> firstCommit(@QueryParam("id") Long projectRewardApplyId) {
+        return projectRewardApplyService.firstCommit(projectRewardApplyId).map(RestResult::success);
     }
 
     @POST
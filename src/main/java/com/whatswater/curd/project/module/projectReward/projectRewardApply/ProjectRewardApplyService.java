@@ -22,7 +22,6 @@ import com.whatswater.curd.project.sys.employee.Employee;
 import com.whatswater.curd.project.sys.employeeRole.EmployeeRoleService;
 import com.whatswater.curd.project.sys.organization.OrganizationService;
 import com.whatswater.curd.project.sys.permission.UserToken;
-import com.whatswater.curd.project.sys.permission.UserTokenService;
 import com.whatswater.curd.project.sys.serial.SerialService;
 import io.vertx.core.Future;
 import io.vertx.core.json.JsonObject;
@@ -35,9 +34,11 @@ import java.util.*;
 import java.util.stream.Collectors;
 
 public class ProjectRewardApplyService {
+    // 附件的业务类型
+    public static final String BUSINESS_TYPE = "PROJECT_REWARD_APPLY";
+
     private ProjectRewardApplySQL projectRewardApplySQL;
     private OrganizationService organizationService;
-    private UserTokenService userTokenService;
     private FlowEngineService flowEngineService;
     private SerialService serialService;
     private AttachmentService attachmentService;
@@ -64,8 +65,11 @@ public class ProjectRewardApplyService {
         return getById(applyId);
     }
 
-    public Future<ProjectRewardApply> initApply(String token) {
-        UserToken userToken = userTokenService.getUserToken(token);
+    /**
+     * 以当前登录用户为申请人初始化申请单
+     */
+    public Future<ProjectRewardApply> initApply() {
+        UserToken userToken = UserToken.current();
         if (userToken == null) {
             return Future.failedFuture("当前用户未登录，请重新登录");
         }
@@ -116,8 +120,8 @@ public class ProjectRewardApplyService {
         return new ProjectRewardApply(json.get(0));
     }
 
-    public Future<Long> fillAndInsertWithCheck(String token, ProjectRewardApply projectRewardApply) {
-        UserToken userToken = userTokenService.getUserToken(token);
+    public Future<Long> fillAndInsertWithCheck(ProjectRewardApply projectRewardApply) {
+        UserToken userToken = UserToken.current();
         if (userToken == null) {
             return Future.failedFuture("当前用户未登录，请重新登录");
         }
@@ -143,7 +147,7 @@ public class ProjectRewardApplyService {
                 }
                 List<Long> attachmentIds = Arrays.stream(attachment.split(StrUtil.COMMA)).map(Long::parseLong).collect(Collectors.toList());
                 return attachmentService
-                    .updateBusinessTypeAndId(attachmentIds, "PROJECT_REWARD_APPLY", String.valueOf(id))
+                    .updateBusinessTypeAndId(attachmentIds, BUSINESS_TYPE, String.valueOf(id))
                     .map(id);
             });
         });
@@ -175,7 +179,7 @@ public class ProjectRewardApplyService {
             updateData.setCategoryTotalCost(apply.getCategoryTotalCost());
             updateData.setContentTotalCost(apply.getContentTotalCost());
 
-            String businessType = "PROJECT_REWARD_APPLY";
+            String businessType = BUSINESS_TYPE;
             String businessId = String.valueOf(apply.getId());
             return update(updateData).compose(cnt -> attachmentService.deleteBy(businessType, businessId).map(cnt)).compose(cnt -> {
                 String attachment = apply.getAttachment();
@@ -233,13 +237,12 @@ public class ProjectRewardApplyService {
 
 
     /**
-     * 申请者提交
-     * @param token 用户令牌
+     * 当前登录用户作为申请者提交
      * @param projectRewardApplyId 申请单Id
      * @return 申请单信息
      */
-    public Future<ProjectRewardApply> firstCommit(String token, Long projectRewardApplyId) {
-        UserToken userToken = userTokenService.getUserToken(token);
+    public Future<ProjectRewardApply> firstCommit(Long projectRewardApplyId) {
+        UserToken userToken = UserToken.current();
         if (userToken == null) {
             return Future.failedFuture("当前用户未登录，请重新登录");
         }
@@ -329,10 +332,6 @@ public class ProjectRewardApplyService {
         this.organizationService = organizationService;
     }
 
-    public void setUserTokenService(UserTokenService userTokenService) {
-        this.userTokenService = userTokenService;
-    }
-
     public void setFlowEngineService(FlowEngineService flowEngineService) {
         this.flowEngineService = flowEngineService;
     }
@@ -7,6 +7,7 @@ import io.vertx.ext.sql.assist.SqlAssist;
 import io.vertx.ext.sql.assist.Table;
 import io.vertx.ext.sql.assist.TableColumn;
 import io.vertx.ext.sql.assist.TableId;
+import io.vertx.sqlclient.Tuple;
 
 import java.time.LocalDateTime;
 
@@ -28,6 +29,23 @@ public class Todo {
     public static final String COLUMN_TASK_ID = "task_id";
     public static final String COLUMN_UPDATE_TRACE_ID = "update_trace_id";
 
+    public static final String INSERT_SQL = "insert into b_todo ("
+        + COLUMN_TITLE + ", "
+        + COLUMN_CREATE_TIME + ", "
+        + COLUMN_PREV_LINK + ", "
+        + COLUMN_PREV_EMPLOYEE + ", "
+        + COLUMN_PREV_EMPLOYEE_NAME + ", "
+        + COLUMN_ACTOR_EMPLOYEE + ", "
+        + COLUMN_ACTOR_EMPLOYEE_NAME + ", "
+        + COLUMN_MODULE_NAME + ", "
+        + COLUMN_BUSINESS_TYPE + ", "
+        + COLUMN_BUSINESS_ID + ", "
+        + COLUMN_EXTRA_INFO + ", "
+        + COLUMN_TASK_ID + ", "
+        + COLUMN_STATUS + ", "
+        + COLUMN_UPDATE_TRACE_ID
+        + ") values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
     @TableId(COLUMN_ID)
     private Long id;
     @TableColumn(COLUMN_TITLE)
@@ -221,4 +239,44 @@ public class Todo {
 
         return sqlAssist;
     }
+
+    /**
+     * 按原状态更新，并发更新同一待办时只有一个成功
+     */
+    public static SqlAssist idAndStatusSqlAssist(Long id, Integer status) {
+        SqlAssist sqlAssist = new SqlAssist();
+        sqlAssist.andEq(COLUMN_ID, id);
+        sqlAssist.andEq(COLUMN_STATUS, status);
+
+        return sqlAssist;
+    }
+
+    /**
+     * 某人的未读待办，依赖索引(actor_employee, status, create_time)，见sql/b_todo.sql
+     */
+    public static SqlAssist actorUnreadSqlAssist(String actorEmployee) {
+        SqlAssist sqlAssist = new SqlAssist();
+        sqlAssist.andEq(COLUMN_ACTOR_EMPLOYEE, actorEmployee);
+        sqlAssist.andEq(COLUMN_STATUS, TodoStatusEnum.UNREAD.getCode());
+
+        return sqlAssist;
+    }
+
+    public Tuple toInsertTuple() {
+        return Tuple.tuple()
+            .addValue(title)
+            .addValue(createTime)
+            .addValue(prevLink)
+            .addValue(prevEmployee)
+            .addValue(prevEmployeeName)
+            .addValue(actorEmployee)
+            .addValue(actorEmployeeName)
+            .addValue(moduleName)
+            .addValue(businessType)
+            .addValue(businessId)
+            .addValue(extraInfo)
+            .addValue(taskId)
+            .addValue(status)
+            .addValue(updateTraceId);
+    }
 }
@@ -0,0 +1,227 @@
+package com.whatswater.curd.project.module.todo;
+
+
+import cn.hutool.core.util.StrUtil;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 待办收件箱，按经手人维护未读数量，未读角标不再查询数据库
+ * 计数在首次查询时从数据库加载，之后随待办的新增、已读、完成、取消增减，超过有效期后重新加载以修正偏差
+ * 加载前先放入计数器，并发的调用方共用同一次加载；加载期间到达的增减只递增计数器的版本，
+ * 这些变化是否已包含在查询结果中无法确定，版本变化时重新查询，不把增减叠加到查询结果上重复计数
+ * 计数变化通过EventBus地址todo.inbox.{经手人}推送给客户端
+ */
+public class TodoInbox {
+    public static final String ADDRESS_PREFIX = "todo.inbox.";
+    public static final String EVENT_CREATED = "created";
+    public static final String EVENT_REMOVED = "removed";
+    private static final long COUNTER_TTL_MILLIS = 10 * 60 * 1000L;
+    // 加载期间持续有变化时最多查询的次数，仍有变化时使用最后一次的结果，并在下次读取时重新加载
+    private static final int MAX_LOAD_ATTEMPTS = 3;
+
+    private final Map<String, UnreadCounter> counterMap = new ConcurrentHashMap<>();
+    private TodoSQL todoSQL;
+    private Vertx vertx;
+
+    public static String address(String actorEmployee) {
+        return ADDRESS_PREFIX + actorEmployee;
+    }
+
+    /**
+     * 未读待办数量
+     * @param actorEmployee 经手人登录名
+     */
+    public Future<Long> unreadCount(String actorEmployee) {
+        if (StrUtil.isEmpty(actorEmployee)) {
+            return Future.succeededFuture(0L);
+        }
+        long current = System.currentTimeMillis();
+        UnreadCounter counter = counterMap.get(actorEmployee);
+        if (counter != null && !counter.isExpired(current)) {
+            return counter.get();
+        }
+        UnreadCounter loading = new UnreadCounter(current);
+        boolean installed = counter == null
+            ? counterMap.putIfAbsent(actorEmployee, loading) == null
+            : counterMap.replace(actorEmployee, counter, loading);
+        if (!installed) {
+            // 其他调用方已开始加载
+            return unreadCount(actorEmployee);
+        }
+        load(actorEmployee, loading, 1);
+        return loading.get();
+    }
+
+    private void load(String actorEmployee, UnreadCounter loading, int attempt) {
+        long version = loading.version();
+        todoSQL.getCount(Todo.actorUnreadSqlAssist(actorEmployee)).onComplete(ar -> {
+            if (ar.failed()) {
+                counterMap.remove(actorEmployee, loading);
+                loading.fail(ar.cause());
+                return;
+            }
+            long count = ar.result() == null ? 0L : ar.result();
+            if (!loading.load(count, version) && attempt < MAX_LOAD_ATTEMPTS) {
+                load(actorEmployee, loading, attempt + 1);
+            } else if (!loading.isLoaded()) {
+                loading.loadStale(count);
+            }
+        });
+    }
+
+    /**
+     * 新增未读待办后调用，计数已加载时加一，并向经手人推送新待办
+     */
+    public void onCreated(List<Todo> todoList) {
+        for (Todo todo: todoList) {
+            String actorEmployee = todo.getActorEmployee();
+            if (StrUtil.isEmpty(actorEmployee) || !TodoStatusEnum.UNREAD.getCode().equals(todo.getStatus())) {
+                continue;
+            }
+            UnreadCounter counter = counterMap.get(actorEmployee);
+            if (counter != null) {
+                counter.add(1);
+            }
+            unreadCount(actorEmployee).onSuccess(unread -> {
+                JsonObject message = new JsonObject()
+                    .put("type", EVENT_CREATED)
+                    .put("unread", unread)
+                    .put("todo", toMessage(todo));
+                publish(actorEmployee, message);
+            });
+        }
+    }
+
+    /**
+     * 未读待办变为已读、完成或取消后调用
+     */
+    public void onUnreadRemoved(Todo todo) {
+        String actorEmployee = todo.getActorEmployee();
+        if (StrUtil.isEmpty(actorEmployee)) {
+            return;
+        }
+        UnreadCounter counter = counterMap.get(actorEmployee);
+        if (counter != null) {
+            counter.add(-1);
+        }
+        unreadCount(actorEmployee).onSuccess(unread -> {
+            JsonObject message = new JsonObject()
+                .put("type", EVENT_REMOVED)
+                .put("unread", unread)
+                .put("todoId", todo.getId());
+            publish(actorEmployee, message);
+        });
+    }
+
+    private void publish(String actorEmployee, JsonObject message) {
+        if (vertx != null) {
+            vertx.eventBus().publish(address(actorEmployee), message);
+        }
+    }
+
+    private static JsonObject toMessage(Todo todo) {
+        return new JsonObject()
+            .put("id", todo.getId())
+            .put("title", todo.getTitle())
+            .put("taskId", todo.getTaskId())
+            .put("prevLink", todo.getPrevLink())
+            .put("prevEmployeeName", todo.getPrevEmployeeName())
+            .put("moduleName", todo.getModuleName())
+            .put("businessType", todo.getBusinessType())
+            .put("businessId", todo.getBusinessId())
+            .put("createTime", todo.getCreateTime() == null ? null : todo.getCreateTime().toString());
+    }
+
+    public void setTodoSQL(TodoSQL todoSQL) {
+        this.todoSQL = todoSQL;
+    }
+
+    public void setVertx(Vertx vertx) {
+        this.vertx = vertx;
+    }
+
+    /**
+     * 加载完成前增减只递增version，加载完成后才修改value
+     * 增减与加载完成之间通过对象锁互斥，增减要么在加载前计入version，要么在加载后计入value
+     */
+    static final class UnreadCounter {
+        private final Promise<Void> loadPromise = Promise.promise();
+        private long loadTime;
+        private long value;
+        private long version;
+        private boolean loaded;
+
+        UnreadCounter(long loadTime) {
+            this.loadTime = loadTime;
+        }
+
+        Future<Long> get() {
+            return loadPromise.future().map(v -> value());
+        }
+
+        synchronized long value() {
+            return value;
+        }
+
+        synchronized long version() {
+            return version;
+        }
+
+        synchronized boolean isLoaded() {
+            return loaded;
+        }
+
+        synchronized void add(long delta) {
+            if (loaded) {
+                value = Math.max(0L, value + delta);
+            } else {
+                version++;
+            }
+        }
+
+        /**
+         * 查询开始后没有增减时使用查询结果
+         * @param count 查询到的数量
+         * @param loadVersion 查询开始时的版本
+         * @return 是否已加载，版本变化时返回false，需要重新查询
+         */
+        boolean load(long count, long loadVersion) {
+            synchronized (this) {
+                if (version != loadVersion) {
+                    return false;
+                }
+                value = count;
+                loaded = true;
+            }
+            loadPromise.complete();
+            return true;
+        }
+
+        /**
+         * 多次查询期间都有增减时使用最后一次的结果，并立即过期，下次读取时重新加载
+         */
+        void loadStale(long count) {
+            synchronized (this) {
+                value = count;
+                loaded = true;
+                loadTime = 0L;
+            }
+            loadPromise.complete();
+        }
+
+        void fail(Throwable cause) {
+            loadPromise.fail(cause);
+        }
+
+        synchronized boolean isExpired(long current) {
+            return current - loadTime > COUNTER_TTL_MILLIS;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.whatswater.curd.project.module.todo;
+
+
+import cn.hutool.core.util.StrUtil;
+import com.whatswater.curd.CrudConst;
+import com.whatswater.curd.project.sys.permission.UserToken;
+import com.whatswater.curd.project.sys.permission.UserTokenService;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.MessageConsumer;
+import io.vertx.core.http.Cookie;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+
+/**
+ * 待办收件箱推送，Server-Sent Events长连接
+ * 连接建立后先推送当前未读数量，之后转发EventBus上该经手人的待办变化
+ *
+ * 浏览器的EventSource不能设置请求头，该路径不经过PermissionCheckHandler，
+ * 在这里校验token，token取自请求头X-Token或登录时写入的HttpOnly cookie X-Token，不从查询参数中读取，token不会出现在访问日志和浏览器历史中；
+ * 只推送当前登录人自己的待办，不再做菜单权限校验
+ */
+public class TodoInboxStreamHandler implements Handler<RoutingContext> {
+    public static final String PATH = "/business/todo/inbox/stream";
+    private static final long PING_INTERVAL_MILLIS = 30 * 1000L;
+
+    private final Vertx vertx;
+    private final TodoInbox todoInbox;
+    private final UserTokenService userTokenService;
+
+    public TodoInboxStreamHandler(Vertx vertx, TodoInbox todoInbox, UserTokenService userTokenService) {
+        this.vertx = vertx;
+        this.todoInbox = todoInbox;
+        this.userTokenService = userTokenService;
+    }
+
+    @Override
+    public void handle(RoutingContext rc) {
+        HttpServerResponse response = rc.response();
+        UserToken userToken = authenticate(rc);
+        if (userToken == null || userToken.getEmployee() == null) {
+            response.setStatusCode(HttpResponseStatus.UNAUTHORIZED.code()).end();
+            return;
+        }
+        String actorEmployee = userToken.getEmployee().getLoginName();
+
+        response.setChunked(true);
+        response.putHeader(HttpHeaderNames.CONTENT_TYPE, "text/event-stream;charset=UTF-8");
+        response.putHeader(HttpHeaderNames.CACHE_CONTROL, "no-cache");
+        response.putHeader("X-Accel-Buffering", "no");
+
+        MessageConsumer<JsonObject> consumer = vertx.eventBus().consumer(TodoInbox.address(actorEmployee), message -> {
+            JsonObject body = message.body();
+            write(response, body.getString("type"), body);
+        });
+        long timerId = vertx.setPeriodic(PING_INTERVAL_MILLIS, id -> {
+            if (!response.closed()) {
+                response.write(": ping\n\n");
+            }
+        });
+        response.closeHandler(v -> {
+            consumer.unregister();
+            vertx.cancelTimer(timerId);
+        });
+
+        todoInbox.unreadCount(actorEmployee).onComplete(ar -> {
+            if (ar.succeeded()) {
+                write(response, "unread", new JsonObject().put("unread", ar.result()));
+            }
+        });
+    }
+
+    private UserToken authenticate(RoutingContext rc) {
+        String token = rc.request().getHeader(CrudConst.HEADER_TOKEN);
+        if (StrUtil.isEmpty(token)) {
+            Cookie cookie = rc.request().getCookie(CrudConst.COOKIE_TOKEN);
+            token = cookie == null ? null : cookie.getValue();
+        }
+        if (StrUtil.isEmpty(token)) {
+            return null;
+        }
+        UserToken userToken = userTokenService.getUserToken(token);
+        long current = System.currentTimeMillis();
+        if (userToken == null || userToken.isExpired(current)) {
+            return null;
+        }
+        userToken.setUpdateTime(current);
+        rc.data().put(CrudConst.RC_KEY_USER_TOKEN, userToken);
+        return userToken;
+    }
+
+    private static void write(HttpServerResponse response, String event, JsonObject data) {
+        if (response.closed() || response.ended()) {
+            return;
+        }
+        response.write("event: " + event + "\ndata: " + data.encode() + "\n\n");
+    }
+}
@@ -9,8 +9,10 @@ import com.whatswater.asyncmodule.ModuleInfo;
 import com.whatswater.curd.NewInstanceModuleFactory;
 import com.whatswater.curd.project.module.workflow.flowEngine.FlowEngineService;
 import com.whatswater.curd.project.sys.employee.EmployeeService;
+import com.whatswater.curd.project.sys.permission.UserTokenService;
 import com.whatswater.curd.project.sys.uid.UidGeneratorService;
 import com.zandero.rest.RestRouter;
+import io.vertx.core.Vertx;
 import io.vertx.ext.sql.assist.SQLExecute;
 import io.vertx.ext.web.Router;
 import io.vertx.mysqlclient.MySQLPool;
@@ -21,8 +23,13 @@ import java.util.TreeMap;
 
 public class TodoModule implements Module {
     TodoService todoService = new TodoService();
+    TodoInbox todoInbox = new TodoInbox();
     ITodoAwaitService todoAwaitService;
     TodoClassLoader todoClassLoader = new TodoClassLoader(this.getClass().getClassLoader());
+    Router router;
+    Vertx vertx;
+    UserTokenService userTokenService;
+    boolean registered = false;
 
     public TodoModule() {
         String path = "com/whatswater/curd/project/module/todo/TodoAwaitService";
@@ -52,6 +59,9 @@ public class TodoModule implements Module {
         moduleInfo.require(NewInstanceModuleFactory.MODULE_PATH_UID, "uidGeneratorService");
         moduleInfo.require(NewInstanceModuleFactory.MODULE_PATH_FLOW_ENGINE, "flowEngineService");
         moduleInfo.require(NewInstanceModuleFactory.MODULE_PATH_EMPLOYEE, "employeeService");
+        moduleInfo.require(NewInstanceModuleFactory.MODULE_PATH_PERMISSION, "userTokenService");
+        moduleInfo.require("init:global", "vertx");
+        todoService.setTodoInbox(todoInbox);
 
         moduleInfo.exportObject("todoService", todoService);
     }
@@ -61,12 +71,12 @@ public class TodoModule implements Module {
         if ("datasource".equals(name)) {
             MySQLPool pool = (MySQLPool) obj;
             TodoSQL todoSQL = new TodoSQL(SQLExecute.createMySQL(pool));
+            todoService.setPool(pool);
             todoService.setTodoSQL(todoSQL);
+            todoInbox.setTodoSQL(todoSQL);
             todoAwaitService.setTodoSQL(todoSQL);
         } else if ("router".equals(name)) {
-            Router router = (Router) obj;
-            TodoRest rest = new TodoRest(todoService, todoAwaitService);
-            RestRouter.register(router, rest);
+            router = (Router) obj;
         } else if ("uidGeneratorService".equals(name)) {
             UidGeneratorService uidGeneratorService = (UidGeneratorService) obj;
             todoService.setUidGeneratorService(uidGeneratorService);
@@ -74,6 +84,19 @@ public class TodoModule implements Module {
             todoService.setFlowEngineService((FlowEngineService) obj);
         } else if ("employeeService".equals(name)) {
             todoService.setEmployeeService((EmployeeService) obj);
+        } else if ("userTokenService".equals(name)) {
+            userTokenService = (UserTokenService) obj;
+        } else if ("vertx".equals(name)) {
+            vertx = (Vertx) obj;
+            todoInbox.setVertx(vertx);
+        }
+
+        if (router != null && vertx != null && userTokenService != null && !registered) {
+            registered = true;
+            // 推送为长连接，不经过rest.vertx的结果序列化，单独注册
+            router.get(TodoInboxStreamHandler.PATH).handler(new TodoInboxStreamHandler(vertx, todoInbox, userTokenService));
+            TodoRest rest = new TodoRest(todoService, todoAwaitService);
+            RestRouter.register(router, rest);
         }
     }
 }
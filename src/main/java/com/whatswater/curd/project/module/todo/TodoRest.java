@@ -7,6 +7,7 @@ import com.whatswater.curd.project.common.PageResult;
 import com.whatswater.curd.project.common.RestResult;
 import com.whatswater.curd.project.module.workflow.event.GenerateTaskContext;
 import com.whatswater.curd.project.module.workflow.event.UpdateTaskStatusContext;
+import com.whatswater.curd.project.sys.permission.UserToken;
 import com.zandero.rest.annotation.Get;
 import com.zandero.rest.annotation.Post;
 import io.vertx.core.Future;
@@ -108,4 +109,16 @@ public class TodoRest {
     public Future<RestResult<Integer>> read(@QueryParam("id") long todoId) {
         return todoService.readTodo(todoId).map(RestResult::success);
     }
+
+    // 未读角标，从收件箱计数读取，不查询数据库
+    @Get
+    @Path("/unreadCount")
+    @Produces(CrudConst.APPLICATION_JSON_UTF8)
+    public Future<RestResult<Long>> unreadCount() {
+        UserToken userToken = UserToken.current();
+        if (userToken == null || userToken.getEmployee() == null) {
+            return Future.succeededFuture(RestResult.success(0L));
+        }
+        return todoService.getTodoInbox().unreadCount(userToken.getEmployee().getLoginName()).map(RestResult::success);
+    }
 }
@@ -3,10 +3,8 @@ package com.whatswater.curd.project.module.todo;
 
 import cn.hutool.core.collection.CollectionUtil;
 import cn.hutool.core.util.StrUtil;
+import com.whatswater.curd.project.common.BusinessException;
 import com.whatswater.curd.project.common.CrudUtils;
-import com.whatswater.curd.project.common.CrudUtils.SameFutureBuilder;
-import com.whatswater.curd.project.common.CrudUtils.Tuple2;
-import com.whatswater.curd.project.common.CrudUtils.Tuple3;
 import com.whatswater.curd.project.common.ErrorCodeEnum;
 import com.whatswater.curd.project.common.Page;
 import com.whatswater.curd.project.common.PageResult;
@@ -19,21 +17,30 @@ import com.whatswater.curd.project.sys.employee.Employee;
 import com.whatswater.curd.project.sys.employee.EmployeeService;
 import com.whatswater.curd.project.sys.uid.UidGeneratorService;
 import com.whatswater.sql.executor.ContextService;
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.sql.assist.SqlAssist;
 import io.vertx.mysqlclient.MySQLClient;
+import io.vertx.mysqlclient.MySQLPool;
+import io.vertx.sqlclient.Tuple;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 
 public class TodoService implements ContextService<TodoService> {
     private UidGeneratorService uidGeneratorService;
+    private MySQLPool pool;
     private TodoSQL todoSQL;
     private FlowEngineService flowEngineService;
     private EmployeeService employeeService;
+    private TodoInbox todoInbox;
 
     public TodoService() {
 
@@ -67,68 +74,120 @@ public class TodoService implements ContextService<TodoService> {
         });
     }
 
+    /**
+     * 为新生成的任务创建待办，前一个任务、前一个环节和所有经手人各用一次IN查询，待办批量插入
+     * @param context 任务生成上下文
+     * @return 新建的待办列表
+     */
     public Future<List<Todo>> onTaskCreated(GenerateTaskContext context) {
-        List<SameFutureBuilder<Todo>> taskBuilderList = context.getFlowInstanceTask()
+        List<FlowInstanceTask> taskList = context.getFlowInstanceTask()
             .stream()
-            .map(flowInstanceTask -> (SameFutureBuilder<Todo>)r -> {
-                return this.onTaskCreated(context, flowInstanceTask);
-            })
+            .filter(task -> !FlowConst.LINK_CODE_START.equals(task.getFlowLinkCode())
+                && !FlowConst.LINK_CODE_END.equals(task.getFlowLinkCode()))
             .collect(Collectors.toList());
-        return CrudUtils.serialTask(taskBuilderList);
-    }
-
-    public Future<Todo> onTaskCreated(GenerateTaskContext context, FlowInstanceTask flowInstanceTask) {
-        if (FlowConst.LINK_CODE_START.equals(flowInstanceTask.getFlowLinkCode())
-            || FlowConst.LINK_CODE_END.equals(flowInstanceTask.getFlowLinkCode())) {
-            return Future.succeededFuture(null);
+        if (taskList.isEmpty()) {
+            return Future.succeededFuture(Collections.emptyList());
         }
 
-        return flowEngineService.getPrevTask(flowInstanceTask)
-            .compose(prevTask -> flowEngineService.getFlowLinkService().getById(prevTask.getFlowLinkId()).map(prevLink -> Tuple2.of(prevTask, prevLink)))
-            .<Tuple3<FlowInstanceTask, FlowLink, Employee>>compose(tuple2 -> {
-                FlowInstanceTask prevTask = tuple2._1;
-                String actor = prevTask.getActor();
-                if (StrUtil.isEmpty(actor)) {
-                    return Future.succeededFuture(Tuple3.of(tuple2, null));
+        List<Long> taskIdList = taskList.stream().map(FlowInstanceTask::getId).collect(Collectors.toList());
+        return flowEngineService.getPrevTaskMap(taskIdList).compose(prevTaskMap -> {
+            for (FlowInstanceTask task: taskList) {
+                if (!prevTaskMap.containsKey(task.getId())) {
+                    return Future.failedFuture("任务关系为空");
                 }
+            }
 
-                return employeeService.getByLoginName(actor).map(prevEmployee -> {
-                    return Tuple3.of(tuple2, prevEmployee);
-                });
-            }).compose(tuple3 -> {
-                FlowInstanceTask prevTask = tuple3._1;
-                FlowLink prevLink = tuple3._2;
-                Employee prevEmployee = tuple3._3;
-
-                Todo todo = new Todo();
-                todo.setTitle(context.getFlowVariableValue(FlowConst.FLOW_VARIABLE_TITLE));
-                todo.setPrevLink(prevLink.getTitle());
-                todo.setPrevEmployee(prevTask.getActor());
-                if (prevEmployee != null) {
-                    todo.setPrevEmployeeName(prevEmployee.getName());
+            List<Long> prevLinkIdList = prevTaskMap.values()
+                .stream()
+                .map(FlowInstanceTask::getFlowLinkId)
+                .distinct()
+                .collect(Collectors.toList());
+            List<String> loginNameList = new ArrayList<>();
+            for (FlowInstanceTask task: taskList) {
+                loginNameList.add(task.getActor());
+                loginNameList.add(prevTaskMap.get(task.getId()).getActor());
+            }
+            loginNameList = loginNameList.stream().filter(StrUtil::isNotEmpty).distinct().collect(Collectors.toList());
+
+            Future<List<FlowLink>> prevLinkFuture = flowEngineService.getFlowLinkService().listByIds(prevLinkIdList);
+            Future<List<Employee>> employeeFuture = employeeService.listByLoginName(loginNameList);
+            return CompositeFuture.all(prevLinkFuture, employeeFuture).compose(r -> {
+                Map<Long, FlowLink> prevLinkMap = prevLinkFuture.result()
+                    .stream()
+                    .collect(Collectors.toMap(FlowLink::getId, Function.identity()));
+                Map<String, Employee> employeeMap = employeeFuture.result()
+                    .stream()
+                    .collect(Collectors.toMap(Employee::getLoginName, Function.identity(), (e1, e2) -> e1));
+
+                List<Todo> todoList = new ArrayList<>(taskList.size());
+                for (FlowInstanceTask task: taskList) {
+                    FlowInstanceTask prevTask = prevTaskMap.get(task.getId());
+                    FlowLink prevLink = prevLinkMap.get(prevTask.getFlowLinkId());
+                    if (prevLink == null) {
+                        return Future.failedFuture("未查询到前一个环节，环节Id：" + prevTask.getFlowLinkId());
+                    }
+                    todoList.add(newTodo(context, task, prevTask, prevLink, employeeMap));
                 }
-                todo.setActorEmployee(flowInstanceTask.getActor());
+                return batchInsert(todoList);
+            });
+        });
+    }
 
-                todo.setModuleName(context.getFlowVariableValue(FlowConst.FLOW_VARIABLE_MODULE_NAME));
-                todo.setBusinessType(context.getFlowVariableValue(FlowConst.FLOW_VARIABLE_BUSINESS_TYPE));
-                todo.setBusinessId(context.getFlowVariableValue(FlowConst.FLOW_VARIABLE_BUSINESS_ID));
-                todo.setTaskId(flowInstanceTask.getId());
+    private static Todo newTodo(
+        GenerateTaskContext context,
+        FlowInstanceTask flowInstanceTask,
+        FlowInstanceTask prevTask,
+        FlowLink prevLink,
+        Map<String, Employee> employeeMap
+    ) {
+        Todo todo = new Todo();
+        todo.setTitle(context.getFlowVariableValue(FlowConst.FLOW_VARIABLE_TITLE));
+        todo.setPrevLink(prevLink.getTitle());
+        todo.setPrevEmployee(prevTask.getActor());
+        Employee prevEmployee = prevTask.getActor() == null ? null : employeeMap.get(prevTask.getActor());
+        if (prevEmployee != null) {
+            todo.setPrevEmployeeName(prevEmployee.getName());
+        }
+        todo.setActorEmployee(flowInstanceTask.getActor());
+        Employee employee = flowInstanceTask.getActor() == null ? null : employeeMap.get(flowInstanceTask.getActor());
+        if (employee != null) {
+            todo.setActorEmployeeName(employee.getLoginName());
+        }
 
-                JsonObject extraInfo = new JsonObject();
-                extraInfo.put("flowInstanceId", flowInstanceTask.getFlowInstanceId());
-                extraInfo.put("flowLinkId", flowInstanceTask.getFlowLinkId());
+        todo.setModuleName(context.getFlowVariableValue(FlowConst.FLOW_VARIABLE_MODULE_NAME));
+        todo.setBusinessType(context.getFlowVariableValue(FlowConst.FLOW_VARIABLE_BUSINESS_TYPE));
+        todo.setBusinessId(context.getFlowVariableValue(FlowConst.FLOW_VARIABLE_BUSINESS_ID));
+        todo.setTaskId(flowInstanceTask.getId());
 
-                todo.setExtraInfo(extraInfo.encode());
-                todo.setStatus(TodoStatusEnum.UNREAD.getCode());
-                todo.setCreateTime(LocalDateTime.now());
+        JsonObject extraInfo = new JsonObject();
+        extraInfo.put("flowInstanceId", flowInstanceTask.getFlowInstanceId());
+        extraInfo.put("flowLinkId", flowInstanceTask.getFlowLinkId());
 
-                return employeeService.getByLoginName(flowInstanceTask.getActor()).map(employee -> {
-                    if (employee != null) {
-                        todo.setActorEmployeeName(employee.getLoginName());
-                    }
-                    return todo;
-                }).compose(this::insert);
-            });
+        todo.setExtraInfo(extraInfo.encode());
+        todo.setStatus(TodoStatusEnum.UNREAD.getCode());
+        return todo;
+    }
+
+    /**
+     * 批量插入待办，插入成功后回填Id
+     * @param todoList 待办列表
+     * @return 待办列表
+     */
+    public Future<List<Todo>> batchInsert(final List<Todo> todoList) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Tuple> batch = new ArrayList<>(todoList.size());
+        for (Todo todo: todoList) {
+            todo.setCreateTime(now);
+            todo.setUpdateTraceId(uidGeneratorService.nextId());
+            batch.add(todo.toInsertTuple());
+        }
+        return CrudUtils.batchInsert(pool, Todo.INSERT_SQL, batch).map(idList -> {
+            for (int i = 0; i < todoList.size(); i++) {
+                todoList.get(i).setId(idList.get(i));
+            }
+            todoInbox.onCreated(todoList);
+            return todoList;
+        });
     }
 
     public Future<Todo> insert(final Todo todo) {
@@ -136,6 +195,7 @@ public class TodoService implements ContextService<TodoService> {
         todo.setUpdateTraceId(uidGeneratorService.nextId());
         return todoSQL.insertNonEmptyGeneratedKeys(todo, MySQLClient.LAST_INSERTED_ID).map(id -> {
             todo.setId(id);
+            todoInbox.onCreated(Collections.singletonList(todo));
             return todo;
         });
     }
@@ -160,21 +220,25 @@ public class TodoService implements ContextService<TodoService> {
             if (todo == null) {
                 return Future.succeededFuture(0);
             }
-            return updateTodoStatus(todo.getStatus(), TodoStatusEnum.CANCEL.getCode()).compose(cnt -> {
-                if (cnt <= 0) {
-                    return Future.failedFuture(ErrorCodeEnum.UPDATE_NON_DATA.toException("取消待办时更新数据为0"));
-                }
-                return Future.succeededFuture(cnt);
-            });
+            return changeTodoStatus(todo, TodoStatusEnum.CANCEL, "取消待办时更新数据为0");
         });
     }
 
     public Future<Integer> readTodo(final long id) {
-        return updateTodoStatus(id, 2).compose(cnt -> {
-            if (cnt <= 0) {
+        return getById(id).compose(todo -> {
+            if (todo == null) {
                 return Future.failedFuture(ErrorCodeEnum.UPDATE_NON_DATA.toException("已读待办时更新数据为0"));
             }
-            return Future.succeededFuture(cnt);
+            if (!TodoStatusEnum.UNREAD.getCode().equals(todo.getStatus())) {
+                return Future.succeededFuture(1);
+            }
+            // 读取之后状态被并发的请求改掉（重复点击已读、同时完成），待办已不是未读，与上面一样视为成功
+            return changeTodoStatus(todo, TodoStatusEnum.READ, "已读待办时更新数据为0").recover(e -> {
+                if (e instanceof BusinessException && ErrorCodeEnum.UPDATE_NON_DATA.getErrCode().equals(((BusinessException) e).getCode())) {
+                    return Future.succeededFuture(1);
+                }
+                return Future.failedFuture(e);
+            });
         });
     }
 
@@ -183,12 +247,26 @@ public class TodoService implements ContextService<TodoService> {
             if (todo == null) {
                 return Future.succeededFuture(0);
             }
-            return updateTodoStatus(todo.getId(), TodoStatusEnum.COMPLETE.getCode()).compose(cnt -> {
-                if (cnt <= 0) {
-                    return Future.failedFuture(ErrorCodeEnum.UPDATE_NON_DATA.toException("完成待办时更新数据为0"));
-                }
-                return Future.succeededFuture(cnt);
-            });
+            return changeTodoStatus(todo, TodoStatusEnum.COMPLETE, "完成待办时更新数据为0");
+        });
+    }
+
+    /**
+     * 以读取到的状态为条件更新待办状态，原状态为未读时同步收件箱的未读数量
+     */
+    private Future<Integer> changeTodoStatus(final Todo todo, TodoStatusEnum status, String nonDataMessage) {
+        Todo update = new Todo();
+        update.setStatus(status.getCode());
+        update.setUpdateTraceId(uidGeneratorService.nextId());
+        SqlAssist sqlAssist = Todo.idAndStatusSqlAssist(todo.getId(), todo.getStatus());
+        return todoSQL.updateNonEmptyByAssist(update, sqlAssist).compose(cnt -> {
+            if (cnt <= 0) {
+                return Future.failedFuture(ErrorCodeEnum.UPDATE_NON_DATA.toException(nonDataMessage));
+            }
+            if (TodoStatusEnum.UNREAD.getCode().equals(todo.getStatus())) {
+                todoInbox.onUnreadRemoved(todo);
+            }
+            return Future.succeededFuture(cnt);
         });
     }
 
@@ -224,6 +302,10 @@ public class TodoService implements ContextService<TodoService> {
         this.uidGeneratorService = uidGeneratorService;
     }
 
+    public void setPool(MySQLPool pool) {
+        this.pool = pool;
+    }
+
     public void setTodoSQL(TodoSQL todoSQL) {
         this.todoSQL = todoSQL;
     }
@@ -236,4 +318,12 @@ public class TodoService implements ContextService<TodoService> {
         this.employeeService = employeeService;
     }
 
+    public TodoInbox getTodoInbox() {
+        return todoInbox;
+    }
+
+    public void setTodoInbox(TodoInbox todoInbox) {
+        this.todoInbox = todoInbox;
+    }
+
 }
@@ -11,8 +11,9 @@ import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 
-@Table("w_flow_definition")
+@Table(FlowDefinition.TABLE_NAME)
 public class FlowDefinition {
+    public static final String TABLE_NAME = "w_flow_definition";
     public static final String COLUMN_ID = "id";
     public static final String COLUMN_TITLE = "title";
     public static final String COLUMN_REMARK = "remark";
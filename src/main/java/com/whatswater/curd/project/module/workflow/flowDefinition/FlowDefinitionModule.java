@@ -4,33 +4,44 @@ package com.whatswater.curd.project.module.workflow.flowDefinition;
 import com.whatswater.asyncmodule.Module;
 import com.whatswater.asyncmodule.ModuleInfo;
 import com.whatswater.curd.NewInstanceModuleFactory;
+import com.whatswater.sql.executor.Executor;
+import com.whatswater.sql.executor.SqlSessionAopFactory;
 import com.zandero.rest.RestRouter;
 import io.vertx.ext.web.Router;
 import io.vertx.mysqlclient.MySQLPool;
 
 public class FlowDefinitionModule implements Module {
     FlowDefinitionService flowDefinitionService;
+    // 接口层使用的事务代理，@Transactional方法在一个会话中执行
+    IFlowDefinitionService transactionalService;
+    MySQLPool pool;
+    Executor dbExecutor;
     Router router;
 
     @Override
     public void register(ModuleInfo moduleInfo) {
-        moduleInfo.require(NewInstanceModuleFactory.MODULE_PATH_DATA_SOURCE, "datasource");
+        moduleInfo.require(NewInstanceModuleFactory.MODULE_PATH_DATA_SOURCE, "datasource", "dbExecutor");
         moduleInfo.require(NewInstanceModuleFactory.MODULE_PATH_HTTP_SERVER, "router");
     }
 
     @Override
     public void onResolved(ModuleInfo consumer, ModuleInfo provider, String name, Object obj) {
         if ("datasource".equals(name)) {
-            MySQLPool pool = (MySQLPool) obj;
-
-            flowDefinitionService = new FlowDefinitionService(pool);
-            consumer.exportObject("flowDefinitionService", flowDefinitionService);
+            pool = (MySQLPool) obj;
+        } else if ("dbExecutor".equals(name)) {
+            dbExecutor = (Executor) obj;
         } else if ("router".equals(name)) {
             router = (Router) obj;
         }
 
-        if (router != null && flowDefinitionService != null) {
-            FlowDefinitionRest rest = new FlowDefinitionRest(flowDefinitionService);
+        if (pool != null && dbExecutor != null && flowDefinitionService == null) {
+            flowDefinitionService = new FlowDefinitionService(pool, dbExecutor);
+            transactionalService = SqlSessionAopFactory.enhance(IFlowDefinitionService.class, flowDefinitionService, pool);
+            consumer.exportObject("flowDefinitionService", flowDefinitionService);
+        }
+
+        if (router != null && transactionalService != null) {
+            FlowDefinitionRest rest = new FlowDefinitionRest(transactionalService);
             RestRouter.register(router, rest);
         }
     }
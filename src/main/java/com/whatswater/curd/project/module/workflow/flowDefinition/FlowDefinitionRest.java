@@ -12,9 +12,9 @@ import java.util.List;
 
 @Path("/workflow/flowDefinition")
 public class FlowDefinitionRest {
-    private final FlowDefinitionService flowDefinitionService;
+    private final IFlowDefinitionService flowDefinitionService;
 
-    public FlowDefinitionRest(FlowDefinitionService flowDefinitionService) {
+    public FlowDefinitionRest(IFlowDefinitionService flowDefinitionService) {
         this.flowDefinitionService = flowDefinitionService;
     }
 
@@ -2,8 +2,13 @@ package com.whatswater.curd.project.module.workflow.flowDefinition;
 
 
 import com.whatswater.curd.project.common.CrudUtils;
+import com.whatswater.curd.project.common.ExecutorSQL;
 import com.whatswater.curd.project.common.Page;
 import com.whatswater.curd.project.common.PageResult;
+import com.whatswater.sql.dialect.Dialect.SQL;
+import com.whatswater.sql.executor.Executor;
+import com.whatswater.sql.executor.SqlSession;
+import com.whatswater.sql.executor.Transactional;
 import io.vertx.core.Future;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.sql.assist.SQLExecute;
@@ -15,15 +20,19 @@ import java.time.LocalDateTime;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
-public class FlowDefinitionService {
+public class FlowDefinitionService implements IFlowDefinitionService {
     private final FlowDefinitionSQL flowDefinitionSQL;
     private final FlowDefinitionGraphSQL flowDefinitionGraphSQL;
+    // 按主键和按编码查询已部署流程经过dbExecutor；修改仍通过CommonSQL，成功后通知executor
+    private final Executor executor;
 
-    public FlowDefinitionService(MySQLPool pool) {
+    public FlowDefinitionService(MySQLPool pool, Executor executor) {
         this.flowDefinitionSQL = new FlowDefinitionSQL(SQLExecute.createMySQL(pool));
         this.flowDefinitionGraphSQL = new FlowDefinitionGraphSQL(SQLExecute.createMySQL(pool));
+        this.executor = executor;
     }
 
+    @Override
     public Future<PageResult<FlowDefinition>> search(Page page, FlowDefinitionQuery query) {
         SqlAssist sqlAssist = query.toSqlAssist();
         sqlAssist.setStartRow(page.getOffset());
@@ -38,13 +47,12 @@ public class FlowDefinitionService {
         });
     }
 
+    @Override
     public Future<FlowDefinition> getById(Long flowDefinitionId) {
-        Future<JsonObject> result = flowDefinitionSQL.selectById(flowDefinitionId);
-        return result.map(json -> {
-            if (json == null) {
-                return null;
-            }
-            return new FlowDefinition(json);
+        SQL sql = ExecutorSQL.select(FlowDefinition.TABLE_NAME).andEq(FlowDefinition.COLUMN_ID, flowDefinitionId).toSql();
+        return executor.query(sql).map(rowSet -> {
+            JsonObject json = ExecutorSQL.first(rowSet);
+            return json == null ? null : new FlowDefinition(json);
         });
     }
 
@@ -54,6 +62,8 @@ public class FlowDefinitionService {
      * @param flowDefinitionVo 流程图
      * @return 新增的流程Id
      */
+    @Override
+    @Transactional
     public Future<Long> insertVo(FlowDefinitionVO flowDefinitionVo) {
         final String json = flowDefinitionVo.getGraph();
         FlowDefinition flowDefinition = new FlowDefinition();
@@ -85,7 +95,7 @@ public class FlowDefinitionService {
                 if (exists != null) {
                     return Future.failedFuture("系统中已存在流程：" + flowDefinition.getFlowDefinitionCode() + "，版本：" + flowDefinition.getVersionNo() + "");
                 }
-                return flowDefinitionSQL.insertNonEmptyGeneratedKeys(flowDefinition, MySQLClient.LAST_INSERTED_ID);
+                return flowDefinitionSQL.insertNonEmptyGeneratedKeys(flowDefinition, MySQLClient.LAST_INSERTED_ID).onSuccess(id -> modified());
             });
     }
 
@@ -94,6 +104,8 @@ public class FlowDefinitionService {
      * @param flowDefinitionId 流程定义Id
      * @return cnt
      */
+    @Override
+    @Transactional
     public Future<Integer> disableOrDraftFlowDefinition(long flowDefinitionId) {
         return getById(flowDefinitionId).compose(this::disableOrDraftFlowDefinition);
     }
@@ -110,6 +122,8 @@ public class FlowDefinitionService {
         return Future.succeededFuture(0);
     }
 
+    @Override
+    @Transactional
     public Future<Integer> enableOrInitFlowDefinition(long flowDefinitionId) {
         return getById(flowDefinitionId).compose(this::enableOrInitFlowDefinition);
     }
@@ -141,13 +155,15 @@ public class FlowDefinitionService {
         update.setId(flowDefinitionId);
         update.setStatus(status.getCode());
 
-        return flowDefinitionSQL.updateNonEmptyById(update);
+        return flowDefinitionSQL.updateNonEmptyById(update).onSuccess(cnt -> modified());
     }
 
     public Future<Integer> update(FlowDefinition flowDefinition) {
-        return flowDefinitionSQL.updateNonEmptyById(flowDefinition);
+        return flowDefinitionSQL.updateNonEmptyById(flowDefinition).onSuccess(cnt -> modified());
     }
 
+    @Override
+    @Transactional
     public Future<Integer> updateVo(final FlowDefinitionVO flowDefinitionVo) {
         return getById(flowDefinitionVo.getId()).compose(flowDefinition -> {
             if (flowDefinition == null) {
@@ -184,12 +200,14 @@ public class FlowDefinitionService {
     }
 
     public Future<FlowDefinition> getByCode(String flowDefinitionCode) {
-        SqlAssist sqlAssist = FlowDefinition.codeStatusSqlAssist(flowDefinitionCode, FlowDefinitionStatusEnum.DEPLOY.getCode());
-        return flowDefinitionSQL.selectAll(sqlAssist).map(list -> {
-            if (list == null || list.isEmpty()) {
-                return null;
-            }
-            return new FlowDefinition(list.get(0));
+        SQL sql = ExecutorSQL.select(FlowDefinition.TABLE_NAME)
+            .andEq(FlowDefinition.COLUMN_FLOW_DEFINITION_CODE, flowDefinitionCode)
+            .andEq(FlowDefinition.COLUMN_STATUS, FlowDefinitionStatusEnum.DEPLOY.getCode())
+            .setRowSize(1)
+            .toSql();
+        return executor.query(sql).map(rowSet -> {
+            JsonObject json = ExecutorSQL.first(rowSet);
+            return json == null ? null : new FlowDefinition(json);
         });
     }
 
@@ -208,6 +226,8 @@ public class FlowDefinitionService {
      * @param flowDefinitionId 流程定义Id
      * @return
      */
+    @Override
+    @Transactional
     public Future<Integer> deleteWithCheck(long flowDefinitionId) {
         return getById(flowDefinitionId).compose(flowDefinition -> {
             Integer status = flowDefinition.getStatus();
@@ -216,10 +236,14 @@ public class FlowDefinitionService {
                 return Future.failedFuture("当前流程不是初始状态或者草稿状态");
             }
 
-            return deleteGraph(flowDefinition.getId()).compose(cnt -> flowDefinitionSQL.deleteById(flowDefinition.getId()));
+            return deleteGraph(flowDefinition.getId()).compose(cnt -> flowDefinitionSQL.deleteById(flowDefinition.getId())).onSuccess(cnt -> modified());
         });
     }
 
+    private void modified() {
+        SqlSession.afterCommit(() -> executor.tableModified(FlowDefinition.TABLE_NAME));
+    }
+
     public Future<Integer> deleteGraph(long flowDefinitionId) {
         SqlAssist sqlAssist = FlowDefinitionGraph.flowDefinitionIdSqlAssist(flowDefinitionId);
         return flowDefinitionGraphSQL.deleteByAssist(sqlAssist);
@@ -230,6 +254,7 @@ public class FlowDefinitionService {
      * @param flowDefinitionId 流程定义Id
      * @return 流程定义json
      */
+    @Override
     public Future<FlowDefinitionGraph> getJsonByFlowDefinitionId(long flowDefinitionId) {
         SqlAssist sqlAssist = FlowDefinitionGraph.flowDefinitionIdSqlAssist(flowDefinitionId);
         return flowDefinitionGraphSQL.selectAll(sqlAssist).map(list -> {
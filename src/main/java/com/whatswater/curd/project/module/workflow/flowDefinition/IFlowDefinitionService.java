@@ -0,0 +1,18 @@
+package com.whatswater.curd.project.module.workflow.flowDefinition;
+
+
+import com.whatswater.curd.project.common.Page;
+import com.whatswater.curd.project.common.PageResult;
+import com.whatswater.sql.executor.ContextService;
+import io.vertx.core.Future;
+
+public interface IFlowDefinitionService extends ContextService<IFlowDefinitionService> {
+    Future<PageResult<FlowDefinition>> search(Page page, FlowDefinitionQuery query);
+    Future<FlowDefinition> getById(Long flowDefinitionId);
+    Future<FlowDefinitionGraph> getJsonByFlowDefinitionId(long flowDefinitionId);
+    Future<Long> insertVo(FlowDefinitionVO flowDefinitionVo);
+    Future<Integer> updateVo(FlowDefinitionVO flowDefinitionVo);
+    Future<Integer> enableOrInitFlowDefinition(long flowDefinitionId);
+    Future<Integer> disableOrDraftFlowDefinition(long flowDefinitionId);
+    Future<Integer> deleteWithCheck(long flowDefinitionId);
+}
@@ -24,6 +24,7 @@ import com.whatswater.curd.project.module.workflow.flowEngine.FlowEditorGraph.Fl
 import com.whatswater.curd.project.module.workflow.flowEngine.FlowEditorGraph.FlowNode;
 import com.whatswater.curd.project.module.workflow.flowEngine.context.ContextFlowInstanceStart;
 import com.whatswater.curd.project.module.workflow.flowEngine.context.ContextFlowLinkStart;
+import com.whatswater.curd.project.module.workflow.flowEngine.context.ContextTaskComplete;
 import com.whatswater.curd.project.module.workflow.flowInstance.FlowInstance;
 import com.whatswater.curd.project.module.workflow.flowInstance.FlowInstanceService;
 import com.whatswater.curd.project.module.workflow.flowInstanceLinkActor.FlowInstanceLinkActor;
@@ -42,6 +43,7 @@ import com.whatswater.curd.project.module.workflow.flowLinkConstant.FlowLinkCons
 import com.whatswater.curd.project.module.workflow.flowLinkRelation.FlowLinkRelation;
 import com.whatswater.curd.project.module.workflow.flowLinkRelation.FlowLinkRelationService;
 import com.whatswater.curd.project.sys.permission.UserToken;
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.Json;
@@ -81,6 +83,34 @@ public class FlowEngineService {
         });
     }
 
+    /**
+     * 批量查询前一个任务
+     * @param taskIdList 任务Id列表
+     * @return 任务Id到前一个任务的映射，没有前一个任务的不在其中
+     */
+    public Future<Map<Long, FlowInstanceTask>> getPrevTaskMap(final List<Long> taskIdList) {
+        return flowInstanceTaskRelationService.listByNextTaskIds(taskIdList).compose(relationList -> {
+            List<Long> prevTaskIdList = relationList
+                .stream()
+                .map(FlowInstanceTaskRelation::getPrevTaskId)
+                .distinct()
+                .collect(Collectors.toList());
+            return flowInstanceTaskService.listByIds(prevTaskIdList).map(prevTaskList -> {
+                Map<Long, FlowInstanceTask> prevTaskById = prevTaskList
+                    .stream()
+                    .collect(Collectors.toMap(FlowInstanceTask::getId, Function.identity()));
+                Map<Long, FlowInstanceTask> result = new HashMap<>(relationList.size() * 2);
+                for (FlowInstanceTaskRelation relation: relationList) {
+                    FlowInstanceTask prevTask = prevTaskById.get(relation.getPrevTaskId());
+                    if (prevTask != null) {
+                        result.put(relation.getNextTaskId(), prevTask);
+                    }
+                }
+                return result;
+            });
+        });
+    }
+
     public Future<Integer> deployFlow(long flowDefinitionId) {
         Future<FlowDefinition> flowDefinitionFuture = flowDefinitionService.getById(flowDefinitionId);
         return flowDefinitionFuture.compose(flowDefinition -> {
@@ -167,16 +197,9 @@ public class FlowEngineService {
                 .compose(flowInstanceId -> {
                     flowInstance.setId(flowInstanceId);
                     if (Objects.nonNull(context.getInitVariableTable())) {
-                        return flowInstanceVariableService
-                            .initFlowInstanceVariable(flowInstance.getId(), context.getInitVariableTable())
-                            .map(list -> {
-                                Map<String, FlowInstanceVariable> variableTable = list
-                                    .stream()
-                                    .collect(Collectors.toMap(FlowInstanceVariable::getVariableName, Function.identity(), (a1, a2) -> a1));
-                                flowInstance.setVariableTable(variableTable);
-                                return flowInstance;
-                            });
+                        return setVariables(flowInstance, context.getInitVariableTable());
                     } else {
+                        flowInstance.setVariableTable(new TreeMap<>());
                         return Future.succeededFuture(flowInstance);
                     }
                 })
@@ -198,23 +221,33 @@ public class FlowEngineService {
      * @return 空
      */
     public Future<Void> routeFlowLink(final FlowInstanceTask currentTask, final Set<String> routerList) {
+        return flowInstanceService.getById(currentTask.getFlowInstanceId())
+            .compose(flowInstanceVariableService::withVariable)
+            .compose(flowInstance -> this.routeFlowLink(currentTask, flowInstance, routerList));
+    }
+
+    /**
+     * 启动下一个环节，使用调用方已加载的流程实例（含变量），不再重复查询
+     * @param currentTask 当前任务
+     * @param flowInstance 流程实例
+     * @param routerList 路由列表
+     * @return 空
+     */
+    public Future<Void> routeFlowLink(final FlowInstanceTask currentTask, final FlowInstance flowInstance, final Set<String> routerList) {
         return flowLinkRelationService.queryNextLinkRelation(currentTask.getFlowLinkId())
             .map(flowLinkRelations -> flowLinkRelations.stream()
                 .filter(flowLinkRelation -> routerList.contains(flowLinkRelation.getRouteName()))
                 .map(FlowLinkRelation::getEndLinkId).distinct().collect(Collectors.toList())
-            ).compose(nextLinkIds -> CrudUtils.serialTask(
-                t1 -> flowLinkService.listByIds(nextLinkIds),
-                t2 -> flowInstanceService.getById(currentTask.getFlowInstanceId()).compose(flowInstanceVariableService::withVariable)
-            )).compose(tuple -> {
-                List<SameFutureBuilder<List<FlowInstanceTask>>> startLinkTask = new ArrayList<>(tuple._1.size());
-                for (FlowLink flowLink: tuple._1) {
+            ).compose(flowLinkService::listByIds).compose(flowLinkList -> {
+                List<SameFutureBuilder<List<FlowInstanceTask>>> startLinkTask = new ArrayList<>(flowLinkList.size());
+                for (FlowLink flowLink: flowLinkList) {
                     startLinkTask.add(list -> {
                         return flowLinkService.withConstant(flowLink)
                             .compose(constant -> {
                                 ContextFlowLinkStart context = new ContextFlowLinkStart();
                                 context.setBack(false);
                                 context.setPrevTask(currentTask);
-                                return this.startFlowLink(context, tuple._2, constant);
+                                return this.startFlowLink(context, flowInstance, constant);
                             });
                     });
                 }
@@ -291,7 +324,7 @@ public class FlowEngineService {
                     return this.executeLinkEvent(flowLink, FlowLinkTriggerEnum.BEFORE_EACH.getConstantName()).map(list);
                 }).compose(list -> {
                     return this.executeGenerateTaskSystemEvent(flowInstance, list).map(list);
-                }).compose(task -> this.completeTask(task.get(0).getId()).map(task));
+                }).compose(task -> this.completeTask(task.get(0).getId(), flowInstance).map(task));
             }
             case NORMAL:
                 return getActorListOfLink(context.getPrevTask(), flowInstance, flowLink).compose(assigneeList -> {
@@ -337,16 +370,8 @@ public class FlowEngineService {
                         return flowInstanceTask;
                     }).collect(Collectors.toList());
 
-                    return CrudUtils.serialTask(flowInstanceTaskList.stream().map(task -> {
-                            return (SameFutureBuilder<Long>) idList -> flowInstanceTaskService.insert(task);
-                        }).collect(Collectors.toList())
-                    ).map(idList -> {
-                        for (int i = 0; i < flowInstanceTaskList.size(); i++) {
-                            FlowInstanceTask flowInstanceTask = flowInstanceTaskList.get(i);
-                            flowInstanceTask.setId(idList.get(i));
-                        }
-                        return flowInstanceTaskList;
-                    }).compose(list -> this.insertTaskRelationList(context.getPrevTask(), list)).compose(taskList -> {
+                    return flowInstanceTaskService.batchInsert(flowInstanceTaskList)
+                        .compose(list -> this.insertTaskRelationList(context.getPrevTask(), list)).compose(taskList -> {
                         return this.executeLinkEvent(flowLink, FlowLinkTriggerEnum.BEFORE_EACH.getConstantName()).map(taskList);
                     }).compose(taskList -> {
                         return this.executeGenerateTaskSystemEvent(flowInstance, taskList).map(taskList);
@@ -380,7 +405,7 @@ public class FlowEngineService {
                         return this.executeLinkEvent(flowLink, FlowLinkTriggerEnum.BEFORE_EACH.getConstantName()).map(list);
                     }).compose(list -> {
                         return this.executeGenerateTaskSystemEvent(flowInstance, list).map(list);
-                    }).compose(task -> this.completeTask(task.get(0).getId()).map(task));
+                    }).compose(task -> this.completeTask(task.get(0).getId(), flowInstance).map(task));
                 });
             default:
                 throw new BusinessException("不支持的流程环节类型：" + type);
@@ -456,50 +481,136 @@ public class FlowEngineService {
 
     /**
      * 根据taskId完成task任务
+     * 任务、流程实例、实例变量、同环节任务只依赖taskId，并发查询；环节事件与系统事件互不依赖，并发调用
+     * 同环节任务加锁读取，更新状态后重新读取再判断是否全部完成，并发完成会签任务时AFTER_ALL事件不会漏掉
+     * 事件可能修改流程变量，路由前重新加载变量
      * @param taskId 任务Id
      * @return 当前任务
      */
     public Future<FlowInstanceTask> completeTask(final long taskId) {
-        return flowInstanceTaskService.getById(taskId).compose(task -> {
-            if (Objects.isNull(task)) {
-                return Future.failedFuture("完成任务时，根据任务Id查询的任务为空");
-            }
+        return completeTask(taskId, null);
+    }
 
-            return flowInstanceService.getById(task.getFlowInstanceId())
-                .compose(flowInstanceVariableService::withVariable)
-                .compose(flowInstance -> {
-                    return flowInstanceTaskService.updateTaskStatus(taskId, FlowInstanceTaskStatusEnum.COMPLETE)
-                        .compose(cnt -> this.executeLinkEvent(task.getFlowLinkId(), FlowLinkTriggerEnum.AFTER_EACH.getConstantName()))
-                        .map(flowInstance);
-                }).compose(flowInstance -> {
-                    return this.executeCompleteTaskSystemEvent(flowInstance, taskId).map(Tuple2.of(flowInstance, task));
-                });
-        }).compose(t2 -> {
-            Long flowLinkId = t2._2.getFlowLinkId();
-            return flowInstanceTaskService.queryFlowInstanceTask(flowLinkId).map(taskList -> Tuple3.of(t2, taskList));
+    /**
+     * 根据taskId完成task任务，同一步骤内已加载流程实例（含变量）时直接复用，不再重复查询
+     * @param taskId 任务Id
+     * @param flowInstanceSnapshot 当前步骤已加载的流程实例，可为空
+     * @return 当前任务
+     */
+    public Future<FlowInstanceTask> completeTask(final long taskId, final FlowInstance flowInstanceSnapshot) {
+        return loadTaskCompleteContext(taskId, flowInstanceSnapshot).compose(context -> {
+            FlowInstanceTask task = context.getTask();
+            return CompositeFuture.all(
+                flowInstanceTaskService.updateTaskStatus(taskId, FlowInstanceTaskStatusEnum.COMPLETE),
+                flowLinkService.getWithConstantById(task.getFlowLinkId())
+            ).map(composite -> Tuple2.of(context, composite.<FlowLinkWithConstant>resultAt(1)));
+        }).compose(data -> {
+            ContextTaskComplete context = data._1;
+            FlowLinkWithConstant flowLink = data._2;
+            return CompositeFuture.all(
+                this.executeLinkEvent(flowLink, FlowLinkTriggerEnum.AFTER_EACH.getConstantName()),
+                this.executeCompleteTaskSystemEvent(context.getFlowInstance(), taskId)
+            ).map(data);
+        }).compose(data -> {
+            // 加载时读到的同环节任务状态可能已被并发完成的任务改变，更新之后重新读取
+            return flowInstanceTaskService.lockSiblingTask(taskId).map(siblingTaskList -> {
+                data._1.setSiblingTaskList(siblingTaskList);
+                return data;
+            });
         }).compose(data -> {
             // 当此环节所有任务均完成时，执行事件
-            for (FlowInstanceTask task: data._3) {
-                if (taskId == task.getId()) {
-                    continue;
-                }
-                if (!FlowInstanceTaskStatusEnum.isComplete(task.getStatus())) {
-                    return Future.succeededFuture(data);
-                }
+            if (!data._1.isAllSiblingComplete()) {
+                return Future.succeededFuture(data._1);
             }
             return this
-                .executeLinkEvent(data._2.getFlowLinkId(), FlowLinkTriggerEnum.AFTER_ALL.getConstantName())
-                .map(data);
-        }).compose(data -> {
-            FlowInstance instance = data._1;
-            String router = instance.getVariableValue(data._2.getFlowLinkCode() + StrUtil.DOT + FlowConst.FLOW_VARIABLE_NEXT_LINK_ROUTER);
+                .executeLinkEvent(data._2, FlowLinkTriggerEnum.AFTER_ALL.getConstantName())
+                .map(data._1);
+        }).compose(context -> {
+            // 环节事件、系统事件可能修改了流程变量（如下一环节路由），重新加载
+            return flowInstanceVariableService.withVariable(context.getFlowInstance()).map(context);
+        }).compose(context -> {
+            FlowInstance instance = context.getFlowInstance();
+            FlowInstanceTask task = context.getTask();
+            String router = instance.getVariableValue(task.getFlowLinkCode() + StrUtil.DOT + FlowConst.FLOW_VARIABLE_NEXT_LINK_ROUTER);
             Set<String> routerList = new TreeSet<>();
             if (StrUtil.isEmpty(router)) {
                 routerList.add(FlowConst.ROUTER_DEFAULT);
             } else {
                 routerList.addAll(Arrays.asList(router.split(StrUtil.COMMA)));
             }
-            return this.routeFlowLink(data._2, routerList).map(data._2);
+            return this.routeFlowLink(task, instance, routerList).map(task);
+        });
+    }
+
+    /**
+     * 并发加载完成任务所需的数据，三条查询均只依赖taskId
+     * 同环节任务在更新状态之前加锁，事务中并发完成同环节任务时依次执行，避免各自持有自己任务的锁再互相等待
+     * @param taskId 任务Id
+     * @return 完成任务context
+     */
+    public Future<ContextTaskComplete> loadTaskCompleteContext(final long taskId) {
+        return loadTaskCompleteContext(taskId, null);
+    }
+
+    private Future<ContextTaskComplete> loadTaskCompleteContext(final long taskId, final FlowInstance flowInstanceSnapshot) {
+        if (flowInstanceSnapshot != null && flowInstanceSnapshot.getVariableTable() != null) {
+            return flowInstanceTaskService.lockSiblingTask(taskId).compose(siblingTaskList -> {
+                FlowInstanceTask task = findTask(siblingTaskList, taskId);
+                if (Objects.isNull(task)) {
+                    return Future.failedFuture("完成任务时，根据任务Id查询的任务为空");
+                }
+                ContextTaskComplete context = new ContextTaskComplete();
+                context.setTask(task);
+                context.setFlowInstance(flowInstanceSnapshot);
+                context.setSiblingTaskList(siblingTaskList);
+                return Future.succeededFuture(context);
+            });
+        }
+
+        Future<List<FlowInstanceTask>> siblingFuture = flowInstanceTaskService.lockSiblingTask(taskId);
+        Future<FlowInstance> instanceFuture = flowInstanceService.getByTaskId(taskId);
+        Future<List<FlowInstanceVariable>> variableFuture = flowInstanceVariableService.queryByTaskId(taskId);
+
+        return CompositeFuture.all(siblingFuture, instanceFuture, variableFuture).compose(composite -> {
+            List<FlowInstanceTask> siblingTaskList = siblingFuture.result();
+            FlowInstanceTask task = findTask(siblingTaskList, taskId);
+            FlowInstance flowInstance = instanceFuture.result();
+            if (Objects.isNull(task) || Objects.isNull(flowInstance)) {
+                return Future.failedFuture("完成任务时，根据任务Id查询的任务为空");
+            }
+
+            Map<String, FlowInstanceVariable> variableTable = variableFuture.result()
+                .stream()
+                .collect(Collectors.toMap(FlowInstanceVariable::getVariableName, Function.identity(), (a1, a2) -> a1));
+            flowInstance.setVariableTable(variableTable);
+
+            ContextTaskComplete context = new ContextTaskComplete();
+            context.setTask(task);
+            context.setFlowInstance(flowInstance);
+            context.setSiblingTaskList(siblingTaskList);
+            return Future.succeededFuture(context);
+        });
+    }
+
+    private static FlowInstanceTask findTask(List<FlowInstanceTask> taskList, long taskId) {
+        for (FlowInstanceTask task: taskList) {
+            if (task.getId() == taskId) {
+                return task;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 写入流程实例变量，并同步到内存中的变量表，同一步骤内后续读取无需重新加载
+     * @param flowInstance 流程实例
+     * @param variableMap 变量表
+     * @return 流程实例
+     */
+    public Future<FlowInstance> setVariables(final FlowInstance flowInstance, Map<String, String> variableMap) {
+        return flowInstanceVariableService.setVariables(flowInstance.getId(), variableMap).map(list -> {
+            flowInstance.putVariables(list);
+            return flowInstance;
         });
     }
 
@@ -0,0 +1,57 @@
+package com.whatswater.curd.project.module.workflow.flowEngine.context;
+
+
+import com.whatswater.curd.project.module.workflow.flowInstance.FlowInstance;
+import com.whatswater.curd.project.module.workflow.flowInstanceTask.FlowInstanceTask;
+import com.whatswater.curd.project.module.workflow.flowInstanceTask.FlowInstanceTaskStatusEnum;
+
+import java.util.List;
+
+/**
+ * 完成任务时一次性加载的数据：任务、流程实例（含变量）、同环节任务
+ */
+public class ContextTaskComplete {
+    private FlowInstanceTask task;
+    private FlowInstance flowInstance;
+    private List<FlowInstanceTask> siblingTaskList;
+
+    public FlowInstanceTask getTask() {
+        return task;
+    }
+
+    public void setTask(FlowInstanceTask task) {
+        this.task = task;
+    }
+
+    public FlowInstance getFlowInstance() {
+        return flowInstance;
+    }
+
+    public void setFlowInstance(FlowInstance flowInstance) {
+        this.flowInstance = flowInstance;
+    }
+
+    public List<FlowInstanceTask> getSiblingTaskList() {
+        return siblingTaskList;
+    }
+
+    public void setSiblingTaskList(List<FlowInstanceTask> siblingTaskList) {
+        this.siblingTaskList = siblingTaskList;
+    }
+
+    /**
+     * 除当前任务外，同环节的任务是否均已完成
+     * @return 是否全部完成
+     */
+    public boolean isAllSiblingComplete() {
+        for (FlowInstanceTask sibling: siblingTaskList) {
+            if (sibling.getId().equals(task.getId())) {
+                continue;
+            }
+            if (!FlowInstanceTaskStatusEnum.isComplete(sibling.getStatus())) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
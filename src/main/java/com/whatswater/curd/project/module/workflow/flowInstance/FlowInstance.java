@@ -6,13 +6,16 @@ import com.whatswater.curd.project.common.CrudUtils;
 import com.whatswater.curd.project.module.workflow.flowInstanceVariable.FlowInstanceVariable;
 import com.whatswater.curd.project.module.workflow.flowLinkConstant.FlowLinkConstant;
 import io.vertx.core.json.JsonObject;
+import io.vertx.ext.sql.assist.SqlAssist;
 import io.vertx.ext.sql.assist.Table;
 import io.vertx.ext.sql.assist.TableColumn;
 import io.vertx.ext.sql.assist.TableId;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 @Table("w_flow_instance")
 public class FlowInstance {
@@ -120,6 +123,19 @@ public class FlowInstance {
         this.variableTable = variableTable;
     }
 
+    /**
+     * 将已写入数据库的变量合并到内存变量表，使同一步骤内的后续读取无需重新查询
+     * @param variableList 变量列表
+     */
+    public void putVariables(List<FlowInstanceVariable> variableList) {
+        if (this.variableTable == null) {
+            this.variableTable = new TreeMap<>();
+        }
+        for (FlowInstanceVariable variable: variableList) {
+            this.variableTable.put(variable.getVariableName(), variable);
+        }
+    }
+
     public String getVariableValue(String variableName) {
         if (this.variableTable == null) {
             return null;
@@ -130,4 +146,11 @@ public class FlowInstance {
         }
         return flowInstanceVariable.getVariableValue();
     }
+
+    public static SqlAssist taskIdSqlAssist(long taskId) {
+        SqlAssist sqlAssist = new SqlAssist();
+        sqlAssist.customCondition("and " + COLUMN_ID + " = (select t.flow_instance_id from w_flow_instance_task t where t.id = ?)", taskId);
+
+        return sqlAssist;
+    }
 }
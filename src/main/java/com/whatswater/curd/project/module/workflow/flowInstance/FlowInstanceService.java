@@ -47,6 +47,20 @@ public class FlowInstanceService {
         });
     }
 
+    /**
+     * 根据任务Id查询任务所属的流程实例，无需先查询任务
+     * @param taskId 任务Id
+     * @return 流程实例
+     */
+    public Future<FlowInstance> getByTaskId(long taskId) {
+        return flowInstanceSQL.selectAll(FlowInstance.taskIdSqlAssist(taskId)).map(list -> {
+            if (list == null || list.isEmpty()) {
+                return null;
+            }
+            return new FlowInstance(list.get(0));
+        });
+    }
+
     public Future<Long> insert(FlowInstance flowInstance) {
         return flowInstanceSQL.insertNonEmptyGeneratedKeys(flowInstance, MySQLClient.LAST_INSERTED_ID);
     }
@@ -8,9 +8,11 @@ import io.vertx.ext.sql.assist.SqlAssist;
 import io.vertx.ext.sql.assist.Table;
 import io.vertx.ext.sql.assist.TableColumn;
 import io.vertx.ext.sql.assist.TableId;
+import io.vertx.sqlclient.Tuple;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.List;
 
 @Table("w_flow_instance_task")
 public class FlowInstanceTask {
@@ -23,6 +25,22 @@ public class FlowInstanceTask {
     public static final String COLUMN_ACTOR = "actor";
     public static final String COLUMN_CREATE_TIME = "create_time";
 
+    public static final String INSERT_SQL = "insert into w_flow_instance_task ("
+        + COLUMN_FLOW_INSTANCE_ID + ", "
+        + COLUMN_FLOW_LINK_ID + ", "
+        + COLUMN_FLOW_LINK_CODE + ", "
+        + COLUMN_TYPE + ", "
+        + COLUMN_STATUS + ", "
+        + COLUMN_ACTOR + ", "
+        + COLUMN_CREATE_TIME
+        + ") values (?, ?, ?, ?, ?, ?, ?)";
+    /**
+     * 锁定并查询与指定任务同一流程实例、同一环节的所有任务，按Id顺序加锁
+     */
+    public static final String LOCK_SIBLING_SQL = "select * from w_flow_instance_task where ("
+        + COLUMN_FLOW_INSTANCE_ID + ", " + COLUMN_FLOW_LINK_ID + ") = (select t." + COLUMN_FLOW_INSTANCE_ID + ", t." + COLUMN_FLOW_LINK_ID
+        + " from w_flow_instance_task t where t." + COLUMN_ID + " = ?) order by " + COLUMN_ID + " for update";
+
     @TableId(COLUMN_ID)
     Long id;
     @TableColumn(COLUMN_FLOW_INSTANCE_ID)
@@ -129,6 +147,10 @@ public class FlowInstanceTask {
         return sqlAssist;
     }
 
+    public static SqlAssist idListSqlAssist(List<Long> idList) {
+        return CrudUtils.andIn(COLUMN_ID, idList);
+    }
+
     public static SqlAssist instanceIdSqlAssist(long instanceId) {
         SqlAssist sqlAssist = new SqlAssist();
         sqlAssist.andEq(COLUMN_FLOW_INSTANCE_ID, instanceId);
@@ -143,4 +165,8 @@ public class FlowInstanceTask {
 
         return sqlAssist;
     }
+
+    public Tuple toInsertTuple() {
+        return Tuple.of(flowInstanceId, flowLinkId, flowLinkCode, type, status, actor, createTime);
+    }
 }
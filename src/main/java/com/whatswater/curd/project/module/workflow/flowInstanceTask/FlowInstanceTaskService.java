@@ -4,6 +4,7 @@ package com.whatswater.curd.project.module.workflow.flowInstanceTask;
 import cn.hutool.core.collection.CollectionUtil;
 import com.whatswater.curd.project.common.CrudUtils;
 import com.whatswater.curd.project.common.ErrorCodeEnum;
+import com.whatswater.curd.project.common.ExecutorSQL;
 import com.whatswater.curd.project.common.Page;
 import com.whatswater.curd.project.common.PageResult;
 import io.vertx.core.Future;
@@ -12,15 +13,18 @@ import io.vertx.ext.sql.assist.SQLExecute;
 import io.vertx.ext.sql.assist.SqlAssist;
 import io.vertx.mysqlclient.MySQLClient;
 import io.vertx.mysqlclient.MySQLPool;
+import io.vertx.sqlclient.Tuple;
 
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
 public class FlowInstanceTaskService {
+    private final MySQLPool pool;
     private final FlowInstanceTaskSQL flowInstanceTaskSQL;
 
     public FlowInstanceTaskService(MySQLPool pool) {
+        this.pool = pool;
         this.flowInstanceTaskSQL = new FlowInstanceTaskSQL(SQLExecute.createMySQL(pool));
     }
 
@@ -48,10 +52,38 @@ public class FlowInstanceTaskService {
         });
     }
 
+    public Future<List<FlowInstanceTask>> listByIds(List<Long> flowInstanceTaskIds) {
+        if (CollectionUtil.isEmpty(flowInstanceTaskIds)) {
+            return Future.succeededFuture(Collections.emptyList());
+        }
+        SqlAssist sqlAssist = FlowInstanceTask.idListSqlAssist(flowInstanceTaskIds);
+        return flowInstanceTaskSQL.selectAll(sqlAssist).map(jsonList -> {
+            if (CollectionUtil.isEmpty(jsonList)) {
+                return Collections.emptyList();
+            }
+            return jsonList.stream().map(FlowInstanceTask::new).collect(Collectors.toList());
+        });
+    }
+
     public Future<Long> insert(FlowInstanceTask flowInstanceTask) {
         return flowInstanceTaskSQL.insertNonEmptyGeneratedKeys(flowInstanceTask, MySQLClient.LAST_INSERTED_ID);
     }
 
+    /**
+     * 批量插入任务，插入成功后回填任务Id
+     * @param taskList 任务列表
+     * @return 任务列表
+     */
+    public Future<List<FlowInstanceTask>> batchInsert(List<FlowInstanceTask> taskList) {
+        List<Tuple> batch = taskList.stream().map(FlowInstanceTask::toInsertTuple).collect(Collectors.toList());
+        return CrudUtils.batchInsert(pool, FlowInstanceTask.INSERT_SQL, batch).map(idList -> {
+            for (int i = 0; i < taskList.size(); i++) {
+                taskList.get(i).setId(idList.get(i));
+            }
+            return taskList;
+        });
+    }
+
     public Future<Integer> update(FlowInstanceTask flowInstanceTask) {
         return flowInstanceTaskSQL.updateNonEmptyById(flowInstanceTask);
     }
@@ -84,6 +116,18 @@ public class FlowInstanceTaskService {
         });
     }
 
+    /**
+     * 锁定并查询同环节的所有任务（包含任务本身），读取的是最新提交的状态
+     * 在事务中执行时锁持有到事务结束，同环节任务的完成依次执行，最后完成的任务一定能看到其他任务均已完成
+     * @param taskId 任务Id
+     * @return 同环节任务列表
+     */
+    public Future<List<FlowInstanceTask>> lockSiblingTask(long taskId) {
+        return pool.preparedQuery(FlowInstanceTask.LOCK_SIBLING_SQL)
+            .execute(Tuple.of(taskId))
+            .map(rowSet -> ExecutorSQL.toJsonList(rowSet).stream().map(FlowInstanceTask::new).collect(Collectors.toList()));
+    }
+
     /**
      * 查询流程实例的所有任务
      * @param instanceId 流程实例Id
@@ -1,11 +1,15 @@
 package com.whatswater.curd.project.module.workflow.flowInstanceTaskRelation;
 
 
+import com.whatswater.curd.project.common.CrudUtils;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.sql.assist.SqlAssist;
 import io.vertx.ext.sql.assist.Table;
 import io.vertx.ext.sql.assist.TableColumn;
 import io.vertx.ext.sql.assist.TableId;
+import io.vertx.sqlclient.Tuple;
+
+import java.util.List;
 
 @Table("w_flow_instance_task_relation")
 public class FlowInstanceTaskRelation {
@@ -14,6 +18,12 @@ public class FlowInstanceTaskRelation {
     public static final String COLUMN_PREV_TASK_ID = "prev_task_id";
     public static final String COLUMN_NEXT_TASK_ID = "next_task_id";
 
+    public static final String INSERT_SQL = "insert into w_flow_instance_task_relation ("
+        + COLUMN_FLOW_INSTANCE_ID + ", "
+        + COLUMN_PREV_TASK_ID + ", "
+        + COLUMN_NEXT_TASK_ID
+        + ") values (?, ?, ?)";
+
     @TableId(COLUMN_ID)
     Long id;
     @TableColumn(COLUMN_FLOW_INSTANCE_ID)
@@ -73,10 +83,18 @@ public class FlowInstanceTaskRelation {
         return sqlAssist;
     }
 
+    public static SqlAssist nextTaskIdListSqlAssist(List<Long> nextTaskIdList) {
+        return CrudUtils.andIn(COLUMN_NEXT_TASK_ID, nextTaskIdList);
+    }
+
     public static SqlAssist flowInstanceIdSqlAssist(Long flowInstanceId) {
         SqlAssist sqlAssist = new SqlAssist();
         sqlAssist.andEq(COLUMN_FLOW_INSTANCE_ID, flowInstanceId);
 
         return sqlAssist;
     }
+
+    public Tuple toInsertTuple() {
+        return Tuple.of(flowInstanceId, prevTaskId, nextTaskId);
+    }
 }
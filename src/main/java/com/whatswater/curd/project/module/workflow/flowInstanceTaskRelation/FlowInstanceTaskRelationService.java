@@ -3,7 +3,6 @@ package com.whatswater.curd.project.module.workflow.flowInstanceTaskRelation;
 
 import cn.hutool.core.collection.CollectionUtil;
 import com.whatswater.curd.project.common.CrudUtils;
-import com.whatswater.curd.project.common.CrudUtils.SameFutureBuilder;
 import com.whatswater.curd.project.common.Page;
 import com.whatswater.curd.project.common.PageResult;
 import com.whatswater.curd.project.module.workflow.flowInstanceTask.FlowInstanceTask;
@@ -13,16 +12,18 @@ import io.vertx.ext.sql.assist.SQLExecute;
 import io.vertx.ext.sql.assist.SqlAssist;
 import io.vertx.mysqlclient.MySQLClient;
 import io.vertx.mysqlclient.MySQLPool;
-import javafx.scene.control.Tab;
+import io.vertx.sqlclient.Tuple;
 
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
 public class FlowInstanceTaskRelationService {
+    private final MySQLPool pool;
     private final FlowInstanceTaskRelationSQL flowInstanceTaskRelationSQL;
 
     public FlowInstanceTaskRelationService(MySQLPool pool) {
+        this.pool = pool;
         this.flowInstanceTaskRelationSQL = new FlowInstanceTaskRelationSQL(SQLExecute.createMySQL(pool));
     }
 
@@ -66,18 +67,29 @@ public class FlowInstanceTaskRelationService {
         return flowInstanceTaskRelationSQL.selectAll(sqlAssist).map(FlowInstanceTaskRelationService::mapOne);
     }
 
+    public Future<List<FlowInstanceTaskRelation>> listByNextTaskIds(List<Long> nextTaskIdList) {
+        if (CollectionUtil.isEmpty(nextTaskIdList)) {
+            return Future.succeededFuture(Collections.emptyList());
+        }
+        SqlAssist sqlAssist = FlowInstanceTaskRelation.nextTaskIdListSqlAssist(nextTaskIdList);
+        return flowInstanceTaskRelationSQL.selectAll(sqlAssist).map(jsonList -> {
+            if (CollectionUtil.isEmpty(jsonList)) {
+                return Collections.emptyList();
+            }
+            return jsonList.stream().map(FlowInstanceTaskRelation::new).collect(Collectors.toList());
+        });
+    }
+
     public Future<List<Long>> batchInsert(Long prevTaskId, List<FlowInstanceTask> taskList) {
-        List<SameFutureBuilder<Long>> taskBuilderList = taskList.stream().map(task -> {
+        List<Tuple> batch = taskList.stream().map(task -> {
             FlowInstanceTaskRelation relation = new FlowInstanceTaskRelation();
             relation.setPrevTaskId(prevTaskId);
             relation.setNextTaskId(task.getId());
             relation.setFlowInstanceId(task.getFlowInstanceId());
-            return relation;
-        }).map(relation -> (SameFutureBuilder<Long>)r -> {
-            return this.insert(relation);
+            return relation.toInsertTuple();
         }).collect(Collectors.toList());
 
-        return CrudUtils.serialTask(taskBuilderList);
+        return CrudUtils.batchInsert(pool, FlowInstanceTaskRelation.INSERT_SQL, batch);
     }
 
     public Future<Long> insert(FlowInstanceTaskRelation flowInstanceTaskRelation) {
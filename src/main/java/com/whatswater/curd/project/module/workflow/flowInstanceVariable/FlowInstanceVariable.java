@@ -11,6 +11,7 @@ import io.vertx.ext.sql.assist.TableId;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.List;
 
 @Table("w_flow_instance_variable")
 public class FlowInstanceVariable {
@@ -86,6 +87,29 @@ public class FlowInstanceVariable {
         this.createTime = createTime;
     }
 
+    /**
+     * 多行插入，(flow_instance_id, variable_name)重复时更新变量值
+     * @param rowCount 行数
+     * @return sql
+     */
+    public static String upsertSql(int rowCount) {
+        StringBuilder sql = new StringBuilder("insert into w_flow_instance_variable (")
+            .append(COLUMN_FLOW_INSTANCE_ID).append(", ")
+            .append(COLUMN_VARIABLE_NAME).append(", ")
+            .append(COLUMN_VARIABLE_VALUE).append(", ")
+            .append(COLUMN_CREATE_TIME)
+            .append(") values ");
+        for (int i = 0; i < rowCount; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append("(?, ?, ?, ?)");
+        }
+        sql.append(" on duplicate key update ")
+            .append(COLUMN_VARIABLE_VALUE).append(" = values(").append(COLUMN_VARIABLE_VALUE).append(")");
+        return sql.toString();
+    }
+
     public static SqlAssist instanceIdSqlAssist(long instanceId) {
         SqlAssist sqlAssist = new SqlAssist();
         sqlAssist.andEq(COLUMN_FLOW_INSTANCE_ID, instanceId);
@@ -93,6 +117,21 @@ public class FlowInstanceVariable {
         return sqlAssist;
     }
 
+    public static SqlAssist taskIdSqlAssist(long taskId) {
+        SqlAssist sqlAssist = new SqlAssist();
+        sqlAssist.customCondition("and " + COLUMN_FLOW_INSTANCE_ID + " = (select t.flow_instance_id from w_flow_instance_task t where t.id = ?)", taskId);
+
+        return sqlAssist;
+    }
+
+    public static SqlAssist instanceIdVariableNamesSqlAssist(long instanceId, List<String> variableNames) {
+        SqlAssist sqlAssist = new SqlAssist();
+        sqlAssist.andEq(COLUMN_FLOW_INSTANCE_ID, instanceId);
+        CrudUtils.andIn(sqlAssist, COLUMN_VARIABLE_NAME, variableNames);
+
+        return sqlAssist;
+    }
+
     public static SqlAssist instanceIdVariableNameSqlAssist(long instanceId, String variableName) {
         SqlAssist sqlAssist = new SqlAssist();
         sqlAssist.andEq(COLUMN_FLOW_INSTANCE_ID, instanceId);
@@ -2,7 +2,6 @@ package com.whatswater.curd.project.module.workflow.flowInstanceVariable;
 
 
 import com.whatswater.curd.project.common.CrudUtils;
-import com.whatswater.curd.project.common.CrudUtils.SameFutureBuilder;
 import com.whatswater.curd.project.common.Page;
 import com.whatswater.curd.project.common.PageResult;
 import com.whatswater.curd.project.module.workflow.flowInstance.FlowInstance;
@@ -12,6 +11,7 @@ import io.vertx.ext.sql.assist.SQLExecute;
 import io.vertx.ext.sql.assist.SqlAssist;
 import io.vertx.mysqlclient.MySQLClient;
 import io.vertx.mysqlclient.MySQLPool;
+import io.vertx.sqlclient.Tuple;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -22,9 +22,11 @@ import java.util.function.Function;
 import java.util.stream.Collectors;
 
 public class FlowInstanceVariableService {
+    private final MySQLPool pool;
     private final FlowInstanceVariableSQL flowInstanceVariableSQL;
 
     public FlowInstanceVariableService(MySQLPool pool) {
+        this.pool = pool;
         this.flowInstanceVariableSQL = new FlowInstanceVariableSQL(SQLExecute.createMySQL(pool));
     }
 
@@ -101,6 +103,21 @@ public class FlowInstanceVariableService {
         });
     }
 
+    /**
+     * 根据任务Id查询任务所属流程实例的变量
+     * @param taskId 任务Id
+     * @return 流程实例变量列表
+     */
+    public Future<List<FlowInstanceVariable>> queryByTaskId(long taskId) {
+        SqlAssist sqlAssist = FlowInstanceVariable.taskIdSqlAssist(taskId);
+        return flowInstanceVariableSQL.selectAll(sqlAssist).map(list -> {
+            if (list == null) {
+                return Collections.emptyList();
+            }
+            return list.stream().map(FlowInstanceVariable::new).collect(Collectors.toList());
+        });
+    }
+
     /**
      * 设置流程实例变量
      * @param flowInstanceId 流程实例Id
@@ -109,53 +126,53 @@ public class FlowInstanceVariableService {
      * @return 流程实例变量对象
      */
     public Future<FlowInstanceVariable> setFlowInstanceVariable(long flowInstanceId, String variableName, String value) {
-        return getByFlowInstanceIdAndName(flowInstanceId, variableName).compose(old -> {
-            FlowInstanceVariable flowInstanceVariable = new FlowInstanceVariable();
-            flowInstanceVariable.setFlowInstanceId(flowInstanceId);
-            flowInstanceVariable.setVariableName(variableName);
-            flowInstanceVariable.setVariableValue(value);
-            flowInstanceVariable.setCreateTime(LocalDateTime.now());
-
-            if (old == null) {
-                return insert(flowInstanceVariable).map(id -> {
-                    flowInstanceVariable.setId(id);
-                    return flowInstanceVariable;
-                });
-            } else {
-                return update(flowInstanceVariable).map(cnt -> {
-                    flowInstanceVariable.setId(old.getId());
-                    return flowInstanceVariable;
-                });
-            }
-        });
+        return setVariables(flowInstanceId, Collections.singletonMap(variableName, value)).map(list -> list.get(0));
     }
 
     /**
-     * 初始化流程实例变量
+     * 批量设置流程实例变量，变量不存在时插入，存在时更新，只需一条语句
+     * 依赖唯一索引：unique key uk_instance_variable (flow_instance_id, variable_name)，见resources/sql/w_flow_instance_variable.sql
+     * 多行upsert无法通过LAST_INSERT_ID取得每一行的Id，写入后按变量名重新查询一次
      * @param flowInstanceId 流程实例Id
-     * @param variableMap 初始变量表
-     * @return 流程变量列表
+     * @param variableMap 变量表
+     * @return 持久化后的流程变量列表，包含Id
      */
-    public Future<List<FlowInstanceVariable>> initFlowInstanceVariable(long flowInstanceId, Map<String, String> variableMap) {
+    public Future<List<FlowInstanceVariable>> setVariables(long flowInstanceId, Map<String, String> variableMap) {
+        if (variableMap.isEmpty()) {
+            return Future.succeededFuture(Collections.emptyList());
+        }
+
         final LocalDateTime createTime = LocalDateTime.now();
-        final List<SameFutureBuilder<Long>> sameFutureBuilders = new ArrayList<>(variableMap.size());
-        final List<FlowInstanceVariable> ret = new ArrayList<>(variableMap.size());
+        final List<String> variableNames = new ArrayList<>(variableMap.size());
+        final Tuple params = Tuple.tuple();
         for (Map.Entry<String, String> entry: variableMap.entrySet()) {
-            final FlowInstanceVariable flowInstanceVariable = new FlowInstanceVariable();
-            flowInstanceVariable.setFlowInstanceId(flowInstanceId);
-            flowInstanceVariable.setVariableName(entry.getKey());
-            flowInstanceVariable.setVariableValue(entry.getValue());
-            flowInstanceVariable.setCreateTime(createTime);
-            ret.add(flowInstanceVariable);
-
-            sameFutureBuilders.add(idList -> this.insert(flowInstanceVariable));
+            variableNames.add(entry.getKey());
+
+            params.addLong(flowInstanceId);
+            params.addString(entry.getKey());
+            params.addString(entry.getValue());
+            params.addLocalDateTime(createTime);
         }
 
-        return CrudUtils.serialTask(sameFutureBuilders).map(idList -> {
-            for (int i = 0; i < ret.size(); i++) {
-                ret.get(i).setId(idList.get(i));
-            }
-            return ret;
-        });
+        return pool
+            .preparedQuery(FlowInstanceVariable.upsertSql(variableMap.size()))
+            .execute(params)
+            .compose(rows -> flowInstanceVariableSQL.selectAll(FlowInstanceVariable.instanceIdVariableNamesSqlAssist(flowInstanceId, variableNames)))
+            .map(list -> {
+                if (list == null) {
+                    return Collections.<FlowInstanceVariable>emptyList();
+                }
+                return list.stream().map(FlowInstanceVariable::new).collect(Collectors.toList());
+            });
+    }
+
+    /**
+     * 初始化流程实例变量
+     * @param flowInstanceId 流程实例Id
+     * @param variableMap 初始变量表
+     * @return 流程变量列表
+     */
+    public Future<List<FlowInstanceVariable>> initFlowInstanceVariable(long flowInstanceId, Map<String, String> variableMap) {
+        return setVariables(flowInstanceId, variableMap);
     }
 }
@@ -15,8 +15,9 @@ import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.List;
 
-@Table("w_flow_link")
+@Table(FlowLink.TABLE_NAME)
 public class FlowLink {
+    public static final String TABLE_NAME = "w_flow_link";
     public static final String LINK_CODE_START = "start";
     public static final String LINK_CODE_END = "end";
 
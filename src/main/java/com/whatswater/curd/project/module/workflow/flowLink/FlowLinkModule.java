@@ -6,6 +6,7 @@ import com.whatswater.asyncmodule.ModuleInfo;
 import com.whatswater.curd.NewInstanceModuleFactory;
 import com.whatswater.curd.project.module.workflow.flowLink.FlowLinkService;
 import com.whatswater.curd.project.module.workflow.flowLinkConstant.FlowLinkConstantService;
+import com.whatswater.sql.executor.Executor;
 import com.zandero.rest.RestRouter;
 import io.vertx.ext.web.Router;
 import io.vertx.mysqlclient.MySQLPool;
@@ -13,13 +14,15 @@ import io.vertx.mysqlclient.MySQLPool;
 public class FlowLinkModule implements Module {
     FlowLinkConstantService flowLinkConstantService;
     FlowLinkService flowLinkService;
+    MySQLPool pool;
+    Executor dbExecutor;
     Router router;
     FlowLinkRest rest;
 
 
     @Override
     public void register(ModuleInfo moduleInfo) {
-        moduleInfo.require(NewInstanceModuleFactory.MODULE_PATH_DATA_SOURCE, "datasource");
+        moduleInfo.require(NewInstanceModuleFactory.MODULE_PATH_DATA_SOURCE, "datasource", "dbExecutor");
         moduleInfo.require(NewInstanceModuleFactory.MODULE_PATH_HTTP_SERVER, "router");
         moduleInfo.require(NewInstanceModuleFactory.MODULE_PATH_FLOW_LINK_CONSTANT, "flowLinkConstantService");
     }
@@ -27,12 +30,9 @@ public class FlowLinkModule implements Module {
     @Override
     public void onResolved(ModuleInfo consumer, ModuleInfo provider, String name, Object obj) {
         if ("datasource".equals(name)) {
-            MySQLPool pool = (MySQLPool) obj;
-            flowLinkService = new FlowLinkService(pool);
-            if (flowLinkConstantService != null) {
-                flowLinkService.setFlowLinkConstantService(flowLinkConstantService);
-            }
-            consumer.exportObject("flowLinkService", flowLinkService);
+            pool = (MySQLPool) obj;
+        } else if ("dbExecutor".equals(name)) {
+            dbExecutor = (Executor) obj;
         } else if ("router".equals(name)) {
             router = (Router) obj;
         } else if ("flowLinkConstantService".equals(name)) {
@@ -42,6 +42,13 @@ public class FlowLinkModule implements Module {
             }
         }
 
+        if (pool != null && dbExecutor != null && flowLinkService == null) {
+            flowLinkService = new FlowLinkService(pool, dbExecutor);
+            if (flowLinkConstantService != null) {
+                flowLinkService.setFlowLinkConstantService(flowLinkConstantService);
+            }
+            consumer.exportObject("flowLinkService", flowLinkService);
+        }
         if (router != null && flowLinkService != null && rest == null) {
             FlowLinkRest rest = new FlowLinkRest(flowLinkService);
             RestRouter.register(router, rest);
@@ -4,6 +4,9 @@ package com.whatswater.curd.project.module.workflow.flowLink;
 import com.whatswater.curd.project.common.*;
 import com.whatswater.curd.project.module.workflow.flowLinkConstant.FlowLinkConstant;
 import com.whatswater.curd.project.module.workflow.flowLinkConstant.FlowLinkConstantService;
+import com.whatswater.sql.dialect.Dialect.SQL;
+import com.whatswater.sql.executor.Executor;
+import com.whatswater.sql.executor.SqlSession;
 import io.vertx.core.Future;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.sql.assist.SQLExecute;
@@ -17,10 +20,13 @@ import java.util.stream.Collectors;
 // todo 添加事件事务相关配置
 public class FlowLinkService {
     private final FlowLinkSQL flowLinkSQL;
+    // 按主键的查询经过dbExecutor，可以使用缓存、合并和读写分离；修改仍通过CommonSQL，成功后通知executor
+    private final Executor executor;
     private FlowLinkConstantService flowLinkConstantService;
 
-    public FlowLinkService(MySQLPool pool) {
+    public FlowLinkService(MySQLPool pool, Executor executor) {
         this.flowLinkSQL = new FlowLinkSQL(SQLExecute.createMySQL(pool));
+        this.executor = executor;
     }
 
     public Future<PageResult<FlowLink>> search(Page page, FlowLinkQuery query) {
@@ -38,41 +44,36 @@ public class FlowLinkService {
     }
 
     public Future<FlowLink> getById(Long flowLinkId) {
-        Future<JsonObject> result = flowLinkSQL.selectById(flowLinkId);
-        return result.map(json -> {
-            if (json == null) {
-                return null;
-            }
-            return new FlowLink(json);
+        SQL sql = ExecutorSQL.select(FlowLink.TABLE_NAME).andEq(FlowLink.COLUMN_ID, flowLinkId).toSql();
+        return executor.query(sql).map(rowSet -> {
+            JsonObject json = ExecutorSQL.first(rowSet);
+            return json == null ? null : new FlowLink(json);
         });
     }
 
     public Future<FlowLinkWithConstant> getWithConstantById(Long flowLinkId) {
-        Future<JsonObject> result = flowLinkSQL.selectById(flowLinkId);
-        return result.map(json -> {
-            if (json == null) {
-                return null;
-            }
-            return new FlowLink(json);
-        }).compose(this::withConstant);
+        return getById(flowLinkId).compose(this::withConstant);
     }
 
 
     public Future<List<FlowLink>> listByIds(List<Long> flowLinkIds) {
-        return flowLinkSQL.selectAll(FlowLink.idListSqlAssist(flowLinkIds)).map(list -> {
-            if (list == null || list.isEmpty()) {
-                return Collections.emptyList();
-            }
-            return list.stream().map(FlowLink::new).collect(Collectors.toList());
-        });
+        if (flowLinkIds == null || flowLinkIds.isEmpty()) {
+            return Future.succeededFuture(Collections.emptyList());
+        }
+        SQL sql = ExecutorSQL.select(FlowLink.TABLE_NAME).andIn(FlowLink.COLUMN_ID, flowLinkIds).toSql();
+        return executor.query(sql).map(rowSet -> ExecutorSQL.toJsonList(rowSet).stream().map(FlowLink::new).collect(Collectors.toList()));
     }
 
     public Future<Long> insert(FlowLink flowLink) {
-        return flowLinkSQL.insertNonEmptyGeneratedKeys(flowLink, MySQLClient.LAST_INSERTED_ID);
+        return flowLinkSQL.insertNonEmptyGeneratedKeys(flowLink, MySQLClient.LAST_INSERTED_ID).onSuccess(id -> modified());
     }
 
     public Future<Integer> update(FlowLink flowLink) {
-        return flowLinkSQL.updateNonEmptyById(flowLink);
+        return flowLinkSQL.updateNonEmptyById(flowLink).onSuccess(count -> modified());
+    }
+
+    private void modified() {
+        SqlSession.afterCommit(() -> executor.tableModified(FlowLink.TABLE_NAME));
     }
 
     /**
@@ -0,0 +1,267 @@
+package com.whatswater.curd.project.sys.attachment;
+
+
+import cn.hutool.core.util.StrUtil;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.whatswater.curd.project.sys.permission.AuthService;
+import com.whatswater.curd.project.sys.permission.UserToken;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.ext.web.RoutingContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 附件下载，使用sendFile零拷贝发送文件，支持单区间Range请求和ETag
+ * 小文件缓存在内存中，热点附件（如表单图片）不再读取磁盘
+ * 下载需要登录；附件所属业务登记了查看路径时（见AttachmentService.registerBusinessViewPath），还需要拥有该路径的权限
+ */
+public class AttachmentDownloadHandler implements Handler<RoutingContext> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AttachmentDownloadHandler.class);
+    public static final String PATH = "/sys/attachment/download";
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+    // 按扩展名确定Content-Type，未列出的类型按二进制流下载
+    private static final Map<String, String> CONTENT_TYPES = new HashMap<>();
+
+    static {
+        CONTENT_TYPES.put("txt", "text/plain");
+        CONTENT_TYPES.put("csv", "text/csv");
+        CONTENT_TYPES.put("json", "application/json");
+        CONTENT_TYPES.put("xml", "application/xml");
+        CONTENT_TYPES.put("pdf", "application/pdf");
+        CONTENT_TYPES.put("doc", "application/msword");
+        CONTENT_TYPES.put("docx", "application/vnd.openxmlformats-officedocument.wordprocessingml.document");
+        CONTENT_TYPES.put("xls", "application/vnd.ms-excel");
+        CONTENT_TYPES.put("xlsx", "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet");
+        CONTENT_TYPES.put("ppt", "application/vnd.ms-powerpoint");
+        CONTENT_TYPES.put("pptx", "application/vnd.openxmlformats-officedocument.presentationml.presentation");
+        CONTENT_TYPES.put("zip", "application/zip");
+        CONTENT_TYPES.put("rar", "application/vnd.rar");
+        CONTENT_TYPES.put("7z", "application/x-7z-compressed");
+        CONTENT_TYPES.put("png", "image/png");
+        CONTENT_TYPES.put("jpg", "image/jpeg");
+        CONTENT_TYPES.put("jpeg", "image/jpeg");
+        CONTENT_TYPES.put("gif", "image/gif");
+        CONTENT_TYPES.put("bmp", "image/bmp");
+        CONTENT_TYPES.put("webp", "image/webp");
+        CONTENT_TYPES.put("mp3", "audio/mpeg");
+        CONTENT_TYPES.put("mp4", "video/mp4");
+    }
+
+    private final AttachmentService attachmentService;
+    private final AuthService authService;
+    private final long cacheFileMaxBytes;
+    private final Cache<String, Buffer> smallFileCache;
+
+    /**
+     * @param attachmentService 附件服务
+     * @param authService 校验附件所属业务的查看权限
+     * @param cacheMaxBytes 内存缓存的总大小，为0时不缓存
+     * @param cacheFileMaxBytes 可缓存的单个文件大小上限
+     */
+    public AttachmentDownloadHandler(AttachmentService attachmentService, AuthService authService, long cacheMaxBytes, long cacheFileMaxBytes) {
+        this.attachmentService = attachmentService;
+        this.authService = authService;
+        this.cacheFileMaxBytes = cacheMaxBytes > 0 ? cacheFileMaxBytes : 0;
+        this.smallFileCache = Caffeine.newBuilder()
+            .maximumWeight(Math.max(cacheMaxBytes, 0))
+            .weigher((String key, Buffer value) -> value.length())
+            .build();
+    }
+
+    @Override
+    public void handle(RoutingContext rc) {
+        HttpServerRequest request = rc.request();
+        HttpServerResponse response = rc.response();
+        // 工作流等服务间调用没有登录用户，不能下载附件
+        UserToken userToken = UserToken.current();
+        if (userToken == null) {
+            end(response, HttpResponseStatus.UNAUTHORIZED);
+            return;
+        }
+
+        Long attachmentId;
+        try {
+            attachmentId = Long.valueOf(request.getParam("id"));
+        } catch (NumberFormatException e) {
+            end(response, HttpResponseStatus.BAD_REQUEST);
+            return;
+        }
+
+        attachmentService.getById(attachmentId).onComplete(ar -> {
+            if (ar.failed()) {
+                LOGGER.error("查询附件失败", ar.cause());
+                end(response, HttpResponseStatus.INTERNAL_SERVER_ERROR);
+                return;
+            }
+            Attachment attachment = ar.result();
+            if (attachment == null || StrUtil.isEmpty(attachment.getRelativeFilePath())) {
+                end(response, HttpResponseStatus.NOT_FOUND);
+                return;
+            }
+            String viewPath = attachmentService.getBusinessViewPath(attachment);
+            if (viewPath != null && !authService.hasPermission(userToken, viewPath)) {
+                end(response, HttpResponseStatus.UNAUTHORIZED);
+                return;
+            }
+            send(request, response, attachment);
+        });
+    }
+
+    private void send(HttpServerRequest request, HttpServerResponse response, Attachment attachment) {
+        String relativePath = attachment.getRelativeFilePath();
+        String etag = etag(attachment);
+
+        response.putHeader(HttpHeaderNames.ETAG, etag);
+        response.putHeader(HttpHeaderNames.CACHE_CONTROL, "private, max-age=0, must-revalidate");
+        response.putHeader(HttpHeaderNames.ACCEPT_RANGES, "bytes");
+        if (etag.equals(request.getHeader(HttpHeaderNames.IF_NONE_MATCH))) {
+            end(response, HttpResponseStatus.NOT_MODIFIED);
+            return;
+        }
+
+        response.putHeader(HttpHeaderNames.CONTENT_TYPE, contentType(attachment.getFileOldName()));
+        response.putHeader(HttpHeaderNames.CONTENT_DISPOSITION, contentDisposition(attachment.getFileOldName()));
+
+        String absolutePath = attachmentService.getUploadFileFolder() + File.separator + relativePath;
+        Buffer cached = smallFileCache.getIfPresent(relativePath);
+        Future<Long> sizeFuture = cached != null
+            ? Future.succeededFuture((long) cached.length())
+            : attachmentService.getVertx().fileSystem().props(absolutePath).map(props -> props.size());
+
+        sizeFuture.onComplete(ar -> {
+            if (ar.failed()) {
+                end(response, HttpResponseStatus.NOT_FOUND);
+                return;
+            }
+            long size = ar.result();
+            if (size == 0) {
+                response.end();
+                return;
+            }
+            long[] range = parseRange(request.getHeader(HttpHeaderNames.RANGE), size);
+            if (range == null) {
+                response.putHeader(HttpHeaderNames.CONTENT_RANGE, "bytes */" + size);
+                end(response, HttpResponseStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+            long offset = range[0];
+            long length = range[1] - range[0] + 1;
+            if (length != size) {
+                response.setStatusCode(HttpResponseStatus.PARTIAL_CONTENT.code());
+                response.putHeader(HttpHeaderNames.CONTENT_RANGE, "bytes " + range[0] + "-" + range[1] + "/" + size);
+            }
+
+            if (cached != null) {
+                response.end(slice(cached, offset, length));
+            } else if (size < cacheFileMaxBytes) {
+                attachmentService.getVertx().fileSystem().readFile(absolutePath).onComplete(read -> {
+                    if (read.failed()) {
+                        end(response, HttpResponseStatus.NOT_FOUND);
+                        return;
+                    }
+                    smallFileCache.put(relativePath, read.result());
+                    response.end(slice(read.result(), offset, length));
+                });
+            } else {
+                response.sendFile(absolutePath, offset, length);
+            }
+        });
+    }
+
+    private static Buffer slice(Buffer buffer, long offset, long length) {
+        if (offset == 0 && length == buffer.length()) {
+            return buffer;
+        }
+        return buffer.slice((int) offset, (int) (offset + length));
+    }
+
+    /**
+     * 内容寻址的文件使用SHA-256作为强ETag，其他文件使用Id和大小
+     */
+    private static String etag(Attachment attachment) {
+        String relativePath = attachment.getRelativeFilePath();
+        if (relativePath.startsWith(AttachmentService.BLOB_FOLDER + File.separator)) {
+            return "\"" + relativePath.substring(relativePath.lastIndexOf(File.separator) + 1) + "\"";
+        }
+        return "W/\"" + attachment.getId() + "-" + attachment.getContentSize() + "\"";
+    }
+
+    /**
+     * 解析单区间Range请求头，不支持多区间，此时返回整个文件
+     * @return [start, end]，end为闭区间；区间不合法时返回null
+     */
+    static long[] parseRange(String rangeHeader, long size) {
+        long[] full = new long[] { 0, size - 1 };
+        if (StrUtil.isEmpty(rangeHeader) || !rangeHeader.startsWith("bytes=") || rangeHeader.indexOf(',') >= 0) {
+            return full;
+        }
+        String spec = rangeHeader.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return full;
+        }
+        try {
+            String startText = spec.substring(0, dash).trim();
+            String endText = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (startText.isEmpty()) {
+                long suffixLength = Long.parseLong(endText);
+                if (suffixLength <= 0) {
+                    return null;
+                }
+                start = Math.max(size - suffixLength, 0);
+                end = size - 1;
+            } else {
+                start = Long.parseLong(startText);
+                end = endText.isEmpty() ? size - 1 : Math.min(Long.parseLong(endText), size - 1);
+            }
+            if (start > end || start >= size) {
+                return null;
+            }
+            return new long[] { start, end };
+        } catch (NumberFormatException e) {
+            return full;
+        }
+    }
+
+    static String contentType(String fileName) {
+        int dot = fileName == null ? -1 : fileName.lastIndexOf('.');
+        if (dot < 0) {
+            return DEFAULT_CONTENT_TYPE;
+        }
+        String contentType = CONTENT_TYPES.get(fileName.substring(dot + 1).toLowerCase(Locale.ROOT));
+        return contentType == null ? DEFAULT_CONTENT_TYPE : contentType;
+    }
+
+    private static String contentDisposition(String fileName) {
+        if (StrUtil.isEmpty(fileName)) {
+            return "attachment";
+        }
+        try {
+            String encoded = URLEncoder.encode(fileName, StandardCharsets.UTF_8.name()).replace("+", "%20");
+            return "attachment; filename*=UTF-8''" + encoded;
+        } catch (UnsupportedEncodingException e) {
+            return "attachment";
+        }
+    }
+
+    private static void end(HttpServerResponse response, HttpResponseStatus status) {
+        response.setStatusCode(status.code()).end();
+    }
+}
@@ -5,24 +5,28 @@ import com.whatswater.asyncmodule.Module;
 import com.whatswater.asyncmodule.ModuleInfo;
 import com.whatswater.curd.NewInstanceModuleFactory;
 import com.whatswater.curd.project.sys.attachment.AttachmentService;
+import com.whatswater.curd.project.sys.permission.AuthService;
 import com.zandero.rest.RestRouter;
+import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.sql.assist.SQLExecute;
 import io.vertx.ext.web.Router;
-import io.vertx.ext.web.handler.BodyHandler;
 import io.vertx.mysqlclient.MySQLPool;
 
 public class AttachmentModule implements Module {
     JsonObject config;
     AttachmentService attachmentService = new AttachmentService();
     Router router;
+    AuthService authService;
+    boolean registered;
 
 
     @Override
     public void register(ModuleInfo moduleInfo) {
         moduleInfo.require(NewInstanceModuleFactory.MODULE_PATH_DATA_SOURCE, "datasource");
         moduleInfo.require(NewInstanceModuleFactory.MODULE_PATH_HTTP_SERVER, "router");
-        moduleInfo.require("init:global", "config");
+        moduleInfo.require("init:global", "config", "vertx");
+        moduleInfo.require(NewInstanceModuleFactory.MODULE_PATH_PERMISSION, "authService");
 
         moduleInfo.exportObject("attachmentService", attachmentService);
     }
@@ -34,11 +38,27 @@ public class AttachmentModule implements Module {
             attachmentService.setAttachmentSQL(new AttachmentSQL(SQLExecute.createMySQL(pool)));
         } else if ("router".equals(name)) {
             router = (Router) obj;
-            AttachmentRest rest = new AttachmentRest(attachmentService);
-            RestRouter.register(router, rest);
         } else if ("config".equals(name)) {
             config = (JsonObject) obj;
             attachmentService.setUploadFileFolder(config.getString("upload.fileFolder"));
+        } else if ("vertx".equals(name)) {
+            attachmentService.setVertx((Vertx) obj);
+        } else if ("authService".equals(name)) {
+            authService = (AuthService) obj;
+        }
+
+        if (router != null && config != null && authService != null && !registered) {
+            registered = true;
+            // 上传、下载不经过BodyHandler和rest.vertx的结果序列化，需在RestRouter注册的路由之外单独注册
+            router.post(AttachmentUploadHandler.PATH).handler(new AttachmentUploadHandler(attachmentService));
+            router.get(AttachmentDownloadHandler.PATH).handler(new AttachmentDownloadHandler(
+                attachmentService,
+                authService,
+                config.getLong("attachment.cache.maxBytes", 32L * 1024 * 1024),
+                config.getLong("attachment.cache.fileMaxBytes", 256L * 1024)
+            ));
+            AttachmentRest rest = new AttachmentRest(attachmentService);
+            RestRouter.register(router, rest);
         }
     }
 }
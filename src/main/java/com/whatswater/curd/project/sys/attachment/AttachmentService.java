@@ -2,25 +2,48 @@ package com.whatswater.curd.project.sys.attachment;
 
 
 import cn.hutool.core.collection.CollectionUtil;
+import cn.hutool.core.util.HexUtil;
 import com.whatswater.curd.project.common.CrudUtils;
 import com.whatswater.curd.project.common.CrudUtils.SameFutureBuilder;
 import com.whatswater.curd.project.common.Page;
 import com.whatswater.curd.project.common.PageResult;
 import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.file.AsyncFile;
+import io.vertx.core.file.CopyOptions;
+import io.vertx.core.file.FileSystem;
+import io.vertx.core.file.OpenOptions;
+import io.vertx.core.http.HttpServerFileUpload;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.sql.assist.SQLExecute;
 import io.vertx.ext.sql.assist.SqlAssist;
 import io.vertx.mysqlclient.MySQLClient;
 import io.vertx.mysqlclient.MySQLPool;
 
+import java.io.File;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 public class AttachmentService {
+    // 文件按内容的SHA-256存放在blob目录下，内容相同的文件只保存一份
+    public static final String BLOB_FOLDER = "blob";
+    public static final String TMP_FOLDER = "tmp";
+
     private AttachmentSQL attachmentSQL;
     private String uploadFileFolder;
+    private Vertx vertx;
+    private final Set<String> createdDirs = ConcurrentHashMap.newKeySet();
+    // 业务类型对应的查看路径，下载挂在该业务上的附件时按此路径校验权限
+    private final Map<String, String> businessViewPaths = new ConcurrentHashMap<>();
 
     public AttachmentService() {
     }
@@ -93,6 +116,106 @@ public class AttachmentService {
         return attachmentSQL.updateNonEmptyById(attachment);
     }
 
+    /**
+     * 将上传的文件流写入存储目录，写入的同时计算SHA-256，已存在相同内容时丢弃本次写入的文件
+     * @param upload 上传文件流
+     * @return 未保存到数据库的附件，包含原文件名、大小和相对路径
+     */
+    public Future<Attachment> storeUpload(HttpServerFileUpload upload) {
+        upload.pause();
+        FileSystem fileSystem = vertx.fileSystem();
+        String tmpFolder = uploadFileFolder + File.separator + TMP_FOLDER;
+        String tmpPath = tmpFolder + File.separator + UUID.randomUUID();
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            return Future.failedFuture(e);
+        }
+        long[] contentSize = new long[1];
+
+        Future<Void> writeFuture = mkdirs(tmpFolder)
+            .compose(r -> fileSystem.open(tmpPath, new OpenOptions().setWrite(true).setCreateNew(true)))
+            .compose(file -> {
+                Promise<Void> promise = Promise.promise();
+                upload.handler(buffer -> {
+                    digest.update(buffer.getBytes());
+                    contentSize[0] += buffer.length();
+                    file.write(buffer);
+                    if (file.writeQueueFull()) {
+                        upload.pause();
+                        file.drainHandler(v -> upload.resume());
+                    }
+                });
+                upload.exceptionHandler(promise::tryFail);
+                file.exceptionHandler(promise::tryFail);
+                upload.endHandler(v -> promise.tryComplete());
+                upload.resume();
+                return promise.future().eventually(v -> closeFile(file));
+            });
+
+        return writeFuture.compose(r -> {
+            String contentHash = HexUtil.encodeHexStr(digest.digest());
+            String relativePath = blobRelativePath(contentHash);
+            String blobPath = uploadFileFolder + File.separator + relativePath;
+            String blobFolder = blobPath.substring(0, blobPath.lastIndexOf(File.separator));
+
+            return mkdirs(blobFolder)
+                .compose(v -> fileSystem.exists(blobPath))
+                .compose(exists -> exists
+                    ? fileSystem.delete(tmpPath)
+                    : fileSystem.move(tmpPath, blobPath, new CopyOptions().setReplaceExisting(true)))
+                .map(v -> {
+                    Attachment attachment = new Attachment();
+                    attachment.setFileOldName(upload.filename());
+                    attachment.setContentSize(contentSize[0]);
+                    attachment.setRelativeFilePath(relativePath);
+                    return attachment;
+                });
+        }).onFailure(e -> fileSystem.delete(tmpPath));
+    }
+
+    public static String blobRelativePath(String contentHash) {
+        return BLOB_FOLDER
+            + File.separator
+            + contentHash.substring(0, 2)
+            + File.separator
+            + contentHash.substring(2, 4)
+            + File.separator
+            + contentHash;
+    }
+
+    private static Future<Void> closeFile(AsyncFile file) {
+        return file.close().recover(e -> Future.succeededFuture());
+    }
+
+    private Future<Void> mkdirs(String folder) {
+        if (createdDirs.contains(folder)) {
+            return Future.succeededFuture();
+        }
+        return vertx.fileSystem().mkdirs(folder).onSuccess(v -> createdDirs.add(folder));
+    }
+
+    /**
+     * 登记业务单据的查看路径，下载该业务的附件需要拥有此路径的权限
+     * @param businessType 业务类型
+     * @param viewPath 查看业务单据的请求路径
+     */
+    public void registerBusinessViewPath(String businessType, String viewPath) {
+        businessViewPaths.put(businessType, viewPath);
+    }
+
+    /**
+     * 下载附件需要拥有权限的路径
+     * @param attachment 附件
+     * @return 附件未挂到业务上或业务未登记查看路径时返回null
+     */
+    public String getBusinessViewPath(Attachment attachment) {
+        String businessType = attachment.getBusinessType();
+        return businessType == null ? null : businessViewPaths.get(businessType);
+    }
+
     public void setAttachmentSQL(AttachmentSQL attachmentSQL) {
         this.attachmentSQL = attachmentSQL;
     }
@@ -104,4 +227,12 @@ public class AttachmentService {
     public void setUploadFileFolder(String uploadFileFolder) {
         this.uploadFileFolder = uploadFileFolder;
     }
+
+    public Vertx getVertx() {
+        return vertx;
+    }
+
+    public void setVertx(Vertx vertx) {
+        this.vertx = vertx;
+    }
 }
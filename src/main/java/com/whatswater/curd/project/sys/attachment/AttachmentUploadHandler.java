@@ -0,0 +1,96 @@
+package com.whatswater.curd.project.sys.attachment;
+
+
+import com.whatswater.curd.CrudConst;
+import com.whatswater.curd.project.common.BusinessException;
+import com.whatswater.curd.project.common.ErrorCodeEnum;
+import com.whatswater.curd.project.common.RestResult;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 流式上传，不经过BodyHandler，multipart中的文件直接写入存储目录
+ */
+public class AttachmentUploadHandler implements Handler<RoutingContext> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AttachmentUploadHandler.class);
+    public static final String PATH = "/sys/attachment/upload";
+
+    private final AttachmentService attachmentService;
+
+    public AttachmentUploadHandler(AttachmentService attachmentService) {
+        this.attachmentService = attachmentService;
+    }
+
+    @Override
+    public void handle(RoutingContext rc) {
+        HttpServerRequest request = rc.request();
+        request.setExpectMultipart(true);
+
+        List<Future> storeFutureList = new ArrayList<>();
+        request.uploadHandler(upload -> storeFutureList.add(attachmentService.storeUpload(upload)));
+        request.exceptionHandler(e -> writeFail(rc, e));
+        request.endHandler(v -> {
+            if (storeFutureList.isEmpty()) {
+                writeFail(rc, ErrorCodeEnum.PARAM_NO_VALID.toException("上传文件为空"));
+                return;
+            }
+
+            String businessType = request.getFormAttribute("businessType");
+            String businessId = request.getFormAttribute("businessId");
+            CompositeFuture.all(storeFutureList).compose(composite -> {
+                List<Attachment> attachments = composite.list();
+                for (Attachment attachment: attachments) {
+                    attachment.setBusinessType(businessType);
+                    attachment.setBusinessId(businessId);
+                }
+                return attachmentService.batchInsert(attachments);
+            }).onComplete(ar -> {
+                if (ar.succeeded()) {
+                    writeSuccess(rc, ar.result());
+                } else {
+                    writeFail(rc, ar.cause());
+                }
+            });
+        });
+        request.resume();
+    }
+
+    private static void writeSuccess(RoutingContext rc, List<Long> attachmentIds) {
+        JsonObject jsonObject = new JsonObject()
+            .put(RestResult.PROPERTY_CODE, CrudConst.SUCCESS_CODE)
+            .put(RestResult.PROPERTY_MSG, CrudConst.SUCCESS_MSG)
+            .put(RestResult.PROPERTY_DATA, new JsonArray(attachmentIds))
+            .put(RestResult.PROPERTY_SUCCESS, true);
+        rc.response()
+            .putHeader(HttpHeaderNames.CONTENT_TYPE, CrudConst.APPLICATION_JSON_UTF8)
+            .end(jsonObject.encode());
+    }
+
+    private static void writeFail(RoutingContext rc, Throwable e) {
+        if (rc.response().ended()) {
+            return;
+        }
+        LOGGER.error("上传文件失败", e);
+        String code = e instanceof BusinessException ? ((BusinessException) e).getCode() : CrudConst.FAIL_CODE;
+        JsonObject jsonObject = new JsonObject()
+            .put(RestResult.PROPERTY_CODE, code)
+            .put(RestResult.PROPERTY_MSG, e.getMessage())
+            .put(RestResult.PROPERTY_SUCCESS, false);
+        rc.response()
+            .setStatusCode(HttpResponseStatus.INTERNAL_SERVER_ERROR.code())
+            .putHeader(HttpHeaderNames.CONTENT_TYPE, CrudConst.APPLICATION_JSON_UTF8)
+            .end(jsonObject.encode());
+    }
+}
@@ -10,8 +10,9 @@ import io.vertx.ext.sql.assist.TableId;
 
 import java.util.List;
 
-@Table("sys_employee")
+@Table(Employee.TABLE_NAME)
 public class Employee {
+    public static final String TABLE_NAME = "sys_employee";
     public static final String COLUMN_ID = "id";
     public static final String COLUMN_NAME = "name";
     public static final String COLUMN_LOGIN_NAME = "login_name";
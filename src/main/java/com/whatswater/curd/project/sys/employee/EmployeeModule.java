@@ -4,41 +4,61 @@ package com.whatswater.curd.project.sys.employee;
 import com.whatswater.curd.NewInstanceModuleFactory;
 import com.whatswater.curd.project.sys.organization.OrganizationService;
 import com.zandero.rest.RestRouter;
+import com.whatswater.sql.executor.Executor;
+import com.whatswater.sql.executor.SqlSessionAopFactory;
+import io.vertx.core.Vertx;
 import io.vertx.ext.web.Router;
 import io.vertx.mysqlclient.MySQLPool;
 import com.whatswater.asyncmodule.Module;
 import com.whatswater.asyncmodule.ModuleInfo;
 
 public class EmployeeModule implements Module {
+    Vertx vertx;
+    MySQLPool pool;
+    Executor executor;
     OrganizationService organizationService;
     EmployeeService employeeService;
+    // 接口层使用的事务代理，@Transactional方法在一个会话中执行
+    IEmployeeService transactionalService;
     Router router;
 
     @Override
     public void register(ModuleInfo moduleInfo) {
-        moduleInfo.require("NewInstance:com.whatswater.curd.datasource.DataSourceModule:0.1", "datasource");
+        moduleInfo.require("init:global", "vertx");
+        moduleInfo.require("NewInstance:com.whatswater.curd.datasource.DataSourceModule:0.1", "datasource", "dbExecutor");
         moduleInfo.require("NewInstance:com.whatswater.curd.HttpServerModule:0.1", "router");
         moduleInfo.require(NewInstanceModuleFactory.MODULE_PATH_ORGANIZATION, "organizationService");
     }
 
     @Override
     public void onResolved(ModuleInfo consumer, ModuleInfo provider, String name, Object obj) {
-        if ("datasource".equals(name)) {
-            MySQLPool pool = (MySQLPool) obj;
+        if ("vertx".equals(name)) {
+            vertx = (Vertx) obj;
+        } else if ("datasource".equals(name)) {
+            pool = (MySQLPool) obj;
+        } else if ("dbExecutor".equals(name)) {
+            executor = (Executor) obj;
+        }
 
-            employeeService = new EmployeeService(pool);
+        if (employeeService == null && vertx != null && pool != null && executor != null) {
+            employeeService = new EmployeeService(pool, executor, vertx);
+            Executor dbExecutor = executor;
+            employeeService.addChangeListener(() -> dbExecutor.tableModified(Employee.TABLE_NAME));
+            transactionalService = SqlSessionAopFactory.enhance(IEmployeeService.class, employeeService, pool);
             consumer.exportObject("employeeService", employeeService);
             if (router != null) {
-                EmployeeRest rest = new EmployeeRest(employeeService);
+                EmployeeRest rest = new EmployeeRest(transactionalService);
                 RestRouter.register(router, rest);
             }
             if (organizationService != null) {
                 employeeService.setOrganizationService(organizationService);
             }
-        } else if ("router".equals(name)) {
+        }
+
+        if ("router".equals(name)) {
             router = (Router) obj;
-            if (employeeService != null) {
-                EmployeeRest rest = new EmployeeRest(employeeService);
+            if (transactionalService != null) {
+                EmployeeRest rest = new EmployeeRest(transactionalService);
                 RestRouter.register(router, rest);
             }
         } else if ("organizationService".equals(name)) {
@@ -13,9 +13,9 @@ import javax.ws.rs.core.MediaType;
 
 @Path("/sys/employee")
 public class EmployeeRest {
-    private final EmployeeService employeeService;
+    private final IEmployeeService employeeService;
 
-    public EmployeeRest(EmployeeService employeeService) {
+    public EmployeeRest(IEmployeeService employeeService) {
         this.employeeService = employeeService;
     }
 
@@ -3,13 +3,21 @@ package com.whatswater.curd.project.sys.employee;
 
 import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.collection.CollectionUtil;
+import com.whatswater.curd.project.common.ChangeListeners;
 import com.whatswater.curd.project.common.CrudUtils;
+import com.whatswater.curd.project.common.ExecutorSQL;
 import com.whatswater.curd.project.common.Page;
 import com.whatswater.curd.project.common.PageResult;
+import com.whatswater.curd.project.common.PasswordHasher;
 import com.whatswater.curd.project.sys.organization.Organization;
 import com.whatswater.curd.project.sys.organization.OrganizationService;
 
+import com.whatswater.sql.dialect.Dialect.SQL;
+import com.whatswater.sql.executor.BatchLoader;
+import com.whatswater.sql.executor.Executor;
+import com.whatswater.sql.executor.Transactional;
 import io.vertx.core.Future;
+import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.sql.assist.SQLExecute;
 import io.vertx.ext.sql.assist.SqlAssist;
@@ -17,14 +25,24 @@ import io.vertx.mysqlclient.MySQLClient;
 import io.vertx.mysqlclient.MySQLPool;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Collectors;
 
 
 public class EmployeeService implements IEmployeeService {
+    // 一次合并的getById数量上限
+    private static final int MAX_ID_BATCH_SIZE = 100;
+
     private final EmployeeSQL employeeSQL;
+    // 按主键、登录名的查询经过dbExecutor，可以使用缓存、合并和读写分离
+    private Executor executor;
+    private BatchLoader<Object, Employee> idLoader;
     private OrganizationService organizationService;
+    private PasswordHasher passwordHasher;
+    private final ChangeListeners changeListeners = new ChangeListeners();
 
     public EmployeeService() {
         this.employeeSQL = null;
@@ -35,8 +53,14 @@ public class EmployeeService implements IEmployeeService {
         this.organizationService = organizationService;
     }
 
-    public EmployeeService(MySQLPool pool) {
+    /**
+     * 同一轮事件循环中并发的getById合并为一次in查询
+     * 修改仍通过CommonSQL执行，模块通过addChangeListener在修改成功后通知executor，见Executor.tableModified
+     */
+    public EmployeeService(MySQLPool pool, Executor executor, Vertx vertx) {
         this.employeeSQL = new EmployeeSQL(SQLExecute.createMySQL(pool));
+        this.executor = executor;
+        this.idLoader = new BatchLoader<>(vertx, MAX_ID_BATCH_SIZE, BatchLoader::normalizeId, this::loadByIds);
     }
 
     private EmployeeService(EmployeeSQL employeeSQL, OrganizationService organizationService) {
@@ -115,12 +139,17 @@ public class EmployeeService implements IEmployeeService {
 
     @Override
     public Future<Employee> getById(long id) {
-        Future<JsonObject> result = employeeSQL.selectById(id);
-        return result.map(json -> {
-            if (json == null) {
-                return null;
+        return idLoader.load(id);
+    }
+
+    private Future<Map<Object, Employee>> loadByIds(List<Object> ids) {
+        return executor.query(ExecutorSQL.select(Employee.TABLE_NAME).andIn(Employee.COLUMN_ID, ids).toSql()).map(rowSet -> {
+            Map<Object, Employee> employeeMap = new HashMap<>();
+            for (JsonObject json: ExecutorSQL.toJsonList(rowSet)) {
+                Employee employee = new Employee(json);
+                employeeMap.put(employee.getId(), employee);
             }
-            return new Employee(json);
+            return employeeMap;
         });
     }
 
@@ -129,26 +158,16 @@ public class EmployeeService implements IEmployeeService {
         if (CollectionUtil.isEmpty(ids)) {
             return Future.succeededFuture(Collections.emptyList());
         }
-        SqlAssist sqlAssist = Employee.idListSqlAssist(ids);
-        return employeeSQL.selectAll(sqlAssist).map(jsonList -> {
-            if (jsonList == null || jsonList.isEmpty()) {
-                return Collections.emptyList();
-            }
-            return jsonList.stream().map(Employee::new).collect(Collectors.toList());
-        });
+        return executor.query(ExecutorSQL.select(Employee.TABLE_NAME).andIn(Employee.COLUMN_ID, ids).toSql())
+            .map(rowSet -> ExecutorSQL.toJsonList(rowSet).stream().map(Employee::new).collect(Collectors.toList()));
     }
 
     @Override
     public Future<Employee> getByLoginName(String loginName) {
-        Employee employee = new Employee();
-        employee.setLoginName(loginName);
-        SqlAssist sqlAssist = employee.loginNameSqlAssist();
-
-        return employeeSQL.selectAll(sqlAssist).map(list -> {
-            if (list.size() == 0) {
-                return null;
-            }
-            return new Employee(list.get(0));
+        SQL sql = ExecutorSQL.select(Employee.TABLE_NAME).andEq(Employee.COLUMN_LOGIN_NAME, loginName).setRowSize(1).toSql();
+        return executor.query(sql).map(rowSet -> {
+            JsonObject json = ExecutorSQL.first(rowSet);
+            return json == null ? null : new Employee(json);
         });
     }
 
@@ -179,6 +198,7 @@ public class EmployeeService implements IEmployeeService {
     }
 
     @Override
+    @Transactional
     public Future<Long> fillAndInsertWithCheck(Employee employee) {
         return getByLoginName(employee.getLoginName()).compose(old -> {
             if (old != null) {
@@ -189,21 +209,28 @@ public class EmployeeService implements IEmployeeService {
             employeeInsert.setLoginName(employee.getLoginName());
             employeeInsert.setName(employee.getName());
             employeeInsert.setInitPassword("2021@" + CrudUtils.randomString(8));
-            employeeInsert.setPassword(CrudUtils.hashPassword(employeeInsert.getInitPassword()));
             employeeInsert.setOrganizationId(employee.getOrganizationId());
 
             employeeInsert.setPhone(employee.getPhone());
             employeeInsert.setEmail(employee.getEmail());
             employeeInsert.setStatus(EmployeeStatus.INIT.getId());
 
-            return insert(employeeInsert);
+            Future<String> passwordFuture = passwordHasher == null
+                ? Future.succeededFuture(CrudUtils.hashPassword(employeeInsert.getInitPassword()))
+                : passwordHasher.hash(employeeInsert.getInitPassword());
+            return passwordFuture.compose(password -> {
+                employeeInsert.setPassword(password);
+                return insert(employeeInsert);
+            });
         });
     }
 
     public Future<Long> insert(Employee employee) {
-        return employeeSQL.insertNonEmptyGeneratedKeys(employee, MySQLClient.LAST_INSERTED_ID);
+        return employeeSQL.insertNonEmptyGeneratedKeys(employee, MySQLClient.LAST_INSERTED_ID).map(changeListeners::fireAndReturn);
     }
 
+    @Override
+    @Transactional
     public Future<Integer> enable(long employeeId) {
         return getById(employeeId).compose(employee -> {
             if (employee == null) {
@@ -218,6 +245,8 @@ public class EmployeeService implements IEmployeeService {
         });
     }
 
+    @Override
+    @Transactional
     public Future<Integer> disable(long employeeId) {
         return getById(employeeId).compose(employee -> {
             if (employee == null) {
@@ -236,9 +265,11 @@ public class EmployeeService implements IEmployeeService {
     }
 
     public Future<Integer> update(Employee updateEmployee) {
-        return employeeSQL.updateNonEmptyById(updateEmployee);
+        return employeeSQL.updateNonEmptyById(updateEmployee).map(changeListeners::fireAndReturn);
     }
 
+    @Override
+    @Transactional
     public Future<Integer> deleteWithCheck(long employeeId) {
         return getById(employeeId).compose(employee -> {
            if (!EmployeeStatus.canDelete(employee.getStatus())) {
@@ -249,13 +280,23 @@ public class EmployeeService implements IEmployeeService {
     }
 
     public Future<Integer> delete(long employeeId) {
-        return employeeSQL.deleteById(employeeId);
+        return employeeSQL.deleteById(employeeId).map(changeListeners::fireAndReturn);
     }
 
     public boolean verifyPassword(Employee employee, String password) {
-        String hashed = CrudUtils.hashPassword(password);
         String real = employee.getPassword();
-        return hashed.equals(real);
+        return real != null && password != null && PasswordHasher.verifySync(real, password);
+    }
+
+    /**
+     * 员工数据变更后调用，用于使登录缓存等失效
+     */
+    public void addChangeListener(Runnable listener) {
+        changeListeners.add(listener);
+    }
+
+    public void setPasswordHasher(PasswordHasher passwordHasher) {
+        this.passwordHasher = passwordHasher;
     }
 
     public void setOrganizationService(OrganizationService organizationService) {
@@ -14,4 +14,7 @@ public interface IEmployeeService extends ContextService<IEmployeeService> {
     Future<Employee> getByLoginName(String loginName);
     Future<PageResult<EmployeeListVo>> search(Page page, EmployeeQuery query);
     Future<Long> fillAndInsertWithCheck(Employee employee);
+    Future<Integer> enable(long employeeId);
+    Future<Integer> disable(long employeeId);
+    Future<Integer> deleteWithCheck(long employeeId);
 }
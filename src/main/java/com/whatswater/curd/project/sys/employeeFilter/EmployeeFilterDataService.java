@@ -1,8 +1,10 @@
 package com.whatswater.curd.project.sys.employeeFilter;
 
 
+import com.whatswater.curd.project.common.ChangeListeners;
 import com.whatswater.curd.project.common.CrudUtils;
 import com.whatswater.curd.project.common.CrudUtils.SameFutureBuilder;
+import com.whatswater.curd.project.sys.employeeFilter.SExpressionUtil.SExpression;
 import io.vertx.core.Future;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.sql.assist.SqlAssist;
@@ -10,14 +12,60 @@ import io.vertx.mysqlclient.MySQLClient;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 public class EmployeeFilterDataService {
     private EmployeeFilterDataSQL employeeFilterDataSQL;
+    private final ChangeListeners changeListeners = new ChangeListeners();
+    // 过滤条件编码 -> 解析后的表达式，过滤条件数据变更时失效
+    private final Map<String, SExpression> sExpressionCache = new ConcurrentHashMap<>();
+    // 每次失效加一，查询开始后发生过失效的解析结果不放入缓存，避免并发的查询把旧数据写回缓存
+    private final AtomicLong cacheVersion = new AtomicLong();
+
     public EmployeeFilterDataService() {
 
     }
 
+    /**
+     * 根据编码获取解析后的表达式，每个编码只解析一次
+     * @param code 过滤条件编码
+     * @return 表达式
+     */
+    public Future<SExpression> getSExpressionByCode(String code) {
+        SExpression cached = sExpressionCache.get(code);
+        if (cached != null) {
+            return Future.succeededFuture(cached);
+        }
+        long version = cacheVersion.get();
+        return queryByCode(code).map(dataList -> {
+            SExpression sExpression = SExpressionUtil.parse(dataList);
+            synchronized (cacheVersion) {
+                if (cacheVersion.get() == version) {
+                    sExpressionCache.put(code, sExpression);
+                }
+            }
+            return sExpression;
+        });
+    }
+
+    /**
+     * 写入完成后调用，写入失败时也可能已部分生效，同样失效
+     * @param code 过滤条件编码，为null时全部失效
+     */
+    private void invalidate(String code) {
+        synchronized (cacheVersion) {
+            cacheVersion.incrementAndGet();
+            if (code == null) {
+                sExpressionCache.clear();
+            } else {
+                sExpressionCache.remove(code);
+            }
+        }
+    }
+
     public Future<List<EmployeeFilterData>> queryByCode(String code) {
         SqlAssist sqlAssist = EmployeeFilterData.codeSqlAssist(code);
 
@@ -31,25 +79,42 @@ public class EmployeeFilterDataService {
 
     public Future<List<Long>> batchInsert(List<EmployeeFilterData> dataList) {
         List<SameFutureBuilder<Long>> taskList = dataList.stream().map(filter -> {
-            return (SameFutureBuilder<Long>) r -> this.insert(filter);
+            return (SameFutureBuilder<Long>) r -> this.insertData(filter);
         }).collect(Collectors.toList());
-        return CrudUtils.serialTask(taskList);
+        return CrudUtils.serialTask(taskList)
+            .onComplete(r -> dataList.stream().map(EmployeeFilterData::getCode).distinct().forEach(this::invalidate))
+            .map(changeListeners::fireAndReturn);
     }
 
     public Future<Integer> deleteByCode(String code) {
         SqlAssist sqlAssist = EmployeeFilterData.codeSqlAssist(code);
-        return employeeFilterDataSQL.deleteByAssist(sqlAssist);
+        return employeeFilterDataSQL.deleteByAssist(sqlAssist)
+            .onComplete(r -> invalidate(code))
+            .map(changeListeners::fireAndReturn);
     }
 
     public Future<Long> insert(EmployeeFilterData employeeFilterData) {
+        return insertData(employeeFilterData).onComplete(r -> invalidate(employeeFilterData.getCode()));
+    }
+
+    private Future<Long> insertData(EmployeeFilterData employeeFilterData) {
         return employeeFilterDataSQL.insertNonEmptyGeneratedKeys(employeeFilterData, MySQLClient.LAST_INSERTED_ID);
     }
 
+    /**
+     * 按Id更新时可能修改了编码，无法确定影响的编码，全部失效
+     */
     public Future<Integer> update(EmployeeFilterData employeeFilterData) {
-        return employeeFilterDataSQL.updateNonEmptyById(employeeFilterData);
+        return employeeFilterDataSQL.updateNonEmptyById(employeeFilterData)
+            .onComplete(r -> invalidate(null))
+            .map(changeListeners::fireAndReturn);
     }
 
     public void setEmployeeFilterDataSQL(EmployeeFilterDataSQL employeeFilterDataSQL) {
         this.employeeFilterDataSQL = employeeFilterDataSQL;
     }
+
+    public void addChangeListener(Runnable listener) {
+        changeListeners.add(listener);
+    }
 }
@@ -67,7 +67,7 @@ public class EmployeeFilterService {
 
 
     public Future<SExpression> getSExpressionByCode(String code) {
-        return employeeFilterDataService.queryByCode(code).map(SExpressionUtil::parse);
+        return employeeFilterDataService.getSExpressionByCode(code);
     }
 
     public Future<List<Long>> insertTreeWithCheck(EmployeeFilterTreeVo treeVo) {
@@ -45,9 +45,9 @@ public class SExpressionUtil {
     }
 
 
+    private static final Pattern FUNCTION_PARAM_PATTERN = Pattern.compile("^([A-Za-z_][A-Za-z0-9_]*)\\[([1-9]+)]$");
     public static FunctionParamIndex parseIndex(String functionParam) {
-        Pattern pattern = Pattern.compile("^([A-Za-z_][A-Za-z0-9_]*)\\[([1-9]+)]$");
-        Matcher matcher = pattern.matcher(functionParam);
+        Matcher matcher = FUNCTION_PARAM_PATTERN.matcher(functionParam);
 
         if (!matcher.matches()) {
             throw new RuntimeException("解析functionParam失败，格式错误");
@@ -3,6 +3,7 @@ package com.whatswater.curd.project.sys.employeeRole;
 
 import cn.hutool.core.bean.BeanUtil;
 import cn.hutool.core.collection.CollectionUtil;
+import com.whatswater.curd.project.common.ChangeListeners;
 import com.whatswater.curd.project.common.CrudUtils;
 import com.whatswater.curd.project.common.CrudUtils.Tuple2;
 import com.whatswater.curd.project.common.Page;
@@ -21,6 +22,7 @@ import java.util.stream.Collectors;
 
 public class EmployeeRoleService {
     private EmployeeRoleSQL employeeRoleSQL;
+    private final ChangeListeners changeListeners = new ChangeListeners();
     private EmployeeService employeeService;
     private RoleService roleService;
 
@@ -142,15 +144,15 @@ public class EmployeeRoleService {
     }
 
     public Future<Long> insert(EmployeeRole employeeRole) {
-        return employeeRoleSQL.insertNonEmptyGeneratedKeys(employeeRole, MySQLClient.LAST_INSERTED_ID);
+        return employeeRoleSQL.insertNonEmptyGeneratedKeys(employeeRole, MySQLClient.LAST_INSERTED_ID).map(changeListeners::fireAndReturn);
     }
 
     public Future<Integer> update(EmployeeRole employeeRole) {
-        return employeeRoleSQL.updateNonEmptyById(employeeRole);
+        return employeeRoleSQL.updateNonEmptyById(employeeRole).map(changeListeners::fireAndReturn);
     }
 
     public Future<Integer> delete(long employeeRoleId) {
-        return employeeRoleSQL.deleteById(employeeRoleId);
+        return employeeRoleSQL.deleteById(employeeRoleId).map(changeListeners::fireAndReturn);
     }
 
     public void setEmployeeRoleSQL(EmployeeRoleSQL employeeRoleSQL) {
@@ -164,4 +166,8 @@ public class EmployeeRoleService {
     public void setRoleService(RoleService roleService) {
         this.roleService = roleService;
     }
+
+    public void addChangeListener(Runnable listener) {
+        changeListeners.add(listener);
+    }
 }
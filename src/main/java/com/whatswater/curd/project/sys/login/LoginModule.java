@@ -4,11 +4,14 @@ package com.whatswater.curd.project.sys.login;
 import com.whatswater.asyncmodule.Module;
 import com.whatswater.asyncmodule.ModuleInfo;
 import com.whatswater.curd.NewInstanceModuleFactory;
+import com.whatswater.curd.project.common.PasswordHasher;
 import com.whatswater.curd.project.sys.admin.AdminService;
 import com.whatswater.curd.project.sys.employee.EmployeeService;
 import com.whatswater.curd.project.sys.permission.UserTokenService;
 import com.whatswater.curd.project.sys.uid.UidGeneratorService;
 import com.zandero.rest.RestRouter;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.Router;
 import io.vertx.mysqlclient.MySQLPool;
 
@@ -19,12 +22,18 @@ public class LoginModule implements Module {
     EmployeeService employeeService;
     AdminService adminService;
     UserTokenService userTokenService;
+    MySQLPool pool;
+    Vertx vertx;
+    JsonObject config;
+    PasswordHasher passwordHasher;
+    boolean registered = false;
 
     @Override
     public void register(ModuleInfo moduleInfo) {
         moduleInfo.require(NewInstanceModuleFactory.MODULE_PATH_HTTP_SERVER, "router");
         moduleInfo.require(NewInstanceModuleFactory.MODULE_PATH_DATA_SOURCE, "datasource");
         moduleInfo.require(NewInstanceModuleFactory.MODULE_PATH_UID, "uidGeneratorService");
+        moduleInfo.require("init:global", "config", "vertx");
 
         moduleInfo.require(NewInstanceModuleFactory.MODULE_PATH_EMPLOYEE, "employeeService");
         moduleInfo.require(NewInstanceModuleFactory.MODULE_PATH_ADMIN, "adminService");
@@ -33,7 +42,6 @@ public class LoginModule implements Module {
 
     @Override
     public void onResolved(ModuleInfo consumer, ModuleInfo provider, String name, Object obj) {
-        MySQLPool pool = null;
         if ("datasource".equals(name)) {
             pool = (MySQLPool) obj;
         } else if ("router".equals(name)) {
@@ -45,6 +53,9 @@ public class LoginModule implements Module {
             if (loginService != null) {
                 loginService.setEmployeeService(employeeService);
             }
+            if (passwordHasher != null) {
+                employeeService.setPasswordHasher(passwordHasher);
+            }
         } else if ("adminService".equals(name)) {
             adminService = (AdminService) obj;
             if (loginService != null) {
@@ -55,6 +66,22 @@ public class LoginModule implements Module {
             if (loginService != null) {
                 loginService.setUserTokenService(userTokenService);
             }
+        } else if ("vertx".equals(name)) {
+            vertx = (Vertx) obj;
+        } else if ("config".equals(name)) {
+            config = (JsonObject) obj;
+        }
+
+        // 密码哈希在独立的工作线程池中执行，新建员工和登录校验共用
+        if (vertx != null && config != null && passwordHasher == null) {
+            passwordHasher = PasswordHasher.create(vertx, config);
+            if (loginService != null) {
+                loginService.setPasswordHasher(passwordHasher);
+                loginService.setAccountCacheTtl(config.getLong("login.accountCache.ttlSeconds", 30L));
+            }
+            if (employeeService != null) {
+                employeeService.setPasswordHasher(passwordHasher);
+            }
         }
         if (pool != null && uidGeneratorService != null && loginService == null) {
             loginService = new LoginService(pool, uidGeneratorService);
@@ -67,10 +94,15 @@ public class LoginModule implements Module {
             if (userTokenService != null) {
                 loginService.setUserTokenService(userTokenService);
             }
+            if (passwordHasher != null) {
+                loginService.setPasswordHasher(passwordHasher);
+                loginService.setAccountCacheTtl(config.getLong("login.accountCache.ttlSeconds", 30L));
+            }
             consumer.exportObject("loginService", loginService);
         }
 
-        if (router != null && loginService != null) {
+        if (router != null && loginService != null && !registered) {
+            registered = true;
             LoginRest rest = new LoginRest(loginService);
             RestRouter.register(router, rest);
         }
@@ -11,6 +11,7 @@ import com.whatswater.curd.project.sys.employee.EmployeeService;
 import com.whatswater.curd.project.sys.permission.UserToken;
 import io.vertx.core.Future;
 import io.vertx.core.http.Cookie;
+import io.vertx.core.http.CookieSameSite;
 import io.vertx.ext.web.RoutingContext;
 
 import javax.ws.rs.Consumes;
@@ -33,7 +34,7 @@ public class LoginRest {
     @Path("/employee")
     @Produces(CrudConst.APPLICATION_JSON_UTF8)
     @Consumes(MediaType.APPLICATION_JSON)
-    public Future<RestResult<LoginResult>> employeeLogin(Login login) {
+    public Future<RestResult<LoginResult>> employeeLogin(Login login, @Context RoutingContext rc) {
         Assert.assertNotNull(login, "登录信息不能为空");
         login.setAdminLogin(false);
 
@@ -45,6 +46,7 @@ public class LoginRest {
             loginResult.setName(employee.getName());
             loginResult.setUserId(String.valueOf(employee.getId()));
             loginResult.setToken(t.getToken());
+            addTokenCookie(rc, t.getToken());
             return loginResult;
         }).map(RestResult::success);
     }
@@ -53,7 +55,7 @@ public class LoginRest {
     @Path("/admin")
     @Produces(CrudConst.APPLICATION_JSON_UTF8)
     @Consumes(MediaType.APPLICATION_JSON)
-    public Future<RestResult<LoginResult>> adminLogin(Login login) {
+    public Future<RestResult<LoginResult>> adminLogin(Login login, @Context RoutingContext rc) {
         Assert.assertNotNull(login, "登录信息不能为空");
         Assert.assertNotEmpty(login.getEmployeeLoginName(), "用户登录名不能为空");
 
@@ -66,7 +68,20 @@ public class LoginRest {
             loginResult.setName(admin.getLoginName());
             loginResult.setUserId(admin.getLoginName());
             loginResult.setToken(t.getToken());
+            addTokenCookie(rc, t.getToken());
             return loginResult;
         }).map(RestResult::success);
     }
+
+    /**
+     * 其他接口仍从请求头X-Token取token，cookie只供不能设置请求头的EventSource使用
+     * HttpOnly、SameSite=Strict，页面脚本读不到，跨站请求也不会携带
+     */
+    private static void addTokenCookie(RoutingContext rc, String token) {
+        Cookie cookie = Cookie.cookie(CrudConst.COOKIE_TOKEN, token)
+            .setPath(CrudConst.PATH_SPLIT_CHAR)
+            .setHttpOnly(true)
+            .setSameSite(CookieSameSite.STRICT);
+        rc.response().addCookie(cookie);
+    }
 }
@@ -1,8 +1,11 @@
 package com.whatswater.curd.project.sys.login;
 
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.whatswater.curd.project.common.CrudUtils;
 import com.whatswater.curd.project.common.ErrorCodeEnum;
+import com.whatswater.curd.project.common.PasswordHasher;
 import com.whatswater.curd.project.sys.admin.AdminService;
 import com.whatswater.curd.project.sys.employee.Employee;
 import com.whatswater.curd.project.sys.employee.EmployeeService;
@@ -14,10 +17,15 @@ import io.vertx.core.Future;
 import io.vertx.ext.sql.assist.SQLExecute;
 import io.vertx.mysqlclient.MySQLPool;
 
+import java.time.Duration;
+
 public class LoginService {
     private EmployeeService employeeService;
     private AdminService adminService;
     private UserTokenService userTokenService;
+    private PasswordHasher passwordHasher;
+    // 登录名到账号的短期缓存，不存在的账号也缓存，登录高峰时同一账号只查询一次数据库
+    private Cache<String, Future<Employee>> accountCache = newAccountCache(30);
 
     private final UidGeneratorService uidGeneratorService;
     private final LoginSQL loginSQL;
@@ -38,7 +46,7 @@ public class LoginService {
                         return CrudUtils.failedFuture(ErrorCodeEnum.USER_PASSWORD_ERROR);
                     }
 
-                    return employeeService.getByLoginName(login.getEmployeeLoginName()).compose(employee -> {
+                    return getAccount(login.getEmployeeLoginName()).compose(employee -> {
                         if (employee == null) {
                             return CrudUtils.failedFuture(ErrorCodeEnum.USER_NOT_EXISTS);
                         }
@@ -50,7 +58,7 @@ public class LoginService {
                 });
             });
         } else {
-            Future<Employee> employeeFuture = employeeService.getByLoginName(login.getLoginName());
+            Future<Employee> employeeFuture = getAccount(login.getLoginName());
             return employeeFuture.compose(employee -> {
                 if (employee == null) {
                     return CrudUtils.failedFuture(ErrorCodeEnum.USER_NOT_EXISTS);
@@ -58,11 +66,12 @@ public class LoginService {
                 if (!EmployeeStatus.isEnabled(employee.getStatus())) {
                     return CrudUtils.failedFuture(ErrorCodeEnum.USER_DISABLED);
                 }
-//                boolean verifyResult = employeeService.verifyPassword(employee, login.getPassword());
-//                if (!verifyResult) {
-//                    return CrudUtils.failedFuture(ErrorCodeEnum.USER_PASSWORD_ERROR);
-//                }
-                return Future.succeededFuture(userTokenService.newToken(employee));
+                return verifyPassword(employee, login.getPassword()).compose(verifyResult -> {
+                    if (!verifyResult) {
+                        return CrudUtils.failedFuture(ErrorCodeEnum.USER_PASSWORD_ERROR);
+                    }
+                    return Future.succeededFuture(userTokenService.newToken(employee));
+                });
             });
         }
     }
@@ -71,8 +80,53 @@ public class LoginService {
 
     }
 
+    /**
+     * 密码哈希在config、vertx就绪后才设置，之前的登录请求在当前线程同步校验
+     */
+    private Future<Boolean> verifyPassword(Employee employee, String password) {
+        if (passwordHasher == null) {
+            return Future.succeededFuture(employeeService.verifyPassword(employee, password));
+        }
+        return passwordHasher.verify(employee.getPassword(), password);
+    }
+
+    /**
+     * 查询账号，结果缓存一小段时间；查询失败时不缓存
+     */
+    private Future<Employee> getAccount(String loginName) {
+        if (loginName == null) {
+            return Future.succeededFuture();
+        }
+        Future<Employee> future = accountCache.get(loginName, employeeService::getByLoginName);
+        future.onFailure(e -> accountCache.asMap().remove(loginName, future));
+        return future;
+    }
+
+    /**
+     * 员工新增、启用、停用、修改后调用，使缓存立即失效
+     */
+    public void invalidateAccounts() {
+        accountCache.invalidateAll();
+    }
+
+    private static Cache<String, Future<Employee>> newAccountCache(long ttlSeconds) {
+        return Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+            .maximumSize(10000)
+            .build();
+    }
+
+    public void setAccountCacheTtl(long ttlSeconds) {
+        this.accountCache = newAccountCache(ttlSeconds);
+    }
+
+    public void setPasswordHasher(PasswordHasher passwordHasher) {
+        this.passwordHasher = passwordHasher;
+    }
+
     public void setEmployeeService(EmployeeService employeeService) {
         this.employeeService = employeeService;
+        employeeService.addChangeListener(this::invalidateAccounts);
     }
 
     public void setAdminService(AdminService adminService) {
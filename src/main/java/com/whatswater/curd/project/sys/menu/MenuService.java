@@ -3,11 +3,13 @@ package com.whatswater.curd.project.sys.menu;
 
 import cn.hutool.core.collection.CollectionUtil;
 import cn.hutool.core.util.StrUtil;
+import com.whatswater.curd.project.common.ChangeListeners;
 import com.whatswater.curd.project.common.CrudUtils;
 import com.whatswater.curd.project.common.Page;
 import com.whatswater.curd.project.common.PageResult;
 import com.whatswater.curd.project.module.workflow.flowInstanceTaskRelation.FlowInstanceTaskRelation;
 import io.vertx.core.Future;
+import io.vertx.core.Promise;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.sql.assist.SQLExecute;
 import io.vertx.ext.sql.assist.SqlAssist;
@@ -16,14 +18,52 @@ import io.vertx.mysqlclient.MySQLPool;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 
 public class MenuService {
     private final MenuSQL menuSQL;
+    private final AtomicLong changeVersion = new AtomicLong();
+    private final AtomicReference<TreeLoad> treeLoad = new AtomicReference<>();
+    private final ChangeListeners changeListeners = new ChangeListeners();
 
     public MenuService(MySQLPool pool) {
         this.menuSQL = new MenuSQL(SQLExecute.createMySQL(pool));
+        this.changeListeners.add(changeVersion::incrementAndGet);
+    }
+
+    /**
+     * 获取内存中的菜单快照，菜单的增删改会递增变更版本，版本不一致时重新加载
+     * 并发的加载请求共用同一个Future
+     * @return 菜单快照
+     */
+    public Future<MenuTree> getMenuTree() {
+        long version = changeVersion.get();
+        TreeLoad load = treeLoad.get();
+        if (load != null && load.version == version) {
+            return load.future;
+        }
+
+        Promise<MenuTree> promise = Promise.promise();
+        TreeLoad newLoad = new TreeLoad(version, promise.future());
+        if (!treeLoad.compareAndSet(load, newLoad)) {
+            return getMenuTree();
+        }
+        SqlAssist sqlAssist = Menu.menuSqlAssist(MenuTypeEnum.MENU, MenuTypeEnum.DIRECTORY);
+        menuSQL.selectAll(sqlAssist).map(jsonList -> {
+            if (jsonList == null || jsonList.isEmpty()) {
+                return MenuTree.build(version, Collections.emptyList());
+            }
+            return MenuTree.build(version, jsonList.stream().map(Menu::new).collect(Collectors.toList()));
+        }).onComplete(ar -> {
+            if (ar.failed()) {
+                treeLoad.compareAndSet(newLoad, null);
+            }
+            promise.handle(ar);
+        });
+        return promise.future();
     }
 
     public Future<PageResult<Menu>> search(Page page, MenuQuery query) {
@@ -148,21 +188,33 @@ public class MenuService {
 
 
     public Future<Long> insert(Menu menu) {
-        return menuSQL.insertNonEmptyGeneratedKeys(menu, MySQLClient.LAST_INSERTED_ID);
+        return menuSQL.insertNonEmptyGeneratedKeys(menu, MySQLClient.LAST_INSERTED_ID).map(changeListeners::fireAndReturn);
     }
 
     public Future<Integer> update(Menu menu) {
-        return menuSQL.updateNonEmptyById(menu);
+        return menuSQL.updateNonEmptyById(menu).map(changeListeners::fireAndReturn);
     }
 
     public Future<Integer> delete(long id) {
-        return menuSQL.deleteById(id);
+        return menuSQL.deleteById(id).map(changeListeners::fireAndReturn);
     }
 
 
     public Future<List<Menu>> queryAllMenuList() {
-        SqlAssist sqlAssist = Menu.menuSqlAssist(MenuTypeEnum.MENU, MenuTypeEnum.DIRECTORY);
-        return menuSQL.selectAll(sqlAssist).map(list -> list.stream().map(Menu::new).collect(Collectors.toList()));
+        return getMenuTree().map(MenuTree::getMenuList);
+    }
+
+    /**
+     * 查询所有菜单，包含按钮
+     * @return 菜单列表
+     */
+    public Future<List<Menu>> queryAllMenu() {
+        return menuSQL.selectAll(new SqlAssist()).map(list -> {
+            if (list == null) {
+                return Collections.emptyList();
+            }
+            return list.stream().map(Menu::new).collect(Collectors.toList());
+        });
     }
 
     private static Menu mapOne(List<JsonObject> jsonList) {
@@ -172,4 +224,18 @@ public class MenuService {
 
         return new Menu(jsonList.get(0));
     }
+
+    public void addChangeListener(Runnable listener) {
+        changeListeners.add(listener);
+    }
+
+    private static final class TreeLoad {
+        private final long version;
+        private final Future<MenuTree> future;
+
+        private TreeLoad(long version, Future<MenuTree> future) {
+            this.version = version;
+            this.future = future;
+        }
+    }
 }
@@ -0,0 +1,132 @@
+package com.whatswater.curd.project.sys.menu;
+
+
+import cn.hutool.core.util.StrUtil;
+import com.whatswater.curd.project.common.RestResult;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.Json;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * 菜单（目录和菜单，不含按钮）的不可变内存快照
+ * 完整菜单和按权限过滤后的菜单都预先序列化为RestResult格式的JSON，附带ETag
+ * 过滤结果按权限集合缓存，权限相同的用户共用同一份
+ */
+public final class MenuTree {
+    private static final int MAX_VIEW_SIZE = 1024;
+
+    private final long version;
+    private final List<Menu> menuList;
+    private final Map<Long, Menu> idMap;
+    private final View fullView;
+    private final Map<Set<String>, View> viewMap = new ConcurrentHashMap<>();
+
+    private MenuTree(long version, List<Menu> menuList) {
+        this.version = version;
+        this.menuList = Collections.unmodifiableList(menuList);
+        this.idMap = new HashMap<>(menuList.size() * 2);
+        for (Menu menu: menuList) {
+            idMap.put(menu.getId(), menu);
+        }
+        this.fullView = new View(version, this.menuList);
+    }
+
+    public static MenuTree build(long version, List<Menu> menuList) {
+        return new MenuTree(version, new ArrayList<>(menuList));
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public List<Menu> getMenuList() {
+        return menuList;
+    }
+
+    /**
+     * 用户可见的菜单
+     * @param permissionSet 用户的权限集合，为null时不过滤
+     * @return 菜单视图
+     */
+    public View view(Set<String> permissionSet) {
+        if (permissionSet == null) {
+            return fullView;
+        }
+        View view = viewMap.get(permissionSet);
+        if (view != null) {
+            return view;
+        }
+        view = new View(version, filter(permissionSet));
+        if (viewMap.size() < MAX_VIEW_SIZE) {
+            View old = viewMap.putIfAbsent(permissionSet, view);
+            if (old != null) {
+                return old;
+            }
+        }
+        return view;
+    }
+
+    /**
+     * 未配置权限的菜单所有人可见；可见菜单的上级目录一并保留，保证前端能构建出完整的树
+     */
+    private List<Menu> filter(Set<String> permissionSet) {
+        Set<Long> visibleIds = new HashSet<>();
+        for (Menu menu: menuList) {
+            String permission = menu.getPermission();
+            if (StrUtil.isNotEmpty(permission) && !permissionSet.contains(permission)) {
+                continue;
+            }
+            Menu current = menu;
+            while (current != null && visibleIds.add(current.getId())) {
+                current = current.getParentId() == null ? null : idMap.get(current.getParentId());
+            }
+        }
+
+        List<Menu> result = new ArrayList<>(visibleIds.size());
+        for (Menu menu: menuList) {
+            if (visibleIds.contains(menu.getId())) {
+                result.add(menu);
+            }
+        }
+        return result;
+    }
+
+    public static final class View {
+        private final List<Menu> menuList;
+        private final Buffer body;
+        private final String etag;
+
+        private View(long version, List<Menu> menuList) {
+            this.menuList = Collections.unmodifiableList(menuList);
+            this.body = Json.encodeToBuffer(RestResult.success(this.menuList));
+
+            CRC32 crc32 = new CRC32();
+            crc32.update(body.getBytes());
+            this.etag = "\"" + version + "-" + Long.toHexString(crc32.getValue()) + "\"";
+        }
+
+        public List<Menu> getMenuList() {
+            return menuList;
+        }
+
+        /**
+         * RestResult格式的JSON，直接写入响应
+         */
+        public Buffer getBody() {
+            return body;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+    }
+}
@@ -4,14 +4,13 @@ package com.whatswater.curd.project.sys.organization;
 import cn.hutool.core.collection.CollectionUtil;
 import cn.hutool.core.util.StrUtil;
 import com.whatswater.curd.CrudConst;
+import com.whatswater.curd.project.common.ChangeListeners;
 import com.whatswater.curd.project.common.CrudUtils;
 import com.whatswater.curd.project.common.Page;
 import com.whatswater.curd.project.common.PageResult;
-import com.whatswater.curd.project.module.projectReward.projectRewardApply.ProjectRewardApply;
-import com.whatswater.curd.project.module.workflow.flowLink.FlowLink;
 import com.whatswater.sql.executor.ContextService;
 import io.vertx.core.Future;
-import io.vertx.core.json.JsonObject;
+import io.vertx.core.Promise;
 import io.vertx.ext.sql.assist.SQLExecute;
 import io.vertx.ext.sql.assist.SqlAssist;
 import io.vertx.mysqlclient.MySQLClient;
@@ -19,13 +18,54 @@ import io.vertx.mysqlclient.MySQLPool;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 public class OrganizationService implements ContextService<OrganizationService> {
     private final OrganizationSQL organizationSQL;
+    private final AtomicLong changeVersion = new AtomicLong();
+    private final AtomicReference<TreeLoad> treeLoad = new AtomicReference<>();
+    private final ChangeListeners changeListeners = new ChangeListeners();
 
     public OrganizationService(MySQLPool pool) {
         this.organizationSQL = new OrganizationSQL(SQLExecute.createMySQL(pool));
+        this.changeListeners.add(changeVersion::incrementAndGet);
+    }
+
+    /**
+     * 获取内存中的部门树，写操作会递增变更版本，版本不一致时重新加载整棵树
+     * 并发的加载请求共用同一个Future
+     * @return 部门树
+     */
+    public Future<OrganizationTree> getTree() {
+        long version = changeVersion.get();
+        TreeLoad load = treeLoad.get();
+        if (load != null && load.version == version) {
+            return load.future;
+        }
+
+        Promise<OrganizationTree> promise = Promise.promise();
+        TreeLoad newLoad = new TreeLoad(version, promise.future());
+        if (!treeLoad.compareAndSet(load, newLoad)) {
+            return getTree();
+        }
+        organizationSQL.selectAll(new SqlAssist()).map(jsonList -> {
+            if (jsonList == null || jsonList.isEmpty()) {
+                return OrganizationTree.build(version, Collections.emptyList());
+            }
+            return OrganizationTree.build(version, jsonList.stream().map(Organization::new).collect(Collectors.toList()));
+        }).onComplete(ar -> {
+            if (ar.failed()) {
+                treeLoad.compareAndSet(newLoad, null);
+            }
+            promise.handle(ar);
+        });
+        return promise.future();
+    }
+
+    public void addChangeListener(Runnable listener) {
+        changeListeners.add(listener);
     }
 
     public Future<PageResult<Organization>> search(Page page, OrganizationQuery query) {
@@ -43,64 +83,54 @@ public class OrganizationService implements ContextService<OrganizationService>
     }
 
     public Future<Organization> getById(Long organizationId) {
-        Future<JsonObject> result = organizationSQL.selectById(organizationId);
-        return result.map(json -> {
-            if (json == null) {
-                return null;
-            }
-            Organization organization = new Organization(json);
-            return organization;
-        });
+        if (organizationId == null) {
+            return Future.succeededFuture();
+        }
+        return getTree().map(tree -> tree.getById(organizationId));
     }
 
     public Future<List<Organization>> listByCode(List<String> organizationCodeList) {
-        SqlAssist sqlAssist = Organization.codeListSqlAssist(organizationCodeList);
-        return organizationSQL.selectAll(sqlAssist).map(jsonList -> {
-            if (CollectionUtil.isEmpty(jsonList)) {
-                return Collections.emptyList();
-            }
-            return jsonList.stream().map(Organization::new).collect(Collectors.toList());
-        });
+        if (CollectionUtil.isEmpty(organizationCodeList)) {
+            return Future.succeededFuture(Collections.emptyList());
+        }
+        return getTree().map(tree -> tree.listByCode(organizationCodeList));
     }
 
     public Future<List<Organization>> listTopLevelOrganization() {
-        SqlAssist sqlAssist = Organization.topLevelSqlAssist();
-        return organizationSQL.selectAll(sqlAssist).map(jsonList -> {
-            if (CollectionUtil.isEmpty(jsonList)) {
-                return Collections.emptyList();
-            }
-            return jsonList.stream().map(Organization::new).collect(Collectors.toList());
-        });
+        return getTree().map(OrganizationTree::listTopLevel);
     }
 
     public Future<Organization> getTopLevelOrganization(long organizationId) {
-        return this.getById(organizationId).compose(organization -> {
-            if (organization.getLevel() == 1) {
-                return Future.succeededFuture(organization);
-            }
-            String path = organization.getPath();
-            long topLevelOrganizationId = Long.parseLong(path.split(CrudConst.PATH_SPLIT_CHAR)[1]);
-            return this.getById(topLevelOrganizationId);
-        });
+        return getTree().map(tree -> tree.getTopLevel(organizationId));
+    }
+
+    /**
+     * 查询上级部门
+     * @param organizationId 部门Id
+     * @return 从顶级部门到直接上级的部门列表
+     */
+    public Future<List<Organization>> listAncestors(long organizationId) {
+        return getTree().map(tree -> tree.listAncestors(organizationId));
+    }
+
+    /**
+     * 查询部门及其所有下级部门的Id
+     * @param organizationId 部门Id
+     * @return 部门Id列表
+     */
+    public Future<List<Long>> listSubtreeIds(long organizationId) {
+        return getTree().map(tree -> tree.listSubtreeIds(organizationId));
     }
 
     public Future<List<Organization>> listByIds(List<Long> organizationIds) {
-        return organizationSQL.selectAll(Organization.idListSqlAssist(organizationIds)).map(list -> {
-            if (list == null || list.isEmpty()) {
-                return Collections.emptyList();
-            }
-            return list.stream().map(Organization::new).collect(Collectors.toList());
-        });
+        if (CollectionUtil.isEmpty(organizationIds)) {
+            return Future.succeededFuture(Collections.emptyList());
+        }
+        return getTree().map(tree -> tree.listByIds(organizationIds));
     }
 
-    public Future<Organization> getByCode(Long organizationId) {
-        Future<JsonObject> result = organizationSQL.selectById(organizationId);
-        return result.map(json -> {
-            if (json == null) {
-                return null;
-            }
-            return new Organization(json);
-        });
+    public Future<Organization> getByCode(String organizationCode) {
+        return getTree().map(tree -> tree.getByCode(organizationCode));
     }
 
     /**
@@ -109,14 +139,12 @@ public class OrganizationService implements ContextService<OrganizationService>
      * @return 子部门列表
      */
     public Future<List<OrganizationName>> queryChildrenName(long parentId) {
-        SqlAssist sqlAssist = Organization.parentIdSqlAssist(parentId);
-       return  organizationSQL.selectAll(sqlAssist).map(jsonList -> {
-            if (jsonList == null || jsonList.isEmpty()) {
-                return Collections.emptyList();
-            }
-
-            return jsonList.stream().map(Organization::new).map(OrganizationName::fromOrganization).collect(Collectors.toList());
-        });
+        return getTree().map(tree -> tree
+            .listChildren(parentId)
+            .stream()
+            .map(OrganizationName::fromOrganization)
+            .collect(Collectors.toList())
+        );
     }
 
     /**
@@ -125,8 +153,7 @@ public class OrganizationService implements ContextService<OrganizationService>
      * @return 子部门个数
      */
     public Future<Boolean> existsChildren(long parentId) {
-        SqlAssist sqlAssist = Organization.parentIdSqlAssist(parentId);
-        return organizationSQL.getCount(sqlAssist).map(value -> value != null && value > 0L);
+        return getTree().map(tree -> tree.hasChildren(parentId));
     }
 
 
@@ -139,10 +166,15 @@ public class OrganizationService implements ContextService<OrganizationService>
         if (organizationId == 0L) {
             return Future.succeededFuture(0);
         }
-        return existsChildren(organizationId).compose(r -> {
+        return getTree().compose(tree -> {
+            Organization current = tree.getById(organizationId);
+            boolean leaf = !tree.hasChildren(organizationId);
+            if (current != null && current.isLeaf() == leaf) {
+                return Future.succeededFuture(0);
+            }
             Organization organization = new Organization();
             organization.setId(organizationId);
-            organization.setLeaf(!r);
+            organization.setLeaf(leaf);
             return update(organization);
         });
     }
@@ -181,7 +213,7 @@ public class OrganizationService implements ContextService<OrganizationService>
     }
 
     public Future<Long> insert(Organization organization) {
-        return organizationSQL.insertNonEmptyGeneratedKeys(organization, MySQLClient.LAST_INSERTED_ID);
+        return organizationSQL.insertNonEmptyGeneratedKeys(organization, MySQLClient.LAST_INSERTED_ID).map(changeListeners::fireAndReturn);
     }
 
     public Future<Integer> updateWithCheck(OrganizationName organization) {
@@ -199,10 +231,20 @@ public class OrganizationService implements ContextService<OrganizationService>
     }
 
     public Future<Integer> update(Organization organization) {
-        return organizationSQL.updateNonEmptyById(organization);
+        return organizationSQL.updateNonEmptyById(organization).map(changeListeners::fireAndReturn);
     }
 
     public Future<Integer> delete(long id) {
-        return organizationSQL.deleteById(id);
+        return organizationSQL.deleteById(id).map(changeListeners::fireAndReturn);
+    }
+
+    private static final class TreeLoad {
+        private final long version;
+        private final Future<OrganizationTree> future;
+
+        private TreeLoad(long version, Future<OrganizationTree> future) {
+            this.version = version;
+            this.future = future;
+        }
     }
 }
@@ -0,0 +1,280 @@
+package com.whatswater.curd.project.sys.organization;
+
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 部门树的不可变内存快照
+ * 节点按先序遍历排列，任一部门的子树在数组中是连续区间[index, subtreeEnd)，子树查询即区间扫描
+ */
+public final class OrganizationTree {
+    private static final int[] NO_CHILDREN = new int[0];
+    public static final OrganizationTree EMPTY = build(-1L, Collections.emptyList());
+
+    private final long version;
+    private final Organization[] organizations;
+    private final int[] parentIndex;
+    private final int[] subtreeEnd;
+    private final int[][] childrenIndex;
+    private final Map<Long, Integer> idIndex;
+    private final Map<String, Integer> codeIndex;
+    private final int[] rootIndex;
+
+    private OrganizationTree(
+        long version,
+        Organization[] organizations,
+        int[] parentIndex,
+        int[] subtreeEnd,
+        int[][] childrenIndex,
+        Map<Long, Integer> idIndex,
+        Map<String, Integer> codeIndex,
+        int[] rootIndex
+    ) {
+        this.version = version;
+        this.organizations = organizations;
+        this.parentIndex = parentIndex;
+        this.subtreeEnd = subtreeEnd;
+        this.childrenIndex = childrenIndex;
+        this.idIndex = idIndex;
+        this.codeIndex = codeIndex;
+        this.rootIndex = rootIndex;
+    }
+
+    public static OrganizationTree build(long version, List<Organization> organizationList) {
+        Map<Long, Organization> byId = new HashMap<>(organizationList.size() * 2);
+        for (Organization organization: organizationList) {
+            if (organization.getId() != null) {
+                byId.put(organization.getId(), organization);
+            }
+        }
+
+        Map<Long, List<Organization>> childrenById = new HashMap<>();
+        List<Organization> roots = new ArrayList<>();
+        for (Organization organization: byId.values()) {
+            Long parentId = organization.getParentId();
+            if (parentId == null || parentId == 0L || !byId.containsKey(parentId) || parentId.equals(organization.getId())) {
+                roots.add(organization);
+            } else {
+                childrenById.computeIfAbsent(parentId, k -> new ArrayList<>()).add(organization);
+            }
+        }
+        Comparator<Organization> byIdComparator = Comparator.comparing(Organization::getId);
+        roots.sort(byIdComparator);
+        for (List<Organization> children: childrenById.values()) {
+            children.sort(byIdComparator);
+        }
+
+        int size = byId.size();
+        Organization[] organizations = new Organization[size];
+        int[] parentIndex = new int[size];
+        int[] subtreeEnd = new int[size];
+        int[][] childrenIndex = new int[size][];
+        Map<Long, Integer> idIndex = new HashMap<>(size * 2);
+        Map<String, Integer> codeIndex = new HashMap<>(size * 2);
+        int[] rootIndex = new int[roots.size()];
+
+        // 迭代先序遍历，栈元素为{节点, 父节点下标}，出栈后回填子树区间
+        int position = 0;
+        Deque<Object[]> stack = new ArrayDeque<>();
+        for (int i = roots.size() - 1; i >= 0; i--) {
+            stack.push(new Object[] { roots.get(i), -1 });
+        }
+        Deque<Integer> open = new ArrayDeque<>();
+        while (!stack.isEmpty()) {
+            Object[] frame = stack.pop();
+            if (frame[0] == null) {
+                int index = open.pop();
+                subtreeEnd[index] = position;
+                continue;
+            }
+            Organization organization = (Organization) frame[0];
+            int parent = (Integer) frame[1];
+            int index = position++;
+
+            organizations[index] = organization;
+            parentIndex[index] = parent;
+            idIndex.put(organization.getId(), index);
+            if (organization.getOrganizationCode() != null) {
+                codeIndex.put(organization.getOrganizationCode(), index);
+            }
+            open.push(index);
+
+            stack.push(new Object[] { null, index });
+            List<Organization> children = childrenById.getOrDefault(organization.getId(), Collections.emptyList());
+            for (int i = children.size() - 1; i >= 0; i--) {
+                stack.push(new Object[] { children.get(i), index });
+            }
+        }
+
+        // 环路上的节点不会被遍历到，直接丢弃
+        if (position < size) {
+            organizations = Arrays.copyOf(organizations, position);
+            parentIndex = Arrays.copyOf(parentIndex, position);
+            subtreeEnd = Arrays.copyOf(subtreeEnd, position);
+            childrenIndex = new int[position][];
+        }
+
+        int[] childCount = new int[position];
+        for (int i = 0; i < position; i++) {
+            if (parentIndex[i] >= 0) {
+                childCount[parentIndex[i]]++;
+            }
+        }
+        for (int i = 0; i < position; i++) {
+            childrenIndex[i] = childCount[i] == 0 ? NO_CHILDREN : new int[childCount[i]];
+            childCount[i] = 0;
+        }
+        int rootCount = 0;
+        for (int i = 0; i < position; i++) {
+            int parent = parentIndex[i];
+            if (parent >= 0) {
+                childrenIndex[parent][childCount[parent]++] = i;
+            } else {
+                rootIndex[rootCount++] = i;
+            }
+        }
+
+        return new OrganizationTree(version, organizations, parentIndex, subtreeEnd, childrenIndex, idIndex, codeIndex, rootIndex);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return organizations.length;
+    }
+
+    public Organization getById(long organizationId) {
+        Integer index = idIndex.get(organizationId);
+        return index == null ? null : organizations[index];
+    }
+
+    public Organization getByCode(String organizationCode) {
+        Integer index = codeIndex.get(organizationCode);
+        return index == null ? null : organizations[index];
+    }
+
+    public List<Organization> listByIds(List<Long> organizationIds) {
+        List<Organization> result = new ArrayList<>(organizationIds.size());
+        for (Long organizationId: organizationIds) {
+            Integer index = organizationId == null ? null : idIndex.get(organizationId);
+            if (index != null) {
+                result.add(organizations[index]);
+            }
+        }
+        return result;
+    }
+
+    public List<Organization> listByCode(List<String> organizationCodeList) {
+        List<Organization> result = new ArrayList<>(organizationCodeList.size());
+        for (String organizationCode: organizationCodeList) {
+            Integer index = organizationCode == null ? null : codeIndex.get(organizationCode);
+            if (index != null) {
+                result.add(organizations[index]);
+            }
+        }
+        return result;
+    }
+
+    public List<Organization> listTopLevel() {
+        List<Organization> result = new ArrayList<>(rootIndex.length);
+        for (int index: rootIndex) {
+            result.add(organizations[index]);
+        }
+        return result;
+    }
+
+    /**
+     * 直接子部门，parentId为0时返回顶级部门
+     */
+    public List<Organization> listChildren(long parentId) {
+        int[] indexes;
+        if (parentId == 0L) {
+            indexes = rootIndex;
+        } else {
+            Integer index = idIndex.get(parentId);
+            if (index == null) {
+                return Collections.emptyList();
+            }
+            indexes = childrenIndex[index];
+        }
+        List<Organization> result = new ArrayList<>(indexes.length);
+        for (int childIndex: indexes) {
+            result.add(organizations[childIndex]);
+        }
+        return result;
+    }
+
+    public boolean hasChildren(long parentId) {
+        if (parentId == 0L) {
+            return rootIndex.length > 0;
+        }
+        Integer index = idIndex.get(parentId);
+        return index != null && childrenIndex[index].length > 0;
+    }
+
+    /**
+     * 祖先部门，从顶级部门到直接上级，不含自身
+     */
+    public List<Organization> listAncestors(long organizationId) {
+        Integer index = idIndex.get(organizationId);
+        if (index == null) {
+            return Collections.emptyList();
+        }
+        List<Organization> result = new ArrayList<>();
+        for (int parent = parentIndex[index]; parent >= 0; parent = parentIndex[parent]) {
+            result.add(organizations[parent]);
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    public Organization getTopLevel(long organizationId) {
+        Integer index = idIndex.get(organizationId);
+        if (index == null) {
+            return null;
+        }
+        int current = index;
+        while (parentIndex[current] >= 0) {
+            current = parentIndex[current];
+        }
+        return organizations[current];
+    }
+
+    /**
+     * 部门及其所有下级部门的Id
+     */
+    public List<Long> listSubtreeIds(long organizationId) {
+        Integer index = idIndex.get(organizationId);
+        if (index == null) {
+            return Collections.emptyList();
+        }
+        int end = subtreeEnd[index];
+        List<Long> result = new ArrayList<>(end - index);
+        for (int i = index; i < end; i++) {
+            result.add(organizations[i].getId());
+        }
+        return result;
+    }
+
+    /**
+     * descendantId是否为ancestorId本身或其下级部门
+     */
+    public boolean isInSubtree(long ancestorId, long descendantId) {
+        Integer ancestor = idIndex.get(ancestorId);
+        Integer descendant = idIndex.get(descendantId);
+        if (ancestor == null || descendant == null) {
+            return false;
+        }
+        return descendant >= ancestor && descendant < subtreeEnd[ancestor];
+    }
+}
@@ -1,36 +1,193 @@
 package com.whatswater.curd.project.sys.permission;
 
 
+import cn.hutool.core.util.StrUtil;
+import com.whatswater.curd.project.common.CrudUtils;
 import com.whatswater.curd.project.sys.employee.Employee;
 import com.whatswater.curd.project.sys.employeeFilter.EmployeeFilterDataService;
-import com.whatswater.curd.project.sys.employeeFilter.SExpressionUtil;
+import com.whatswater.curd.project.sys.menu.Menu;
 import com.whatswater.curd.project.sys.menu.MenuService;
 import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 public class AuthService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AuthService.class);
+    // 权限过滤条件不依赖流程变量
+    private static final UserFetcherContext PERMISSION_FETCHER_CONTEXT = variableName -> Future.failedFuture("权限过滤条件不支持变量: " + variableName);
+    // 首个快照构建失败后的重试间隔，HTTP服务在首个快照成功前不会部署
+    private static final long INITIAL_RETRY_MILLIS = 5000;
+
     MenuService menuService;
     EmployeeFilterDataService employeeFilterDataService;
     UserFetcher userFetcher;
+    Vertx vertx;
+
+    private final AtomicReference<PermissionSnapshot> snapshot = new AtomicReference<>();
+    private final AtomicLong versionSequence = new AtomicLong();
+    private final AtomicBoolean rebuilding = new AtomicBoolean(false);
+    private volatile boolean dirty = false;
+    private final Promise<Void> readyPromise = Promise.promise();
+
+    /**
+     * 在内存中判断当前用户是否可以访问路径，不访问数据库，不加锁
+     * 权限快照尚未构建成功时拒绝访问，并重新触发构建
+     * @param userToken 用户token
+     * @param path 请求路径
+     * @return 是否有权限
+     */
+    public boolean hasPermission(UserToken userToken, String path) {
+        if (userToken.isAdmin()) {
+            return true;
+        }
+        PermissionSnapshot current = snapshot.get();
+        if (current == null) {
+            invalidate();
+            return false;
+        }
+        String permission = current.matchPermission(path);
+        if (permission == null) {
+            return true;
+        }
+        return permissionSetOf(userToken, current).contains(permission);
+    }
+
+    /**
+     * 登录时计算用户的权限集合
+     * @param userToken 用户token
+     */
+    public void refreshPermission(UserToken userToken) {
+        PermissionSnapshot current = snapshot.get();
+        if (current != null && userToken.getEmployee() != null) {
+            permissionSetOf(userToken, current);
+        }
+    }
+
+    /**
+     * 当前用户的权限集合，管理员返回null，表示不限制；权限快照尚未构建时返回空集合
+     * @param userToken 用户token
+     * @return 权限集合
+     */
+    public Set<String> getPermissionSet(UserToken userToken) {
+        if (userToken.isAdmin()) {
+            return null;
+        }
+        PermissionSnapshot current = snapshot.get();
+        if (current == null) {
+            invalidate();
+            return Collections.emptySet();
+        }
+        return permissionSetOf(userToken, current);
+    }
+
+    private Set<String> permissionSetOf(UserToken userToken, PermissionSnapshot current) {
+        if (userToken.getPermissionVersion() == current.getVersion()) {
+            return userToken.getPermissionSet();
+        }
+        Employee employee = userToken.getEmployee();
+        Set<String> permissionSet = employee == null ? Collections.emptySet() : current.permissionSetOf(employee.getId());
+        userToken.setPermissionSet(current.getVersion(), permissionSet);
+        return permissionSet;
+    }
+
+    /**
+     * 权限快照是否已构建，构建之前无法计算员工的权限
+     * @return 是否已构建
+     */
+    public boolean isReady() {
+        return snapshot.get() != null;
+    }
 
-    public Future<Boolean> authPermission(String url) {
-//        return menuService.getByUrl(url).compose(menu -> {
-//            String code = menu.getPermission();
-//            return employeeFilterDataService.queryByCode(code).map(SExpressionUtil::parse);
-//        }).compose(sExpression -> {
-//            return Future.succeededFuture(true);
-//        });
-        return Future.succeededFuture(true);
+    /**
+     * 首个权限快照构建成功后完成，HTTP服务在此之后才开始接受请求
+     * @return 就绪Future
+     */
+    public Future<Void> ready() {
+        return readyPromise.future();
+    }
+
+    /**
+     * 菜单、角色、角色成员、员工、组织、过滤条件变化时调用，异步重建权限快照；重建期间再次变更会在完成后再重建一次
+     */
+    public void invalidate() {
+        dirty = true;
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        dirty = false;
+        rebuildSnapshot().onComplete(ar -> {
+            if (ar.succeeded()) {
+                snapshot.set(ar.result());
+                readyPromise.tryComplete();
+            } else {
+                LOGGER.error("构建权限快照失败", ar.cause());
+                if (snapshot.get() == null && vertx != null) {
+                    vertx.setTimer(INITIAL_RETRY_MILLIS, id -> invalidate());
+                }
+            }
+            rebuilding.set(false);
+            if (dirty) {
+                invalidate();
+            }
+        });
+    }
+
+    private Future<PermissionSnapshot> rebuildSnapshot() {
+        final long version = versionSequence.incrementAndGet();
+        return menuService.queryAllMenu().compose(menuList -> {
+            UrlPermissionTrie.Builder builder = UrlPermissionTrie.builder();
+            Set<String> permissionCodes = new TreeSet<>();
+            for (Menu menu: menuList) {
+                if (StrUtil.isEmpty(menu.getUrl()) || StrUtil.isEmpty(menu.getPermission())) {
+                    continue;
+                }
+                builder.put(menu.getUrl(), menu.getPermission());
+                permissionCodes.add(menu.getPermission());
+            }
+
+            List<String> codeList = new ArrayList<>(permissionCodes);
+            List<Future<EmployeeIdSet>> idSetFutureList = new ArrayList<>(codeList.size());
+            for (String code: codeList) {
+                idSetFutureList.add(resolvePermissionEmployee(code));
+            }
+            return CrudUtils.all(idSetFutureList).map(idSetList -> {
+                Map<String, EmployeeIdSet> permissionEmployeeMap = new HashMap<>(codeList.size() * 2);
+                for (int i = 0; i < codeList.size(); i++) {
+                    permissionEmployeeMap.put(codeList.get(i), idSetList.get(i));
+                }
+                return new PermissionSnapshot(version, builder.build(), permissionEmployeeMap);
+            });
+        });
+    }
+
+    private Future<EmployeeIdSet> resolvePermissionEmployee(String code) {
+        return employeeFilterDataService.getSExpressionByCode(code)
+            .compose(sExpression -> userFetcher.resolveEmployeeIdSet(sExpression, PERMISSION_FETCHER_CONTEXT))
+            .recover(e -> {
+                // 过滤条件不存在或无法求值时，此权限不授予任何员工
+                LOGGER.warn("权限{}的过滤条件求值失败: {}", code, e.getMessage());
+                return Future.succeededFuture(EmployeeIdSet.EMPTY);
+            });
     }
 
     public Future<List<Employee>> queryEmployeeByFilterCode(UserFetcherContext userFetcherContext, String code) {
-        return employeeFilterDataService.queryByCode(code).map(SExpressionUtil::parse).compose(sExpression -> {
+        return employeeFilterDataService.getSExpressionByCode(code).compose(sExpression -> {
             return userFetcher.executeSExpression(sExpression, userFetcherContext);
         });
     }
 
+    public void setVertx(Vertx vertx) {
+        this.vertx = vertx;
+    }
+
     public void setMenuService(MenuService menuService) {
         this.menuService = menuService;
     }
@@ -0,0 +1,73 @@
+package com.whatswater.curd.project.sys.permission;
+
+
+import com.whatswater.curd.CrudConst;
+import com.whatswater.curd.project.common.BusinessException;
+import com.whatswater.curd.project.common.ErrorCodeEnum;
+import com.whatswater.curd.project.common.RestResult;
+import com.whatswater.curd.project.sys.menu.MenuTree;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.vertx.core.Handler;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.web.RoutingContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 当前用户可见的菜单，直接写出菜单快照中预先序列化的JSON
+ * 快照版本和内容不变时ETag不变，前端带If-None-Match请求时返回304
+ */
+public class AuthorizedMenuHandler implements Handler<RoutingContext> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AuthorizedMenuHandler.class);
+    public static final String PATH = "/sys/token/getAuthorizedMenuList";
+
+    private final UserTokenService userTokenService;
+
+    public AuthorizedMenuHandler(UserTokenService userTokenService) {
+        this.userTokenService = userTokenService;
+    }
+
+    @Override
+    public void handle(RoutingContext rc) {
+        HttpServerResponse response = rc.response();
+        userTokenService.getAuthorizedMenuView(UserToken.current()).onComplete(ar -> {
+            if (ar.failed()) {
+                writeFail(response, ar.cause());
+                return;
+            }
+            MenuTree.View view = ar.result();
+            response.putHeader(HttpHeaderNames.ETAG, view.getEtag());
+            response.putHeader(HttpHeaderNames.CACHE_CONTROL, "private, no-cache");
+            if (view.getEtag().equals(rc.request().getHeader(HttpHeaderNames.IF_NONE_MATCH))) {
+                response.setStatusCode(HttpResponseStatus.NOT_MODIFIED.code()).end();
+                return;
+            }
+            response.putHeader(HttpHeaderNames.CONTENT_TYPE, CrudConst.APPLICATION_JSON_UTF8).end(view.getBody());
+        });
+    }
+
+    private static void writeFail(HttpServerResponse response, Throwable e) {
+        String code = e instanceof BusinessException ? ((BusinessException) e).getCode() : CrudConst.FAIL_CODE;
+        JsonObject jsonObject = new JsonObject()
+            .put(RestResult.PROPERTY_CODE, code)
+            .put(RestResult.PROPERTY_MSG, e.getMessage())
+            .put(RestResult.PROPERTY_SUCCESS, false);
+        // 未登录、权限快照未就绪与PermissionCheckHandler一致分别返回401、503
+        HttpResponseStatus status;
+        if (ErrorCodeEnum.NOT_LOGIN.getErrCode().equals(code)) {
+            status = HttpResponseStatus.UNAUTHORIZED;
+        } else if (ErrorCodeEnum.PERMISSION_NOT_READY.getErrCode().equals(code)) {
+            status = HttpResponseStatus.SERVICE_UNAVAILABLE;
+            response.putHeader(HttpHeaderNames.RETRY_AFTER, "1");
+        } else {
+            status = HttpResponseStatus.INTERNAL_SERVER_ERROR;
+            LOGGER.error("查询菜单失败", e);
+        }
+        response
+            .setStatusCode(status.code())
+            .putHeader(HttpHeaderNames.CONTENT_TYPE, CrudConst.APPLICATION_JSON_UTF8)
+            .end(jsonObject.encode());
+    }
+}
@@ -0,0 +1,121 @@
+package com.whatswater.curd.project.sys.permission;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 不可变的有序员工Id集合，底层为排序去重后的long数组
+ * 交集、并集均为线性归并，用于过滤条件表达式的求值
+ */
+public final class EmployeeIdSet {
+    private static final long[] EMPTY_IDS = new long[0];
+    public static final EmployeeIdSet EMPTY = new EmployeeIdSet(EMPTY_IDS, 0);
+
+    private final long[] ids;
+    private final int size;
+
+    private EmployeeIdSet(long[] ids, int size) {
+        this.ids = ids;
+        this.size = size;
+    }
+
+    public static EmployeeIdSet of(Collection<Long> idCollection) {
+        if (idCollection == null || idCollection.isEmpty()) {
+            return EMPTY;
+        }
+        long[] ids = new long[idCollection.size()];
+        int i = 0;
+        for (Long id: idCollection) {
+            if (id != null) {
+                ids[i++] = id;
+            }
+        }
+        Arrays.sort(ids, 0, i);
+
+        int size = 0;
+        for (int j = 0; j < i; j++) {
+            if (size == 0 || ids[size - 1] != ids[j]) {
+                ids[size++] = ids[j];
+            }
+        }
+        return size == 0 ? EMPTY : new EmployeeIdSet(ids, size);
+    }
+
+    public EmployeeIdSet and(EmployeeIdSet other) {
+        if (this.size == 0 || other.size == 0) {
+            return EMPTY;
+        }
+        long[] result = new long[Math.min(this.size, other.size)];
+        int i = 0, j = 0, k = 0;
+        while (i < this.size && j < other.size) {
+            long a = this.ids[i];
+            long b = other.ids[j];
+            if (a == b) {
+                result[k++] = a;
+                i++;
+                j++;
+            } else if (a < b) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return k == 0 ? EMPTY : new EmployeeIdSet(result, k);
+    }
+
+    public EmployeeIdSet or(EmployeeIdSet other) {
+        if (this.size == 0) {
+            return other;
+        }
+        if (other.size == 0) {
+            return this;
+        }
+        long[] result = new long[this.size + other.size];
+        int i = 0, j = 0, k = 0;
+        while (i < this.size && j < other.size) {
+            long a = this.ids[i];
+            long b = other.ids[j];
+            if (a == b) {
+                result[k++] = a;
+                i++;
+                j++;
+            } else if (a < b) {
+                result[k++] = a;
+                i++;
+            } else {
+                result[k++] = b;
+                j++;
+            }
+        }
+        while (i < this.size) {
+            result[k++] = this.ids[i++];
+        }
+        while (j < other.size) {
+            result[k++] = other.ids[j++];
+        }
+        return new EmployeeIdSet(result, k);
+    }
+
+    public boolean contains(long id) {
+        return Arrays.binarySearch(ids, 0, size, id) >= 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public List<Long> toList() {
+        List<Long> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(ids[i]);
+        }
+        return list;
+    }
+}
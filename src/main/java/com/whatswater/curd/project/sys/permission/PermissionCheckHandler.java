@@ -3,11 +3,16 @@ package com.whatswater.curd.project.sys.permission;
 
 import cn.hutool.core.util.StrUtil;
 import com.whatswater.curd.CrudConst;
+import com.whatswater.sql.executor.Context;
+import io.netty.handler.codec.http.HttpHeaderNames;
 import io.netty.handler.codec.http.HttpResponseStatus;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.ext.web.RoutingContext;
 
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 
 public class PermissionCheckHandler implements Handler<RoutingContext> {
     private final UserTokenService userTokenService;
@@ -32,6 +37,12 @@ public class PermissionCheckHandler implements Handler<RoutingContext> {
             rc.next();
             return;
         }
+        // 监控抓取不携带用户token，由ShellModule按metrics.token校验
+        // EventSource不能设置请求头，由TodoInboxStreamHandler从cookie中取token校验
+        if ("/metrics".equals(path) || "/business/todo/inbox/stream".equals(path)) {
+            rc.next();
+            return;
+        }
 
         String token = rc.request().getHeader(CrudConst.HEADER_TOKEN);
         if (StrUtil.isEmpty(token)) {
@@ -58,18 +69,46 @@ public class PermissionCheckHandler implements Handler<RoutingContext> {
             rc.end();
             return;
         }
-        Future<Boolean> checkResult = authService.authPermission(path);
-        checkResult.onSuccess(r -> {
-            if (!r) {
-                rc.response().setStatusCode(HttpResponseStatus.UNAUTHORIZED.code());
-                rc.end();
-                return;
-            }
-
-            userToken.setUpdateTime(current);
-            rc.data().put(CrudConst.RC_KEY_USER_TOKEN, userToken);
-            rc.next();
-        });
+        if (!userToken.isAdmin() && !authService.isReady()) {
+            // 权限快照构建之前无法判断权限，返回503由前端稍后重试，不按未登录处理
+            authService.invalidate();
+            rc.response().setStatusCode(HttpResponseStatus.SERVICE_UNAVAILABLE.code());
+            rc.response().putHeader(HttpHeaderNames.RETRY_AFTER, "1");
+            rc.end();
+            return;
+        }
+        if (!authService.hasPermission(userToken, path)) {
+            rc.response().setStatusCode(HttpResponseStatus.UNAUTHORIZED.code());
+            rc.end();
+            return;
+        }
+
+        userToken.setUpdateTime(current);
+        rc.data().put(CrudConst.RC_KEY_USER_TOKEN, userToken);
+
+        // 上下文绑定到请求的Vert.x上下文，后续处理器及其中任何异步回调都能取到
+        Context context = Context.EMPTY
+            .put(Context.TRACE_ID, traceId(rc))
+            .put(UserToken.CONTEXT_KEY, userToken)
+            .put(Context.WRITE_MARK, new AtomicBoolean());
+        context.bind();
+        context.run(rc::next);
+    }
+
+    private static String traceId(RoutingContext rc) {
+        String traceId = rc.request().getHeader(CrudConst.HEADER_TRACE_ID);
+        if (StrUtil.isNotEmpty(traceId)) {
+            return traceId;
+        }
+        return Long.toHexString(ThreadLocalRandom.current().nextLong());
+    }
+
+    /**
+     * 首个权限快照构建成功后完成，在此之前不应部署HTTP服务
+     * @return 就绪Future
+     */
+    public Future<Void> ready() {
+        return authService.ready();
     }
 
     public void setAuthService(AuthService authService) {
@@ -5,22 +5,37 @@ import cn.hutool.core.util.ReflectUtil;
 import com.whatswater.asyncmodule.Module;
 import com.whatswater.asyncmodule.ModuleInfo;
 import com.whatswater.curd.NewInstanceModuleFactory;
-import com.whatswater.curd.project.sys.employee.EmployeeSQL;
+import com.whatswater.curd.project.sys.employee.EmployeeService;
 import com.whatswater.curd.project.sys.employeeFilter.EmployeeFilterDataService;
+import com.whatswater.curd.project.sys.employeeRole.EmployeeRoleService;
 import com.whatswater.curd.project.sys.menu.MenuService;
+import com.whatswater.curd.project.sys.organization.OrganizationService;
+import com.whatswater.curd.project.sys.role.RoleService;
 import com.zandero.rest.RestRouter;
-import io.vertx.ext.sql.assist.SQLExecute;
+import io.vertx.core.Vertx;
 import io.vertx.ext.web.Router;
 import io.vertx.mysqlclient.MySQLPool;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 public class PermissionModule implements Module {
+    // 权限快照依赖的服务，全部就绪后构建首个快照
+    private static final List<String> SNAPSHOT_DEPENDENCIES = Arrays.asList(
+        "menuService", "employeeFilterDataService", "employeeService", "roleService", "employeeRoleService", "organizationService"
+    );
+
     UserTokenService userTokenService = new UserTokenService();
     UserFetcher userFetcher = new UserFetcher();
     AuthService authService = new AuthService();
+    private final Set<String> resolvedDependencies = new HashSet<>();
 
     @Override
     public void register(ModuleInfo moduleInfo) {
         authService.setUserFetcher(userFetcher);
+        userTokenService.setAuthService(authService);
         PermissionCheckHandler permissionCheckHandler = new PermissionCheckHandler(userTokenService);
         permissionCheckHandler.setAuthService(authService);
 
@@ -29,6 +44,7 @@ public class PermissionModule implements Module {
         moduleInfo.exportObject("userTokenService", userTokenService);
         moduleInfo.exportObject("authService", authService);
 
+        moduleInfo.require("init:global", "vertx");
         moduleInfo.require(NewInstanceModuleFactory.MODULE_PATH_DATA_SOURCE, "datasource");
         moduleInfo.require(NewInstanceModuleFactory.MODULE_PATH_MENU, "menuService");
         moduleInfo.require(NewInstanceModuleFactory.MODULE_PATH_HTTP_SERVER, "router");
@@ -42,21 +58,62 @@ public class PermissionModule implements Module {
 
     @Override
     public void onResolved(ModuleInfo consumer, ModuleInfo provider, String name, Object obj) {
-        if ("datasource".equals(name)) {
+        if ("vertx".equals(name)) {
+            authService.setVertx((Vertx) obj);
+        } else if ("datasource".equals(name)) {
             MySQLPool pool = (MySQLPool) obj;
         } else if ("menuService".equals(name)) {
             MenuService menuService = (MenuService) obj;
             userTokenService.setMenuService(menuService);
+            authService.setMenuService(menuService);
         } else if ("router".equals(name)) {
-            UserTokenRest userTokenRest = new UserTokenRest(userTokenService);
-            RestRouter.register((Router) obj, userTokenRest);
+            Router router = (Router) obj;
+            // 菜单直接写出预先序列化的JSON并处理ETag，不经过rest.vertx的结果序列化
+            AuthorizedMenuHandler authorizedMenuHandler = new AuthorizedMenuHandler(userTokenService);
+            router.post(AuthorizedMenuHandler.PATH).handler(authorizedMenuHandler);
+            router.get(AuthorizedMenuHandler.PATH).handler(authorizedMenuHandler);
+            UserTokenRest userTokenRest = new UserTokenRest();
+            RestRouter.register(router, userTokenRest);
         } else if ("employeeFilterDataService".equals(name)) {
-            authService.setEmployeeFilterDataService((EmployeeFilterDataService) obj);
+            EmployeeFilterDataService employeeFilterDataService = (EmployeeFilterDataService) obj;
+            authService.setEmployeeFilterDataService(employeeFilterDataService);
         } else if ("employeeService".equals(name)
             || "roleService".equals(name)
             || "employeeRoleService".equals(name)
             || "organizationService".equals(name)) {
             ReflectUtil.setFieldValue(userFetcher, name, obj);
         }
+
+        // roleService、employeeRoleService会在注册时和数据源就绪后各导出一次，监听器只注册一次
+        if (SNAPSHOT_DEPENDENCIES.contains(name) && resolvedDependencies.add(name)) {
+            addInvalidateListener(name, obj);
+            if (resolvedDependencies.size() == SNAPSHOT_DEPENDENCIES.size()) {
+                authService.invalidate();
+            }
+        }
+    }
+
+    /**
+     * 员工、角色、角色成员、组织变化时先使UserFetcher的叶子缓存失效，再重建权限快照，重建时不会读到旧的叶子结果
+     */
+    private void addInvalidateListener(String name, Object obj) {
+        if ("menuService".equals(name)) {
+            ((MenuService) obj).addChangeListener(authService::invalidate);
+        } else if ("employeeFilterDataService".equals(name)) {
+            ((EmployeeFilterDataService) obj).addChangeListener(authService::invalidate);
+        } else if ("employeeService".equals(name)) {
+            // 员工的组织、状态变化影响按组织求值的权限
+            ((EmployeeService) obj).addChangeListener(userFetcher::invalidate);
+            ((EmployeeService) obj).addChangeListener(authService::invalidate);
+        } else if ("roleService".equals(name)) {
+            ((RoleService) obj).addChangeListener(userFetcher::invalidate);
+            ((RoleService) obj).addChangeListener(authService::invalidate);
+        } else if ("employeeRoleService".equals(name)) {
+            ((EmployeeRoleService) obj).addChangeListener(userFetcher::invalidate);
+            ((EmployeeRoleService) obj).addChangeListener(authService::invalidate);
+        } else if ("organizationService".equals(name)) {
+            ((OrganizationService) obj).addChangeListener(userFetcher::invalidate);
+            ((OrganizationService) obj).addChangeListener(authService::invalidate);
+        }
     }
 }
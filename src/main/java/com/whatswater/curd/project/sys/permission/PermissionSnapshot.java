@@ -0,0 +1,45 @@
+package com.whatswater.curd.project.sys.permission;
+
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 权限判断所需数据的不可变快照：url权限前缀树，以及每个权限编码允许的员工Id集合
+ */
+public final class PermissionSnapshot {
+    private final long version;
+    private final UrlPermissionTrie urlPermissionTrie;
+    private final Map<String, EmployeeIdSet> permissionEmployeeMap;
+
+    public PermissionSnapshot(long version, UrlPermissionTrie urlPermissionTrie, Map<String, EmployeeIdSet> permissionEmployeeMap) {
+        this.version = version;
+        this.urlPermissionTrie = urlPermissionTrie;
+        this.permissionEmployeeMap = permissionEmployeeMap;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String matchPermission(String path) {
+        return urlPermissionTrie.match(path);
+    }
+
+    /**
+     * 计算员工拥有的权限编码集合
+     * @param employeeId 员工Id
+     * @return 权限编码集合
+     */
+    public Set<String> permissionSetOf(long employeeId) {
+        Set<String> permissionSet = new HashSet<>();
+        for (Map.Entry<String, EmployeeIdSet> entry: permissionEmployeeMap.entrySet()) {
+            if (entry.getValue().contains(employeeId)) {
+                permissionSet.add(entry.getKey());
+            }
+        }
+        return Collections.unmodifiableSet(permissionSet);
+    }
+}
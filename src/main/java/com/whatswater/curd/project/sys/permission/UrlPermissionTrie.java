@@ -0,0 +1,82 @@
+package com.whatswater.curd.project.sys.permission;
+
+
+import cn.hutool.core.util.StrUtil;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 按路径段组织的url -> 权限编码前缀树，构建后不可变，可在多个线程中无锁读取
+ * 查找时返回与路径匹配的最长前缀上配置的权限
+ */
+public final class UrlPermissionTrie {
+    private final Node root;
+
+    private UrlPermissionTrie(Node root) {
+        this.root = root;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 查找路径对应的权限编码
+     * @param path 请求路径
+     * @return 权限编码，没有配置权限时返回null
+     */
+    public String match(String path) {
+        Node node = root;
+        String permission = node.permission;
+        int start = 0;
+        int length = path.length();
+        while (start < length) {
+            if (path.charAt(start) == '/') {
+                start++;
+                continue;
+            }
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+            node = node.children.get(path.substring(start, end));
+            if (node == null) {
+                break;
+            }
+            if (node.permission != null) {
+                permission = node.permission;
+            }
+            start = end;
+        }
+        return permission;
+    }
+
+    private static final class Node {
+        final Map<String, Node> children = new HashMap<>();
+        String permission;
+    }
+
+    public static final class Builder {
+        private final Node root = new Node();
+
+        public Builder put(String url, String permission) {
+            if (StrUtil.isEmpty(url) || StrUtil.isEmpty(permission)) {
+                return this;
+            }
+            Node node = root;
+            for (String segment: url.split("/")) {
+                if (segment.isEmpty()) {
+                    continue;
+                }
+                node = node.children.computeIfAbsent(segment, key -> new Node());
+            }
+            node.permission = permission;
+            return this;
+        }
+
+        public UrlPermissionTrie build() {
+            return new UrlPermissionTrie(root);
+        }
+    }
+}
@@ -19,125 +19,153 @@ import com.whatswater.curd.project.sys.role.RoleService;
 import io.vertx.core.Future;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 public class UserFetcher {
+    // 变量替换后的参数各不相同时叶子结果可能很多，超过上限后不再缓存新的叶子
+    private static final int MAX_LEAF_COUNT = 10000;
+
     private EmployeeService employeeService;
     private OrganizationService organizationService;
     private RoleService roleService;
     private EmployeeRoleService employeeRoleService;
+    private final AtomicLong changeVersion = new AtomicLong();
+    private final AtomicReference<LeafCache> leafCache = new AtomicReference<>(new LeafCache(0L));
+
+    /**
+     * 员工、组织、角色、角色成员变化时调用，之后的求值不再使用已缓存的叶子结果
+     */
+    public void invalidate() {
+        changeVersion.incrementAndGet();
+    }
 
     public Future<List<Employee>> executeSExpression(SExpression sExpression, UserFetcherContext userFetcherContext) {
-        return executeSExpression(sExpression, userFetcherContext, null);
+        return resolveEmployeeIdSet(sExpression, userFetcherContext).compose(idSet -> employeeService.listByIds(idSet.toList()));
     }
 
-    public Future<List<Employee>> executeSExpression(SExpression sExpression, UserFetcherContext userFetcherContext, List<Employee> initialList) {
+    /**
+     * 将表达式求值为员工Id集合，叶子节点并发查询，and/or在内存中做集合交并
+     * @param sExpression 表达式
+     * @param userFetcherContext 变量上下文
+     * @return 员工Id集合
+     */
+    public Future<EmployeeIdSet> resolveEmployeeIdSet(SExpression sExpression, UserFetcherContext userFetcherContext) {
         if (sExpression instanceof LogicNode) {
             LogicNode logicNode = (LogicNode) sExpression;
             int logicType = logicNode.getLogicType();
-            if (SExpressionUtil.LOGIC_TYPE_AND == logicType) {
-                List<SExpression> sExpressionList = logicNode.getChildren();
-
-                List<SameFutureBuilder<List<Employee>>> taskBuilderList = sExpressionList.stream().map(expr ->
-                    (SameFutureBuilder<List<Employee>>)list -> {
-                        List<Employee> startList = initialList;
-                        if (CollectionUtil.isNotEmpty(list)) {
-                            startList = list.get(list.size() - 1);
-                        }
-                        return executeSExpression(expr, userFetcherContext, startList);
-                    }
-                ).collect(Collectors.toList());
-
-                return CrudUtils.serialTask(taskBuilderList).map(list -> {
-                    if (CollectionUtil.isEmpty(list)) {
-                        return Collections.emptyList();
-                    }
-                    return list.get(list.size() - 1);
-                });
-            } else if (SExpressionUtil.LOGIC_TYPE_OR == logicType) {
-                List<SExpression> sExpressionList = logicNode.getChildren();
-                List<SameFutureBuilder<List<Employee>>> taskBuilderList = sExpressionList.stream().map(expr ->
-                    (SameFutureBuilder<List<Employee>>)list -> {
-                        return executeSExpression(expr, userFetcherContext, initialList);
-                    }
-                ).collect(Collectors.toList());
-
-                return CrudUtils.serialTask(taskBuilderList).map(list -> {
-                    if (CollectionUtil.isNotEmpty(list)) {
-                        return Collections.emptyList();
-                    }
-                    List<Employee> ret = new ArrayList<>();
-                    for (List<Employee> item: list) {
-                        ret.addAll(item);
-                    }
-                    return ret;
-                });
-            } else {
-                return Future.succeededFuture(Collections.emptyList());
+            List<SExpression> children = logicNode.getChildren();
+            if (CollectionUtil.isEmpty(children)) {
+                return Future.succeededFuture(EmployeeIdSet.EMPTY);
             }
-        } else if (sExpression instanceof FunctionCall) {
-            FunctionCall functionCall = (FunctionCall) sExpression;
-            return replaceParamVariable(userFetcherContext, functionCall.getParams()).compose(params -> {
-                if (EmployeeFilterDataValueTypeEnum.EMPLOYEE.getFunctionName().equals(functionCall.getFunctionName())) {
-                    if (CollectionUtil.isEmpty(initialList)) {
-                        return fetchEmployeeByLoginName(params);
-                    } else {
-                        return filterEmployeeByLoginName(initialList, params);
-                    }
-                } else if (EmployeeFilterDataValueTypeEnum.ORGANIZATION.getFunctionName().equals(functionCall.getFunctionName())) {
-                    if (CollectionUtil.isEmpty(initialList)) {
-                        return fetchEmployeeByOrganization(params);
-                    } else {
-                        return filterEmployeeByOrganization(initialList, params);
-                    }
-                } else if (EmployeeFilterDataValueTypeEnum.ROLE.getFunctionName().equals(functionCall.getFunctionName())) {
-                    if (CollectionUtil.isEmpty(initialList)) {
-                        return fetchEmployeeByRole(params);
+            if (SExpressionUtil.LOGIC_TYPE_AND != logicType && SExpressionUtil.LOGIC_TYPE_OR != logicType) {
+                return Future.succeededFuture(EmployeeIdSet.EMPTY);
+            }
+
+            List<Future<EmployeeIdSet>> childFutureList = children
+                .stream()
+                .map(child -> resolveEmployeeIdSet(child, userFetcherContext))
+                .collect(Collectors.toList());
+            return CrudUtils.all(childFutureList).map(childResultList -> {
+                EmployeeIdSet result = childResultList.get(0);
+                for (int i = 1; i < childResultList.size(); i++) {
+                    EmployeeIdSet childResult = childResultList.get(i);
+                    if (SExpressionUtil.LOGIC_TYPE_AND == logicType) {
+                        result = result.and(childResult);
                     } else {
-                        return filterEmployeeByRole(initialList, params);
+                        result = result.or(childResult);
                     }
-                } else {
-                    return Future.succeededFuture(Collections.emptyList());
                 }
+                return result;
             });
+        } else if (sExpression instanceof FunctionCall) {
+            FunctionCall functionCall = (FunctionCall) sExpression;
+            return replaceParamVariable(userFetcherContext, functionCall.getParams())
+                .compose(params -> resolveLeaf(functionCall.getFunctionName(), params));
+        } else {
+            return Future.succeededFuture(EmployeeIdSet.EMPTY);
+        }
+    }
+
+    /**
+     * 叶子结果按函数名和参数缓存在当前版本中，invalidate后的首次求值换用新的版本，旧版本的结果不再使用
+     * 查询失败的结果不缓存
+     */
+    private Future<EmployeeIdSet> resolveLeaf(String functionName, List<String> params) {
+        LeafCache cache = currentLeafCache();
+        List<Object> key = Arrays.asList(functionName, params);
+        Future<EmployeeIdSet> cached = cache.idSets.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        Future<EmployeeIdSet> future = fetchLeaf(functionName, params);
+        if (cache.idSets.size() >= MAX_LEAF_COUNT) {
+            return future;
+        }
+        cached = cache.idSets.putIfAbsent(key, future);
+        if (cached != null) {
+            return cached;
+        }
+        future.onFailure(e -> cache.idSets.remove(key, future));
+        return future;
+    }
+
+    private Future<EmployeeIdSet> fetchLeaf(String functionName, List<String> params) {
+        if (EmployeeFilterDataValueTypeEnum.EMPLOYEE.getFunctionName().equals(functionName)) {
+            return fetchEmployeeIdByLoginName(params);
+        } else if (EmployeeFilterDataValueTypeEnum.ORGANIZATION.getFunctionName().equals(functionName)) {
+            return fetchEmployeeIdByOrganization(params);
+        } else if (EmployeeFilterDataValueTypeEnum.ROLE.getFunctionName().equals(functionName)) {
+            return fetchEmployeeIdByRole(params);
         } else {
-            return Future.succeededFuture(Collections.emptyList());
+            return Future.succeededFuture(EmployeeIdSet.EMPTY);
         }
     }
 
+    private LeafCache currentLeafCache() {
+        long version = changeVersion.get();
+        LeafCache cache = leafCache.get();
+        if (cache.version == version) {
+            return cache;
+        }
+        LeafCache newCache = new LeafCache(version);
+        return leafCache.compareAndSet(cache, newCache) ? newCache : leafCache.get();
+    }
+
     public Future<List<Employee>> fetchEmployeeByLoginName(List<String> employeeLoginNameList) {
         return employeeService.listByLoginName(employeeLoginNameList);
     }
 
-    public Future<List<Employee>> filterEmployeeByLoginName(List<Employee> employeeList, List<String> employeeLoginNameList) {
-        List<Employee> remain = employeeList.stream().filter(employee -> employeeLoginNameList.contains(employee.getLoginName())).collect(Collectors.toList());
-        return Future.succeededFuture(remain);
+    public Future<EmployeeIdSet> fetchEmployeeIdByLoginName(List<String> employeeLoginNameList) {
+        return fetchEmployeeByLoginName(employeeLoginNameList).map(UserFetcher::toIdSet);
     }
 
     public Future<List<Employee>> fetchEmployeeByRole(List<String> roleCodeList) {
-        return roleService.listByCode(roleCodeList)
-            .compose(roleList -> {
-                List<Long> roleIds = roleList.stream().map(Role::getId).collect(Collectors.toList());
-                return employeeRoleService.listByRoleIds(roleIds);
-            }).compose(employeeRoles -> {
-                List<Long> userIds = employeeRoles.stream().map(EmployeeRole::getUserId).distinct().collect(Collectors.toList());
-                return employeeService.listByIds(userIds);
-            });
+        return fetchEmployeeIdByRole(roleCodeList).compose(idSet -> employeeService.listByIds(idSet.toList()));
     }
 
-    public Future<List<Employee>> filterEmployeeByRole(List<Employee> employeeList, List<String> roleCodeList) {
+    public Future<EmployeeIdSet> fetchEmployeeIdByRole(List<String> roleCodeList) {
         return roleService.listByCode(roleCodeList)
             .compose(roleList -> {
                 List<Long> roleIds = roleList.stream().map(Role::getId).collect(Collectors.toList());
                 return employeeRoleService.listByRoleIds(roleIds);
             }).map(employeeRoles -> {
-                Set<Long> userIds = employeeRoles.stream().map(EmployeeRole::getUserId).collect(Collectors.toSet());
-                return employeeList.stream().filter(employee -> userIds.contains(employee.getId())).collect(Collectors.toList());
+                List<Long> userIds = employeeRoles.stream().map(EmployeeRole::getUserId).collect(Collectors.toList());
+                return EmployeeIdSet.of(userIds);
             });
     }
 
+    /**
+     * 查询直属于这些部门的员工，不包含下级部门的员工
+     * @param organizationCodeList 部门编码列表
+     * @return 员工列表
+     */
     public Future<List<Employee>> fetchEmployeeByOrganization(List<String> organizationCodeList) {
         return organizationService
             .listByCode(organizationCodeList)
@@ -147,15 +175,35 @@ public class UserFetcher {
             });
     }
 
-    public Future<List<Employee>> filterEmployeeByOrganization(List<Employee> employeeList, List<String> organizationCodeList) {
+    /**
+     * 查询部门及其所有下级部门的员工，下级部门由内存部门树的区间扫描得到
+     * @param organizationCodeList 部门编码列表
+     * @return 员工列表
+     */
+    public Future<List<Employee>> fetchEmployeeByOrganizationTree(List<String> organizationCodeList) {
         return organizationService
-            .listByCode(organizationCodeList)
-            .map(orgList -> {
-                Set<Long> orgIds = orgList.stream().map(Organization::getId).collect(Collectors.toSet());
-                return employeeList.stream().filter(employee -> orgIds.contains(employee.getOrganizationId())).collect(Collectors.toList());
+            .getTree()
+            .compose(tree -> {
+                Set<Long> orgIds = new LinkedHashSet<>();
+                for (Organization organization: tree.listByCode(organizationCodeList)) {
+                    orgIds.addAll(tree.listSubtreeIds(organization.getId()));
+                }
+                return employeeService.listByOrganization(new ArrayList<>(orgIds));
             });
     }
 
+    public Future<EmployeeIdSet> fetchEmployeeIdByOrganization(List<String> organizationCodeList) {
+        return fetchEmployeeByOrganization(organizationCodeList).map(UserFetcher::toIdSet);
+    }
+
+    public Future<EmployeeIdSet> fetchEmployeeIdByOrganizationTree(List<String> organizationCodeList) {
+        return fetchEmployeeByOrganizationTree(organizationCodeList).map(UserFetcher::toIdSet);
+    }
+
+    private static EmployeeIdSet toIdSet(List<Employee> employeeList) {
+        return EmployeeIdSet.of(employeeList.stream().map(Employee::getId).collect(Collectors.toList()));
+    }
+
     static Pattern pattern = Pattern.compile("^\\$\\{(.+)}$");
     public static Future<List<String>> replaceParamVariable(UserFetcherContext userFetcherContext, List<String> params) {
         if (CollectionUtil.isEmpty(params)) {
@@ -189,4 +237,13 @@ public class UserFetcher {
     public void setEmployeeRoleService(EmployeeRoleService employeeRoleService) {
         this.employeeRoleService = employeeRoleService;
     }
+
+    private static final class LeafCache {
+        private final long version;
+        private final ConcurrentMap<List<Object>, Future<EmployeeIdSet>> idSets = new ConcurrentHashMap<>();
+
+        private LeafCache(long version) {
+            this.version = version;
+        }
+    }
 }
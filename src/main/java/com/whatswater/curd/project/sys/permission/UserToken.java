@@ -3,14 +3,32 @@ package com.whatswater.curd.project.sys.permission;
 
 import com.whatswater.curd.project.sys.admin.Admin;
 import com.whatswater.curd.project.sys.employee.Employee;
+import com.whatswater.sql.executor.Context;
+
+import java.util.Collections;
+import java.util.Set;
 
 public class UserToken {
+    public static final Context.Key<UserToken> CONTEXT_KEY = new Context.Key<>("userToken");
+
     private Admin admin;
     private Employee employee;
     private String token;
     private long updateTime;
     private long ttl;
     private String salt;
+    // 权限快照版本及该版本下计算出的权限编码集合，快照更新后重新计算
+    private volatile long permissionVersion = -1L;
+    private volatile Set<String> permissionSet = Collections.emptySet();
+
+    /**
+     * 当前请求上下文中的登录信息
+     * @return 未登录或不在请求上下文中时返回null
+     */
+    public static UserToken current() {
+        Context context = Context.current();
+        return context == null ? null : context.get(CONTEXT_KEY);
+    }
 
     public boolean isExpired(long current) {
         if (ttl < 0) {
@@ -92,6 +110,19 @@ public class UserToken {
         this.ttl = ttl;
     }
 
+    public long getPermissionVersion() {
+        return permissionVersion;
+    }
+
+    public Set<String> getPermissionSet() {
+        return permissionSet;
+    }
+
+    public void setPermissionSet(long permissionVersion, Set<String> permissionSet) {
+        this.permissionSet = permissionSet;
+        this.permissionVersion = permissionVersion;
+    }
+
     public String getSalt() {
         return salt;
     }
@@ -1,30 +1,30 @@
 package com.whatswater.curd.project.sys.permission;
 
 import com.whatswater.curd.CrudConst;
+import com.whatswater.curd.project.common.CrudUtils;
+import com.whatswater.curd.project.common.ErrorCodeEnum;
 import com.whatswater.curd.project.common.RestResult;
 import com.whatswater.curd.project.sys.admin.Admin;
 import com.whatswater.curd.project.sys.employee.Employee;
-import com.whatswater.curd.project.sys.menu.Menu;
 import io.vertx.core.Future;
 
 import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
-import java.util.List;
 
 @Path("/sys/token")
 public class UserTokenRest {
-    private final UserTokenService userTokenService;
-
-    public UserTokenRest(UserTokenService userTokenService) {
-        this.userTokenService = userTokenService;
+    public UserTokenRest() {
     }
 
     @POST
     @Path("/loginInfo")
     @Produces(CrudConst.APPLICATION_JSON_UTF8)
     @Consumes(MediaType.APPLICATION_JSON)
-    public Future<RestResult<UserToken>> loginInfo(@HeaderParam(CrudConst.HEADER_TOKEN) String token) {
-        UserToken userToken = userTokenService.getUserToken(token);
+    public Future<RestResult<UserToken>> loginInfo() {
+        UserToken userToken = UserToken.current();
+        if (userToken == null) {
+            return CrudUtils.failedFuture(ErrorCodeEnum.NOT_LOGIN);
+        }
         UserToken newToken = new UserToken();
 
         newToken.setAdmin(userToken.getAdmin());
@@ -34,12 +34,4 @@ public class UserTokenRest {
 
         return Future.succeededFuture(RestResult.success(userToken));
     }
-
-    @POST
-    @Path("/getAuthorizedMenuList")
-    @Produces(CrudConst.APPLICATION_JSON_UTF8)
-    @Consumes(MediaType.APPLICATION_JSON)
-    public Future<RestResult<List<Menu>>> get(@HeaderParam(CrudConst.HEADER_TOKEN) String token) {
-        return userTokenService.getAuthorizedMenuList(token).map(RestResult::success);
-    }
 }
@@ -3,11 +3,13 @@ package com.whatswater.curd.project.sys.permission;
 
 import cn.hutool.core.util.StrUtil;
 import com.whatswater.curd.project.common.CrudUtils;
+import com.whatswater.curd.project.common.ErrorCodeEnum;
 import com.whatswater.curd.project.sys.admin.Admin;
 import com.whatswater.curd.project.sys.admin.AdminService;
 import com.whatswater.curd.project.sys.employee.Employee;
 import com.whatswater.curd.project.sys.menu.Menu;
 import com.whatswater.curd.project.sys.menu.MenuService;
+import com.whatswater.curd.project.sys.menu.MenuTree;
 import io.vertx.core.Future;
 import org.apache.commons.codec.digest.DigestUtils;
 
@@ -19,6 +21,7 @@ public class UserTokenService {
     public static final int RANDOM_SALT_LENGTH = 20;
     private final Map<String, UserToken> userTokenMap = new ConcurrentHashMap<>();
     private MenuService menuService;
+    private AuthService authService;
 
     /**
      * 获取当前token的用户信息
@@ -29,23 +32,28 @@ public class UserTokenService {
         return userTokenMap.get(token);
     }
 
-    public Future<List<Menu>> getAuthorizedMenuList(String token) {
-        UserToken userToken = userTokenMap.get(token);
-        if (userToken.isAdmin()) {
-            return menuService.queryAllMenuList();
+    /**
+     * 当前登录用户可见的菜单列表
+     */
+    public Future<List<Menu>> getAuthorizedMenuList() {
+        return getAuthorizedMenuView(UserToken.current()).map(MenuTree.View::getMenuList);
+    }
+
+    /**
+     * 用户可见的菜单，从菜单快照中按权限集合过滤，相同权限集合的结果共用
+     * 权限快照构建之前员工的权限集合为空，只能看到公共菜单，此时返回PERMISSION_NOT_READY，不返回不完整的菜单
+     * @param userToken 用户token
+     * @return 菜单视图
+     */
+    public Future<MenuTree.View> getAuthorizedMenuView(UserToken userToken) {
+        if (userToken == null) {
+            return CrudUtils.failedFuture(ErrorCodeEnum.NOT_LOGIN);
+        }
+        if (!userToken.isAdmin() && !authService.isReady()) {
+            authService.invalidate();
+            return CrudUtils.failedFuture(ErrorCodeEnum.PERMISSION_NOT_READY);
         }
-        // 此处需要串行执行
-        final Employee employee = userToken.getEmployee();
-//        return menuService.queryAllMenuList().compose(menuList -> {
-//            for (Menu menu: menuList) {
-//                String permission = menu.getPermission();
-//                if (StrUtil.isEmpty(permission)) {
-//
-//                }
-//                permissionFilterService.queryByPermission(permission);
-//            }
-//        });
-        return menuService.queryAllMenuList();
+        return menuService.getMenuTree().map(tree -> tree.view(authService.getPermissionSet(userToken)));
     }
 
 
@@ -62,6 +70,7 @@ public class UserTokenService {
     public UserToken newToken(Admin admin, Employee employee) {
         UserToken userToken = UserToken.newAdminToken(admin, employee, StrUtil.EMPTY, AdminService.ttl);
         resetToken(userToken);
+        authService.refreshPermission(userToken);
 
         userTokenMap.put(userToken.getToken(), userToken);
         return userToken;
@@ -70,6 +79,7 @@ public class UserTokenService {
     public UserToken newToken(Employee employee) {
         UserToken userToken = UserToken.newEmployeeToken(employee, StrUtil.EMPTY, AdminService.ttl);
         resetToken(userToken);
+        authService.refreshPermission(userToken);
 
         // 如何更新最近时间
         userTokenMap.put(userToken.getToken(), userToken);
@@ -104,5 +114,9 @@ public class UserTokenService {
         this.menuService = menuService;
     }
 
+    public void setAuthService(AuthService authService) {
+        this.authService = authService;
+    }
+
 
 }
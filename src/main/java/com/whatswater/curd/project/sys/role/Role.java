@@ -9,8 +9,9 @@ import io.vertx.ext.sql.assist.TableId;
 
 import java.util.List;
 
-@Table("sys_role")
+@Table(Role.TABLE_NAME)
 public class Role {
+    public static final String TABLE_NAME = "sys_role";
     public static final String COLUMN_ID = "id";
     public static final String COLUMN_CODE = "code";
     public static final String COLUMN_ROLE_NAME = "role_name";
@@ -5,6 +5,7 @@ import com.whatswater.asyncmodule.Module;
 import com.whatswater.asyncmodule.ModuleInfo;
 import com.whatswater.curd.NewInstanceModuleFactory;
 import com.whatswater.curd.project.sys.employeeRole.EmployeeRoleService;
+import com.whatswater.sql.executor.Executor;
 import com.zandero.rest.RestRouter;
 import io.vertx.ext.sql.assist.SQLExecute;
 import io.vertx.ext.web.Router;
@@ -16,7 +17,7 @@ public class RoleModule implements Module {
 
     @Override
     public void register(ModuleInfo moduleInfo) {
-        moduleInfo.require(NewInstanceModuleFactory.MODULE_PATH_DATA_SOURCE, "datasource");
+        moduleInfo.require(NewInstanceModuleFactory.MODULE_PATH_DATA_SOURCE, "datasource", "dbExecutor");
         moduleInfo.require(NewInstanceModuleFactory.MODULE_PATH_HTTP_SERVER, "router");
         moduleInfo.require(NewInstanceModuleFactory.MODULE_PATH_EMPLOYEE_ROLE, "employeeRoleService");
 
@@ -29,6 +30,10 @@ public class RoleModule implements Module {
             MySQLPool pool = (MySQLPool) obj;
             roleService.setRoleSQL(new RoleSQL(SQLExecute.createMySQL(pool)));
             consumer.exportObject("roleService", roleService);
+        } else if ("dbExecutor".equals(name)) {
+            Executor executor = (Executor) obj;
+            roleService.setExecutor(executor);
+            roleService.addChangeListener(() -> executor.tableModified(Role.TABLE_NAME));
         } else if ("router".equals(name)) {
             router = (Router) obj;
             RoleRest rest = new RoleRest(roleService);
@@ -2,11 +2,15 @@ package com.whatswater.curd.project.sys.role;
 
 
 import cn.hutool.core.collection.CollectionUtil;
+import com.whatswater.curd.project.common.ChangeListeners;
 import com.whatswater.curd.project.common.CrudUtils;
+import com.whatswater.curd.project.common.ExecutorSQL;
 import com.whatswater.curd.project.common.Page;
 import com.whatswater.curd.project.common.PageResult;
 import com.whatswater.curd.project.sys.employee.Employee;
 import com.whatswater.curd.project.sys.employeeRole.EmployeeRoleService;
+import com.whatswater.sql.dialect.Dialect.SQL;
+import com.whatswater.sql.executor.Executor;
 import io.vertx.core.Future;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.sql.assist.SQLExecute;
@@ -20,7 +24,10 @@ import java.util.stream.Collectors;
 
 public class RoleService {
     private RoleSQL roleSQL;
+    // 按编码的查询经过dbExecutor，可以使用缓存、合并和读写分离
+    private Executor executor;
     private EmployeeRoleService employeeRoleService;
+    private final ChangeListeners changeListeners = new ChangeListeners();
 
     public RoleService() {
 
@@ -67,22 +74,15 @@ public class RoleService {
         if (CollectionUtil.isEmpty(roleCodeList)) {
             return Future.succeededFuture(Collections.emptyList());
         }
-        SqlAssist sqlAssist = Role.codeListSqlAssist(roleCodeList);
-        return roleSQL.selectAll(sqlAssist).map(jsonList -> {
-            if (jsonList == null || jsonList.isEmpty()) {
-                return Collections.emptyList();
-            }
-            return jsonList.stream().map(Role::new).collect(Collectors.toList());
-        });
+        SQL sql = ExecutorSQL.select(Role.TABLE_NAME).andIn(Role.COLUMN_CODE, roleCodeList).toSql();
+        return executor.query(sql).map(rowSet -> ExecutorSQL.toJsonList(rowSet).stream().map(Role::new).collect(Collectors.toList()));
     }
 
     public Future<Role> getByCode(String code) {
-        SqlAssist sqlAssist = Role.codeSqlAssist(code);
-        return roleSQL.selectAll(sqlAssist).map(jsonList -> {
-            if (jsonList == null || jsonList.isEmpty()) {
-                return null;
-            }
-            return new Role(jsonList.get(0));
+        SQL sql = ExecutorSQL.select(Role.TABLE_NAME).andEq(Role.COLUMN_CODE, code).setRowSize(1).toSql();
+        return executor.query(sql).map(rowSet -> {
+            JsonObject json = ExecutorSQL.first(rowSet);
+            return json == null ? null : new Role(json);
         });
     }
 
@@ -106,7 +106,7 @@ public class RoleService {
             if (dbRole != null) {
                 return Future.failedFuture("角色名称重复");
             }
-            return roleSQL.insertNonEmptyGeneratedKeys(role, MySQLClient.LAST_INSERTED_ID);
+            return insert(role);
         });
     }
 
@@ -152,22 +152,33 @@ public class RoleService {
     }
 
     public Future<Long> insert(Role role) {
-        return roleSQL.insertNonEmptyGeneratedKeys(role, MySQLClient.LAST_INSERTED_ID);
+        return roleSQL.insertNonEmptyGeneratedKeys(role, MySQLClient.LAST_INSERTED_ID).map(changeListeners::fireAndReturn);
     }
 
     public Future<Integer> update(Role role) {
-        return roleSQL.updateNonEmptyById(role);
+        return roleSQL.updateNonEmptyById(role).map(changeListeners::fireAndReturn);
     }
 
     public Future<Integer> delete(long roleId) {
-        return roleSQL.deleteById(roleId);
+        return roleSQL.deleteById(roleId).map(changeListeners::fireAndReturn);
     }
 
     public void setRoleSQL(RoleSQL roleSQL) {
         this.roleSQL = roleSQL;
     }
 
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
     public void setEmployeeRoleService(EmployeeRoleService employeeRoleService) {
         this.employeeRoleService = employeeRoleService;
     }
+
+    /**
+     * 角色编码、名称变更后调用，用于使按角色编码求值的权限快照失效
+     */
+    public void addChangeListener(Runnable listener) {
+        changeListeners.add(listener);
+    }
 }
@@ -15,14 +15,22 @@ import io.vertx.mysqlclient.MySQLPool;
 import java.time.LocalDate;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
-// 可能的改进
-// bufferMap的写和buffer的更新操作单独放在一个线程中
 public class SerialService {
-    private Map<String, TopicBuffer> bufferMap = new TreeMap<>();
+    private static final int DEFAULT_STEP = 100;
+    private static final int MAX_STEP = 100_000;
+    private static final int MAX_ALLOC_RETRY = 10;
+    // 使用超过号段的1/5时预取下一个号段
+    private static final int PREFETCH_RATIO_DENOMINATOR = 5;
+    // 号段在此时间内耗尽则步长翻倍，超过两倍时间则减半
+    private static final long SEGMENT_DURATION_MILLIS = TimeUnit.MINUTES.toMillis(15);
+
+    private final Map<String, TopicBuffer> bufferMap = new ConcurrentHashMap<>();
     private final SerialSQL serialSQL;
 
     public SerialService(MySQLPool pool) {
@@ -80,27 +88,23 @@ public class SerialService {
     }
 
     public Future<Integer> nextSerial(String topic) {
-        TopicBuffer buffer = bufferMap.get(topic);
-        if (buffer != null && (!buffer.isExhaust())) {
-            int nextValue = buffer.nextValue();
-            if (nextValue > 0) {
-                return Future.succeededFuture(nextValue);
-            } else {
-                bufferMap.remove(topic);
-            }
-        }
+        return bufferMap.computeIfAbsent(topic, TopicBuffer::new).nextValue();
+    }
 
-        return createOrAllocNewTopicBuffer(topic).compose(topicBuffer -> {
-            int nextValue = topicBuffer.nextValue();
-            if (nextValue > 0) {
-                bufferMap.put(topic, topicBuffer);
-                return Future.succeededFuture(nextValue);
-            }
-            return nextSerial(topic);
-        });
+    /**
+     * 从数据库分配一个号段，CAS更新失败时重试
+     * @param topic 主题
+     * @param step 期望的号段长度，小于数据库中配置的步长时使用配置的步长
+     * @return 号段
+     */
+    public Future<Segment> allocSegment(String topic, int step) {
+        return allocSegment(topic, step, 0);
     }
 
-    public Future<TopicBuffer> createOrAllocNewTopicBuffer(String topic) {
+    private Future<Segment> allocSegment(String topic, int step, int retry) {
+        if (retry >= MAX_ALLOC_RETRY) {
+            return Future.failedFuture("分配流水号失败，topic: " + topic);
+        }
         return getByTopic(topic).compose(serial -> {
             if (serial != null) {
                 return Future.succeededFuture(serial);
@@ -111,47 +115,151 @@ public class SerialService {
             newSerial.setExpireDate(LocalDate.now().plusDays(7));
             newSerial.setFilterValue(30);
             newSerial.setCurrentValue(0);
-            newSerial.setStep(100);
+            newSerial.setStep(DEFAULT_STEP);
             return insert(newSerial).map(id -> {
                 newSerial.setId(id);
                 return newSerial;
             });
         }).compose(serial -> {
-            Integer step = serial.getStep();
-            Integer newValue = serial.currentValue + step;
+            int allocStep = Math.max(step, serial.getStep());
+            int oldValue = serial.getCurrentValue();
+            int newValue = oldValue + allocStep;
 
-            return allocNewSerial(topic, serial.currentValue, newValue).compose(cnt -> {
+            return allocNewSerial(topic, oldValue, newValue).compose(cnt -> {
                 if (cnt == 0) {
-                    return createOrAllocNewTopicBuffer(topic);
+                    return allocSegment(topic, step, retry + 1);
                 }
-                TopicBuffer topicBuffer = new TopicBuffer();
-                topicBuffer.serial = serial;
-                topicBuffer.start = serial.currentValue;
-                topicBuffer.currentValue = new AtomicInteger(topicBuffer.start);
-                topicBuffer.max = newValue;
-                return Future.succeededFuture(topicBuffer);
+                return Future.succeededFuture(new Segment(oldValue, newValue, serial.getStep()));
             });
-        });
+        }, e -> allocSegment(topic, step, retry + 1));
+    }
+
+    /**
+     * 号段，start开，max闭
+     */
+    static final class Segment {
+        private final int start;
+        private final int max;
+        private final int baseStep;
+        private final AtomicInteger currentValue;
+        // 切换为当前号段的时间，预取后尚未使用时为0
+        private volatile long switchTime;
+
+        Segment(int start, int max, int baseStep) {
+            this.start = start;
+            this.max = max;
+            this.baseStep = baseStep;
+            this.currentValue = new AtomicInteger(start);
+        }
+
+        int nextValue() {
+            int value = currentValue.incrementAndGet();
+            return value <= max ? value : -1;
+        }
+
+        int size() {
+            return max - start;
+        }
+
+        int used() {
+            return Math.min(currentValue.get(), max) - start;
+        }
+
+        /**
+         * 记录切换为当前号段的时间，只记录第一次，并发切换时不会覆盖
+         */
+        void switchIn(long now) {
+            if (switchTime == 0) {
+                switchTime = now;
+            }
+        }
+
+        long switchTime() {
+            return switchTime;
+        }
     }
 
-    // start开，max闭
-    private static class TopicBuffer {
-        private Serial serial;
-        private int start;
-        private AtomicInteger currentValue;
-        private int max;
-        private TopicBuffer next;
+    /**
+     * 根据上一个号段开始使用到预取下一个号段的时间调整号段长度
+     * @param step 当前步长
+     * @param segment 正在使用的号段，为null时不调整
+     * @param now 当前时间
+     * @return 新的步长
+     */
+    static int nextStep(int step, Segment segment, long now) {
+        if (segment == null) {
+            return step;
+        }
+        long duration = now - segment.switchTime;
+        int currentStep = Math.max(step, segment.size());
+        if (duration < SEGMENT_DURATION_MILLIS) {
+            return Math.min(currentStep * 2, MAX_STEP);
+        } else if (duration >= SEGMENT_DURATION_MILLIS * 2) {
+            return Math.max(currentStep / 2, segment.baseStep);
+        }
+        return currentStep;
+    }
 
-        public boolean isExhaust() {
-            return currentValue.get() > max;
+    /**
+     * 双缓冲：当前号段使用超过阈值时异步预取下一个号段，并发的预取请求共用一次数据库分配
+     * 号段长度根据消耗速度调整，消耗过快翻倍，过慢减半，不小于数据库中配置的步长
+     */
+    private final class TopicBuffer {
+        private final String topic;
+        private final AtomicReference<Segment> current = new AtomicReference<>();
+        private Future<Segment> next;
+        private int step;
+
+        TopicBuffer(String topic) {
+            this.topic = topic;
         }
 
-        public int nextValue() {
-            int value = currentValue.get();
-            while (value < max && currentValue.compareAndSet(value, ++value)) {
-                return value + 1;
+        Future<Integer> nextValue() {
+            Segment segment = current.get();
+            if (segment != null) {
+                int value = segment.nextValue();
+                if (value > 0) {
+                    if (segment.used() * PREFETCH_RATIO_DENOMINATOR >= segment.size()) {
+                        prefetch(segment);
+                    }
+                    return Future.succeededFuture(value);
+                }
             }
-            return -1;
+
+            return prefetch(segment).compose(nextSegment -> {
+                // 预取的号段可能放置了一段时间，从切换时开始计算消耗速度
+                nextSegment.switchIn(System.currentTimeMillis());
+                if (current.compareAndSet(segment, nextSegment)) {
+                    clearNext(nextSegment);
+                }
+                return nextValue();
+            });
+        }
+
+        private synchronized Future<Segment> prefetch(Segment segment) {
+            if (segment != current.get()) {
+                // 已切换到新号段
+                return Future.succeededFuture(current.get());
+            }
+            if (next != null) {
+                return next;
+            }
+
+            int nextStep = nextStep(segment);
+            Future<Segment> future = allocSegment(topic, nextStep).onFailure(e -> clearNext(null));
+            next = future;
+            return future;
+        }
+
+        private synchronized void clearNext(Segment loaded) {
+            if (loaded == null || (next != null && next.succeeded() && next.result() == loaded)) {
+                next = null;
+            }
+        }
+
+        private int nextStep(Segment segment) {
+            step = SerialService.nextStep(step, segment, System.currentTimeMillis());
+            return step;
         }
     }
 }
@@ -1,37 +1,60 @@
 package com.whatswater.curd.shell;
 
+import cn.hutool.core.util.StrUtil;
 import com.whatswater.asyncmodule.AbstractModuleAdaptor;
+import com.whatswater.async.type.AwaitFallback;
 import com.whatswater.asyncmodule.util.Key;
+import com.whatswater.curd.NewInstanceModuleFactory;
+import com.whatswater.curd.datasource.SqlMetrics;
+import com.whatswater.sql.executor.CachingExecutor;
+import com.whatswater.sql.executor.Executor;
+import io.netty.handler.codec.http.HttpResponseStatus;
 import io.vertx.core.Vertx;
+import io.vertx.core.http.HttpHeaders;
+import io.vertx.core.json.JsonObject;
 import io.vertx.ext.shell.ShellServer;
 import io.vertx.ext.shell.command.CommandResolver;
 import io.vertx.ext.shell.term.TermServer;
 import io.vertx.ext.web.Router;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 
 
 public class ShellModule extends AbstractModuleAdaptor {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShellModule.class);
     public static final Key<Router> routerKey = new Key<>("NewInstance:com.whatswater.curd.HttpServerModule:0.1", "router");
     public static final Key<Vertx> vertxKey = new Key<>("init:global", "vertx");
+    public static final Key<JsonObject> configKey = new Key<>("init:global", "config");
+    public static final Key<SqlMetrics> sqlMetricsKey = new Key<>(NewInstanceModuleFactory.MODULE_PATH_DATA_SOURCE, "sqlMetrics");
+    public static final Key<Executor> dbExecutorKey = new Key<>(NewInstanceModuleFactory.MODULE_PATH_DATA_SOURCE, "dbExecutor");
 
     @Override
     public void init() {
-        require(routerKey, vertxKey);
+        require(routerKey, vertxKey, configKey, sqlMetricsKey, dbExecutorKey);
     }
 
     @Override
     public void resolve() {
-        if (isAllResolved(routerKey, vertxKey)) {
+        if (isAllResolved(routerKey, vertxKey, configKey, sqlMetricsKey, dbExecutorKey)) {
             Router router = getResolved(routerKey);
             Vertx vertx = getResolved(vertxKey);
+            JsonObject config = getResolved(configKey);
+            SqlMetrics sqlMetrics = getResolved(sqlMetricsKey);
+            Executor dbExecutor = getResolved(dbExecutorKey);
 
-            createShellService(vertx, router);
+            createShellService(vertx, router, sqlMetrics);
+            createMetricsEndpoint(router, sqlMetrics, dbExecutor, config.getString("metrics.token"));
             export();
         }
     }
 
-    public void createShellService(Vertx vertx, Router router) {
+    public void createShellService(Vertx vertx, Router router, SqlMetrics sqlMetrics) {
         ModuleCommandPack moduleCommandPack = new ModuleCommandPack();
-        moduleCommandPack.resolver(vertx, result -> {
+        SqlStatsCommandPack sqlStatsCommandPack = new SqlStatsCommandPack(sqlMetrics);
+        moduleCommandPack.resolver(vertx, result -> sqlStatsCommandPack.resolver(vertx, sqlResult -> {
             ShellServer shellServer = ShellServer.create(vertx);
             Router shellRouter = Router.router(vertx);
             router.route("/shell/*").subRouter(shellRouter);
@@ -39,7 +62,56 @@ public class ShellModule extends AbstractModuleAdaptor {
             shellServer.registerTermServer(httpTermServer);
             shellServer.registerCommandResolver(CommandResolver.baseCommands(vertx));
             shellServer.registerCommandResolver(result.result());
+            shellServer.registerCommandResolver(sqlResult.result());
             shellServer.listen();
+        }));
+    }
+
+    /**
+     * Prometheus文本格式的SQL耗时统计、查询结果缓存命中统计和未转换async方法的await统计，不经过用户token校验，见PermissionCheckHandler
+     * @param dbExecutor 最外层是CachingExecutor时输出缓存命中统计
+     * @param scrapeToken 抓取请求需携带Authorization: Bearer scrapeToken；没有配置时不注册/metrics，请求返回404
+     */
+    public void createMetricsEndpoint(Router router, SqlMetrics sqlMetrics, Executor dbExecutor, String scrapeToken) {
+        if (StrUtil.isEmpty(scrapeToken)) {
+            LOGGER.warn("metrics.token is not configured, /metrics is disabled");
+            return;
+        }
+        router.get("/metrics").handler(rc -> {
+            if (!isScrapeTokenValid(rc.request().getHeader(HttpHeaders.AUTHORIZATION), scrapeToken)) {
+                rc.response().setStatusCode(HttpResponseStatus.UNAUTHORIZED.code());
+                rc.end();
+                return;
+            }
+            rc.response()
+                .putHeader("Content-Type", "text/plain; version=0.0.4; charset=utf-8")
+                .end(sqlMetrics.toPrometheus() + cacheMetrics(dbExecutor) + AwaitFallback.toPrometheus());
         });
     }
+
+    static String cacheMetrics(Executor dbExecutor) {
+        if (!(dbExecutor instanceof CachingExecutor)) {
+            return "";
+        }
+        CachingExecutor cachingExecutor = (CachingExecutor) dbExecutor;
+        return "# TYPE sql_cache_hits_total counter\n"
+            + "sql_cache_hits_total " + cachingExecutor.getHitCount() + "\n"
+            + "# TYPE sql_cache_misses_total counter\n"
+            + "sql_cache_misses_total " + cachingExecutor.getMissCount() + "\n"
+            + "# TYPE sql_cache_invalidations_total counter\n"
+            + "sql_cache_invalidations_total " + cachingExecutor.getInvalidateCount() + "\n"
+            + "# TYPE sql_cache_hit_ratio gauge\n"
+            + "sql_cache_hit_ratio " + cachingExecutor.getHitRatio() + "\n"
+            + "# TYPE sql_cache_entries gauge\n"
+            + "sql_cache_entries " + cachingExecutor.getSize() + "\n";
+    }
+
+    private static boolean isScrapeTokenValid(String authorization, String scrapeToken) {
+        String prefix = "Bearer ";
+        if (authorization == null || !authorization.startsWith(prefix)) {
+            return false;
+        }
+        byte[] actual = authorization.substring(prefix.length()).getBytes(StandardCharsets.UTF_8);
+        return MessageDigest.isEqual(actual, scrapeToken.getBytes(StandardCharsets.UTF_8));
+    }
 }
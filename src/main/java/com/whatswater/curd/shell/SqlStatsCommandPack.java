@@ -0,0 +1,51 @@
+package com.whatswater.curd.shell;
+
+
+import com.whatswater.curd.datasource.SqlMetrics;
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.cli.CLI;
+import io.vertx.core.cli.Option;
+import io.vertx.ext.shell.command.Command;
+import io.vertx.ext.shell.command.CommandBuilder;
+import io.vertx.ext.shell.command.CommandResolver;
+import io.vertx.ext.shell.spi.CommandResolverFactory;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * sql-stats [-n 条数]：按总执行时间倒序输出SQL耗时统计
+ */
+public class SqlStatsCommandPack implements CommandResolverFactory {
+    private static final int DEFAULT_LIMIT = 20;
+
+    private final SqlMetrics sqlMetrics;
+
+    public SqlStatsCommandPack(SqlMetrics sqlMetrics) {
+        this.sqlMetrics = sqlMetrics;
+    }
+
+    @Override
+    public void resolver(Vertx vertx, Handler<AsyncResult<CommandResolver>> handler) {
+        CLI cli = CLI.create("sql-stats")
+            .addOption(new Option().setShortName("n").setLongName("limit").setDefaultValue(String.valueOf(DEFAULT_LIMIT)));
+        CommandBuilder command = CommandBuilder.command(cli);
+
+        command.processHandler(process -> {
+            int limit;
+            try {
+                limit = Integer.parseInt(process.commandLine().getOptionValue("limit"));
+            } catch (NumberFormatException e) {
+                limit = DEFAULT_LIMIT;
+            }
+            process.write(sqlMetrics.toText(limit));
+            process.end();
+        });
+
+        List<Command> commands = Collections.singletonList(command.build(vertx));
+        handler.handle(Future.succeededFuture(() -> commands));
+    }
+}
@@ -1,13 +1,22 @@
 package com.whatswater.sql.alias;
 
 
+import java.util.HashSet;
 import java.util.Set;
 
 public class AliasFactory {
     private int symbolVal = 1;
-    private Set<String> namedAlias;
+    private final Set<String> namedAlias = new HashSet<>();
 
     public String getNextAlias() {
+        String alias;
+        do {
+            alias = nextSymbol();
+        } while (namedAlias.contains(alias));
+        return alias;
+    }
+
+    private String nextSymbol() {
         int h = symbolVal;
         StringBuilder sv = new StringBuilder(1);
         while(h != 0) {
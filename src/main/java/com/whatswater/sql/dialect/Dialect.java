@@ -10,7 +10,9 @@ import com.whatswater.sql.utils.CollectionUtils;
 import com.whatswater.sql.utils.StringUtils;
 
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 public interface Dialect {
     SQL toSql(Update update);
@@ -21,6 +23,9 @@ public interface Dialect {
     class SQL {
         private final StringBuilder sql;
         private final List<Object> params;
+        // 读取或修改的表，由Dialect生成SQL时填写，Executor层据此缓存和失效查询结果
+        private final Set<String> tableNames = new LinkedHashSet<>();
+        private boolean modify;
 
         public SQL() {
             this.sql = new StringBuilder();
@@ -98,6 +103,27 @@ public interface Dialect {
         public String getSqlValue() {
             return sql.toString();
         }
+
+        public SQL addTableName(String tableName) {
+            this.tableNames.add(tableName);
+            return this;
+        }
+
+        public Set<String> getTableNames() {
+            return tableNames;
+        }
+
+        /**
+         * 是否是insert、update、delete语句
+         */
+        public boolean isModify() {
+            return modify;
+        }
+
+        public SQL setModify(boolean modify) {
+            this.modify = modify;
+            return this;
+        }
     }
 
     static void reLocationExpression(Query<?> query) {
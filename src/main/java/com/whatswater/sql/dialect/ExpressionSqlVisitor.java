@@ -5,17 +5,20 @@ import com.whatswater.sql.dialect.Dialect.SQL;
 import com.whatswater.sql.expression.*;
 import com.whatswater.sql.expression.judge.*;
 import com.whatswater.sql.expression.judge.InExpression.ItemList;
+import com.whatswater.sql.expression.judge.InExpression.LiteralList;
 import com.whatswater.sql.expression.literal.*;
 import com.whatswater.sql.expression.logic.NotExpression;
 import com.whatswater.sql.expression.reference.AliasColumnReference;
 import com.whatswater.sql.expression.reference.RawColumnReference;
 import com.whatswater.sql.expression.logic.AndExpression;
 import com.whatswater.sql.expression.logic.OrExpression;
+import com.whatswater.sql.utils.StringUtils;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.List;
 import java.util.Map;
 
 public class ExpressionSqlVisitor implements ExpressionVisitor {
@@ -87,6 +90,8 @@ public class ExpressionSqlVisitor implements ExpressionVisitor {
             sql.append("'").append(stringValue.getValue()).append("'");
         } else if (literal instanceof NullValue) {
             sql.append("null");
+        } else if (literal instanceof BoolValue) {
+            sql.append(((BoolValue) literal).getValue() ? "true" : "false");
         } else if (literal instanceof DateValue) {
             DateValue dateValue = (DateValue) literal;
             sql.append("'").append(dateFormat(dateValue.getValue())).append("'");
@@ -122,10 +127,19 @@ public class ExpressionSqlVisitor implements ExpressionVisitor {
             InExpression inExpression = (InExpression) judgeOperator;
             visit(inExpression.getLeftValue());
 
-            // todo itemList转SQL
             ItemList itemList = inExpression.getInList();
-            sql.append(" in ");
-            sql.append("()");
+            sql.append(" in (");
+            if (itemList instanceof LiteralList) {
+                List<Literal> literals = ((LiteralList) itemList).getLiterals();
+                for (int i = 0; i < literals.size(); i++) {
+                    if (i > 0) {
+                        sql.append(StringUtils.COMMA);
+                    }
+                    visit(literals.get(i));
+                }
+            }
+            // todo SubSelect转SQL
+            sql.append(")");
         } else if (judgeOperator instanceof ExistsExpression) {
             ExistsExpression existsExpression = (ExistsExpression) judgeOperator;
             // todo exist转SQL
@@ -6,24 +6,51 @@ import com.whatswater.sql.alias.AliasHolderVisitor;
 import com.whatswater.sql.alias.AliasPlaceholder;
 import com.whatswater.sql.expression.BoolExpression;
 import com.whatswater.sql.expression.Expression;
-import com.whatswater.sql.expression.LogicExpression;
 import com.whatswater.sql.expression.ReferenceExpression;
+import com.whatswater.sql.optimizer.ExpressionOptimizer;
+import com.whatswater.sql.optimizer.RewriteLog;
+import com.whatswater.sql.optimizer.TableOptimizer;
 import com.whatswater.sql.statement.*;
 import com.whatswater.sql.statement.Update.UpdateColumn;
+import com.whatswater.sql.table.ComplexTable;
 import com.whatswater.sql.table.DbTable;
+import com.whatswater.sql.table.EntityMeta;
+import com.whatswater.sql.table.EntityMetas;
+import com.whatswater.sql.table.JoinedTable;
+import com.whatswater.sql.table.SelectedTable;
 import com.whatswater.sql.table.Table;
+import com.whatswater.sql.table.TableFieldInfo;
+import com.whatswater.sql.table.TableInfo;
 import com.whatswater.sql.table.annotation.*;
 import com.whatswater.sql.utils.StringUtils;
 
 import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
 
 public class MysqlDialect implements Dialect {
 
+    /**
+     * 优化器对where的改写在生成SQL后还原，调用方的Update可以重复生成SQL
+     */
     @Override
     public SQL toSql(Update update) {
+        BoolExpression originWhere = update.getWhere();
+        RewriteLog rewriteLog = new RewriteLog();
+        if (originWhere != null) {
+            update.where(ExpressionOptimizer.optimizeCondition(originWhere, rewriteLog));
+        }
+        try {
+            return renderUpdate(update);
+        } finally {
+            update.where(originWhere);
+            rewriteLog.rollback();
+        }
+    }
+
+    private SQL renderUpdate(Update update) {
         Map<ReferenceExpression, ReferenceExpression> symbolReplaceMap = update.reBindColumnReference();
         Table table = update.getTable() == null ? update.getDbTable() : update.getTable();
         setAlias(table);
@@ -52,11 +79,26 @@ public class MysqlDialect implements Dialect {
             updateSql.append(" limit ").append(update.getLimit().getSize());
         }
 
+        collectTableNames(table, updateSql.setModify(true));
         return updateSql;
     }
 
     @Override
     public SQL toSql(Delete delete) {
+        BoolExpression originWhere = delete.getWhere();
+        RewriteLog rewriteLog = new RewriteLog();
+        if (originWhere != null) {
+            delete.where(ExpressionOptimizer.optimizeCondition(originWhere, rewriteLog));
+        }
+        try {
+            return renderDelete(delete);
+        } finally {
+            delete.where(originWhere);
+            rewriteLog.rollback();
+        }
+    }
+
+    private SQL renderDelete(Delete delete) {
         SQL deleteSql = new SQL();
         deleteSql.append("delete from ");
         DbTable<?> dbTable = delete.getDbTable();
@@ -68,20 +110,31 @@ public class MysqlDialect implements Dialect {
         if (delete.getWhere() != null) {
             Map<ReferenceExpression, ReferenceExpression> symbolReplaceMap = delete.reBindColumnReference();
             BoolExpression where = delete.getWhere();
-            if (where instanceof LogicExpression) {
-                where = ((LogicExpression) where).flatten();
-            }
 
             ExpressionSqlVisitor expressionSqlVisitor = new ExpressionSqlVisitor(new SQL());
             expressionSqlVisitor.setSymbolReplaceMap(symbolReplaceMap);
             expressionSqlVisitor.visit(where);
             deleteSql.append(" where ").append(expressionSqlVisitor.getSql().removeBrackets());
         }
+        deleteSql.setModify(true).addTableName(dbTable.getTableName());
         return deleteSql;
     }
 
+    /**
+     * 在传入的表结构上运行优化器，生成SQL后回滚优化器的修改，同一个Table可以重复生成SQL
+     */
     @Override
     public SQL toSql(Table table) {
+        RewriteLog rewriteLog = new RewriteLog();
+        TableOptimizer.optimize(table, rewriteLog);
+        try {
+            return renderTable(table);
+        } finally {
+            rewriteLog.rollback();
+        }
+    }
+
+    private SQL renderTable(Table table) {
         Map<ReferenceExpression, ReferenceExpression> symbolReplaceMap = table.reBindColumnReference();
         ExpressionSqlVisitor expressionSqlVisitor = new ExpressionSqlVisitor(new SQL());
         expressionSqlVisitor.setSymbolReplaceMap(symbolReplaceMap);
@@ -89,12 +142,14 @@ public class MysqlDialect implements Dialect {
         setAlias(table);
         TableSqlVisitor tableVisitor = new TableSqlVisitor(expressionSqlVisitor);
         tableVisitor.visit(table);
+        SQL sql;
         if (table.isSqlQuery()) {
-            return tableVisitor.getSql();
+            sql = tableVisitor.getSql();
         } else {
-            SQL sql = new SQL(new StringBuilder("select * from "));
-            return sql.append(tableVisitor.getSql());
+            sql = new SQL(new StringBuilder("select * from ")).append(tableVisitor.getSql());
         }
+        collectTableNames(table, sql);
+        return sql;
     }
 
     @Override
@@ -110,12 +165,10 @@ public class MysqlDialect implements Dialect {
             if (FieldStrategy.NEVER.equals(tableFieldInfo.getInsertStrategy())) {
                 continue;
             }
-            Field field = tableFieldInfo.getField();
-            Object value = getFieldValue(field, insert.getEntity());
+            Object value = tableFieldInfo.getValue(insert.getEntity());
 
-            TableId tableId = tableFieldInfo.getTableId();
-            if (tableId != null && value == null) {
-                IdType type = tableId.type();
+            if (tableFieldInfo.isId() && value == null) {
+                IdType type = tableFieldInfo.getIdType();
                 if (IdType.NONE.equals(type)) {
                     throw new RuntimeException("X7");
                 }
@@ -142,6 +195,7 @@ public class MysqlDialect implements Dialect {
         }
         insertSql.deleteLastChar(StringUtils.COMMA).append(")");
         insertSql.addParam(params);
+        insertSql.setModify(true).addTableName(insert.getDbTable().getTableName());
         return insertSql;
     }
 
@@ -165,16 +219,40 @@ public class MysqlDialect implements Dialect {
         return aliasFactory;
     }
 
+    private static void collectTableNames(Table table, SQL sql) {
+        if (table instanceof DbTable) {
+            sql.addTableName(((DbTable<?>) table).getTableName());
+        } else if (table instanceof SelectedTable) {
+            sql.addTableName(((SelectedTable) table).getRawTable().getTableName());
+        } else if (table instanceof ComplexTable) {
+            collectTableNames(((ComplexTable) table).getInnerTable(), sql);
+        } else if (table instanceof JoinedTable) {
+            collectTableNames(((JoinedTable) table).getLeft(), sql);
+            collectTableNames(((JoinedTable) table).getRight(), sql);
+        }
+    }
+
     public TableInfo getTableInfo(Class<?> entityClass) {
         return TABLE_INFO_CACHE.computeIfAbsent(entityClass, MysqlDialect::resolveTableInfo);
     }
 
+    /**
+     * 优先使用注解处理器生成的TableInfo，没有生成时才通过反射解析
+     */
     private static TableInfo resolveTableInfo(Class<?> entityClass) {
+        EntityMeta<?> entityMeta = EntityMetas.get(entityClass);
+        if (entityMeta != null) {
+            return entityMeta.getTableInfo();
+        }
+
         Field[] fields = entityClass.getDeclaredFields();
 
         List<TableFieldInfo> tableFieldInfoList = new ArrayList<>();
         for (int i = 0; i < fields.length; i++) {
             Field field = fields[i];
+            if (Modifier.isStatic(field.getModifiers())) {
+                continue;
+            }
             FieldStrategy insertStrategy = FieldStrategy.NOT_NULL;
             String columnName;
 
@@ -185,94 +263,20 @@ public class MysqlDialect implements Dialect {
                 }
                 insertStrategy = tableField.insertStrategy();
                 columnName = tableField.value();
-                columnName = StringUtils.isEmpty(columnName) ? underline(field.getName()) : columnName;
+                columnName = StringUtils.isEmpty(columnName) ? StringUtils.underline(field.getName()) : columnName;
             } else {
-                columnName = underline(field.getName());
+                columnName = StringUtils.underline(field.getName());
             }
 
             String propertyName = field.getName();
             TableId tableId = field.getDeclaredAnnotation(TableId.class);
-            tableFieldInfoList.add(new TableFieldInfo(field, columnName, propertyName, insertStrategy, tableId));
+            IdType idType = tableId == null ? null : tableId.type();
+            tableFieldInfoList.add(new TableFieldInfo(columnName, propertyName, insertStrategy, idType, entity -> getFieldValue(field, entity)));
         }
         return new TableInfo(entityClass, tableFieldInfoList);
     }
 
     private static final Map<Class<?>, TableInfo> TABLE_INFO_CACHE = new ConcurrentHashMap<>();
-    public static class TableInfo implements Iterable<TableFieldInfo> {
-        private final Class<?> entityType;
-        private final List<TableFieldInfo> fieldInfoList;
-
-        public TableInfo(Class<?> entityType, List<TableFieldInfo> fieldInfoList) {
-            this.entityType = entityType;
-            this.fieldInfoList = fieldInfoList;
-        }
-
-        public Class<?> getEntityType() {
-            return entityType;
-        }
-
-        public List<TableFieldInfo> getFieldInfoList() {
-            return fieldInfoList;
-        }
-
-        @Override
-        public Iterator<TableFieldInfo> iterator() {
-            return fieldInfoList.iterator();
-        }
-    }
-
-    public static class TableFieldInfo {
-        private final Field field;
-        private final String column;
-        private final String property;
-        private final FieldStrategy insertStrategy;
-        private final TableId tableId;
-
-        public TableFieldInfo(Field field, String column, String property, FieldStrategy insertStrategy, TableId tableId) {
-            this.field = field;
-            this.column = column;
-            this.property = property;
-            this.insertStrategy = insertStrategy;
-            this.tableId = tableId;
-        }
-
-        public Field getField() {
-            return field;
-        }
-
-        public String getColumn() {
-            return column;
-        }
-
-        public String getProperty() {
-            return property;
-        }
-
-        public FieldStrategy getInsertStrategy() {
-            return insertStrategy;
-        }
-
-        public TableId getTableId() {
-            return tableId;
-        }
-    }
-
-    private static String underline(String name) {
-        StringBuilder buf = new StringBuilder();
-        for (int i = 0; i < name.length(); ++i) {
-            char ch = name.charAt(i);
-            if (ch >= 'A' && ch <= 'Z') {
-                char lch = (char) (ch^32);
-                if (i > 0) {
-                    buf.append('_');
-                }
-                buf.append(lch);
-            } else {
-                buf.append(ch);
-            }
-        }
-        return buf.toString();
-    }
 
     public static Object getFieldValue(Field field, Object entity) {
         field.setAccessible(true);
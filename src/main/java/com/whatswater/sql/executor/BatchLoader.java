@@ -0,0 +1,198 @@
+package com.whatswater.sql.executor;
+
+
+import com.whatswater.async.future.TaskFutureImpl;
+import com.whatswater.sql.dialect.Dialect;
+import com.whatswater.sql.expression.Literal;
+import com.whatswater.sql.expression.literal.JdbcParameter;
+import com.whatswater.sql.table.DbTable;
+import com.whatswater.sql.table.EntityMeta;
+import com.whatswater.sql.table.SelectedTable;
+import com.whatswater.sql.table.TableFieldInfo;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.sqlclient.Row;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 把同一时间窗口内的多次单键查询合并为一次批量查询，典型用法是把并发的getById(x)合并为where id in (...)
+ * 第一次调用load时向当前事件循环提交一次flush，同一轮事件循环中到达的调用都并入这一批，不额外增加定时等待
+ * 批次达到maxBatchSize时立即flush
+ *
+ * 必须读主库的调用（事务中或执行过修改，见Context.requiresPrimary）不合并，带着调用方的上下文单独查询
+ * 配置了keyNormalizer时，调用方传入的键和批量结果中的键都先经过归一化再匹配
+ * @param <K> 键类型，需要正确实现equals、hashCode
+ * @param <V> 值类型，批量结果中没有的键返回null
+ */
+public class BatchLoader<K, V> {
+    private final Vertx vertx;
+    private final Function<List<K>, Future<Map<K, V>>> batchFunction;
+    private final int maxBatchSize;
+    private final Function<K, K> keyNormalizer;
+
+    private Map<K, Promise<V>> pending = new LinkedHashMap<>();
+
+    public BatchLoader(Vertx vertx, int maxBatchSize, Function<List<K>, Future<Map<K, V>>> batchFunction) {
+        this(vertx, maxBatchSize, null, batchFunction);
+    }
+
+    public BatchLoader(Vertx vertx, int maxBatchSize, Function<K, K> keyNormalizer, Function<List<K>, Future<Map<K, V>>> batchFunction) {
+        if (maxBatchSize <= 0) {
+            throw new IllegalArgumentException("maxBatchSize must be positive: " + maxBatchSize);
+        }
+        this.vertx = vertx;
+        this.maxBatchSize = maxBatchSize;
+        this.keyNormalizer = keyNormalizer;
+        this.batchFunction = batchFunction;
+    }
+
+    /**
+     * 按实体的主键合并查询，实体元数据由注解处理器生成
+     * 主键按normalizeId归一化，调用方传入Long而实体字段为Integer时也能匹配
+     */
+    public static <T> BatchLoader<Object, T> byId(Vertx vertx, int maxBatchSize, Executor executor, Dialect dialect, EntityMeta<T> entityMeta) {
+        TableFieldInfo idField = null;
+        for (TableFieldInfo fieldInfo: entityMeta.getTableInfo()) {
+            if (fieldInfo.isId()) {
+                idField = fieldInfo;
+                break;
+            }
+        }
+        if (idField == null) {
+            throw new IllegalArgumentException("Entity has no id field: " + entityMeta.getEntityClass().getName());
+        }
+
+        TableFieldInfo id = idField;
+        return new BatchLoader<>(vertx, maxBatchSize, BatchLoader::normalizeId, idList -> {
+            DbTable<T> dbTable = entityMeta.getDbTable().newAlias();
+            Literal[] literals = new Literal[idList.size()];
+            for (int i = 0; i < literals.length; i++) {
+                literals[i] = new JdbcParameter(idList.get(i));
+            }
+            SelectedTable table = new SelectedTable(dbTable);
+            table.where(dbTable.columnReference(id.getColumn()).inConstValues(literals));
+            return executor.query(dialect.toSql(table)).map(rowSet -> {
+                Map<Object, T> result = new HashMap<>();
+                for (Row row: rowSet) {
+                    T entity = entityMeta.getResultMapper().mapResult(row);
+                    result.put(id.getValue(entity), entity);
+                }
+                return result;
+            });
+        });
+    }
+
+    /**
+     * 整数类型的主键统一转换为Long，其他类型原样返回
+     */
+    public static Object normalizeId(Object id) {
+        if (id instanceof Integer || id instanceof Short || id instanceof Byte) {
+            return ((Number) id).longValue();
+        }
+        return id;
+    }
+
+    public Future<V> load(K key) {
+        K normalizedKey = keyNormalizer == null ? key : keyNormalizer.apply(key);
+        Context context = Context.current();
+        if (context != null && context.requiresPrimary()) {
+            return batchFunction.apply(Collections.singletonList(normalizedKey)).map(result -> normalizeResult(result).get(normalizedKey));
+        }
+
+        Promise<V> promise;
+        Map<K, Promise<V>> full = null;
+        synchronized (this) {
+            promise = pending.get(normalizedKey);
+            if (promise == null) {
+                promise = Promise.promise();
+                pending.put(normalizedKey, promise);
+                if (pending.size() == 1) {
+                    scheduleFlush();
+                } else if (pending.size() >= maxBatchSize) {
+                    full = pending;
+                    pending = new LinkedHashMap<>();
+                }
+            }
+        }
+        if (full != null) {
+            execute(full);
+        }
+        return context == null ? promise.future() : withContext(promise.future());
+    }
+
+    private void scheduleFlush() {
+        io.vertx.core.Context vertxContext = Vertx.currentContext();
+        if (vertxContext == null) {
+            vertxContext = vertx.getOrCreateContext();
+        }
+        vertxContext.runOnContext(v -> flush());
+    }
+
+    private void flush() {
+        Map<K, Promise<V>> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = pending;
+            pending = new LinkedHashMap<>();
+        }
+        execute(batch);
+    }
+
+    /**
+     * 批量查询不属于任何一个调用方，不带上下文执行
+     */
+    private void execute(Map<K, Promise<V>> batch) {
+        Future<Map<K, V>> future;
+        Context previous = Context.install(null);
+        try {
+            future = batchFunction.apply(new ArrayList<>(batch.keySet()));
+        } catch (Throwable e) {
+            future = Future.failedFuture(e);
+        } finally {
+            Context.restore(previous);
+        }
+        future.onComplete(ar -> {
+            Map<K, V> result = ar.succeeded() ? normalizeResult(ar.result()) : null;
+            for (Map.Entry<K, Promise<V>> entry: batch.entrySet()) {
+                if (ar.succeeded()) {
+                    entry.getValue().tryComplete(result.get(entry.getKey()));
+                } else {
+                    entry.getValue().tryFail(ar.cause());
+                }
+            }
+        });
+    }
+
+    private Map<K, V> normalizeResult(Map<K, V> result) {
+        if (keyNormalizer == null || result == null) {
+            return result == null ? Collections.emptyMap() : result;
+        }
+        Map<K, V> normalized = new HashMap<>(result.size() * 2);
+        for (Map.Entry<K, V> entry: result.entrySet()) {
+            normalized.put(keyNormalizer.apply(entry.getKey()), entry.getValue());
+        }
+        return normalized;
+    }
+
+    private static <V> Future<V> withContext(Future<V> shared) {
+        TaskFutureImpl<V> future = new TaskFutureImpl<>();
+        shared.onComplete(ar -> {
+            if (ar.succeeded()) {
+                future.tryComplete(ar.result());
+            } else {
+                future.tryFail(ar.cause());
+            }
+        });
+        return future;
+    }
+}
@@ -0,0 +1,207 @@
+package com.whatswater.sql.executor;
+
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.whatswater.sql.dialect.Dialect.SQL;
+import io.vertx.core.Future;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 查询结果缓存，按SQL文本和参数缓存查询结果
+ * 每张表维护一个版本号，经过本Executor的insert、update、delete执行完成后递增所修改表的版本号
+ * 事务中的修改在提交前对其他查询不可见，语句完成到提交之间的查询会把旧数据按新版本号缓存，因此事务结束（Context.SESSION_END）后再递增一次
+ * 缓存项记录查询开始时所读表的版本号，读取时版本号不一致即视为失效
+ *
+ * 只缓存读取的表全部在cacheTables中的查询；事务中的查询可能读到未提交的数据，不读也不写缓存
+ * 配置了从库时，所读表在从库最大延迟（replicaLag）内被修改过的查询可能从落后的从库读到旧数据，不放入缓存
+ * 不经过本Executor的修改（如CommonSQL、其他进程）无法感知，只能依赖过期时间，开启缓存的表需要确认这一点
+ */
+public class CachingExecutor implements Executor {
+    private final Executor delegate;
+    private final Set<String> cacheTables;
+    private final Cache<QueryKey, Entry> cache;
+    private final ConcurrentMap<String, AtomicLong> tableVersions = new ConcurrentHashMap<>();
+    private final long replicaLagNanos;
+    // 每张表最近一次递增版本号的时间
+    private final ConcurrentMap<String, Long> bumpNanos = new ConcurrentHashMap<>();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder invalidateCount = new LongAdder();
+
+    public CachingExecutor(Executor delegate, Set<String> cacheTables, long maxSize, Duration expireAfterWrite) {
+        this(delegate, cacheTables, maxSize, expireAfterWrite, Duration.ZERO);
+    }
+
+    /**
+     * @param replicaLag 从库允许的最大复制延迟，没有从库时为0
+     */
+    public CachingExecutor(Executor delegate, Set<String> cacheTables, long maxSize, Duration expireAfterWrite, Duration replicaLag) {
+        this.delegate = delegate;
+        this.replicaLagNanos = replicaLag.toNanos();
+        this.cacheTables = Collections.unmodifiableSet(new HashSet<>(cacheTables));
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(maxSize)
+            .expireAfterWrite(expireAfterWrite)
+            .build();
+    }
+
+    @Override
+    public Future<RowSet<Row>> query(SQL sql) {
+        Context context = Context.current();
+        if (sql.isModify()) {
+            Future<Boolean> sessionEnd = context == null ? null : context.get(Context.SESSION_END);
+            return delegate.query(sql).onComplete(ar -> {
+                bumpVersions(sql.getTableNames());
+                if (sessionEnd != null) {
+                    sessionEnd.onComplete(end -> bumpVersions(sql.getTableNames()));
+                }
+            });
+        }
+        if (!isCacheable(sql, context)) {
+            return delegate.query(sql);
+        }
+
+        QueryKey key = new QueryKey(sql);
+        long[] versions = currentVersions(sql.getTableNames());
+        Entry entry = cache.getIfPresent(key);
+        if (entry != null) {
+            if (entry.isValid(versions)) {
+                hitCount.increment();
+                return Future.succeededFuture(entry.rowSet);
+            }
+            cache.invalidate(key);
+        }
+
+        missCount.increment();
+        if (mayReadReplica(context) && recentlyModified(sql.getTableNames())) {
+            return delegate.query(sql);
+        }
+        return delegate.query(sql).onSuccess(rowSet -> {
+            // 查询期间表被修改过，结果可能是旧数据，不放入缓存
+            if (Arrays.equals(versions, currentVersions(sql.getTableNames()))) {
+                cache.put(key, new Entry(rowSet, versions));
+            }
+        });
+    }
+
+    private boolean isCacheable(SQL sql, Context context) {
+        if (cacheTables.isEmpty() || sql.getTableNames().isEmpty()) {
+            return false;
+        }
+        if (context != null && context.get(Context.SQL_CONNECTION) != null) {
+            return false;
+        }
+        return cacheTables.containsAll(sql.getTableNames());
+    }
+
+    /**
+     * 与ReplicaRoutingExecutor的路由规则一致：当前上下文中执行过修改语句时查询走主库
+     */
+    private boolean mayReadReplica(Context context) {
+        if (replicaLagNanos <= 0) {
+            return false;
+        }
+        return context == null || !context.requiresPrimary();
+    }
+
+    private boolean recentlyModified(Set<String> tableNames) {
+        long now = System.nanoTime();
+        for (String tableName: tableNames) {
+            Long modifiedNanos = bumpNanos.get(tableName);
+            if (modifiedNanos != null && now - modifiedNanos < replicaLagNanos) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void bumpVersions(Set<String> tableNames) {
+        for (String tableName: tableNames) {
+            if (cacheTables.contains(tableName)) {
+                bumpNanos.put(tableName, System.nanoTime());
+                tableVersions.computeIfAbsent(tableName, k -> new AtomicLong()).incrementAndGet();
+                invalidateCount.increment();
+            }
+        }
+    }
+
+    private long[] currentVersions(Set<String> tableNames) {
+        long[] versions = new long[tableNames.size()];
+        int i = 0;
+        for (String tableName: tableNames) {
+            AtomicLong version = tableVersions.get(tableName);
+            versions[i++] = version == null ? 0 : version.get();
+        }
+        return versions;
+    }
+
+    /**
+     * 修改了表但没有经过本Executor时，手动使该表的缓存失效
+     */
+    public void invalidate(String tableName) {
+        bumpVersions(Collections.singleton(tableName));
+    }
+
+    /**
+     * 与经过本Executor的修改相同，会话中的修改在会话结束后再失效一次
+     */
+    @Override
+    public void tableModified(String tableName) {
+        invalidate(tableName);
+        Context context = Context.current();
+        Future<Boolean> sessionEnd = context == null ? null : context.get(Context.SESSION_END);
+        if (sessionEnd != null) {
+            sessionEnd.onComplete(end -> invalidate(tableName));
+        }
+        delegate.tableModified(tableName);
+    }
+
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+
+    public long getMissCount() {
+        return missCount.sum();
+    }
+
+    public long getInvalidateCount() {
+        return invalidateCount.sum();
+    }
+
+    public double getHitRatio() {
+        long hit = hitCount.sum();
+        long total = hit + missCount.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    public long getSize() {
+        return cache.estimatedSize();
+    }
+
+    private static final class Entry {
+        private final RowSet<Row> rowSet;
+        private final long[] versions;
+
+        private Entry(RowSet<Row> rowSet, long[] versions) {
+            this.rowSet = rowSet;
+            this.versions = versions;
+        }
+
+        private boolean isValid(long[] currentVersions) {
+            return Arrays.equals(versions, currentVersions);
+        }
+    }
+}
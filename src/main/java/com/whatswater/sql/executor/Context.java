@@ -1,6 +1,200 @@
 package com.whatswater.sql.executor;
 
 
-public class Context {
-    
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.impl.ContextInternal;
+import io.vertx.sqlclient.SqlClient;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 上下文对象，不可变的小型键值表，put返回新对象
+ * 请求开始时通过bind绑定到Vert.x的duplicated context（每个请求一个），同一请求中经过任何Vert.x Future、SQL客户端的异步回调都能取到
+ * 线程上安装的上下文优先于绑定的上下文，future回调、await状态机恢复时重新安装创建回调时的上下文，事务连接等只在部分调用中生效的值也这样安装
+ * 详见resources/async/vertx_context传播实现.md
+ */
+public final class Context {
+    public static final Context EMPTY = new Context(new Object[0]);
+    /**
+     * 事务连接，SQL执行时优先使用
+     */
+    public static final Key<SqlClient> SQL_CONNECTION = new Key<>("sqlConnection");
+    /**
+     * 与SQL_CONNECTION一起放入，事务提交或回滚完成后完成，提交成功时为true
+     * 用于在事务结束后再使缓存失效，以及提交后再执行变更监听器（见SqlSession.afterCommit）
+     */
+    public static final Key<Future<Boolean>> SESSION_END = new Key<>("sessionEnd");
+    public static final Key<String> TRACE_ID = new Key<>("traceId");
+    /**
+     * 请求内是否执行过修改语句，上下文不可变，这里放可变的标记对象；读写分离时写过之后的读取走主库
+     */
+    public static final Key<AtomicBoolean> WRITE_MARK = new Key<>("writeMark");
+
+    private static final ThreadLocal<Context> CURRENT = new ThreadLocal<>();
+    // install(null)时线程上放置此标记，表示不带上下文执行，同时屏蔽绑定在Vert.x上下文中的值
+    private static final Context DETACHED = new Context(new Object[0]);
+    private static final Object LOCAL_KEY = Context.class;
+
+    // 交替存放key和value，上下文中的键值数量很少，线性查找即可
+    private final Object[] entries;
+
+    private Context(Object[] entries) {
+        this.entries = entries;
+    }
+
+    public <T> T get(Key<T> key) {
+        for (int i = 0; i < entries.length; i += 2) {
+            if (entries[i] == key) {
+                return (T) entries[i + 1];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 查询是否必须在主库执行：在事务中（有会话连接），或本上下文执行过修改语句（WRITE_MARK已标记）
+     * 这类查询需要读到本上下文自己的修改，不能发往从库，也不能与其他上下文的查询合并、共用结果
+     */
+    public boolean requiresPrimary() {
+        if (get(SQL_CONNECTION) != null) {
+            return true;
+        }
+        AtomicBoolean writeMark = get(WRITE_MARK);
+        return writeMark != null && writeMark.get();
+    }
+
+    public <T> Context put(Key<T> key, T value) {
+        for (int i = 0; i < entries.length; i += 2) {
+            if (entries[i] == key) {
+                if (entries[i + 1] == value) {
+                    return this;
+                }
+                Object[] copy = entries.clone();
+                copy[i + 1] = value;
+                return new Context(copy);
+            }
+        }
+        Object[] copy = new Object[entries.length + 2];
+        System.arraycopy(entries, 0, copy, 0, entries.length);
+        copy[entries.length] = key;
+        copy[entries.length + 1] = value;
+        return new Context(copy);
+    }
+
+    /**
+     * 当前上下文：先取线程上安装的，再取绑定在当前Vert.x上下文中的，都没有时返回null
+     */
+    public static Context current() {
+        Context context = CURRENT.get();
+        if (context == DETACHED) {
+            return null;
+        }
+        if (context != null) {
+            return context;
+        }
+        ContextInternal vertxContext = duplicatedContext();
+        return vertxContext == null ? null : (Context) vertxContext.localContextData().get(LOCAL_KEY);
+    }
+
+    public static Context currentOrEmpty() {
+        Context context = current();
+        return context == null ? EMPTY : context;
+    }
+
+    /**
+     * 安装上下文，返回之前线程上安装的值，调用方需要在finally中restore
+     * 传入null表示不带上下文执行，绑定在Vert.x上下文中的值也不可见
+     */
+    public static Context install(Context context) {
+        Context previous = CURRENT.get();
+        Context value = context == null ? DETACHED : context;
+        if (previous != value) {
+            CURRENT.set(value);
+        }
+        return previous;
+    }
+
+    public static void restore(Context previous) {
+        if (CURRENT.get() != previous) {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * 绑定到当前的Vert.x duplicated context，之后在该上下文上执行的异步回调不需要重新安装也能取到
+     * HTTP请求、SQL回调都在请求自己的duplicated context上执行，绑定随请求结束失效
+     * 当前不在duplicated context中时不绑定，事件循环的根上下文由多个请求共用，绑定会串到其他请求
+     * @return 是否绑定成功
+     */
+    public boolean bind() {
+        ContextInternal vertxContext = duplicatedContext();
+        if (vertxContext == null) {
+            return false;
+        }
+        vertxContext.localContextData().put(LOCAL_KEY, this);
+        return true;
+    }
+
+    private static ContextInternal duplicatedContext() {
+        io.vertx.core.Context vertxContext = Vertx.currentContext();
+        if (vertxContext instanceof ContextInternal && ((ContextInternal) vertxContext).isDuplicate()) {
+            return (ContextInternal) vertxContext;
+        }
+        return null;
+    }
+
+    public void run(Runnable runnable) {
+        Context previous = install(this);
+        try {
+            runnable.run();
+        } finally {
+            restore(previous);
+        }
+    }
+
+    /**
+     * 捕获当前上下文，回调执行时重新安装；当前没有上下文时原样返回
+     */
+    public static Runnable wrap(Runnable runnable) {
+        Context context = current();
+        if (context == null) {
+            return runnable;
+        }
+        return () -> context.run(runnable);
+    }
+
+    public static <T> Handler<AsyncResult<T>> wrap(Handler<AsyncResult<T>> handler) {
+        Context context = current();
+        if (context == null) {
+            return handler;
+        }
+        return ar -> {
+            Context previous = install(context);
+            try {
+                handler.handle(ar);
+            } finally {
+                restore(previous);
+            }
+        };
+    }
+
+    public static final class Key<T> {
+        private final String name;
+
+        public Key(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
 }
@@ -1,14 +1,42 @@
 package com.whatswater.sql.executor;
 
 
+/**
+ * 可以在会话中调用的服务
+ * 会话连接通过上下文的SQL_CONNECTION传播，并绑定在会话的Vert.x上下文中，见SqlSession
+ * 需要在会话的回调之外（如其他线程、其他请求的回调中）继续使用会话时，通过getContextService取绑定了会话的兄弟服务
+ */
 public interface ContextService<T extends ContextService<T>> {
+    /**
+     * 当前会话中的兄弟服务：当前上下文中有会话连接时，返回绑定了该会话的服务，之后在任何地方调用都在这个会话中执行
+     * 没有会话时原样返回
+     */
     default <E extends ContextService<E>> E getContextService(E service) {
-        return null;
+        Context context = getCurrentContext();
+        if (service == null || context == null || context.get(Context.SQL_CONNECTION) == null) {
+            return service;
+        }
+        return service.withContext(context);
     }
+
+    /**
+     * 绑定了指定上下文的服务，SqlSessionAopFactory生成的代理返回新的代理对象
+     * 其他服务原样返回，这类服务直接使用上下文或datasource导出的连接池（SessionAwarePool），在会话的回调中调用即加入会话
+     */
+    @SuppressWarnings("unchecked")
+    default T withContext(Context context) {
+        return (T) this;
+    }
+
+    /**
+     * 代理对象返回被代理的服务，见SqlSessionAopFactory
+     */
+    @SuppressWarnings("unchecked")
     default T getOriginService() {
-        return null;
+        return (T) this;
     }
+
     default Context getCurrentContext() {
-        return null;
+        return Context.current();
     }
 }
@@ -8,4 +8,12 @@ import io.vertx.sqlclient.RowSet;
 
 public interface Executor {
     Future<RowSet<Row>> query(SQL sql);
+
+    /**
+     * 表的修改没有经过Executor（如CommonSQL）时，在修改成功后调用
+     * 装饰器据此使缓存失效、让当前上下文之后的查询走主库，并继续传给内层
+     * @param tableName 表名
+     */
+    default void tableModified(String tableName) {
+    }
 }
@@ -0,0 +1,40 @@
+package com.whatswater.sql.executor;
+
+
+import com.whatswater.sql.dialect.Dialect.SQL;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 以SQL文本和参数标识一次查询，SQL对象本身可变，这里复制一份参数
+ */
+final class QueryKey {
+    private final String sql;
+    private final List<Object> params;
+    private final int hash;
+
+    QueryKey(SQL sql) {
+        this.sql = sql.getSqlValue();
+        this.params = new ArrayList<>(sql.getParams());
+        this.hash = Objects.hash(this.sql, params);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof QueryKey)) {
+            return false;
+        }
+        QueryKey that = (QueryKey) o;
+        return hash == that.hash && sql.equals(that.sql) && params.equals(that.params);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -0,0 +1,88 @@
+package com.whatswater.sql.executor;
+
+
+import com.whatswater.async.future.TaskFutureImpl;
+import com.whatswater.sql.dialect.Dialect.SQL;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 合并同时进行中的相同查询（SQL文本和参数都相同），只执行一次，结果分发给所有调用方
+ * 查询完成后立即移除，不缓存结果；需要缓存时在外层包装CachingExecutor
+ *
+ * 修改语句和必须读主库的查询（见Context.requiresPrimary）不合并：
+ * 事务中的查询可能读到本事务未提交的数据，不能分给其他调用方；执行过修改的上下文需要读到自己的修改，不能共用可能发往从库的查询
+ * 分发的RowSet是同一个对象，调用方只能读取
+ */
+public class SingleFlightExecutor implements Executor {
+    private final Executor delegate;
+    private final ConcurrentMap<QueryKey, Future<RowSet<Row>>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder executeCount = new LongAdder();
+    private final LongAdder coalesceCount = new LongAdder();
+
+    public SingleFlightExecutor(Executor delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Future<RowSet<Row>> query(SQL sql) {
+        Context context = Context.current();
+        if (sql.isModify() || (context != null && context.requiresPrimary())) {
+            return delegate.query(sql);
+        }
+
+        QueryKey key = new QueryKey(sql);
+        Promise<RowSet<Row>> promise = Promise.promise();
+        Future<RowSet<Row>> shared = inFlight.putIfAbsent(key, promise.future());
+        if (shared == null) {
+            executeCount.increment();
+            shared = promise.future();
+            delegate.query(sql).onComplete(ar -> {
+                inFlight.remove(key, promise.future());
+                promise.handle(ar);
+            });
+        } else {
+            coalesceCount.increment();
+        }
+        return context == null ? shared : withContext(shared);
+    }
+
+    @Override
+    public void tableModified(String tableName) {
+        delegate.tableModified(tableName);
+    }
+
+    /**
+     * 共享的future在第一个调用方的上下文中完成，其他调用方的回调需要安装各自的上下文
+     */
+    private static Future<RowSet<Row>> withContext(Future<RowSet<Row>> shared) {
+        TaskFutureImpl<RowSet<Row>> future = new TaskFutureImpl<>();
+        shared.onComplete(ar -> {
+            if (ar.succeeded()) {
+                future.tryComplete(ar.result());
+            } else {
+                future.tryFail(ar.cause());
+            }
+        });
+        return future;
+    }
+
+    public long getExecuteCount() {
+        return executeCount.sum();
+    }
+
+    public long getCoalesceCount() {
+        return coalesceCount.sum();
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,154 @@
+package com.whatswater.sql.executor;
+
+
+import com.whatswater.async.future.TaskFutureImpl;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.impl.ContextInternal;
+import io.vertx.sqlclient.Pool;
+import io.vertx.sqlclient.SqlConnection;
+import io.vertx.sqlclient.Transaction;
+
+/**
+ * 一次逻辑调用独占一个连接：获取连接、开启事务，把连接放入上下文的SQL_CONNECTION后执行方法
+ * 方法返回的Future完成后提交或回滚，再归还连接
+ * 方法内经Executor执行的SQL、经datasource导出的连接池执行的SQL（CommonSQL，见SessionAwarePool），以及调用到的其他服务，都使用这个连接
+ * 上下文中已有连接时直接加入，不再开启新的事务
+ * 提交或回滚完成后完成上下文中的SESSION_END，CachingExecutor据此再次使事务修改过的表的缓存失效，afterCommit据此在提交后执行
+ *
+ * 在Vert.x中调用时，方法在新的duplicated context上执行，会话上下文绑定在其中，方法内任何Vert.x异步回调都能取到会话连接
+ */
+public final class SqlSession {
+    /**
+     * 会话所在的Vert.x duplicated context，绑定到会话的服务（见ContextService.getContextService）在其他线程、其他Vert.x上下文中调用时切换到这里执行
+     */
+    static final Context.Key<ContextInternal> VERTX_CONTEXT = new Context.Key<>("sessionVertxContext");
+
+    private SqlSession() {
+    }
+
+    /**
+     * 生成的代理类实现此接口，按方法序号直接调用目标方法，调用时不使用反射
+     */
+    public interface Invoker {
+        Future<?> invoke$(int index, Object[] args);
+    }
+
+    /**
+     * @param session 代理绑定的会话上下文，未绑定时为null，使用当前上下文
+     */
+    public static Future<?> transactional(Pool pool, Context session, Invoker invoker, int index, Object[] args) {
+        Context context = session == null ? Context.currentOrEmpty() : session;
+        if (context.get(Context.SQL_CONNECTION) != null) {
+            return call(context, invoker, index, args);
+        }
+
+        // 结果在连接池的回调中完成，通过TaskFutureImpl在调用方的上下文中执行后续回调
+        TaskFutureImpl<Object> result = new TaskFutureImpl<>();
+        pool.getConnection().onComplete(connectionResult -> {
+            if (connectionResult.failed()) {
+                result.tryFail(connectionResult.cause());
+                return;
+            }
+            SqlConnection connection = connectionResult.result();
+            connection.begin().onComplete(beginResult -> {
+                if (beginResult.failed()) {
+                    connection.close();
+                    result.tryFail(beginResult.cause());
+                    return;
+                }
+                Transaction transaction = beginResult.result();
+                Promise<Boolean> sessionEnd = Promise.promise();
+                Context sessionContext = context
+                    .put(Context.SQL_CONNECTION, connection)
+                    .put(Context.SESSION_END, sessionEnd.future());
+                start(sessionContext, invoker, index, args).onComplete(invokeResult -> {
+                    Future<Void> end = invokeResult.succeeded() ? transaction.commit() : transaction.rollback();
+                    end.onComplete(endResult -> {
+                        sessionEnd.complete(invokeResult.succeeded() && endResult.succeeded());
+                        connection.close();
+                        if (invokeResult.failed()) {
+                            result.tryFail(invokeResult.cause());
+                        } else if (endResult.failed()) {
+                            result.tryFail(endResult.cause());
+                        } else {
+                            result.tryComplete(invokeResult.result());
+                        }
+                    });
+                });
+            });
+        });
+        return result;
+    }
+
+    /**
+     * 当前在会话中时，会话提交成功后再执行，回滚时不执行；不在会话中时立即执行
+     * 会话中的修改提交前对其他连接不可见，变更监听器在提交前重建缓存、快照会读到旧数据，且回滚后不应执行
+     * 提交后在当前上下文中执行，但去掉会话连接，执行的SQL不再使用已归还的连接
+     */
+    public static void afterCommit(Runnable action) {
+        Context context = Context.current();
+        Future<Boolean> sessionEnd = context == null ? null : context.get(Context.SESSION_END);
+        if (sessionEnd == null) {
+            action.run();
+            return;
+        }
+        Context afterSession = context
+            .put(Context.SQL_CONNECTION, null)
+            .put(Context.SESSION_END, null)
+            .put(VERTX_CONTEXT, null);
+        sessionEnd.onSuccess(committed -> {
+            if (committed) {
+                afterSession.run(action);
+            }
+        });
+    }
+
+    /**
+     * 在Vert.x中时为会话新建duplicated context并绑定会话上下文，再在其上执行方法
+     */
+    private static Future<?> start(Context sessionContext, Invoker invoker, int index, Object[] args) {
+        io.vertx.core.Context vertxContext = Vertx.currentContext();
+        if (!(vertxContext instanceof ContextInternal)) {
+            return call(sessionContext, invoker, index, args);
+        }
+        ContextInternal duplicate = ((ContextInternal) vertxContext).duplicate();
+        return call(sessionContext.put(VERTX_CONTEXT, duplicate), invoker, index, args);
+    }
+
+    /**
+     * 在会话中执行方法：当前已在会话的Vert.x上下文中时直接安装会话上下文执行，否则切换到会话的Vert.x上下文执行
+     */
+    public static Future<?> call(Context session, Invoker invoker, int index, Object[] args) {
+        ContextInternal vertxContext = session.get(VERTX_CONTEXT);
+        if (vertxContext == null || Vertx.currentContext() == vertxContext) {
+            return invoke(session, invoker, index, args);
+        }
+
+        TaskFutureImpl<Object> result = new TaskFutureImpl<>();
+        vertxContext.runOnContext(v -> {
+            session.bind();
+            invoke(session, invoker, index, args).onComplete(ar -> {
+                if (ar.succeeded()) {
+                    result.tryComplete(ar.result());
+                } else {
+                    result.tryFail(ar.cause());
+                }
+            });
+        });
+        return result;
+    }
+
+    private static Future<?> invoke(Context session, Invoker invoker, int index, Object[] args) {
+        Context previous = Context.install(session);
+        try {
+            Future<?> future = invoker.invoke$(index, args);
+            return future == null ? Future.succeededFuture() : future;
+        } catch (Throwable e) {
+            return Future.failedFuture(e);
+        } finally {
+            Context.restore(previous);
+        }
+    }
+}
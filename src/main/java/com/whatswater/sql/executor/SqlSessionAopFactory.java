@@ -1,109 +1,428 @@
 package com.whatswater.sql.executor;
 
 
-import com.whatswater.curd.project.sys.employee.EmployeeService;
-import org.objectweb.asm.*;
-import org.objectweb.asm.tree.MethodNode;
+import io.vertx.core.Future;
+import io.vertx.sqlclient.Pool;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
 
-import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static org.objectweb.asm.Opcodes.*;
 
-public class SqlSessionAopFactory {
-    public static final char CLASS_NAME_SPLIT_CHAR = '/';
+/**
+ * 为服务接口生成事务代理类，代理类实现服务接口，持有目标服务、连接池和绑定的会话上下文
+ * - 标记了@Transactional的方法通过SqlSession.transactional执行，整个调用链使用同一个连接
+ * - 其他返回Future的方法：未绑定会话时直接调用目标服务，绑定了会话时通过SqlSession.call在会话中执行
+ * - 其他方法直接调用目标服务
+ * - getOriginService返回目标服务，withContext返回绑定了指定会话的新代理，见ContextService.getContextService
+ *
+ * 代理类在启动时按目标类和接口生成一次并缓存，调用时通过生成的invoke$按方法序号直接调用目标方法，不使用反射
+ */
+public final class SqlSessionAopFactory {
     public static final String SUFFIX_ENHANCE = "$$Enhance$$";
-    public static final String SUFFIX_ENHANCE_JAVA = SUFFIX_ENHANCE + ".java";
+    public static final String TARGET_FIELD_NAME = "target";
+    public static final String POOL_FIELD_NAME = "pool";
+    public static final String CONTEXT_FIELD_NAME = "context";
+
+    private static final String OBJECT_CLASS_NAME = Type.getInternalName(Object.class);
+    private static final String INVOKER_CLASS_NAME = Type.getInternalName(SqlSession.Invoker.class);
+    private static final String SQL_SESSION_CLASS_NAME = Type.getInternalName(SqlSession.class);
+    private static final String POOL_DESCRIPTOR = Type.getDescriptor(Pool.class);
+    private static final String CONTEXT_DESCRIPTOR = Type.getDescriptor(Context.class);
+    private static final String TRANSACTIONAL_DESCRIPTOR = Type.getMethodDescriptor(
+        Type.getType(Future.class),
+        Type.getType(Pool.class),
+        Type.getType(Context.class),
+        Type.getType(SqlSession.Invoker.class),
+        Type.INT_TYPE,
+        Type.getType(Object[].class)
+    );
+    private static final String CALL_DESCRIPTOR = Type.getMethodDescriptor(
+        Type.getType(Future.class),
+        Type.getType(Context.class),
+        Type.getType(SqlSession.Invoker.class),
+        Type.INT_TYPE,
+        Type.getType(Object[].class)
+    );
+    private static final String INVOKE_DESCRIPTOR = Type.getMethodDescriptor(
+        Type.getType(Future.class),
+        Type.INT_TYPE,
+        Type.getType(Object[].class)
+    );
+
+    private static final ClassValue<ConcurrentMap<Class<?>, Constructor<?>>> PROXY_CONSTRUCTORS = new ClassValue<ConcurrentMap<Class<?>, Constructor<?>>>() {
+        @Override
+        protected ConcurrentMap<Class<?>, Constructor<?>> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private SqlSessionAopFactory() {
+    }
+
+    public static <T> T enhance(Class<T> interfaceCls, T target, Pool pool) {
+        Class<?> targetClass = target.getClass();
+        Constructor<?> constructor = PROXY_CONSTRUCTORS.get(targetClass)
+            .computeIfAbsent(interfaceCls, k -> defineProxyClass(interfaceCls, targetClass));
+        try {
+            return interfaceCls.cast(constructor.newInstance(target, pool, null));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to create proxy of: " + targetClass.getName(), e);
+        }
+    }
+
+    public static String proxyClassName(Class<?> interfaceCls, Class<?> targetClass) {
+        return targetClass.getName() + SUFFIX_ENHANCE + interfaceCls.getSimpleName();
+    }
+
+    private static Constructor<?> defineProxyClass(Class<?> interfaceCls, Class<?> targetClass) {
+        if (!interfaceCls.isInterface() || !Modifier.isPublic(interfaceCls.getModifiers())) {
+            throw new IllegalArgumentException("Proxy type must be a public interface: " + interfaceCls.getName());
+        }
+        String className = proxyClassName(interfaceCls, targetClass);
+        byte[] bytes = generate(className.replace('.', '/'), interfaceCls, targetClass);
+        Class<?> proxyClass = new EnhanceClassLoader(targetClass.getClassLoader()).define(className, bytes);
+        try {
+            return proxyClass.getConstructor(interfaceCls, Pool.class, Context.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static byte[] generate(String className, Class<?> interfaceCls, Class<?> targetClass) {
+        String interfaceName = Type.getInternalName(interfaceCls);
+        String targetDescriptor = Type.getDescriptor(interfaceCls);
+
+        ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES) {
+            // 生成的代码中分支合并处的类型都相同，不需要加载类计算公共父类
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                return OBJECT_CLASS_NAME;
+            }
+        };
+        classWriter.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC, className, null, OBJECT_CLASS_NAME, new String[] { interfaceName, INVOKER_CLASS_NAME });
+        classWriter.visitField(ACC_PRIVATE | ACC_FINAL, TARGET_FIELD_NAME, targetDescriptor, null, null).visitEnd();
+        classWriter.visitField(ACC_PRIVATE | ACC_FINAL, POOL_FIELD_NAME, POOL_DESCRIPTOR, null, null).visitEnd();
+        classWriter.visitField(ACC_PRIVATE | ACC_FINAL, CONTEXT_FIELD_NAME, CONTEXT_DESCRIPTOR, null, null).visitEnd();
+
+        MethodVisitor methodVisitor = classWriter.visitMethod(ACC_PUBLIC, "<init>", constructorDescriptor(targetDescriptor), null, null);
+        methodVisitor.visitCode();
+        methodVisitor.visitVarInsn(ALOAD, 0);
+        methodVisitor.visitMethodInsn(INVOKESPECIAL, OBJECT_CLASS_NAME, "<init>", "()V", false);
+        methodVisitor.visitVarInsn(ALOAD, 0);
+        methodVisitor.visitVarInsn(ALOAD, 1);
+        methodVisitor.visitFieldInsn(PUTFIELD, className, TARGET_FIELD_NAME, targetDescriptor);
+        methodVisitor.visitVarInsn(ALOAD, 0);
+        methodVisitor.visitVarInsn(ALOAD, 2);
+        methodVisitor.visitFieldInsn(PUTFIELD, className, POOL_FIELD_NAME, POOL_DESCRIPTOR);
+        methodVisitor.visitVarInsn(ALOAD, 0);
+        methodVisitor.visitVarInsn(ALOAD, 3);
+        methodVisitor.visitFieldInsn(PUTFIELD, className, CONTEXT_FIELD_NAME, CONTEXT_DESCRIPTOR);
+        methodVisitor.visitInsn(RETURN);
+        methodVisitor.visitMaxs(0, 0);
+        methodVisitor.visitEnd();
+
+        // 通过invoke$调用的方法：@Transactional方法和其他返回Future的方法
+        List<Method> invokeMethods = new ArrayList<>();
+        for (Method method: proxyMethods(interfaceCls).values()) {
+            if (method.getDeclaringClass() == ContextService.class) {
+                if ("getOriginService".equals(method.getName())) {
+                    generateGetOriginService(classWriter, className, targetDescriptor, method);
+                } else if ("withContext".equals(method.getName())) {
+                    generateWithContext(classWriter, className, targetDescriptor, method);
+                }
+                continue;
+            }
+            boolean returnFuture = Future.class.isAssignableFrom(method.getReturnType());
+            if (isTransactional(method, targetClass)) {
+                if (!returnFuture) {
+                    throw new IllegalArgumentException("@Transactional method must return Future: " + method);
+                }
+                generateTransactionalMethod(classWriter, className, method, invokeMethods.size());
+                invokeMethods.add(method);
+            } else if (returnFuture) {
+                generateSessionMethod(classWriter, className, interfaceName, targetDescriptor, method, invokeMethods.size());
+                invokeMethods.add(method);
+            } else {
+                generateDelegateMethod(classWriter, className, interfaceName, targetDescriptor, method);
+            }
+        }
+        generateInvoke(classWriter, className, interfaceName, targetDescriptor, invokeMethods);
+
+        classWriter.visitEnd();
+        return classWriter.toByteArray();
+    }
 
     /**
-     * 找到某个方法的所有引用
+     * 接口及父接口中的实例方法，同名同描述符的只保留一个
      */
-    public static void findMethodServiceReference(MethodNode methodNode) {
-        // 1、getField
-        // 2、lambda方法
-        // 3、父类的getField
-        // 4、调用的本类的其他方法
-        // 5、调用的父类的其他方法
-    }
-
-    public static byte[] enhanceTransactionServiceClass(String path) throws IOException {
-        ClassInfo classInfo = ClassInfo.getClassInfo(path);
-        String className = classInfo.getClassName();
-        String simpleName = className.substring(className.lastIndexOf(CLASS_NAME_SPLIT_CHAR) + 1);
-
-        String sqlSessionFieldName = "sqlSession";
-        String sqlSessionFieldDescriptor = "L" + "com.whatswater.sql.executor.SqlSession" + ";";
-        String sqlSessionMethodParameterDescriptor = "(L" + "com.whatswater.sql.executor.SqlSession" + ";)";
-
-        ClassWriter classWriter = new ClassWriter(0);
-        MethodVisitor methodVisitor;
-        String enhanceClassName = className + SUFFIX_ENHANCE;
-        classWriter.visit(V1_8, ACC_PUBLIC | ACC_SUPER, enhanceClassName, null, className, null);
-        classWriter.visitSource(simpleName + SUFFIX_ENHANCE_JAVA, null);
-        {
-            FieldVisitor fieldVisitor = classWriter.visitField(ACC_PRIVATE, sqlSessionFieldName, sqlSessionFieldDescriptor, null, null);
-            fieldVisitor.visitEnd();
-        }
-        String enhanceClassNameDescriptor = "L" + enhanceClassName;
-        String classNameDescriptor = "L" + className;
-        {
-            ClassInfo.copyConstruct(classInfo, classWriter);
-        }
-        {
-            methodVisitor = classWriter.visitMethod(ACC_PUBLIC, "bindNewSqlSession", sqlSessionMethodParameterDescriptor + classNameDescriptor + ";", null, null);
-            methodVisitor.visitCode();
-            Label label0 = new Label();
-            methodVisitor.visitLabel(label0);
-            methodVisitor.visitLineNumber(16, label0);
-            methodVisitor.visitVarInsn(ALOAD, 0);
-            methodVisitor.visitVarInsn(ALOAD, 1);
-            methodVisitor.visitFieldInsn(PUTFIELD, enhanceClassName, sqlSessionFieldName, sqlSessionFieldDescriptor);
-            Label label1 = new Label();
-            methodVisitor.visitLabel(label1);
-            methodVisitor.visitLineNumber(17, label1);
-            methodVisitor.visitVarInsn(ALOAD, 0);
-            methodVisitor.visitInsn(ARETURN);
-            Label label2 = new Label();
-            methodVisitor.visitLabel(label2);
-            methodVisitor.visitLocalVariable("this", enhanceClassNameDescriptor, null, label0, label2, 0);
-            methodVisitor.visitLocalVariable(sqlSessionFieldName, sqlSessionFieldDescriptor, null, label0, label2, 1);
-            methodVisitor.visitMaxs(2, 2);
-            methodVisitor.visitEnd();
-        }
-        {
-            methodVisitor = classWriter.visitMethod(ACC_PUBLIC, "getCurrentSqlSession", "()" + sqlSessionFieldDescriptor, null, null);
-            methodVisitor.visitCode();
-            Label label0 = new Label();
-            methodVisitor.visitLabel(label0);
-            methodVisitor.visitLineNumber(22, label0);
-            methodVisitor.visitVarInsn(ALOAD, 0);
-            methodVisitor.visitFieldInsn(GETFIELD, enhanceClassName, sqlSessionFieldName, sqlSessionFieldDescriptor);
-            methodVisitor.visitInsn(ARETURN);
-            Label label1 = new Label();
-            methodVisitor.visitLabel(label1);
-            methodVisitor.visitLocalVariable("this", enhanceClassNameDescriptor, null, label0, label1, 0);
-            methodVisitor.visitMaxs(1, 1);
-            methodVisitor.visitEnd();
-        }
-        {
-            methodVisitor = classWriter.visitMethod(ACC_PUBLIC | ACC_BRIDGE | ACC_SYNTHETIC, "bindNewSqlSession", sqlSessionMethodParameterDescriptor + "Ljava/lang/Object;", null, null);
-            methodVisitor.visitCode();
-            Label label0 = new Label();
-            methodVisitor.visitLabel(label0);
-            methodVisitor.visitLineNumber(7, label0);
-            methodVisitor.visitVarInsn(ALOAD, 0);
-            methodVisitor.visitVarInsn(ALOAD, 1);
-            methodVisitor.visitMethodInsn(INVOKEVIRTUAL, enhanceClassName, "bindNewSqlSession",  sqlSessionMethodParameterDescriptor + classNameDescriptor + ";", false);
-            methodVisitor.visitInsn(ARETURN);
-            Label label1 = new Label();
-            methodVisitor.visitLabel(label1);
-            methodVisitor.visitLocalVariable("this", enhanceClassNameDescriptor, null, label0, label1, 0);
-            methodVisitor.visitMaxs(2, 2);
-            methodVisitor.visitEnd();
+    private static Map<String, Method> proxyMethods(Class<?> interfaceCls) {
+        Map<String, Method> methods = new LinkedHashMap<>();
+        for (Method method: interfaceCls.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers())) {
+                continue;
+            }
+            methods.putIfAbsent(method.getName() + Type.getMethodDescriptor(method), method);
         }
-        return classWriter.toByteArray();
+        return methods;
+    }
+
+    private static boolean isTransactional(Method method, Class<?> targetClass) {
+        if (method.isAnnotationPresent(Transactional.class)) {
+            return true;
+        }
+        try {
+            return targetClass.getMethod(method.getName(), method.getParameterTypes()).isAnnotationPresent(Transactional.class);
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static void generateGetOriginService(ClassWriter classWriter, String className, String targetDescriptor, Method method) {
+        MethodVisitor methodVisitor = classWriter.visitMethod(ACC_PUBLIC, method.getName(), Type.getMethodDescriptor(method), null, null);
+        methodVisitor.visitCode();
+        methodVisitor.visitVarInsn(ALOAD, 0);
+        methodVisitor.visitFieldInsn(GETFIELD, className, TARGET_FIELD_NAME, targetDescriptor);
+        methodVisitor.visitInsn(ARETURN);
+        methodVisitor.visitMaxs(0, 0);
+        methodVisitor.visitEnd();
+    }
+
+    private static String constructorDescriptor(String targetDescriptor) {
+        return "(" + targetDescriptor + POOL_DESCRIPTOR + CONTEXT_DESCRIPTOR + ")V";
     }
 
-    public static void main(String[] args) throws IOException {
-        SqlSessionAopFactory.enhanceTransactionServiceClass(EmployeeService.class.getName().replaceAll("\\.", "/"));
+    /**
+     * return new Proxy(this.target, this.pool, context);
+     */
+    private static void generateWithContext(ClassWriter classWriter, String className, String targetDescriptor, Method method) {
+        MethodVisitor methodVisitor = classWriter.visitMethod(ACC_PUBLIC, method.getName(), Type.getMethodDescriptor(method), null, null);
+        methodVisitor.visitCode();
+        methodVisitor.visitTypeInsn(NEW, className);
+        methodVisitor.visitInsn(DUP);
+        methodVisitor.visitVarInsn(ALOAD, 0);
+        methodVisitor.visitFieldInsn(GETFIELD, className, TARGET_FIELD_NAME, targetDescriptor);
+        methodVisitor.visitVarInsn(ALOAD, 0);
+        methodVisitor.visitFieldInsn(GETFIELD, className, POOL_FIELD_NAME, POOL_DESCRIPTOR);
+        methodVisitor.visitVarInsn(ALOAD, 1);
+        methodVisitor.visitMethodInsn(INVOKESPECIAL, className, "<init>", constructorDescriptor(targetDescriptor), false);
+        methodVisitor.visitInsn(ARETURN);
+        methodVisitor.visitMaxs(0, 0);
+        methodVisitor.visitEnd();
+    }
+
+    private static void generateDelegateMethod(ClassWriter classWriter, String className, String interfaceName, String targetDescriptor, Method method) {
+        String descriptor = Type.getMethodDescriptor(method);
+        MethodVisitor methodVisitor = classWriter.visitMethod(ACC_PUBLIC, method.getName(), descriptor, null, exceptions(method));
+        methodVisitor.visitCode();
+        delegate(methodVisitor, className, interfaceName, targetDescriptor, method);
+        methodVisitor.visitMaxs(0, 0);
+        methodVisitor.visitEnd();
+    }
+
+    /**
+     * return this.target.method(args...);
+     */
+    private static void delegate(MethodVisitor methodVisitor, String className, String interfaceName, String targetDescriptor, Method method) {
+        String descriptor = Type.getMethodDescriptor(method);
+        methodVisitor.visitVarInsn(ALOAD, 0);
+        methodVisitor.visitFieldInsn(GETFIELD, className, TARGET_FIELD_NAME, targetDescriptor);
+        int slot = 1;
+        for (Type argumentType: Type.getArgumentTypes(descriptor)) {
+            methodVisitor.visitVarInsn(argumentType.getOpcode(ILOAD), slot);
+            slot += argumentType.getSize();
+        }
+        methodVisitor.visitMethodInsn(INVOKEINTERFACE, interfaceName, method.getName(), descriptor, true);
+        methodVisitor.visitInsn(Type.getReturnType(descriptor).getOpcode(IRETURN));
+    }
+
+    /**
+     * if (this.context == null) return this.target.method(args...);
+     * return (R) SqlSession.call(this.context, this, index, new Object[] { args... });
+     */
+    private static void generateSessionMethod(ClassWriter classWriter, String className, String interfaceName, String targetDescriptor, Method method, int index) {
+        MethodVisitor methodVisitor = classWriter.visitMethod(ACC_PUBLIC, method.getName(), Type.getMethodDescriptor(method), null, exceptions(method));
+        methodVisitor.visitCode();
+        Label bound = new Label();
+        methodVisitor.visitVarInsn(ALOAD, 0);
+        methodVisitor.visitFieldInsn(GETFIELD, className, CONTEXT_FIELD_NAME, CONTEXT_DESCRIPTOR);
+        methodVisitor.visitJumpInsn(IFNONNULL, bound);
+        delegate(methodVisitor, className, interfaceName, targetDescriptor, method);
+
+        methodVisitor.visitLabel(bound);
+        methodVisitor.visitVarInsn(ALOAD, 0);
+        methodVisitor.visitFieldInsn(GETFIELD, className, CONTEXT_FIELD_NAME, CONTEXT_DESCRIPTOR);
+        methodVisitor.visitVarInsn(ALOAD, 0);
+        pushInt(methodVisitor, index);
+        pushArguments(methodVisitor, method);
+        methodVisitor.visitMethodInsn(INVOKESTATIC, SQL_SESSION_CLASS_NAME, "call", CALL_DESCRIPTOR, false);
+        methodVisitor.visitTypeInsn(CHECKCAST, Type.getInternalName(method.getReturnType()));
+        methodVisitor.visitInsn(ARETURN);
+        methodVisitor.visitMaxs(0, 0);
+        methodVisitor.visitEnd();
+    }
+
+    /**
+     * return (R) SqlSession.transactional(this.pool, this.context, this, index, new Object[] { args... });
+     */
+    private static void generateTransactionalMethod(ClassWriter classWriter, String className, Method method, int index) {
+        MethodVisitor methodVisitor = classWriter.visitMethod(ACC_PUBLIC, method.getName(), Type.getMethodDescriptor(method), null, exceptions(method));
+        methodVisitor.visitCode();
+        methodVisitor.visitVarInsn(ALOAD, 0);
+        methodVisitor.visitFieldInsn(GETFIELD, className, POOL_FIELD_NAME, POOL_DESCRIPTOR);
+        methodVisitor.visitVarInsn(ALOAD, 0);
+        methodVisitor.visitFieldInsn(GETFIELD, className, CONTEXT_FIELD_NAME, CONTEXT_DESCRIPTOR);
+        methodVisitor.visitVarInsn(ALOAD, 0);
+        pushInt(methodVisitor, index);
+        pushArguments(methodVisitor, method);
+        methodVisitor.visitMethodInsn(INVOKESTATIC, SQL_SESSION_CLASS_NAME, "transactional", TRANSACTIONAL_DESCRIPTOR, false);
+        methodVisitor.visitTypeInsn(CHECKCAST, Type.getInternalName(method.getReturnType()));
+        methodVisitor.visitInsn(ARETURN);
+        methodVisitor.visitMaxs(0, 0);
+        methodVisitor.visitEnd();
+    }
+
+    /**
+     * new Object[] { args... }，基本类型装箱
+     */
+    private static void pushArguments(MethodVisitor methodVisitor, Method method) {
+        Type[] argumentTypes = Type.getArgumentTypes(method);
+        pushInt(methodVisitor, argumentTypes.length);
+        methodVisitor.visitTypeInsn(ANEWARRAY, OBJECT_CLASS_NAME);
+        int slot = 1;
+        for (int i = 0; i < argumentTypes.length; i++) {
+            methodVisitor.visitInsn(DUP);
+            pushInt(methodVisitor, i);
+            methodVisitor.visitVarInsn(argumentTypes[i].getOpcode(ILOAD), slot);
+            box(methodVisitor, argumentTypes[i]);
+            methodVisitor.visitInsn(AASTORE);
+            slot += argumentTypes[i].getSize();
+        }
+    }
+
+    /**
+     * switch (index) { case i: return this.target.method_i((A) args[0], ...); default: throw new IllegalArgumentException(); }
+     */
+    private static void generateInvoke(ClassWriter classWriter, String className, String interfaceName, String targetDescriptor, List<Method> methods) {
+        MethodVisitor methodVisitor = classWriter.visitMethod(ACC_PUBLIC, "invoke$", INVOKE_DESCRIPTOR, null, null);
+        methodVisitor.visitCode();
+        Label defaultLabel = new Label();
+        if (!methods.isEmpty()) {
+            Label[] labels = new Label[methods.size()];
+            for (int i = 0; i < labels.length; i++) {
+                labels[i] = new Label();
+            }
+            methodVisitor.visitVarInsn(ILOAD, 1);
+            methodVisitor.visitTableSwitchInsn(0, labels.length - 1, defaultLabel, labels);
+            for (int i = 0; i < labels.length; i++) {
+                Method method = methods.get(i);
+                String descriptor = Type.getMethodDescriptor(method);
+                Type[] argumentTypes = Type.getArgumentTypes(descriptor);
+
+                methodVisitor.visitLabel(labels[i]);
+                methodVisitor.visitVarInsn(ALOAD, 0);
+                methodVisitor.visitFieldInsn(GETFIELD, className, TARGET_FIELD_NAME, targetDescriptor);
+                for (int j = 0; j < argumentTypes.length; j++) {
+                    methodVisitor.visitVarInsn(ALOAD, 2);
+                    pushInt(methodVisitor, j);
+                    methodVisitor.visitInsn(AALOAD);
+                    unbox(methodVisitor, argumentTypes[j]);
+                }
+                methodVisitor.visitMethodInsn(INVOKEINTERFACE, interfaceName, method.getName(), descriptor, true);
+                methodVisitor.visitInsn(ARETURN);
+            }
+        }
+        methodVisitor.visitLabel(defaultLabel);
+        methodVisitor.visitTypeInsn(NEW, "java/lang/IllegalArgumentException");
+        methodVisitor.visitInsn(DUP);
+        methodVisitor.visitMethodInsn(INVOKESPECIAL, "java/lang/IllegalArgumentException", "<init>", "()V", false);
+        methodVisitor.visitInsn(ATHROW);
+        methodVisitor.visitMaxs(0, 0);
+        methodVisitor.visitEnd();
+    }
+
+    private static String[] exceptions(Method method) {
+        Class<?>[] exceptionTypes = method.getExceptionTypes();
+        if (exceptionTypes.length == 0) {
+            return null;
+        }
+        String[] exceptions = new String[exceptionTypes.length];
+        for (int i = 0; i < exceptionTypes.length; i++) {
+            exceptions[i] = Type.getInternalName(exceptionTypes[i]);
+        }
+        return exceptions;
+    }
+
+    private static void pushInt(MethodVisitor methodVisitor, int value) {
+        if (value >= -1 && value <= 5) {
+            methodVisitor.visitInsn(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            methodVisitor.visitIntInsn(BIPUSH, value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            methodVisitor.visitIntInsn(SIPUSH, value);
+        } else {
+            methodVisitor.visitLdcInsn(value);
+        }
+    }
+
+    private static void box(MethodVisitor methodVisitor, Type type) {
+        Type boxType = boxType(type);
+        if (boxType != null) {
+            methodVisitor.visitMethodInsn(INVOKESTATIC, boxType.getInternalName(), "valueOf", Type.getMethodDescriptor(boxType, type), false);
+        }
+    }
+
+    private static void unbox(MethodVisitor methodVisitor, Type type) {
+        Type boxType = boxType(type);
+        if (boxType == null) {
+            methodVisitor.visitTypeInsn(CHECKCAST, type.getSort() == Type.ARRAY ? type.getDescriptor() : type.getInternalName());
+            return;
+        }
+        methodVisitor.visitTypeInsn(CHECKCAST, boxType.getInternalName());
+        methodVisitor.visitMethodInsn(INVOKEVIRTUAL, boxType.getInternalName(), type.getClassName() + "Value", "()" + type.getDescriptor(), false);
+    }
+
+    private static Type boxType(Type type) {
+        switch (type.getSort()) {
+            case Type.BOOLEAN:
+                return Type.getType(Boolean.class);
+            case Type.CHAR:
+                return Type.getType(Character.class);
+            case Type.BYTE:
+                return Type.getType(Byte.class);
+            case Type.SHORT:
+                return Type.getType(Short.class);
+            case Type.INT:
+                return Type.getType(Integer.class);
+            case Type.FLOAT:
+                return Type.getType(Float.class);
+            case Type.LONG:
+                return Type.getType(Long.class);
+            case Type.DOUBLE:
+                return Type.getType(Double.class);
+            default:
+                return null;
+        }
+    }
+
+    private static final class EnhanceClassLoader extends ClassLoader {
+        private EnhanceClassLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        private Class<?> define(String className, byte[] bytes) {
+            return defineClass(className, bytes, 0, bytes.length);
+        }
     }
 }
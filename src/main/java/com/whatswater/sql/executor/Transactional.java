@@ -0,0 +1,13 @@
+package com.whatswater.sql.executor;
+
+import java.lang.annotation.*;
+
+/**
+ * 标记在服务实现类或接口的方法上，方法需要返回Future
+ * 经SqlSessionAopFactory生成的代理调用时，整个方法（包括其中调用的其他服务）使用同一个连接，在一个事务中执行
+ */
+@Documented
+@Target({ ElementType.METHOD })
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Transactional {
+}
@@ -0,0 +1,32 @@
+package com.whatswater.sql.expression.literal;
+
+
+import com.whatswater.sql.expression.BoolExpression;
+import com.whatswater.sql.expression.Literal;
+
+/**
+ * 布尔常量，由优化器在常量折叠时产生
+ */
+public final class BoolValue implements Literal, BoolExpression {
+    public static final BoolValue TRUE = new BoolValue(true);
+    public static final BoolValue FALSE = new BoolValue(false);
+
+    private final boolean value;
+
+    private BoolValue(boolean value) {
+        this.value = value;
+    }
+
+    public static BoolValue valueOf(boolean value) {
+        return value ? TRUE : FALSE;
+    }
+
+    public boolean getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return value ? "TRUE" : "FALSE";
+    }
+}
@@ -1,6 +1,8 @@
 package com.whatswater.sql.mapper;
 
 
+import io.vertx.sqlclient.Row;
+
 public interface ResultMapper<T> {
-    T mapResult();
+    T mapResult(Row row);
 }
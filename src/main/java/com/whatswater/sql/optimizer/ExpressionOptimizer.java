@@ -0,0 +1,559 @@
+package com.whatswater.sql.optimizer;
+
+
+import com.whatswater.sql.expression.ArithmeticExpression;
+import com.whatswater.sql.expression.BinaryExpression;
+import com.whatswater.sql.expression.BoolExpression;
+import com.whatswater.sql.expression.Expression;
+import com.whatswater.sql.expression.Literal;
+import com.whatswater.sql.expression.ReferenceExpression;
+import com.whatswater.sql.expression.arithmetic.Addition;
+import com.whatswater.sql.expression.arithmetic.BitwiseAnd;
+import com.whatswater.sql.expression.arithmetic.BitwiseOr;
+import com.whatswater.sql.expression.arithmetic.BitwiseXor;
+import com.whatswater.sql.expression.arithmetic.IntegerDivision;
+import com.whatswater.sql.expression.arithmetic.Modulo;
+import com.whatswater.sql.expression.arithmetic.Multiplication;
+import com.whatswater.sql.expression.arithmetic.Subtraction;
+import com.whatswater.sql.expression.judge.EqualsTo;
+import com.whatswater.sql.expression.judge.GreaterThan;
+import com.whatswater.sql.expression.judge.GreaterThanEquals;
+import com.whatswater.sql.expression.judge.InExpression;
+import com.whatswater.sql.expression.judge.InExpression.LiteralList;
+import com.whatswater.sql.expression.judge.IsNull;
+import com.whatswater.sql.expression.judge.LessThan;
+import com.whatswater.sql.expression.judge.LessThanEquals;
+import com.whatswater.sql.expression.judge.NotEqualsTo;
+import com.whatswater.sql.expression.literal.BoolValue;
+import com.whatswater.sql.expression.literal.JdbcParameter;
+import com.whatswater.sql.expression.literal.NullValue;
+import com.whatswater.sql.expression.literal.NumberLiteral;
+import com.whatswater.sql.expression.literal.StringValue;
+import com.whatswater.sql.expression.logic.AndExpression;
+import com.whatswater.sql.expression.logic.NotExpression;
+import com.whatswater.sql.expression.logic.OrExpression;
+import com.whatswater.sql.expression.reference.RawColumnReference;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 生成SQL前对表达式做的等价改写：
+ * - 数字常量的算术运算、比较运算折叠为常量
+ * - 合并嵌套的and/or，去掉恒真、恒假的条件
+ * - in列表去重；同一列的多个等值/in条件，or时合并为一个in，and时取交集
+ *
+ * 注意：改写会直接修改BinaryExpression、NotExpression的子节点，需要保持调用方的表达式不变时传入RewriteLog，用完后回滚
+ */
+public final class ExpressionOptimizer {
+    private ExpressionOptimizer() {
+    }
+
+    /**
+     * @return 优化后的条件，条件恒真时返回null
+     */
+    public static BoolExpression optimizeCondition(BoolExpression condition) {
+        return optimizeCondition(condition, new RewriteLog());
+    }
+
+    /**
+     * @param rewriteLog 记录对子节点的修改
+     * @return 优化后的条件，条件恒真时返回null
+     */
+    public static BoolExpression optimizeCondition(BoolExpression condition, RewriteLog rewriteLog) {
+        if (condition == null) {
+            return null;
+        }
+        BoolExpression result = optimize(condition, rewriteLog);
+        return result == BoolValue.TRUE ? null : result;
+    }
+
+    public static BoolExpression optimize(BoolExpression expression) {
+        return optimize(expression, new RewriteLog());
+    }
+
+    public static BoolExpression optimize(BoolExpression expression, RewriteLog rewriteLog) {
+        Expression result = optimize((Expression) expression, rewriteLog);
+        return result instanceof BoolExpression ? (BoolExpression) result : expression;
+    }
+
+    public static Expression optimize(Expression expression) {
+        return optimize(expression, new RewriteLog());
+    }
+
+    public static Expression optimize(Expression expression, RewriteLog rewriteLog) {
+        if (expression instanceof AndExpression) {
+            return optimizeAnd((AndExpression) expression, rewriteLog);
+        }
+        if (expression instanceof OrExpression) {
+            return optimizeOr((OrExpression) expression, rewriteLog);
+        }
+        if (expression instanceof NotExpression) {
+            return optimizeNot((NotExpression) expression, rewriteLog);
+        }
+        if (expression instanceof InExpression) {
+            return optimizeIn((InExpression) expression);
+        }
+        if (expression instanceof IsNull) {
+            return optimizeIsNull((IsNull) expression);
+        }
+        if (expression instanceof BinaryExpression) {
+            BinaryExpression binaryExpression = (BinaryExpression) expression;
+            Expression left = optimize(binaryExpression.getLeft(), rewriteLog);
+            Expression right = optimize(binaryExpression.getRight(), rewriteLog);
+            if (left != binaryExpression.getLeft()) {
+                rewriteLog.setLeft(binaryExpression, left);
+            }
+            if (right != binaryExpression.getRight()) {
+                rewriteLog.setRight(binaryExpression, right);
+            }
+            if (binaryExpression instanceof ArithmeticExpression) {
+                return foldArithmetic(binaryExpression);
+            }
+            return foldCompare(binaryExpression);
+        }
+        return expression;
+    }
+
+    private static Expression optimizeAnd(AndExpression and, RewriteLog rewriteLog) {
+        if (and.getConditionList() == null) {
+            return and;
+        }
+        List<BoolExpression> conditionList = new ArrayList<>();
+        Set<BoolExpression> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (BoolExpression condition: and.getConditionList()) {
+            BoolExpression optimized = optimize(condition, rewriteLog);
+            List<BoolExpression> items = optimized instanceof AndExpression && ((AndExpression) optimized).getConditionList() != null
+                ? ((AndExpression) optimized).getConditionList()
+                : Collections.singletonList(optimized);
+            for (BoolExpression item: items) {
+                if (item == BoolValue.FALSE) {
+                    return BoolValue.FALSE;
+                }
+                if (item != BoolValue.TRUE && visited.add(item)) {
+                    conditionList.add(item);
+                }
+            }
+        }
+        conditionList = intersectInList(conditionList);
+        if (conditionList == null) {
+            return BoolValue.FALSE;
+        }
+        if (conditionList.isEmpty()) {
+            return BoolValue.TRUE;
+        }
+        if (conditionList.size() == 1) {
+            return conditionList.get(0);
+        }
+        return new AndExpression(conditionList);
+    }
+
+    private static Expression optimizeOr(OrExpression or, RewriteLog rewriteLog) {
+        if (or.getConditionList() == null) {
+            return or;
+        }
+        List<BoolExpression> conditionList = new ArrayList<>();
+        Set<BoolExpression> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (BoolExpression condition: or.getConditionList()) {
+            BoolExpression optimized = optimize(condition, rewriteLog);
+            List<BoolExpression> items = optimized instanceof OrExpression && ((OrExpression) optimized).getConditionList() != null
+                ? ((OrExpression) optimized).getConditionList()
+                : Collections.singletonList(optimized);
+            for (BoolExpression item: items) {
+                if (item == BoolValue.TRUE) {
+                    return BoolValue.TRUE;
+                }
+                if (item != BoolValue.FALSE && visited.add(item)) {
+                    conditionList.add(item);
+                }
+            }
+        }
+        conditionList = unionInList(conditionList);
+        if (conditionList.isEmpty()) {
+            return BoolValue.FALSE;
+        }
+        if (conditionList.size() == 1) {
+            return conditionList.get(0);
+        }
+        return new OrExpression(conditionList);
+    }
+
+    private static Expression optimizeNot(NotExpression not, RewriteLog rewriteLog) {
+        Expression inner = optimize(not.getExpression(), rewriteLog);
+        if (inner instanceof BoolValue) {
+            return BoolValue.valueOf(!((BoolValue) inner).getValue());
+        }
+        if (inner instanceof NotExpression) {
+            return ((NotExpression) inner).getExpression();
+        }
+        if (inner != not.getExpression()) {
+            rewriteLog.setExpression(not, inner);
+        }
+        return not;
+    }
+
+    private static Expression optimizeIn(InExpression in) {
+        if (!(in.getInList() instanceof LiteralList)) {
+            return in;
+        }
+        List<Literal> literals = ((LiteralList) in.getInList()).getLiterals();
+        if (literals == null) {
+            return in;
+        }
+        if (literals.isEmpty()) {
+            return BoolValue.FALSE;
+        }
+        List<Literal> distinct = distinctLiterals(literals);
+        if (distinct.size() == 1) {
+            return new EqualsTo(in.getLeftValue(), distinct.get(0));
+        }
+        if (distinct.size() == literals.size()) {
+            return in;
+        }
+        return new InExpression(in.getLeftValue(), new LiteralList(distinct));
+    }
+
+    private static Expression optimizeIsNull(IsNull isNull) {
+        Expression left = isNull.getLeft();
+        if (left instanceof NullValue) {
+            return BoolValue.TRUE;
+        }
+        if (left instanceof NumberLiteral || left instanceof StringValue) {
+            return BoolValue.FALSE;
+        }
+        return isNull;
+    }
+
+    private static Expression foldArithmetic(BinaryExpression expression) {
+        Number left = numberOf(expression.getLeft());
+        Number right = numberOf(expression.getRight());
+        if (left == null || right == null) {
+            return expression;
+        }
+
+        try {
+            if (isIntegral(left) && isIntegral(right)) {
+                long l = left.longValue();
+                long r = right.longValue();
+                if (expression instanceof Addition) {
+                    return new NumberLiteral(Math.addExact(l, r));
+                }
+                if (expression instanceof Subtraction) {
+                    return new NumberLiteral(Math.subtractExact(l, r));
+                }
+                if (expression instanceof Multiplication) {
+                    return new NumberLiteral(Math.multiplyExact(l, r));
+                }
+                // 除数为0时MySQL返回NULL，保持原样
+                if (expression instanceof IntegerDivision && r != 0) {
+                    return new NumberLiteral(l / r);
+                }
+                if (expression instanceof Modulo && r != 0) {
+                    return new NumberLiteral(l % r);
+                }
+                // MySQL的位运算是无符号64位的，负数不折叠
+                if (l >= 0 && r >= 0) {
+                    if (expression instanceof BitwiseAnd) {
+                        return new NumberLiteral(l & r);
+                    }
+                    if (expression instanceof BitwiseOr) {
+                        return new NumberLiteral(l | r);
+                    }
+                    if (expression instanceof BitwiseXor) {
+                        return new NumberLiteral(l ^ r);
+                    }
+                }
+                return expression;
+            }
+
+            // 浮点数和除法的精度规则与Java不同，只折叠精确的加减乘
+            BigDecimal l = decimalOf(left);
+            BigDecimal r = decimalOf(right);
+            if (l == null || r == null) {
+                return expression;
+            }
+            if (expression instanceof Addition) {
+                return new NumberLiteral(l.add(r));
+            }
+            if (expression instanceof Subtraction) {
+                return new NumberLiteral(l.subtract(r));
+            }
+            if (expression instanceof Multiplication) {
+                return new NumberLiteral(l.multiply(r));
+            }
+        } catch (ArithmeticException e) {
+            // 溢出时交给数据库处理
+        }
+        return expression;
+    }
+
+    private static Expression foldCompare(BinaryExpression expression) {
+        BigDecimal left = decimalOf(numberOf(expression.getLeft()));
+        BigDecimal right = decimalOf(numberOf(expression.getRight()));
+        if (left == null || right == null) {
+            return expression;
+        }
+        int compare = left.compareTo(right);
+        if (expression instanceof EqualsTo) {
+            return BoolValue.valueOf(compare == 0);
+        }
+        if (expression instanceof NotEqualsTo) {
+            return BoolValue.valueOf(compare != 0);
+        }
+        if (expression instanceof GreaterThan) {
+            return BoolValue.valueOf(compare > 0);
+        }
+        if (expression instanceof GreaterThanEquals) {
+            return BoolValue.valueOf(compare >= 0);
+        }
+        if (expression instanceof LessThan) {
+            return BoolValue.valueOf(compare < 0);
+        }
+        if (expression instanceof LessThanEquals) {
+            return BoolValue.valueOf(compare <= 0);
+        }
+        return expression;
+    }
+
+    /**
+     * or中同一列的等值、in条件合并为一个in，位置取第一个条件的位置
+     */
+    private static List<BoolExpression> unionInList(List<BoolExpression> conditionList) {
+        Map<Object, List<Integer>> groups = groupByColumn(conditionList);
+        if (groups.isEmpty()) {
+            return conditionList;
+        }
+
+        List<BoolExpression> result = new ArrayList<>(conditionList);
+        boolean changed = false;
+        for (List<Integer> indexList: groups.values()) {
+            if (indexList.size() < 2) {
+                continue;
+            }
+            List<Literal> literals = new ArrayList<>();
+            for (Integer index: indexList) {
+                literals.addAll(literalsOf(conditionList.get(index)));
+            }
+            Expression column = columnOf(conditionList.get(indexList.get(0)));
+            result.set(indexList.get(0), (BoolExpression) optimizeIn(new InExpression(column, new LiteralList(literals))));
+            for (int i = 1; i < indexList.size(); i++) {
+                result.set(indexList.get(i), null);
+            }
+            changed = true;
+        }
+        if (changed) {
+            result.removeIf(Objects::isNull);
+        }
+        return result;
+    }
+
+    /**
+     * and中同一列的等值、in条件取交集，交集为空时返回null表示条件恒假
+     * 只处理值全部是整数或定点数的情况，字符串受排序规则影响，不能按Java的equals判断
+     */
+    private static List<BoolExpression> intersectInList(List<BoolExpression> conditionList) {
+        Map<Object, List<Integer>> groups = groupByColumn(conditionList);
+        if (groups.isEmpty()) {
+            return conditionList;
+        }
+
+        List<BoolExpression> result = new ArrayList<>(conditionList);
+        boolean changed = false;
+        for (List<Integer> indexList: groups.values()) {
+            if (indexList.size() < 2) {
+                continue;
+            }
+            Map<BigDecimal, Literal> intersection = null;
+            for (Integer index: indexList) {
+                Map<BigDecimal, Literal> values = new LinkedHashMap<>();
+                for (Literal literal: literalsOf(conditionList.get(index))) {
+                    BigDecimal key = exactDecimalOf(literal);
+                    if (key == null) {
+                        values = null;
+                        break;
+                    }
+                    values.putIfAbsent(key, literal);
+                }
+                if (values == null) {
+                    intersection = null;
+                    break;
+                }
+                if (intersection == null) {
+                    intersection = values;
+                } else {
+                    intersection.keySet().retainAll(values.keySet());
+                }
+            }
+            if (intersection == null) {
+                continue;
+            }
+            if (intersection.isEmpty()) {
+                return null;
+            }
+            Expression column = columnOf(conditionList.get(indexList.get(0)));
+            result.set(indexList.get(0), (BoolExpression) optimizeIn(new InExpression(column, new LiteralList(new ArrayList<>(intersection.values())))));
+            for (int i = 1; i < indexList.size(); i++) {
+                result.set(indexList.get(i), null);
+            }
+            changed = true;
+        }
+        if (changed) {
+            result.removeIf(Objects::isNull);
+        }
+        return result;
+    }
+
+    private static Map<Object, List<Integer>> groupByColumn(List<BoolExpression> conditionList) {
+        Map<Object, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < conditionList.size(); i++) {
+            Expression column = columnOf(conditionList.get(i));
+            if (column != null) {
+                groups.computeIfAbsent(columnKey(column), k -> new ArrayList<>()).add(i);
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * @return column = 常量或者column in (常量...)中的column，其他情况返回null
+     */
+    private static Expression columnOf(BoolExpression condition) {
+        if (condition instanceof EqualsTo) {
+            EqualsTo equalsTo = (EqualsTo) condition;
+            if (equalsTo.getLeft() instanceof ReferenceExpression && isValueLiteral(equalsTo.getRight())) {
+                return equalsTo.getLeft();
+            }
+            return null;
+        }
+        if (condition instanceof InExpression) {
+            InExpression in = (InExpression) condition;
+            if (in.getLeftValue() instanceof ReferenceExpression
+                && in.getInList() instanceof LiteralList
+                && ((LiteralList) in.getInList()).getLiterals() != null) {
+                return in.getLeftValue();
+            }
+        }
+        return null;
+    }
+
+    private static List<Literal> literalsOf(BoolExpression condition) {
+        if (condition instanceof EqualsTo) {
+            return Collections.singletonList((Literal) ((EqualsTo) condition).getRight());
+        }
+        return ((LiteralList) ((InExpression) condition).getInList()).getLiterals();
+    }
+
+    private static Object columnKey(Expression column) {
+        if (column instanceof RawColumnReference) {
+            RawColumnReference reference = (RawColumnReference) column;
+            return new ColumnKey(reference.getTable(), reference.getColumnName());
+        }
+        return column;
+    }
+
+    private static boolean isValueLiteral(Expression expression) {
+        return expression instanceof Literal && !(expression instanceof NullValue) && !(expression instanceof BoolValue);
+    }
+
+    private static List<Literal> distinctLiterals(List<Literal> literals) {
+        Map<Object, Literal> distinct = new LinkedHashMap<>();
+        for (Literal literal: literals) {
+            Object key = literalKey(literal);
+            distinct.putIfAbsent(key == null ? new Object() : key, literal);
+        }
+        return new ArrayList<>(distinct.values());
+    }
+
+    /**
+     * 只有完全相同的值才视为重复，无法判断时返回null
+     */
+    private static Object literalKey(Literal literal) {
+        BigDecimal decimal = exactDecimalOf(literal);
+        if (decimal != null) {
+            return decimal;
+        }
+        if (literal instanceof StringValue) {
+            return Collections.singletonList(((StringValue) literal).getValue());
+        }
+        if (literal instanceof JdbcParameter && ((JdbcParameter) literal).getValue() instanceof String) {
+            return Collections.singletonList(((JdbcParameter) literal).getValue());
+        }
+        return null;
+    }
+
+    private static BigDecimal exactDecimalOf(Literal literal) {
+        Object value = null;
+        if (literal instanceof NumberLiteral) {
+            value = ((NumberLiteral) literal).getValue();
+        } else if (literal instanceof JdbcParameter) {
+            value = ((JdbcParameter) literal).getValue();
+        }
+        if (!(value instanceof Number)) {
+            return null;
+        }
+        BigDecimal decimal = decimalOf((Number) value);
+        return decimal == null ? null : decimal.stripTrailingZeros();
+    }
+
+    private static Number numberOf(Expression expression) {
+        return expression instanceof NumberLiteral ? ((NumberLiteral) expression).getValue() : null;
+    }
+
+    private static boolean isIntegral(Number number) {
+        return number instanceof Integer || number instanceof Long || number instanceof Short || number instanceof Byte;
+    }
+
+    /**
+     * 浮点数的十进制表示不精确，返回null
+     */
+    private static BigDecimal decimalOf(Number number) {
+        if (number == null) {
+            return null;
+        }
+        if (isIntegral(number)) {
+            return BigDecimal.valueOf(number.longValue());
+        }
+        if (number instanceof BigDecimal) {
+            return (BigDecimal) number;
+        }
+        if (number instanceof BigInteger) {
+            return new BigDecimal((BigInteger) number);
+        }
+        return null;
+    }
+
+    private static final class ColumnKey {
+        private final Object table;
+        private final String columnName;
+
+        private ColumnKey(Object table, String columnName) {
+            this.table = table;
+            this.columnName = columnName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ColumnKey)) {
+                return false;
+            }
+            ColumnKey that = (ColumnKey) o;
+            return table == that.table && columnName.equals(that.columnName);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(table) * 31 + columnName.hashCode();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.whatswater.sql.optimizer;
+
+
+import com.whatswater.sql.expression.BinaryExpression;
+import com.whatswater.sql.expression.BoolExpression;
+import com.whatswater.sql.expression.Expression;
+import com.whatswater.sql.expression.logic.NotExpression;
+import com.whatswater.sql.statement.SelectColumn;
+import com.whatswater.sql.table.ComplexTable;
+import com.whatswater.sql.table.SelectedTable;
+
+import java.util.ArrayDeque;
+import java.util.List;
+
+/**
+ * 优化器对表结构和表达式的原地修改都经过这里，并记录修改前的值
+ * 表结构中的列引用按对象身份指向所在的表，无法简单复制一份再优化，因此生成SQL时在原对象上改写，生成完成后调用rollback按相反顺序还原
+ */
+public final class RewriteLog {
+    private final ArrayDeque<Runnable> undoStack = new ArrayDeque<>();
+
+    void setLeft(BinaryExpression expression, Expression left) {
+        Expression previous = expression.getLeft();
+        undoStack.push(() -> expression.setLeft(previous));
+        expression.setLeft(left);
+    }
+
+    void setRight(BinaryExpression expression, Expression right) {
+        Expression previous = expression.getRight();
+        undoStack.push(() -> expression.setRight(previous));
+        expression.setRight(right);
+    }
+
+    void setExpression(NotExpression not, Expression expression) {
+        Expression previous = not.getExpression();
+        undoStack.push(() -> not.setExpression(previous));
+        not.setExpression(expression);
+    }
+
+    void where(SelectedTable table, BoolExpression where) {
+        BoolExpression previous = table.getWhere();
+        undoStack.push(() -> table.where(previous));
+        table.where(where);
+    }
+
+    void where(ComplexTable table, BoolExpression where) {
+        BoolExpression previous = table.getWhere();
+        undoStack.push(() -> table.where(previous));
+        table.where(where);
+    }
+
+    void having(ComplexTable table, BoolExpression having) {
+        BoolExpression previous = table.getHaving();
+        undoStack.push(() -> table.having(previous));
+        table.having(having);
+    }
+
+    void select(SelectedTable table, List<SelectColumn> selectList) {
+        List<SelectColumn> previous = table.getSelectList();
+        undoStack.push(() -> table.select(previous));
+        table.select(selectList);
+    }
+
+    /**
+     * 撤销记录的所有修改，之后可以继续记录新的修改
+     */
+    public void rollback() {
+        while (!undoStack.isEmpty()) {
+            undoStack.pop().run();
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.whatswater.sql.optimizer;
+
+
+import com.whatswater.sql.alias.Alias;
+import com.whatswater.sql.dialect.ReferenceExpressionVisitor;
+import com.whatswater.sql.expression.BinaryExpression;
+import com.whatswater.sql.expression.BoolExpression;
+import com.whatswater.sql.expression.Expression;
+import com.whatswater.sql.expression.Literal;
+import com.whatswater.sql.expression.ReferenceExpression;
+import com.whatswater.sql.expression.judge.InExpression;
+import com.whatswater.sql.expression.judge.InExpression.LiteralList;
+import com.whatswater.sql.expression.judge.IsNull;
+import com.whatswater.sql.expression.logic.AndExpression;
+import com.whatswater.sql.expression.logic.NotExpression;
+import com.whatswater.sql.expression.logic.OrExpression;
+import com.whatswater.sql.expression.reference.AliasColumnReference;
+import com.whatswater.sql.expression.reference.RawColumnReference;
+import com.whatswater.sql.statement.OrderByElement;
+import com.whatswater.sql.statement.SelectColumn;
+import com.whatswater.sql.table.AliasTable;
+import com.whatswater.sql.table.ComplexTable;
+import com.whatswater.sql.table.DbTable;
+import com.whatswater.sql.table.JoinedTable;
+import com.whatswater.sql.table.SelectedTable;
+import com.whatswater.sql.table.Table;
+import com.whatswater.sql.utils.CollectionUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 生成SQL前对表结构做的等价改写：
+ * - 优化各层的where、having条件，见ExpressionOptimizer
+ * - ComplexTable包裹SelectedTable子查询时，把外层where中只引用子查询列的条件下推到子查询中
+ * - 删除子查询中外层没有用到的查询列
+ * 改写直接修改传入的表结构，传入RewriteLog时可在生成SQL后回滚，见MysqlDialect.toSql(Table)
+ */
+public final class TableOptimizer {
+    private TableOptimizer() {
+    }
+
+    public static Table optimize(Table table) {
+        return optimize(table, new RewriteLog());
+    }
+
+    public static Table optimize(Table table, RewriteLog rewriteLog) {
+        if (table instanceof SelectedTable) {
+            SelectedTable selectedTable = (SelectedTable) table;
+            rewriteLog.where(selectedTable, ExpressionOptimizer.optimizeCondition(selectedTable.getWhere(), rewriteLog));
+        } else if (table instanceof ComplexTable) {
+            ComplexTable complexTable = (ComplexTable) table;
+            optimize(complexTable.getInnerTable(), rewriteLog);
+            rewriteLog.where(complexTable, ExpressionOptimizer.optimizeCondition(complexTable.getWhere(), rewriteLog));
+            rewriteLog.having(complexTable, ExpressionOptimizer.optimizeCondition(complexTable.getHaving(), rewriteLog));
+            if (complexTable.getInnerTable() instanceof SelectedTable) {
+                SelectedTable innerTable = (SelectedTable) complexTable.getInnerTable();
+                pushDownWhere(complexTable, innerTable, rewriteLog);
+                pruneSelectList(complexTable, innerTable, rewriteLog);
+            }
+        } else if (table instanceof JoinedTable) {
+            JoinedTable joinedTable = (JoinedTable) table;
+            optimize(joinedTable.getLeft(), rewriteLog);
+            optimize(joinedTable.getRight(), rewriteLog);
+        }
+        return table;
+    }
+
+    /**
+     * 子查询带limit时，先过滤再limit和先limit再过滤结果不同，不能下推
+     */
+    private static void pushDownWhere(ComplexTable complexTable, SelectedTable innerTable, RewriteLog rewriteLog) {
+        BoolExpression where = complexTable.getWhere();
+        if (where == null || innerTable.getLimit() != null) {
+            return;
+        }
+
+        List<BoolExpression> conditionList = where instanceof AndExpression
+            ? ((AndExpression) where).getConditionList()
+            : Collections.singletonList(where);
+        List<BoolExpression> remainList = new ArrayList<>();
+        List<BoolExpression> pushedList = new ArrayList<>();
+        for (BoolExpression condition: conditionList) {
+            Expression rebound = rebind(condition, innerTable, null) == null ? null : rebind(condition, innerTable, rewriteLog);
+            if (rebound instanceof BoolExpression) {
+                pushedList.add((BoolExpression) rebound);
+            } else {
+                remainList.add(condition);
+            }
+        }
+        if (pushedList.isEmpty()) {
+            return;
+        }
+
+        if (innerTable.getWhere() != null) {
+            pushedList.add(0, innerTable.getWhere());
+        }
+        rewriteLog.where(innerTable, pushedList.size() == 1 ? pushedList.get(0) : new AndExpression(pushedList));
+        if (remainList.isEmpty()) {
+            rewriteLog.where(complexTable, null);
+        } else {
+            rewriteLog.where(complexTable, remainList.size() == 1 ? remainList.get(0) : new AndExpression(remainList));
+        }
+    }
+
+    /**
+     * 把条件中的列引用改为直接引用子查询的原始表，先用rewriteLog为null检查，检查通过后再改写，避免改了一半的条件留在外层
+     * @return 改写后的条件；条件中有函数、子查询、别名列等无法确定含义的部分时返回null
+     */
+    private static Expression rebind(Expression expression, SelectedTable innerTable, RewriteLog rewriteLog) {
+        boolean apply = rewriteLog != null;
+        if (expression instanceof RawColumnReference) {
+            RawColumnReference reference = (RawColumnReference) expression;
+            DbTable<?> rawTable = innerTable.getRawTable();
+            AliasTable<?> scopeTable = innerTable.findMatchedTable(reference.getTable(), reference.getColumnName());
+            if (scopeTable == rawTable || (scopeTable == innerTable && isRawColumnSelected(innerTable, reference.getColumnName()))) {
+                return apply ? reference.bindNewTable(rawTable) : reference;
+            }
+            return null;
+        }
+        if (expression instanceof Literal) {
+            return expression;
+        }
+        if (expression instanceof BinaryExpression) {
+            BinaryExpression binaryExpression = (BinaryExpression) expression;
+            Expression left = rebind(binaryExpression.getLeft(), innerTable, rewriteLog);
+            Expression right = rebind(binaryExpression.getRight(), innerTable, rewriteLog);
+            if (left == null || right == null) {
+                return null;
+            }
+            if (apply) {
+                rewriteLog.setLeft(binaryExpression, left);
+                rewriteLog.setRight(binaryExpression, right);
+            }
+            return binaryExpression;
+        }
+        if (expression instanceof IsNull) {
+            Expression left = rebind(((IsNull) expression).getLeft(), innerTable, rewriteLog);
+            return left == null ? null : (apply ? new IsNull(left) : expression);
+        }
+        if (expression instanceof InExpression) {
+            InExpression in = (InExpression) expression;
+            if (!(in.getInList() instanceof LiteralList)) {
+                return null;
+            }
+            Expression left = rebind(in.getLeftValue(), innerTable, rewriteLog);
+            return left == null ? null : (apply ? new InExpression(left, in.getInList()) : expression);
+        }
+        if (expression instanceof NotExpression) {
+            NotExpression not = (NotExpression) expression;
+            Expression inner = rebind(not.getExpression(), innerTable, rewriteLog);
+            if (inner == null) {
+                return null;
+            }
+            if (apply) {
+                rewriteLog.setExpression(not, inner);
+            }
+            return not;
+        }
+        if (expression instanceof AndExpression || expression instanceof OrExpression) {
+            List<BoolExpression> conditionList = expression instanceof AndExpression
+                ? ((AndExpression) expression).getConditionList()
+                : ((OrExpression) expression).getConditionList();
+            if (conditionList == null) {
+                return null;
+            }
+            List<BoolExpression> reboundList = new ArrayList<>(conditionList.size());
+            for (BoolExpression condition: conditionList) {
+                Expression rebound = rebind(condition, innerTable, rewriteLog);
+                if (!(rebound instanceof BoolExpression)) {
+                    return null;
+                }
+                reboundList.add((BoolExpression) rebound);
+            }
+            if (!apply) {
+                return expression;
+            }
+            return expression instanceof AndExpression ? new AndExpression(reboundList) : new OrExpression(reboundList);
+        }
+        return null;
+    }
+
+    private static boolean isRawColumnSelected(SelectedTable innerTable, String columnName) {
+        for (SelectColumn selectColumn: innerTable.getSelectList()) {
+            if (selectColumn instanceof RawColumnReference && ((RawColumnReference) selectColumn).getColumnName().equals(columnName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 外层明确列出了查询列时，子查询中没有被外层任何位置引用的列可以删除
+     * distinct的子查询删除列会改变去重的结果，不处理
+     */
+    private static void pruneSelectList(ComplexTable complexTable, SelectedTable innerTable, RewriteLog rewriteLog) {
+        List<SelectColumn> innerSelectList = innerTable.getSelectList();
+        if (CollectionUtils.isEmpty(complexTable.getSelectList())
+            || CollectionUtils.isEmpty(innerSelectList)
+            || innerSelectList.size() == 1
+            || innerTable.isDistinct()) {
+            return;
+        }
+
+        List<ReferenceExpression> references = collectReferences(complexTable);
+        List<SelectColumn> usedList = new ArrayList<>(innerSelectList.size());
+        for (SelectColumn selectColumn: innerSelectList) {
+            if (isReferenced(selectColumn, references)) {
+                usedList.add(selectColumn);
+            }
+        }
+        if (usedList.isEmpty()) {
+            usedList.add(innerSelectList.get(0));
+        }
+        if (usedList.size() < innerSelectList.size()) {
+            rewriteLog.select(innerTable, usedList);
+        }
+    }
+
+    private static boolean isReferenced(SelectColumn selectColumn, List<ReferenceExpression> references) {
+        for (ReferenceExpression reference: references) {
+            if (reference instanceof RawColumnReference) {
+                String columnName = ((RawColumnReference) reference).getColumnName();
+                if (selectColumn instanceof RawColumnReference) {
+                    if (((RawColumnReference) selectColumn).getColumnName().equals(columnName)) {
+                        return true;
+                    }
+                } else if (selectColumn.matchColumnName(columnName)) {
+                    return true;
+                }
+            } else if (reference instanceof AliasColumnReference) {
+                if (selectColumn.matchColumnName(((AliasColumnReference) reference).getColumnAlias())) {
+                    return true;
+                }
+            } else {
+                // 未知的引用类型，保留所有列
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<ReferenceExpression> collectReferences(ComplexTable complexTable) {
+        List<ReferenceExpression> references = new ArrayList<>();
+        ReferenceExpressionVisitor visitor = new ReferenceExpressionVisitor() {
+            @Override
+            public void visit(ReferenceExpression reference) {
+                references.add(reference);
+            }
+        };
+        for (SelectColumn selectColumn: complexTable.getSelectList()) {
+            if (selectColumn instanceof Alias) {
+                visitor.visit(((Alias) selectColumn).getExpression());
+            } else if (selectColumn instanceof ReferenceExpression) {
+                references.add((ReferenceExpression) selectColumn);
+            }
+        }
+        if (complexTable.getWhere() != null) {
+            visitor.visit(complexTable.getWhere());
+        }
+        if (complexTable.getGroupBy() != null) {
+            for (Expression expression: complexTable.getGroupBy()) {
+                visitor.visit(expression);
+            }
+        }
+        if (complexTable.getHaving() != null) {
+            visitor.visit(complexTable.getHaving());
+        }
+        if (complexTable.getOrderBy() != null) {
+            for (OrderByElement orderByElement: complexTable.getOrderBy()) {
+                visitor.visit(orderByElement.getExpression());
+            }
+        }
+        return references;
+    }
+}
@@ -0,0 +1,290 @@
+package com.whatswater.sql.processor;
+
+
+import com.whatswater.sql.table.EntityMeta;
+import com.whatswater.sql.table.annotation.FieldStrategy;
+import com.whatswater.sql.table.annotation.TableField;
+import com.whatswater.sql.table.annotation.TableId;
+import com.whatswater.sql.table.annotation.TableName;
+import com.whatswater.sql.utils.StringUtils;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.PrimitiveType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 编译期生成实体的元数据，替代运行时的注解扫描和反射
+ * 对每个带@TableName的实体生成XxxDbColumn，包含：
+ * - dbTable和每一列的RawColumnReference
+ * - 静态的TableInfo，取值直接调用getter
+ * - ResultMapper，按列名从Row中取值后调用setter
+ * - 实现EntityMeta的Meta类，写入META-INF/services后由EntityMetas加载
+ *
+ * 在maven-compiler-plugin的annotationProcessors中配置本类即可启用
+ */
+@SupportedAnnotationTypes({
+    "com.whatswater.sql.table.annotation.TableName",
+    "com.whatswater.sql.table.annotation.TableId",
+    "com.whatswater.sql.table.annotation.TableField",
+})
+public class EntityMetaProcessor extends AbstractProcessor {
+    public static final String CLASS_SUFFIX = "DbColumn";
+    private static final String SERVICE_FILE = "META-INF/services/" + EntityMeta.class.getName();
+
+    private static final Map<String, String> ROW_GETTERS = new HashMap<>();
+    static {
+        ROW_GETTERS.put("java.lang.String", "getString");
+        ROW_GETTERS.put("java.lang.Long", "getLong");
+        ROW_GETTERS.put("java.lang.Integer", "getInteger");
+        ROW_GETTERS.put("java.lang.Short", "getShort");
+        ROW_GETTERS.put("java.lang.Boolean", "getBoolean");
+        ROW_GETTERS.put("java.lang.Double", "getDouble");
+        ROW_GETTERS.put("java.lang.Float", "getFloat");
+        ROW_GETTERS.put("java.math.BigDecimal", "getBigDecimal");
+        ROW_GETTERS.put("java.time.LocalDateTime", "getLocalDateTime");
+        ROW_GETTERS.put("java.time.LocalDate", "getLocalDate");
+        ROW_GETTERS.put("java.time.LocalTime", "getLocalTime");
+    }
+
+    private final Set<String> processedTypes = new HashSet<>();
+    private final Set<String> metaClassNames = new TreeSet<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeServiceFile();
+            return false;
+        }
+
+        Set<TypeElement> entityTypes = new LinkedHashSet<>();
+        for (TypeElement annotation: annotations) {
+            for (Element element: roundEnv.getElementsAnnotatedWith(annotation)) {
+                Element type = element.getKind() == ElementKind.FIELD ? element.getEnclosingElement() : element;
+                if (type.getKind() == ElementKind.CLASS) {
+                    entityTypes.add((TypeElement) type);
+                }
+            }
+        }
+        for (TypeElement entityType: entityTypes) {
+            if (processedTypes.add(entityType.getQualifiedName().toString())) {
+                generate(entityType);
+            }
+        }
+        return false;
+    }
+
+    private void generate(TypeElement entityType) {
+        TableName tableName = entityType.getAnnotation(TableName.class);
+        if (tableName == null || StringUtils.isEmpty(tableName.value())) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "缺少@TableName，不生成" + CLASS_SUFFIX, entityType);
+            return;
+        }
+
+        List<Column> columns = new ArrayList<>();
+        for (VariableElement field: ElementFilter.fieldsIn(entityType.getEnclosedElements())) {
+            Set<Modifier> modifiers = field.getModifiers();
+            if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.TRANSIENT)) {
+                continue;
+            }
+            Column column = resolveColumn(entityType, field);
+            if (column != null) {
+                columns.add(column);
+            }
+        }
+        if (!hasDefaultConstructor(entityType)) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "实体缺少无参构造器", entityType);
+            return;
+        }
+
+        String packageName = processingEnv.getElementUtils().getPackageOf(entityType).getQualifiedName().toString();
+        String className = entityType.getSimpleName() + CLASS_SUFFIX;
+        String qualifiedName = packageName.isEmpty() ? className : packageName + "." + className;
+        String source = new SourceWriter(packageName, className, entityType.getQualifiedName().toString(), tableName.value(), columns).write();
+        try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, entityType).openWriter()) {
+            writer.write(source);
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "生成" + qualifiedName + "失败：" + e.getMessage(), entityType);
+            return;
+        }
+        metaClassNames.add(qualifiedName + "$Meta");
+    }
+
+    private Column resolveColumn(TypeElement entityType, VariableElement field) {
+        String fieldName = field.getSimpleName().toString();
+        String columnName = StringUtils.underline(fieldName);
+        FieldStrategy insertStrategy = FieldStrategy.NOT_NULL;
+
+        TableField tableField = field.getAnnotation(TableField.class);
+        if (tableField != null) {
+            if (!tableField.exist()) {
+                return null;
+            }
+            insertStrategy = tableField.insertStrategy();
+            if (StringUtils.isNotEmpty(tableField.value())) {
+                columnName = tableField.value();
+            }
+        }
+        TableId tableId = field.getAnnotation(TableId.class);
+
+        TypeMirror fieldType = field.asType();
+        String getter = findGetter(entityType, field);
+        String setter = findSetter(entityType, field);
+        if (getter == null || setter == null) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "字段是private的，且缺少" + (getter == null ? "getter" : "setter"), field);
+            return null;
+        }
+
+        boolean primitive = fieldType.getKind().isPrimitive();
+        String boxedType = primitive
+            ? processingEnv.getTypeUtils().boxedClass((PrimitiveType) fieldType).getQualifiedName().toString()
+            : processingEnv.getTypeUtils().erasure(fieldType).toString();
+        return new Column(fieldName, columnName, insertStrategy, tableId == null ? null : tableId.type().name(), getter, setter, boxedType, primitive);
+    }
+
+    /**
+     * @return 取值表达式的格式，%s为实体表达式；字段private且没有getter时返回null
+     */
+    private String findGetter(TypeElement entityType, VariableElement field) {
+        String fieldName = field.getSimpleName().toString();
+        String capitalized = capitalize(fieldName);
+        boolean isBoolean = field.asType().getKind() == TypeKind.BOOLEAN;
+        for (ExecutableElement method: ElementFilter.methodsIn(entityType.getEnclosedElements())) {
+            if (!isAccessible(method) || !method.getParameters().isEmpty()) {
+                continue;
+            }
+            String methodName = method.getSimpleName().toString();
+            if (methodName.equals("get" + capitalized) || (isBoolean && methodName.equals("is" + capitalized))) {
+                return "%s." + methodName + "()";
+            }
+        }
+        return isAccessible(field) ? "%s." + fieldName : null;
+    }
+
+    /**
+     * @return 赋值语句的格式，%s为值表达式；字段private且没有setter时返回null
+     */
+    private String findSetter(TypeElement entityType, VariableElement field) {
+        String fieldName = field.getSimpleName().toString();
+        String methodName = "set" + capitalize(fieldName);
+        for (ExecutableElement method: ElementFilter.methodsIn(entityType.getEnclosedElements())) {
+            if (isAccessible(method) && method.getParameters().size() == 1 && method.getSimpleName().contentEquals(methodName)) {
+                return "entity." + methodName + "(%s);";
+            }
+        }
+        return isAccessible(field) ? "entity." + fieldName + " = %s;" : null;
+    }
+
+    private static boolean hasDefaultConstructor(TypeElement entityType) {
+        List<ExecutableElement> constructors = ElementFilter.constructorsIn(entityType.getEnclosedElements());
+        for (ExecutableElement constructor: constructors) {
+            if (constructor.getParameters().isEmpty() && isAccessible(constructor)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isAccessible(Element element) {
+        return !element.getModifiers().contains(Modifier.PRIVATE);
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    /**
+     * 增量编译时只会处理部分实体，需要合并已有的服务文件
+     */
+    private void writeServiceFile() {
+        if (metaClassNames.isEmpty()) {
+            return;
+        }
+        Set<String> allNames = new TreeSet<>(metaClassNames);
+        try {
+            FileObject existing = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(existing.openInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    line = line.trim();
+                    if (!line.isEmpty() && !line.startsWith("#")) {
+                        allNames.add(line);
+                    }
+                }
+            }
+        } catch (IOException ignored) {
+            // 首次编译时服务文件不存在
+        }
+
+        try {
+            FileObject serviceFile = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+            try (Writer writer = serviceFile.openWriter()) {
+                for (String name: allNames) {
+                    writer.write(name);
+                    writer.write("\n");
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "写入" + SERVICE_FILE + "失败：" + e.getMessage());
+        }
+    }
+
+    static final class Column {
+        final String fieldName;
+        final String columnName;
+        final FieldStrategy insertStrategy;
+        // IdType的名称，不是主键时为null
+        final String idType;
+        final String getter;
+        final String setter;
+        final String boxedType;
+        final boolean primitive;
+
+        Column(String fieldName, String columnName, FieldStrategy insertStrategy, String idType, String getter, String setter, String boxedType, boolean primitive) {
+            this.fieldName = fieldName;
+            this.columnName = columnName;
+            this.insertStrategy = insertStrategy;
+            this.idType = idType;
+            this.getter = getter;
+            this.setter = setter;
+            this.boxedType = boxedType;
+            this.primitive = primitive;
+        }
+
+        String rowGetter() {
+            String getter = ROW_GETTERS.get(boxedType);
+            return getter == null ? "get(" + boxedType + ".class, index)" : getter + "(index)";
+        }
+    }
+}
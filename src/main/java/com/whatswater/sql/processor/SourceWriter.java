@@ -0,0 +1,135 @@
+package com.whatswater.sql.processor;
+
+
+import com.whatswater.sql.processor.EntityMetaProcessor.Column;
+
+import java.util.List;
+
+/**
+ * 拼接XxxDbColumn的源码，实体类型统一使用全限定名，避免和导入的类重名
+ */
+class SourceWriter {
+    private final String packageName;
+    private final String className;
+    private final String entityName;
+    private final String tableName;
+    private final List<Column> columns;
+    private final StringBuilder sb = new StringBuilder();
+
+    SourceWriter(String packageName, String className, String entityName, String tableName, List<Column> columns) {
+        this.packageName = packageName;
+        this.className = className;
+        this.entityName = entityName;
+        this.tableName = tableName;
+        this.columns = columns;
+    }
+
+    String write() {
+        if (!packageName.isEmpty()) {
+            line("package " + packageName + ";");
+            line("");
+        }
+        line("import com.whatswater.sql.expression.reference.RawColumnReference;");
+        line("import com.whatswater.sql.mapper.ResultMapper;");
+        line("import com.whatswater.sql.table.DbTable;");
+        line("import com.whatswater.sql.table.EntityMeta;");
+        line("import com.whatswater.sql.table.TableFieldInfo;");
+        line("import com.whatswater.sql.table.TableInfo;");
+        line("import com.whatswater.sql.table.annotation.FieldStrategy;");
+        line("import com.whatswater.sql.table.annotation.IdType;");
+        line("");
+        line("import java.util.Arrays;");
+        line("");
+        line("/**");
+        line(" * 由" + EntityMetaProcessor.class.getSimpleName() + "根据" + entityName + "生成，不要手动修改");
+        line(" */");
+        line("public final class " + className + " {");
+        line("    public static final DbTable<" + entityName + "> dbTable = new DbTable<>(" + entityName + ".class, " + quote(tableName) + ");");
+        line("");
+        for (Column column: columns) {
+            line("    public static final RawColumnReference " + column.fieldName + " = new RawColumnReference(dbTable, " + quote(column.columnName) + ");");
+        }
+        line("");
+        writeTableInfo();
+        line("");
+        writeResultMapper();
+        line("");
+        line("    private " + className + "() {");
+        line("    }");
+        line("");
+        writeMeta();
+        line("}");
+        return sb.toString();
+    }
+
+    private void writeTableInfo() {
+        String castEntity = "((" + entityName + ") entity)";
+        line("    public static final TableInfo TABLE_INFO = new TableInfo(" + entityName + ".class, Arrays.asList(");
+        for (int i = 0; i < columns.size(); i++) {
+            Column column = columns.get(i);
+            String idType = column.idType == null ? "null" : "IdType." + column.idType;
+            line("        new TableFieldInfo(" + quote(column.columnName) + ", " + quote(column.fieldName)
+                + ", FieldStrategy." + column.insertStrategy.name() + ", " + idType
+                + ", entity -> " + String.format(column.getter, castEntity) + ")"
+                + (i < columns.size() - 1 ? "," : ""));
+        }
+        line("    ));");
+    }
+
+    /**
+     * 只映射结果集中存在的列，基本类型的列为null时保留字段默认值
+     */
+    private void writeResultMapper() {
+        line("    public static final ResultMapper<" + entityName + "> RESULT_MAPPER = row -> {");
+        line("        " + entityName + " entity = new " + entityName + "();");
+        if (!columns.isEmpty()) {
+            line("        int index;");
+        }
+        for (Column column: columns) {
+            line("        if ((index = row.getColumnIndex(" + quote(column.columnName) + ")) >= 0) {");
+            if (column.primitive) {
+                line("            " + column.boxedType + " value = row." + column.rowGetter() + ";");
+                line("            if (value != null) {");
+                line("                " + String.format(column.setter, "value"));
+                line("            }");
+            } else {
+                line("            " + String.format(column.setter, "row." + column.rowGetter()));
+            }
+            line("        }");
+        }
+        line("        return entity;");
+        line("    };");
+    }
+
+    private void writeMeta() {
+        line("    public static final class Meta implements EntityMeta<" + entityName + "> {");
+        line("        @Override");
+        line("        public Class<" + entityName + "> getEntityClass() {");
+        line("            return " + entityName + ".class;");
+        line("        }");
+        line("");
+        line("        @Override");
+        line("        public DbTable<" + entityName + "> getDbTable() {");
+        line("            return dbTable;");
+        line("        }");
+        line("");
+        line("        @Override");
+        line("        public TableInfo getTableInfo() {");
+        line("            return TABLE_INFO;");
+        line("        }");
+        line("");
+        line("        @Override");
+        line("        public ResultMapper<" + entityName + "> getResultMapper() {");
+        line("            return RESULT_MAPPER;");
+        line("        }");
+        line("    }");
+    }
+
+    private void line(String content) {
+        sb.append(content).append('\n');
+    }
+
+    private static String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+}
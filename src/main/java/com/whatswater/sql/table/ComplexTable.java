@@ -92,6 +92,11 @@ public class ComplexTable implements AliasTable<ComplexTable> {
         return this;
     }
 
+    public Table having(BoolExpression having) {
+        this.having = having;
+        return this;
+    }
+
     @Override
     public Grouped groupBy(List<Expression> groupBy) {
         return (having, selectList) -> {
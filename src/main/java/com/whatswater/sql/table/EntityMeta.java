@@ -0,0 +1,15 @@
+package com.whatswater.sql.table;
+
+
+import com.whatswater.sql.mapper.ResultMapper;
+
+/**
+ * 注解处理器为每个实体生成的元数据，通过ServiceLoader注册，见EntityMetas
+ * @param <T> 实体类型
+ */
+public interface EntityMeta<T> {
+    Class<T> getEntityClass();
+    DbTable<T> getDbTable();
+    TableInfo getTableInfo();
+    ResultMapper<T> getResultMapper();
+}
@@ -0,0 +1,31 @@
+package com.whatswater.sql.table;
+
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * 生成的实体元数据注册表，首次使用时通过ServiceLoader加载一次，之后只读
+ */
+public final class EntityMetas {
+    private static final Map<Class<?>, EntityMeta<?>> META_MAP = load();
+
+    private EntityMetas() {
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> EntityMeta<T> get(Class<T> entityClass) {
+        return (EntityMeta<T>) META_MAP.get(entityClass);
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static Map<Class<?>, EntityMeta<?>> load() {
+        Map<Class<?>, EntityMeta<?>> metaMap = new HashMap<>();
+        for (EntityMeta meta: ServiceLoader.load(EntityMeta.class, EntityMetas.class.getClassLoader())) {
+            metaMap.put(meta.getEntityClass(), meta);
+        }
+        return Collections.unmodifiableMap(metaMap);
+    }
+}
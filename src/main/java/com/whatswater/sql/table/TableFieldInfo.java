@@ -0,0 +1,54 @@
+package com.whatswater.sql.table;
+
+
+import com.whatswater.sql.table.annotation.FieldStrategy;
+import com.whatswater.sql.table.annotation.IdType;
+
+/**
+ * 实体字段和列的对应关系，取值通过Accessor完成，生成的代码中直接调用getter
+ */
+public class TableFieldInfo {
+    private final String column;
+    private final String property;
+    private final FieldStrategy insertStrategy;
+    // 不是主键时为null
+    private final IdType idType;
+    private final Accessor accessor;
+
+    public TableFieldInfo(String column, String property, FieldStrategy insertStrategy, IdType idType, Accessor accessor) {
+        this.column = column;
+        this.property = property;
+        this.insertStrategy = insertStrategy;
+        this.idType = idType;
+        this.accessor = accessor;
+    }
+
+    public String getColumn() {
+        return column;
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    public FieldStrategy getInsertStrategy() {
+        return insertStrategy;
+    }
+
+    public IdType getIdType() {
+        return idType;
+    }
+
+    public boolean isId() {
+        return idType != null;
+    }
+
+    public Object getValue(Object entity) {
+        return accessor.get(entity);
+    }
+
+    @FunctionalInterface
+    public interface Accessor {
+        Object get(Object entity);
+    }
+}
@@ -0,0 +1,32 @@
+package com.whatswater.sql.table;
+
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 实体对应的表结构，由注解处理器生成，或者由MysqlDialect在运行时通过反射解析
+ */
+public class TableInfo implements Iterable<TableFieldInfo> {
+    private final Class<?> entityType;
+    private final List<TableFieldInfo> fieldInfoList;
+
+    public TableInfo(Class<?> entityType, List<TableFieldInfo> fieldInfoList) {
+        this.entityType = entityType;
+        this.fieldInfoList = Collections.unmodifiableList(fieldInfoList);
+    }
+
+    public Class<?> getEntityType() {
+        return entityType;
+    }
+
+    public List<TableFieldInfo> getFieldInfoList() {
+        return fieldInfoList;
+    }
+
+    @Override
+    public Iterator<TableFieldInfo> iterator() {
+        return fieldInfoList.iterator();
+    }
+}
@@ -38,4 +38,24 @@ public class StringUtils {
         int offset = sb.length() - prefix.length();
         return startsWith(sb, prefix, offset);
     }
+
+    /**
+     * 驼峰命名转为下划线命名，userId -> user_id
+     */
+    public static String underline(String name) {
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < name.length(); ++i) {
+            char ch = name.charAt(i);
+            if (ch >= 'A' && ch <= 'Z') {
+                char lch = (char) (ch^32);
+                if (i > 0) {
+                    buf.append('_');
+                }
+                buf.append(lch);
+            } else {
+                buf.append(ch);
+            }
+        }
+        return buf.toString();
+    }
 }
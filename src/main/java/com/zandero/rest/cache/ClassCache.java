@@ -6,6 +6,7 @@ import com.zandero.utils.Assert;
 import javax.ws.rs.core.MediaType;
 import java.lang.reflect.Type;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.zandero.rest.data.ClassUtils.*;
 
@@ -17,7 +18,7 @@ public abstract class ClassCache<T> {
     /**
      * Cache of class instances
      */
-    protected final Map<String, T> instanceCache = new HashMap<>();
+    protected final Map<String, T> instanceCache = new ConcurrentHashMap<>();
 
     /**
      * map of class associated with class type (to be instantiated)
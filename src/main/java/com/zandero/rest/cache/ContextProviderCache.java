@@ -15,6 +15,7 @@ import javax.ws.rs.core.Context;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Storage of context providers
@@ -28,7 +29,7 @@ public class ContextProviderCache extends ClassCache<ContextProvider> {
      * <p>
      * HashMap contains pairs by full class name
      */
-    private static final HashMap<String, List<Field>> contextCache = new HashMap<>();
+    private static final Map<String, List<Field>> contextCache = new ConcurrentHashMap<>();
 
     private static final String CONTEXT_DATA_KEY_PREFIX = "RestRouter-";
 
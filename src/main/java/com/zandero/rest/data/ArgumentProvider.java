@@ -5,9 +5,12 @@ import com.zandero.rest.cache.*;
 import com.zandero.rest.context.ContextProvider;
 import com.zandero.rest.exception.ContextException;
 import com.zandero.rest.injection.InjectionProvider;
+import com.zandero.rest.reader.BufferValueReader;
+import com.zandero.rest.reader.JsonBodyParser;
 import com.zandero.rest.reader.ValueReader;
 import com.zandero.utils.*;
 import com.zandero.utils.extra.UrlUtils;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.*;
 import io.vertx.ext.web.RoutingContext;
 import org.slf4j.*;
@@ -59,8 +62,10 @@ public class ArgumentProvider {
             // set if we have a place to set it ... otherwise ignore
             if (parameter.getIndex() < args.length) {
 
-                // get value
-                String value = getValue(definition, parameter, context, parameter.getDefaultValue());
+                // value is resolved lazily, body readers working on bytes never need it
+                String value = null;
+                // set when the body is read as bytes, shown instead of value in errors
+                Buffer body = null;
 
                 Class<?> dataType = parameter.getDataType();
                 if (dataType == null) {
@@ -97,6 +102,13 @@ public class ArgumentProvider {
                         default:
 
                             ValueReader valueReader = getValueReader(injectionProvider, parameter, definition, context, readers);
+                            if (parameter.isBody() && valueReader instanceof BufferValueReader && hasBody(context.getBody())) {
+                                body = context.getBody();
+                                args[parameter.getIndex()] = ((BufferValueReader) valueReader).read(body, dataType);
+                                break;
+                            }
+
+                            value = getValue(definition, parameter, context, parameter.getDefaultValue());
                             args[parameter.getIndex()] = valueReader.read(value, dataType);
                             break;
                     }
@@ -122,7 +134,9 @@ public class ArgumentProvider {
                                     expectedType;
                         }
 
-                        if (value == null) {
+                        if (body != null) {
+                            error = error + ", but got: " + JsonBodyParser.preview(body);
+                        } else if (value == null) {
                             error = error + ", but got: null";
                         }
 
@@ -155,6 +169,14 @@ public class ArgumentProvider {
         return args;
     }
 
+    /**
+     * Empty or blank bodies are handed over as String so the parameter default value still applies
+     */
+    private static boolean hasBody(Buffer body) {
+
+        return body != null && !JsonBodyParser.isBlank(body);
+    }
+
     public static String getValue(RouteDefinition definition, MethodParameter param, RoutingContext context, String defaultValue) {
 
         String value = getValue(definition, param, context);
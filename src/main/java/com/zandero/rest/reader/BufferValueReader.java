@@ -0,0 +1,17 @@
+package com.zandero.rest.reader;
+
+import io.vertx.core.buffer.Buffer;
+
+/**
+ * Request body reader working on the raw body bytes
+ * body parameters are handed over as received, without decoding the body to a String first
+ */
+public interface BufferValueReader<T> extends ValueReader<T> {
+
+	/**
+	 * @param body request body, null if no body was read
+	 * @param type to convert body to
+	 * @return converted body or null if body is empty
+	 */
+	T read(Buffer body, Class<T> type) throws Throwable;
+}
@@ -0,0 +1,82 @@
+package com.zandero.rest.reader;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.vertx.core.buffer.Buffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Parses JSON request bodies directly from body bytes
+ * small heap bodies are parsed in place from the backing array,
+ * large or direct bodies are streamed through an InputStream so no contiguous copy is made
+ */
+public final class JsonBodyParser {
+
+	/**
+	 * bodies above this size are always streamed
+	 */
+	public static final int STREAMING_THRESHOLD = 64 * 1024;
+
+	/**
+	 * at most this many bytes of a body are shown in error messages
+	 */
+	public static final int PREVIEW_LENGTH = 256;
+
+	private JsonBodyParser() {
+	}
+
+	public static <T> T parse(ObjectReader reader, Buffer body) {
+
+		if (body == null || isBlank(body)) {
+			return null;
+		}
+
+		ByteBuf byteBuf = body.getByteBuf();
+		int length = byteBuf.readableBytes();
+		try {
+			if (length <= STREAMING_THRESHOLD && byteBuf.hasArray()) {
+				return reader.readValue(byteBuf.array(), byteBuf.arrayOffset() + byteBuf.readerIndex(), length);
+			}
+
+			try (InputStream input = new ByteBufInputStream(byteBuf)) {
+				return reader.readValue(input);
+			}
+		} catch (IOException e) {
+			throw new IllegalArgumentException("Given JSON could not be de-serialized. Error: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Empty or whitespace only body, same as an empty trimmed String body
+	 */
+	public static boolean isBlank(Buffer body) {
+
+		int length = body.length();
+		for (int index = 0; index < length; index++) {
+			byte value = body.getByte(index);
+			if (value != ' ' && value != '\t' && value != '\r' && value != '\n') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Body as text for error messages, truncated to PREVIEW_LENGTH bytes
+	 */
+	public static String preview(Buffer body) {
+
+		if (body == null) {
+			return "null";
+		}
+
+		int length = body.length();
+		if (length <= PREVIEW_LENGTH) {
+			return body.toString();
+		}
+		return body.getString(0, PREVIEW_LENGTH) + "... (" + length + " bytes)";
+	}
+}
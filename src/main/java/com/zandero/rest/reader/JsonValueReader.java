@@ -1,7 +1,9 @@
 package com.zandero.rest.reader;
 
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.zandero.utils.StringUtils;
 import com.zandero.utils.extra.JsonUtils;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.jackson.DatabindCodec;
 
 import javax.ws.rs.Consumes;
@@ -10,7 +12,14 @@ import javax.ws.rs.Consumes;
  * Converts request body to JSON
  */
 @Consumes("application/json")
-public class JsonValueReader<T> implements ValueReader<T> {
+public class JsonValueReader<T> implements BufferValueReader<T> {
+
+    private static final ClassValue<ObjectReader> READERS = new ClassValue<ObjectReader>() {
+        @Override
+        protected ObjectReader computeValue(Class<?> type) {
+            return DatabindCodec.mapper().readerFor(type);
+        }
+    };
 
     @Override
     public T read(String value, Class<T> type) {
@@ -21,4 +30,10 @@ public class JsonValueReader<T> implements ValueReader<T> {
 
         return JsonUtils.fromJson(value, type, DatabindCodec.mapper());
     }
+
+    @Override
+    public T read(Buffer body, Class<T> type) {
+
+        return JsonBodyParser.parse(READERS.get(type), body);
+    }
 }
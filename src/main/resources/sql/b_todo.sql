@@ -0,0 +1,3 @@
+-- 收件箱按经手人统计未读待办，TodoInbox加载计数、Todo.actorUnreadSqlAssist依赖该索引
+alter table b_todo
+    add index idx_actor_status_time (actor_employee, status, create_time);
@@ -0,0 +1,10 @@
+-- 流程实例变量按(flow_instance_id, variable_name)唯一，FlowInstanceVariableService.setVariables的upsert依赖该索引
+-- 已有重复数据时先保留每个变量Id最大的一行
+delete v1 from w_flow_instance_variable v1
+    join w_flow_instance_variable v2
+        on v1.flow_instance_id = v2.flow_instance_id
+        and v1.variable_name = v2.variable_name
+        and v1.id < v2.id;
+
+alter table w_flow_instance_variable
+    add unique key uk_instance_variable (flow_instance_id, variable_name);
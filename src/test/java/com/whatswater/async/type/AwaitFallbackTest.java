@@ -0,0 +1,83 @@
+package com.whatswater.async.type;
+
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class AwaitFallbackTest {
+    /**
+     * 没有空闲线程时先扩容到最大线程数，之后才排队，队列满时拒绝并计数
+     */
+    @Test
+    public void testGrowBeforeQueue() throws InterruptedException {
+        ThreadPoolExecutor executor = AwaitFallback.newPlatformExecutor(1, 3, 2);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(3);
+        Runnable blocking = () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+        try {
+            for (int i = 0; i < 3; i++) {
+                executor.execute(blocking);
+            }
+            Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+            Assert.assertEquals(3, executor.getPoolSize());
+            Assert.assertEquals(0, executor.getQueue().size());
+
+            executor.execute(blocking);
+            executor.execute(blocking);
+            Assert.assertEquals(3, executor.getPoolSize());
+            Assert.assertEquals(2, executor.getQueue().size());
+
+            long rejected = AwaitFallback.rejectedCount();
+            try {
+                executor.execute(blocking);
+                Assert.fail();
+            } catch (RejectedExecutionException e) {
+                Assert.assertEquals(rejected + 1, AwaitFallback.rejectedCount());
+            }
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+        Assert.assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * 已完成的Future直接返回；未完成时在非事件循环线程上阻塞等待，并计入阻塞次数
+     */
+    @Test
+    public void testAwait() {
+        long fastPath = AwaitFallback.fastPathCount();
+        Assert.assertEquals("done", Async.await(Future.succeededFuture("done")));
+        Assert.assertEquals(fastPath + 1, AwaitFallback.fastPathCount());
+
+        long blocked = AwaitFallback.blockedCount();
+        Promise<String> promise = Promise.promise();
+        Thread completer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            promise.complete("later");
+        });
+        completer.start();
+        Assert.assertEquals("later", Async.await(promise.future()));
+        Assert.assertEquals(blocked + 1, AwaitFallback.blockedCount());
+        Assert.assertEquals(0, AwaitFallback.blockingNow());
+        Assert.assertTrue(AwaitFallback.toPrometheus().contains("async_await_blocked_total " + AwaitFallback.blockedCount()));
+    }
+}
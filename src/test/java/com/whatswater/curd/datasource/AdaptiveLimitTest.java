@@ -0,0 +1,119 @@
+package com.whatswater.curd.datasource;
+
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * 离散事件模拟的压测：请求按固定速率随机到达，数据库并发超过capacity后执行时间按比例变长
+ */
+public class AdaptiveLimitTest {
+    private static final long WINDOW_MICROS = 1_000_000;
+
+    @Test
+    public void testGrowUnderLoad() {
+        AdaptiveLimit limit = new AdaptiveLimit(2, 64, 64, 5_000);
+        Result result = simulate(limit, 6, 2_000, 16, 60);
+        Assert.assertTrue(result.limit >= 12);
+        Assert.assertTrue(result.limit <= 32);
+        Assert.assertTrue(result.waitP90 <= 5_000);
+    }
+
+    @Test
+    public void testNotGrowWhenDatabaseSaturated() {
+        AdaptiveLimit limit = new AdaptiveLimit(2, 64, 64, 5_000);
+        Result result = simulate(limit, 12, 2_000, 8, 60);
+        Assert.assertTrue(result.limit <= 16);
+        // 数据库饱和时排队时间远超目标值，上限也不再增长
+        Assert.assertTrue(result.waitP90 > 5_000);
+    }
+
+    @Test
+    public void testShrinkWhenIdle() {
+        AdaptiveLimit limit = new AdaptiveLimit(2, 64, 64, 5_000);
+        simulate(limit, 6, 2_000, 16, 30);
+        Result result = simulate(limit, 0.5, 2_000, 16, 60);
+        Assert.assertTrue(result.limit <= 8);
+        Assert.assertTrue(result.waitP90 <= 5_000);
+    }
+
+    /**
+     * 一个异常快的窗口把基线拉低后，上限会被压到最小值，该窗口过期后上限应能重新增长
+     */
+    @Test
+    public void testBaselineRecoversFromFastWindow() {
+        AdaptiveLimit limit = new AdaptiveLimit(2, 64, 16, 5_000);
+        limit.update(10_000, 200, 16);
+        for (int i = 0; i < AdaptiveLimit.BASELINE_WINDOWS; i++) {
+            limit.update(0, 2_000, 16);
+        }
+        Assert.assertEquals(2, limit.getLimit());
+        for (int i = 0; i < AdaptiveLimit.PROBE_INTERVAL - 1; i++) {
+            limit.update(10_000, 2_000, limit.getLimit());
+        }
+        Assert.assertTrue(limit.getLimit() >= 8);
+    }
+
+    /**
+     * @param arrivalPerMillis 每毫秒到达的请求数
+     * @param serviceMicros 数据库不饱和时的执行时间
+     * @param capacity 数据库能并行处理的请求数
+     */
+    private static Result simulate(AdaptiveLimit limit, double arrivalPerMillis, long serviceMicros, int capacity, int windows) {
+        Random random = new Random(42);
+        ArrayDeque<Long> queue = new ArrayDeque<>();
+        PriorityQueue<Long> running = new PriorityQueue<>();
+        LatencyHistogram wait = new LatencyHistogram();
+        LatencyHistogram execute = new LatencyHistogram();
+        int peak = 0;
+        long now = 0;
+        long nextArrival = nextArrival(random, 0, arrivalPerMillis);
+        long windowEnd = WINDOW_MICROS;
+        int windowCount = 0;
+        Result result = new Result();
+
+        while (windowCount < windows) {
+            long nextFinish = running.isEmpty() ? Long.MAX_VALUE : running.peek();
+            now = Math.min(Math.min(nextArrival, nextFinish), windowEnd);
+            if (now == windowEnd) {
+                result.waitP90 = wait.percentile(90);
+                result.limit = limit.update(result.waitP90, execute.percentile(90), peak);
+                wait = new LatencyHistogram();
+                execute = new LatencyHistogram();
+                peak = running.size();
+                windowEnd += WINDOW_MICROS;
+                windowCount++;
+            } else if (now == nextFinish) {
+                running.poll();
+            } else {
+                queue.add(now);
+                nextArrival = nextArrival(random, now, arrivalPerMillis);
+            }
+
+            while (!queue.isEmpty() && running.size() < limit.getLimit()) {
+                wait.record(now - queue.poll());
+                long duration = serviceMicros * Math.max(capacity, running.size() + 1) / capacity;
+                execute.record(duration);
+                running.add(now + duration);
+            }
+            peak = Math.max(peak, running.size());
+        }
+        return result;
+    }
+
+    private static long nextArrival(Random random, long now, double arrivalPerMillis) {
+        if (arrivalPerMillis <= 0) {
+            return Long.MAX_VALUE;
+        }
+        return now + 1 + (long) (-Math.log(1 - random.nextDouble()) * 1000 / arrivalPerMillis);
+    }
+
+    private static final class Result {
+        private int limit;
+        private long waitP90;
+    }
+}
@@ -0,0 +1,62 @@
+package com.whatswater.curd.datasource;
+
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class AdaptivePoolControllerTest {
+    /**
+     * 排队的语句同步完成时，释放许可后依次执行下一条，调用栈不随排队长度加深
+     */
+    @Test
+    public void testDrainLongQueue() {
+        Promise<RowSet<Row>> first = Promise.promise();
+        AdaptivePoolController controller = new AdaptivePoolController(
+            sql -> Future.succeededFuture(),
+            new AdaptiveLimit(1, 1, 1, 5_000),
+            200_000
+        );
+
+        controller.submit(first::future);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 100_000; i++) {
+            int index = i;
+            results.add(controller.submit(() -> Future.succeededFuture(index)));
+        }
+        Assert.assertEquals(100_000, controller.getQueueSize());
+
+        first.complete(null);
+        Assert.assertEquals(0, controller.getQueueSize());
+        for (int i = 0; i < results.size(); i++) {
+            Assert.assertEquals(Integer.valueOf(i), results.get(i).result());
+        }
+    }
+
+    /**
+     * 排队已满时立即失败
+     */
+    @Test
+    public void testQueueFull() {
+        AdaptivePoolController controller = new AdaptivePoolController(
+            sql -> Future.succeededFuture(),
+            new AdaptiveLimit(1, 1, 1, 5_000),
+            1
+        );
+        Promise<Void> running = Promise.promise();
+        controller.submit(running::future);
+        Future<Void> queued = controller.submit(() -> Future.succeededFuture());
+        Future<Void> rejected = controller.submit(() -> Future.succeededFuture());
+
+        Assert.assertTrue(rejected.failed());
+        Assert.assertFalse(queued.isComplete());
+        running.complete();
+        Assert.assertTrue(queued.succeeded());
+    }
+}
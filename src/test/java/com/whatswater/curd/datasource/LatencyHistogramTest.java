@@ -0,0 +1,53 @@
+package com.whatswater.curd.datasource;
+
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+    @Test
+    public void testBucketBounds() {
+        long previous = -1;
+        for (long value = 0; value < 1_000_000; value++) {
+            int index = LatencyHistogram.indexOf(value);
+            long highest = LatencyHistogram.highestOf(index);
+            Assert.assertTrue(value <= highest);
+            Assert.assertTrue(highest - value <= Math.max(0, value / 16));
+            Assert.assertTrue(highest >= previous);
+            previous = highest;
+        }
+    }
+
+    @Test
+    public void testPercentile() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 100L);
+        }
+        Assert.assertEquals(1000, histogram.getCount());
+        Assert.assertEquals(100000, histogram.getMax());
+
+        long p50 = histogram.percentile(50);
+        Assert.assertTrue(p50 >= 50000 && p50 <= 50000 + 50000 / 16);
+        long p99 = histogram.percentile(99);
+        Assert.assertTrue(p99 >= 99000 && p99 <= 100000);
+        Assert.assertEquals(100000, histogram.percentile(100));
+    }
+
+    @Test
+    public void testShape() {
+        Assert.assertEquals(
+            "select * from user a where a.id in (?...) and a.status = ?",
+            SqlMetrics.shapeOf("select * from user a where a.id in (?,?,?) and a.status = ?")
+        );
+        Assert.assertEquals("select * from user a where a.id in (?)", SqlMetrics.shapeOf("select * from user a where a.id in (?)"));
+    }
+
+    @Test
+    public void testShapeMasksLiterals() {
+        Assert.assertEquals(
+            "select a.c1 from user a where a.code = ? and a.name in (?...) and a.status = ? limit ?",
+            SqlMetrics.shapeOf("select a.c1 from user a where a.code = 'it''s \\' secret' and a.name in ('x', \"y\") and a.status = 1.5 limit 10")
+        );
+    }
+}
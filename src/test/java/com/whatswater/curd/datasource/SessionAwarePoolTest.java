@@ -0,0 +1,121 @@
+package com.whatswater.curd.datasource;
+
+
+import com.whatswater.sql.executor.Context;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.mysqlclient.MySQLPool;
+import io.vertx.sqlclient.PreparedQuery;
+import io.vertx.sqlclient.SqlConnection;
+import io.vertx.sqlclient.Tuple;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class SessionAwarePoolTest {
+    private final List<String> log = new ArrayList<>();
+
+    private final SqlConnection connection = (SqlConnection) Proxy.newProxyInstance(
+        SqlConnection.class.getClassLoader(),
+        new Class<?>[] { SqlConnection.class },
+        (p, method, args) -> {
+            log.add(method.getName());
+            return null;
+        }
+    );
+    private final PreparedQuery<?> preparedQuery = (PreparedQuery<?>) Proxy.newProxyInstance(
+        PreparedQuery.class.getClassLoader(),
+        new Class<?>[] { PreparedQuery.class },
+        (p, method, args) -> Future.succeededFuture()
+    );
+    private final MySQLPool pool = (MySQLPool) Proxy.newProxyInstance(
+        MySQLPool.class.getClassLoader(),
+        new Class<?>[] { MySQLPool.class },
+        (p, method, args) -> {
+            log.add("pool." + method.getName());
+            if ("preparedQuery".equals(method.getName())) {
+                return preparedQuery;
+            }
+            return "getConnection".equals(method.getName()) ? Future.succeededFuture(connection) : null;
+        }
+    );
+    private final Context session = Context.EMPTY.put(Context.SQL_CONNECTION, connection);
+
+    @Test
+    public void testQuery() {
+        SessionAwarePool sessionAware = new SessionAwarePool(pool);
+        sessionAware.query("select 1");
+        sessionAware.preparedQuery("select 2");
+        session.run(() -> {
+            sessionAware.query("select 3");
+            sessionAware.preparedQuery("select 4");
+        });
+        Assert.assertEquals(Arrays.asList("pool.query", "pool.preparedQuery", "query", "preparedQuery"), log);
+    }
+
+    /**
+     * 会话中getConnection不能取到会话之外的连接，withTransaction、withConnection加入会话
+     */
+    @Test
+    public void testConnectionInSession() {
+        SessionAwarePool sessionAware = new SessionAwarePool(pool);
+        List<Future<?>> results = new ArrayList<>();
+        session.run(() -> {
+            results.add(sessionAware.getConnection());
+            results.add(sessionAware.withTransaction(conn -> Future.succeededFuture(conn)));
+            results.add(sessionAware.withConnection(conn -> Future.succeededFuture(conn)));
+            results.add(sessionAware.withTransaction(conn -> {
+                throw new IllegalStateException("apply");
+            }));
+        });
+        Assert.assertTrue(results.get(0).failed());
+        Assert.assertSame(connection, results.get(1).result());
+        Assert.assertSame(connection, results.get(2).result());
+        Assert.assertEquals("apply", results.get(3).cause().getMessage());
+        Assert.assertTrue(log.isEmpty());
+
+        Assert.assertSame(connection, sessionAware.getConnection().result());
+        sessionAware.withTransaction(conn -> Future.succeededFuture());
+        Assert.assertEquals(Arrays.asList("pool.getConnection", "pool.withTransaction"), log);
+    }
+
+    /**
+     * 配置SqlMetrics后，直接经连接池执行的语句也按SQL形状记录
+     */
+    @Test
+    public void testMetrics() {
+        SqlMetrics metrics = new SqlMetrics(500L);
+        SessionAwarePool sessionAware = new SessionAwarePool(pool, metrics, null);
+        Assert.assertTrue(sessionAware.preparedQuery("select * from t where id = ?").execute(Tuple.of(1)).succeeded());
+        Assert.assertTrue(metrics.toPrometheus().contains(SqlMetrics.shapeOf("select * from t where id = ?")));
+    }
+
+    /**
+     * 会话之外的语句在AdaptivePoolController的上限内执行，会话中的语句使用已持有的连接，不参与限流
+     */
+    @Test
+    public void testPoolController() {
+        AdaptivePoolController controller = new AdaptivePoolController(
+            sql -> Future.succeededFuture(),
+            new AdaptiveLimit(1, 1, 1, 5_000),
+            16
+        );
+        Promise<Void> running = Promise.promise();
+        controller.submit(running::future);
+
+        SessionAwarePool sessionAware = new SessionAwarePool(pool, null, controller);
+        Future<?> queued = sessionAware.preparedQuery("select 1").execute(Tuple.of(1));
+        Assert.assertEquals(1, controller.getQueueSize());
+        Assert.assertFalse(queued.isComplete());
+        session.run(() -> sessionAware.query("select 2"));
+        Assert.assertEquals(1, controller.getQueueSize());
+
+        running.complete();
+        Assert.assertTrue(queued.succeeded());
+        Assert.assertEquals(0, controller.getQueueSize());
+    }
+}
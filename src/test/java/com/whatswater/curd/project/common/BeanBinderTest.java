@@ -0,0 +1,168 @@
+package com.whatswater.curd.project.common;
+
+
+import com.zandero.rest.data.ClassUtils;
+import com.zandero.rest.exception.ClassFactoryException;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.ext.web.RoutingContext;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.ws.rs.QueryParam;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class BeanBinderTest {
+    public static class Sample {
+        @QueryParam("intValue")
+        private int intValue;
+        @QueryParam("boxedInt")
+        private Integer boxedInt;
+        @QueryParam("longValue")
+        private long longValue;
+        @QueryParam("flag")
+        private boolean flag;
+        @QueryParam("boxedFlag")
+        private Boolean boxedFlag;
+        @QueryParam("doubleValue")
+        private double doubleValue;
+        @QueryParam("letter")
+        private char letter;
+        @QueryParam("unit")
+        private TimeUnit unit;
+        @QueryParam("name")
+        private String name;
+        // 参数缺失时保留字段的初始值
+        @QueryParam("keep")
+        private Integer keep = 3;
+        private String notBound;
+        private Integer setterValue;
+        private int setterCount;
+
+        @QueryParam("setterValue")
+        public void setSetterValue(Integer setterValue) {
+            this.setterValue = setterValue;
+            this.setterCount++;
+        }
+    }
+
+    private static RoutingContext context(String query) {
+        HttpServerRequest request = (HttpServerRequest) Proxy.newProxyInstance(
+            HttpServerRequest.class.getClassLoader(),
+            new Class<?>[] { HttpServerRequest.class },
+            (p, method, args) -> "query".equals(method.getName()) ? query : null
+        );
+        return (RoutingContext) Proxy.newProxyInstance(
+            RoutingContext.class.getClassLoader(),
+            new Class<?>[] { RoutingContext.class },
+            (p, method, args) -> "request".equals(method.getName()) ? request : null
+        );
+    }
+
+    private static Object convertOld(String value, Class<?> dataType) {
+        try {
+            return ClassUtils.stringToPrimitiveType(value, dataType);
+        } catch (Exception e) {
+            return "error";
+        }
+    }
+
+    private static Object convertNew(String value, Class<?> dataType) {
+        try {
+            return BeanBinder.converterOf(dataType).convert(value);
+        } catch (Exception e) {
+            return "error";
+        }
+    }
+
+    /**
+     * 基本类型及其包装类型的转换结果、转换失败的情况与ClassUtils.stringToPrimitiveType一致
+     */
+    @Test
+    public void converterTest() {
+        List<Class<?>> types = Arrays.asList(
+            int.class, Integer.class, long.class, Long.class, boolean.class, Boolean.class,
+            double.class, Double.class, float.class, Float.class, short.class, Short.class,
+            byte.class, Byte.class, char.class, Character.class, String.class, TimeUnit.class
+        );
+        List<String> values = Arrays.asList(
+            "0", "1", "-7", "127", "128", "40000", "3000000000", "1.5", "1e3", "NaN",
+            "true", "TRUE", "yes", "", " 1", "abc", "seconds", "SECONDS"
+        );
+        for (Class<?> type: types) {
+            for (String value: values) {
+                Assert.assertEquals(type.getName() + " <- '" + value + "'", convertOld(value, type), convertNew(value, type));
+            }
+        }
+    }
+
+    @Test
+    public void bindTest() throws Throwable {
+        Sample sample = (Sample) BeanBinder.of(Sample.class).bind(context(
+            "intValue=5&boxedInt=-6&longValue=3000000000&flag=true&boxedFlag=false&doubleValue=1.5"
+                + "&letter=xy&unit=seconds&name=%E4%B8%AD%20a&keep=4&setterValue=9&notBound=x&unknown=y"
+        ), null);
+
+        Assert.assertEquals(5, sample.intValue);
+        Assert.assertEquals(Integer.valueOf(-6), sample.boxedInt);
+        Assert.assertEquals(3000000000L, sample.longValue);
+        Assert.assertTrue(sample.flag);
+        Assert.assertEquals(Boolean.FALSE, sample.boxedFlag);
+        Assert.assertEquals(1.5, sample.doubleValue, 0);
+        Assert.assertEquals('x', sample.letter);
+        Assert.assertEquals(TimeUnit.SECONDS, sample.unit);
+        Assert.assertEquals("中 a", sample.name);
+        Assert.assertEquals(Integer.valueOf(4), sample.keep);
+        Assert.assertEquals(Integer.valueOf(9), sample.setterValue);
+        // 没有注解的字段、没有对应字段的参数都忽略
+        Assert.assertNull(sample.notBound);
+    }
+
+    /**
+     * 缺失的参数不赋值：基本类型保持默认值，字段初始值保留，setter不调用（旧实现调用setter时抛出NullPointerException）
+     */
+    @Test
+    public void nullTest() throws Throwable {
+        Sample sample = (Sample) BeanBinder.of(Sample.class).bind(context(null), null);
+        Assert.assertEquals(0, sample.intValue);
+        Assert.assertNull(sample.boxedInt);
+        Assert.assertFalse(sample.flag);
+        Assert.assertNull(sample.boxedFlag);
+        Assert.assertNull(sample.unit);
+        Assert.assertEquals(Integer.valueOf(3), sample.keep);
+        Assert.assertEquals(0, sample.setterCount);
+
+        // 枚举值不匹配时与ClassUtils一致转换为null，不赋值
+        Sample unknownUnit = (Sample) BeanBinder.of(Sample.class).bind(context("unit=fortnight"), null);
+        Assert.assertNull(unknownUnit.unit);
+    }
+
+    @Test
+    public void convertErrorTest() throws Throwable {
+        try {
+            BeanBinder.of(Sample.class).bind(context("intValue=abc"), null);
+            Assert.fail();
+        } catch (ClassFactoryException e) {
+            Assert.assertTrue(e.getMessage().contains("'abc'"));
+        }
+    }
+
+    /**
+     * 没有无参构造器时使用参数都有注解的构造器，缺少基本类型参数时失败
+     */
+    @Test
+    public void constructorTest() throws Throwable {
+        Page page = (Page) BeanBinder.of(Page.class).bind(context("currentPage=3&pageSize=20"), null);
+        Assert.assertEquals(3, page.getCurrentPage());
+        Assert.assertEquals(40, page.getOffset());
+
+        try {
+            BeanBinder.of(Page.class).bind(context("currentPage=3"), null);
+            Assert.fail();
+        } catch (ClassFactoryException e) {
+            Assert.assertTrue(e.getMessage().contains(Page.class.getName()));
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.whatswater.curd.project.common;
+
+
+import com.whatswater.sql.dialect.Dialect.SQL;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class ExecutorSQLTest {
+    @Test
+    public void testToSql() {
+        SQL sql = ExecutorSQL.select("sys_role")
+            .andEq("code", "admin")
+            .andIn("status", Arrays.asList(1, 2))
+            .setRowSize(1)
+            .toSql();
+        Assert.assertEquals("select * from `sys_role` where `code` = ? and `status` in (?, ?) limit 1", sql.getSqlValue());
+        Assert.assertEquals(Arrays.asList("admin", 1, 2), sql.getParams());
+        Assert.assertEquals(Collections.singleton("sys_role"), sql.getTableNames());
+        Assert.assertFalse(sql.isModify());
+    }
+
+    @Test
+    public void testNoCondition() {
+        Assert.assertEquals("select * from `sys_role`", ExecutorSQL.select("sys_role").toSql().getSqlValue());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyIn() {
+        ExecutorSQL.select("sys_role").andIn("id", Collections.emptyList());
+    }
+}
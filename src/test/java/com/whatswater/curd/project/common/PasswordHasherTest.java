@@ -0,0 +1,21 @@
+package com.whatswater.curd.project.common;
+
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PasswordHasherTest {
+    @Test
+    public void verifyTest() {
+        String pbkdf2 = PasswordHasher.hash(PasswordHasher.KDF_PBKDF2, 1000, "2021@abcdefgh");
+        Assert.assertTrue(pbkdf2.startsWith("pbkdf2$1000$"));
+        Assert.assertTrue(PasswordHasher.verifySync(pbkdf2, "2021@abcdefgh"));
+        Assert.assertFalse(PasswordHasher.verifySync(pbkdf2, "2021@abcdefgi"));
+        Assert.assertNotEquals(pbkdf2, PasswordHasher.hash(PasswordHasher.KDF_PBKDF2, 1000, "2021@abcdefgh"));
+
+        String legacy = CrudUtils.hashPassword("2021@abcdefgh");
+        Assert.assertTrue(PasswordHasher.verifySync(legacy, "2021@abcdefgh"));
+        Assert.assertFalse(PasswordHasher.verifySync(legacy, "2021@abcdefgi"));
+        Assert.assertEquals(legacy, PasswordHasher.hash(PasswordHasher.KDF_SHA256, 0, "2021@abcdefgh"));
+    }
+}
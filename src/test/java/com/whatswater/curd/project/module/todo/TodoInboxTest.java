@@ -0,0 +1,38 @@
+package com.whatswater.curd.project.module.todo;
+
+
+import io.vertx.core.Future;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TodoInboxTest {
+    /**
+     * 加载期间的增减不叠加到查询结果上，版本变化时要求重新查询；加载完成后的增减直接修改计数
+     */
+    @Test
+    public void counterTest() {
+        TodoInbox.UnreadCounter counter = new TodoInbox.UnreadCounter(System.currentTimeMillis());
+        Future<Long> unread = counter.get();
+        long version = counter.version();
+        counter.add(1);
+        Assert.assertFalse(counter.load(5, version));
+        Assert.assertFalse(unread.isComplete());
+
+        Assert.assertTrue(counter.load(5, counter.version()));
+        Assert.assertEquals(Long.valueOf(5L), unread.result());
+        counter.add(1);
+        counter.add(-1);
+        counter.add(-1);
+        Assert.assertEquals(Long.valueOf(4L), counter.get().result());
+        Assert.assertFalse(counter.isExpired(System.currentTimeMillis()));
+    }
+
+    @Test
+    public void staleTest() {
+        TodoInbox.UnreadCounter counter = new TodoInbox.UnreadCounter(System.currentTimeMillis());
+        counter.add(1);
+        counter.loadStale(3);
+        Assert.assertEquals(Long.valueOf(3L), counter.get().result());
+        Assert.assertTrue(counter.isExpired(System.currentTimeMillis()));
+    }
+}
@@ -0,0 +1,77 @@
+package com.whatswater.curd.project.sys.attachment;
+
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AttachmentDownloadHandlerTest {
+    private static final long SIZE = 1000;
+
+    private static void assertRange(long start, long end, String rangeHeader) {
+        Assert.assertArrayEquals(rangeHeader, new long[] { start, end }, AttachmentDownloadHandler.parseRange(rangeHeader, SIZE));
+    }
+
+    @Test
+    public void rangeTest() {
+        assertRange(0, 99, "bytes=0-99");
+        assertRange(10, 10, "bytes= 10 - 10 ");
+        assertRange(0, SIZE - 1, "bytes=0-999");
+    }
+
+    /**
+     * 后缀区间取最后N个字节，超过文件大小时取整个文件
+     */
+    @Test
+    public void suffixRangeTest() {
+        assertRange(900, 999, "bytes=-100");
+        assertRange(999, 999, "bytes=-1");
+        assertRange(0, 999, "bytes=-5000");
+        Assert.assertNull(AttachmentDownloadHandler.parseRange("bytes=-0", SIZE));
+    }
+
+    /**
+     * 不带结束位置时到文件末尾，结束位置超出文件时截断到末尾
+     */
+    @Test
+    public void openEndedRangeTest() {
+        assertRange(500, 999, "bytes=500-");
+        assertRange(999, 999, "bytes=999-");
+        assertRange(990, 999, "bytes=990-2000");
+    }
+
+    /**
+     * 起始位置超出文件或大于结束位置时不可满足，返回416
+     */
+    @Test
+    public void outOfRangeTest() {
+        Assert.assertNull(AttachmentDownloadHandler.parseRange("bytes=1000-", SIZE));
+        Assert.assertNull(AttachmentDownloadHandler.parseRange("bytes=1000-1100", SIZE));
+        Assert.assertNull(AttachmentDownloadHandler.parseRange("bytes=5-3", SIZE));
+    }
+
+    /**
+     * 无法解析的Range头及多区间按没有Range处理，返回整个文件
+     */
+    @Test
+    public void malformedRangeTest() {
+        assertRange(0, 999, null);
+        assertRange(0, 999, "");
+        assertRange(0, 999, "items=0-99");
+        assertRange(0, 999, "bytes=100");
+        assertRange(0, 999, "bytes=-");
+        assertRange(0, 999, "bytes=a-b");
+        assertRange(0, 999, "bytes=1-x");
+        assertRange(0, 999, "bytes=0-1,5-6");
+    }
+
+    @Test
+    public void contentTypeTest() {
+        Assert.assertEquals("application/pdf", AttachmentDownloadHandler.contentType("合同.PDF"));
+        Assert.assertEquals("image/jpeg", AttachmentDownloadHandler.contentType("a.b.jpeg"));
+        Assert.assertEquals("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet", AttachmentDownloadHandler.contentType("报表.xlsx"));
+        Assert.assertEquals("application/octet-stream", AttachmentDownloadHandler.contentType("run.exe"));
+        Assert.assertEquals("application/octet-stream", AttachmentDownloadHandler.contentType("README"));
+        Assert.assertEquals("application/octet-stream", AttachmentDownloadHandler.contentType("name."));
+        Assert.assertEquals("application/octet-stream", AttachmentDownloadHandler.contentType(null));
+    }
+}
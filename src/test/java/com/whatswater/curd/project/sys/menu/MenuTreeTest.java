@@ -0,0 +1,44 @@
+package com.whatswater.curd.project.sys.menu;
+
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class MenuTreeTest {
+    private static Menu menu(long id, long parentId, String permission) {
+        Menu menu = new Menu();
+        menu.setId(id);
+        menu.setParentId(parentId);
+        menu.setPermission(permission);
+        return menu;
+    }
+
+    @Test
+    public void viewTest() {
+        List<Menu> list = Arrays.asList(
+            menu(1L, 0L, null),
+            menu(2L, 1L, "sys:employee"),
+            menu(3L, 1L, "sys:menu"),
+            menu(4L, 0L, "business"),
+            menu(5L, 4L, "business:todo")
+        );
+        MenuTree tree = MenuTree.build(1L, list);
+
+        MenuTree.View full = tree.view(null);
+        Assert.assertEquals(5, full.getMenuList().size());
+
+        MenuTree.View view = tree.view(new HashSet<>(Arrays.asList("sys:menu", "business:todo")));
+        Assert.assertEquals(Arrays.asList(1L, 3L, 4L, 5L), view.getMenuList().stream().map(Menu::getId).collect(Collectors.toList()));
+        Assert.assertSame(view, tree.view(new HashSet<>(Arrays.asList("business:todo", "sys:menu"))));
+        Assert.assertNotEquals(full.getEtag(), view.getEtag());
+
+        MenuTree.View empty = tree.view(Collections.emptySet());
+        Assert.assertEquals(Collections.singletonList(1L), empty.getMenuList().stream().map(Menu::getId).collect(Collectors.toList()));
+    }
+}
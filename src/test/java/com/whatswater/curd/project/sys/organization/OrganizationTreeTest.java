@@ -0,0 +1,46 @@
+package com.whatswater.curd.project.sys.organization;
+
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class OrganizationTreeTest {
+    private static Organization organization(long id, long parentId, String code) {
+        Organization organization = new Organization();
+        organization.setId(id);
+        organization.setParentId(parentId);
+        organization.setOrganizationCode(code);
+        return organization;
+    }
+
+    @Test
+    public void treeTest() {
+        List<Organization> list = Arrays.asList(
+            organization(4L, 2L, "d"),
+            organization(1L, 0L, "a"),
+            organization(3L, 1L, "c"),
+            organization(2L, 1L, "b"),
+            organization(5L, 0L, "e")
+        );
+        OrganizationTree tree = OrganizationTree.build(1L, list);
+
+        Assert.assertEquals(5, tree.size());
+        Assert.assertEquals(Long.valueOf(3L), tree.getByCode("c").getId());
+        Assert.assertEquals(Arrays.asList(1L, 5L), tree.listTopLevel().stream().map(Organization::getId).collect(Collectors.toList()));
+        Assert.assertEquals(Arrays.asList(2L, 3L), tree.listChildren(1L).stream().map(Organization::getId).collect(Collectors.toList()));
+        Assert.assertEquals(Arrays.asList(1L, 2L), tree.listAncestors(4L).stream().map(Organization::getId).collect(Collectors.toList()));
+        Assert.assertEquals(Long.valueOf(1L), tree.getTopLevel(4L).getId());
+        Assert.assertEquals(Arrays.asList(1L, 2L, 4L, 3L), tree.listSubtreeIds(1L));
+        Assert.assertEquals(Collections.singletonList(5L), tree.listSubtreeIds(5L));
+
+        Assert.assertTrue(tree.isInSubtree(1L, 4L));
+        Assert.assertFalse(tree.isInSubtree(3L, 4L));
+        Assert.assertTrue(tree.hasChildren(2L));
+        Assert.assertFalse(tree.hasChildren(4L));
+    }
+}
@@ -0,0 +1,28 @@
+package com.whatswater.curd.project.sys.permission;
+
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class EmployeeIdSetTest {
+    @Test
+    public void andOrTest() {
+        EmployeeIdSet a = EmployeeIdSet.of(Arrays.asList(5L, 1L, 3L, 3L, 9L));
+        EmployeeIdSet b = EmployeeIdSet.of(Arrays.asList(3L, 4L, 9L, 10L));
+
+        Assert.assertEquals(4, a.size());
+        Assert.assertEquals(Arrays.asList(1L, 3L, 5L, 9L), a.toList());
+        Assert.assertEquals(Arrays.asList(3L, 9L), a.and(b).toList());
+        Assert.assertEquals(Arrays.asList(1L, 3L, 4L, 5L, 9L, 10L), a.or(b).toList());
+
+        Assert.assertTrue(a.contains(5L));
+        Assert.assertFalse(a.contains(4L));
+
+        EmployeeIdSet empty = EmployeeIdSet.of(Collections.emptyList());
+        Assert.assertTrue(a.and(empty).isEmpty());
+        Assert.assertEquals(a.toList(), a.or(empty).toList());
+    }
+}
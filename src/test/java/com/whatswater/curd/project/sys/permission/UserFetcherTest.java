@@ -0,0 +1,92 @@
+package com.whatswater.curd.project.sys.permission;
+
+
+import com.whatswater.curd.project.sys.employee.Employee;
+import com.whatswater.curd.project.sys.employee.EmployeeService;
+import com.whatswater.curd.project.sys.employeeFilter.EmployeeFilterDataValueTypeEnum;
+import com.whatswater.curd.project.sys.employeeFilter.SExpressionUtil.FunctionCall;
+import com.whatswater.curd.project.sys.organization.Organization;
+import com.whatswater.curd.project.sys.organization.OrganizationService;
+import com.whatswater.curd.project.sys.organization.OrganizationTree;
+import io.vertx.core.Future;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class UserFetcherTest {
+    private final List<List<Long>> queriedOrganizationIds = new ArrayList<>();
+
+    private static Organization organization(long id, long parentId, String code) {
+        Organization organization = new Organization();
+        organization.setId(id);
+        organization.setParentId(parentId);
+        organization.setOrganizationCode(code);
+        return organization;
+    }
+
+    private UserFetcher userFetcher() {
+        OrganizationTree tree = OrganizationTree.build(1L, Arrays.asList(
+            organization(1L, 0L, "a"),
+            organization(2L, 1L, "b"),
+            organization(3L, 2L, "c"),
+            organization(4L, 0L, "d")
+        ));
+        OrganizationService organizationService = new OrganizationService(null) {
+            @Override
+            public Future<OrganizationTree> getTree() {
+                return Future.succeededFuture(tree);
+            }
+        };
+        EmployeeService employeeService = new EmployeeService() {
+            @Override
+            public Future<List<Employee>> listByOrganization(List<Long> organizationIds) {
+                queriedOrganizationIds.add(organizationIds);
+                return Future.succeededFuture(Collections.emptyList());
+            }
+        };
+
+        UserFetcher userFetcher = new UserFetcher();
+        userFetcher.setOrganizationService(organizationService);
+        userFetcher.setEmployeeService(employeeService);
+        return userFetcher;
+    }
+
+    /**
+     * organization函数只取直属部门的员工，包含下级部门时使用fetchEmployeeByOrganizationTree
+     */
+    @Test
+    public void organizationTest() {
+        UserFetcher userFetcher = userFetcher();
+        userFetcher.fetchEmployeeByOrganization(Arrays.asList("a", "d", "x"));
+        userFetcher.fetchEmployeeByOrganizationTree(Arrays.asList("a", "b", "d", "x"));
+
+        Assert.assertEquals(Arrays.asList(
+            Arrays.asList(1L, 4L),
+            Arrays.asList(1L, 2L, 3L, 4L)
+        ), queriedOrganizationIds);
+    }
+
+    /**
+     * 叶子结果在invalidate之前复用，invalidate之后重新查询
+     */
+    @Test
+    public void leafCacheTest() {
+        UserFetcher userFetcher = userFetcher();
+        FunctionCall functionCall = new FunctionCall();
+        functionCall.setFunctionName(EmployeeFilterDataValueTypeEnum.ORGANIZATION.getFunctionName());
+        functionCall.setParams(Arrays.asList("a", "b"));
+        UserFetcherContext context = variableName -> Future.succeededFuture(variableName);
+
+        userFetcher.resolveEmployeeIdSet(functionCall, context);
+        userFetcher.resolveEmployeeIdSet(functionCall, context);
+        Assert.assertEquals(1, queriedOrganizationIds.size());
+
+        userFetcher.invalidate();
+        userFetcher.resolveEmployeeIdSet(functionCall, context);
+        Assert.assertEquals(2, queriedOrganizationIds.size());
+    }
+}
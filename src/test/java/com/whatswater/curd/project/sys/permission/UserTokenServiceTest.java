@@ -0,0 +1,78 @@
+package com.whatswater.curd.project.sys.permission;
+
+
+import com.whatswater.curd.project.common.BusinessException;
+import com.whatswater.curd.project.common.ErrorCodeEnum;
+import com.whatswater.curd.project.sys.admin.Admin;
+import com.whatswater.curd.project.sys.employee.Employee;
+import com.whatswater.curd.project.sys.menu.Menu;
+import com.whatswater.curd.project.sys.menu.MenuService;
+import com.whatswater.curd.project.sys.menu.MenuTree;
+import io.vertx.core.Future;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class UserTokenServiceTest {
+    private boolean ready;
+    private int invalidateCount;
+
+    private static Menu menu(long id, long parentId, String permission) {
+        Menu menu = new Menu();
+        menu.setId(id);
+        menu.setParentId(parentId);
+        menu.setPermission(permission);
+        return menu;
+    }
+
+    private UserTokenService userTokenService() {
+        MenuTree tree = MenuTree.build(1L, Arrays.asList(
+            menu(1L, 0L, null),
+            menu(2L, 1L, "sys:employee")
+        ));
+        MenuService menuService = new MenuService(null) {
+            @Override
+            public Future<MenuTree> getMenuTree() {
+                return Future.succeededFuture(tree);
+            }
+        };
+        AuthService authService = new AuthService() {
+            @Override
+            public boolean isReady() {
+                return ready;
+            }
+
+            @Override
+            public void invalidate() {
+                invalidateCount++;
+            }
+        };
+
+        UserTokenService userTokenService = new UserTokenService();
+        userTokenService.setMenuService(menuService);
+        userTokenService.setAuthService(authService);
+        return userTokenService;
+    }
+
+    /**
+     * 权限快照构建之前员工取菜单返回PERMISSION_NOT_READY并触发构建，不返回只有公共菜单的结果
+     */
+    @Test
+    public void notReadyTest() {
+        UserTokenService userTokenService = userTokenService();
+        UserToken employeeToken = UserToken.newEmployeeToken(new Employee(), "employee", -1);
+
+        Future<MenuTree.View> view = userTokenService.getAuthorizedMenuView(employeeToken);
+        Assert.assertTrue(view.failed());
+        Assert.assertEquals(ErrorCodeEnum.PERMISSION_NOT_READY.getErrCode(), ((BusinessException) view.cause()).getCode());
+        Assert.assertEquals(1, invalidateCount);
+
+        // 管理员不依赖权限快照
+        UserToken adminToken = UserToken.newAdminToken(new Admin(), null, "admin", -1);
+        Assert.assertEquals(2, userTokenService.getAuthorizedMenuView(adminToken).result().getMenuList().size());
+
+        Future<MenuTree.View> notLogin = userTokenService.getAuthorizedMenuView(null);
+        Assert.assertEquals(ErrorCodeEnum.NOT_LOGIN.getErrCode(), ((BusinessException) notLogin.cause()).getCode());
+    }
+}
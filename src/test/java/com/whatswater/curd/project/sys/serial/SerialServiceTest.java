@@ -0,0 +1,101 @@
+package com.whatswater.curd.project.sys.serial;
+
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class SerialServiceTest {
+    private final List<Integer> allocSteps = new ArrayList<>();
+    private final List<Promise<SerialService.Segment>> allocations = new ArrayList<>();
+
+    private SerialService serialService() {
+        return new SerialService(null) {
+            @Override
+            public Future<SerialService.Segment> allocSegment(String topic, int step) {
+                Promise<SerialService.Segment> promise = Promise.promise();
+                allocSteps.add(step);
+                allocations.add(promise);
+                return promise.future();
+            }
+        };
+    }
+
+    /**
+     * 15分钟内用到预取阈值时翻倍，超过30分钟时减半，不小于配置的步长
+     */
+    @Test
+    public void nextStepTest() {
+        long now = System.currentTimeMillis();
+        SerialService.Segment segment = new SerialService.Segment(0, 400, 100);
+
+        segment.switchIn(now - TimeUnit.MINUTES.toMillis(1));
+        Assert.assertEquals(800, SerialService.nextStep(0, segment, now));
+        Assert.assertEquals(1600, SerialService.nextStep(800, segment, now));
+        Assert.assertEquals(100_000, SerialService.nextStep(80_000, segment, now));
+        Assert.assertEquals(7, SerialService.nextStep(7, null, now));
+
+        SerialService.Segment slow = new SerialService.Segment(0, 400, 100);
+        slow.switchIn(now - TimeUnit.MINUTES.toMillis(20));
+        Assert.assertEquals(400, SerialService.nextStep(0, slow, now));
+
+        SerialService.Segment idle = new SerialService.Segment(0, 150, 100);
+        idle.switchIn(now - TimeUnit.MINUTES.toMillis(40));
+        Assert.assertEquals(100, SerialService.nextStep(0, idle, now));
+    }
+
+    /**
+     * 只记录第一次切换的时间
+     */
+    @Test
+    public void switchInTest() {
+        SerialService.Segment segment = new SerialService.Segment(0, 10, 10);
+        Assert.assertEquals(0, segment.switchTime());
+        segment.switchIn(100);
+        segment.switchIn(200);
+        Assert.assertEquals(100, segment.switchTime());
+    }
+
+    /**
+     * 预取的号段在切换为当前号段时才记录时间，预取后放置的时间不计入消耗时间
+     */
+    @Test
+    public void switchTimeTest() throws InterruptedException {
+        SerialService serialService = serialService();
+        Future<Integer> first = serialService.nextSerial("t");
+        Assert.assertFalse(first.isComplete());
+
+        SerialService.Segment firstSegment = new SerialService.Segment(0, 10, 10);
+        allocations.get(0).complete(firstSegment);
+        Assert.assertEquals(Integer.valueOf(1), first.result());
+        Assert.assertTrue(firstSegment.switchTime() > 0);
+
+        // 用到1/5时预取下一个号段
+        Assert.assertEquals(Integer.valueOf(2), serialService.nextSerial("t").result());
+        Assert.assertEquals(2, allocations.size());
+        SerialService.Segment secondSegment = new SerialService.Segment(10, 20, 10);
+        allocations.get(1).complete(secondSegment);
+        Assert.assertEquals(0, secondSegment.switchTime());
+
+        Thread.sleep(20);
+        for (int i = 3; i <= 10; i++) {
+            Assert.assertEquals(Integer.valueOf(i), serialService.nextSerial("t").result());
+        }
+        Assert.assertEquals(0, secondSegment.switchTime());
+
+        long beforeSwitch = System.currentTimeMillis();
+        Assert.assertEquals(Integer.valueOf(11), serialService.nextSerial("t").result());
+        Assert.assertTrue(secondSegment.switchTime() >= beforeSwitch);
+        Assert.assertEquals(2, allocations.size());
+
+        // 新号段消耗很快，步长翻倍
+        Assert.assertEquals(Integer.valueOf(12), serialService.nextSerial("t").result());
+        Assert.assertEquals(3, allocations.size());
+        Assert.assertEquals(Integer.valueOf(40), allocSteps.get(2));
+    }
+}
@@ -89,6 +89,19 @@ public class MysqlDialectTest {
         }
     }
 
+    @Test
+    public void testGeneratedTableInfo() {
+        MysqlDialect dialect = new MysqlDialect();
+        Assert.assertSame(UserDbColumn.TABLE_INFO, dialect.getTableInfo(User.class));
+        Assert.assertSame(PaymentsDbColumn.TABLE_INFO, dialect.getTableInfo(Payments.class));
+
+        User user = new User();
+        user.setCode("0100092");
+        user.setName("ACS");
+        SQL sql = dialect.toSql(new Insert<>(user, UserDbColumn.dbTable));
+        Assert.assertEquals("insert into user(name,code) values (?,?)", sql.getSql().toString());
+    }
+
     @Test
     public void testDelete() {
         Delete delete = new Delete(UserDbColumn.dbTable.newAlias());
@@ -0,0 +1,105 @@
+package com.whatswater.sql.executor;
+
+
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Vertx;
+import io.vertx.sqlclient.SqlClient;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class BatchLoaderTest {
+    @Test
+    public void testNormalizeId() {
+        Assert.assertEquals(1L, BatchLoader.normalizeId(1));
+        Assert.assertEquals(1L, BatchLoader.normalizeId((short) 1));
+        Assert.assertEquals(1L, BatchLoader.normalizeId(1L));
+        Assert.assertEquals("1", BatchLoader.normalizeId("1"));
+        Assert.assertNull(BatchLoader.normalizeId(null));
+    }
+
+    /**
+     * 实体的主键字段为Integer，调用方按Long查询，合并后的批量结果仍能匹配到调用方
+     */
+    @Test
+    public void testMatchIntegerIdWithLongKey() throws Exception {
+        Vertx vertx = Vertx.vertx();
+        try {
+            List<List<Object>> batches = new ArrayList<>();
+            BatchLoader<Object, String> loader = new BatchLoader<>(vertx, 16, BatchLoader::normalizeId, idList -> {
+                batches.add(idList);
+                Map<Object, String> result = new HashMap<>();
+                for (Object id: idList) {
+                    result.put(((Number) id).intValue(), "employee" + id);
+                }
+                return Future.succeededFuture(result);
+            });
+
+            Future<String> first = loader.load(1L);
+            Future<String> second = loader.load(2);
+            Future<String> duplicate = loader.load(1);
+            CompositeFuture.all(first, second, duplicate).toCompletionStage().toCompletableFuture().get(5, TimeUnit.SECONDS);
+
+            Assert.assertEquals("employee1", first.result());
+            Assert.assertEquals("employee2", second.result());
+            Assert.assertEquals("employee1", duplicate.result());
+            Assert.assertEquals(1, batches.size());
+            Assert.assertEquals(2, batches.get(0).size());
+        } finally {
+            vertx.close();
+        }
+    }
+
+    @Test
+    public void testMatchIntegerIdInTransaction() {
+        BatchLoader<Object, String> loader = new BatchLoader<>(null, 16, BatchLoader::normalizeId, idList -> {
+            Map<Object, String> result = new HashMap<>();
+            result.put(((Number) idList.get(0)).intValue(), "employee" + idList.get(0));
+            return Future.succeededFuture(result);
+        });
+
+        SqlClient connection = (SqlClient) Proxy.newProxyInstance(
+            SqlClient.class.getClassLoader(),
+            new Class<?>[] { SqlClient.class },
+            (p, method, args) -> null
+        );
+        Context previous = Context.install(Context.EMPTY.put(Context.SQL_CONNECTION, connection));
+        try {
+            Assert.assertEquals("employee3", loader.load(3L).result());
+        } finally {
+            Context.restore(previous);
+        }
+    }
+
+    /**
+     * 执行过修改的上下文不并入批次，带着自己的上下文单独查询，读写分离时查询走主库
+     */
+    @Test
+    public void testWriteMarkedNotBatched() {
+        List<Context> contexts = new ArrayList<>();
+        BatchLoader<Object, String> loader = new BatchLoader<>(null, 16, BatchLoader::normalizeId, idList -> {
+            contexts.add(Context.current());
+            Map<Object, String> result = new HashMap<>();
+            result.put(idList.get(0), "employee" + idList.get(0));
+            return Future.succeededFuture(result);
+        });
+
+        Context written = Context.EMPTY.put(Context.WRITE_MARK, new AtomicBoolean(true));
+        Context previous = Context.install(written);
+        try {
+            Assert.assertEquals("employee4", loader.load(4L).result());
+        } finally {
+            Context.restore(previous);
+        }
+        Assert.assertEquals(1, contexts.size());
+        Assert.assertSame(written, contexts.get(0));
+    }
+}
@@ -0,0 +1,101 @@
+package com.whatswater.sql.executor;
+
+
+import com.whatswater.sql.dialect.Dialect.SQL;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.sqlclient.SqlClient;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CachingExecutorTest {
+    private static final String TABLE = "w_role";
+
+    private final AtomicInteger selectCount = new AtomicInteger();
+    private final Executor delegate = sql -> {
+        if (!sql.isModify()) {
+            selectCount.incrementAndGet();
+        }
+        return Future.succeededFuture();
+    };
+
+    private static SQL select() {
+        return new SQL(new StringBuilder("select * from w_role where id = ?"), new ArrayList<>(Collections.singletonList(1L)))
+            .addTableName(TABLE);
+    }
+
+    private static SQL update() {
+        return new SQL(new StringBuilder("update w_role set code = ? where id = ?"))
+            .addTableName(TABLE)
+            .setModify(true);
+    }
+
+    private CachingExecutor executor(Duration replicaLag) {
+        return new CachingExecutor(delegate, Collections.singleton(TABLE), 100, Duration.ofMinutes(1), replicaLag);
+    }
+
+    @Test
+    public void testCacheAndInvalidate() {
+        CachingExecutor executor = executor(Duration.ZERO);
+        executor.query(select());
+        executor.query(select());
+        Assert.assertEquals(1, selectCount.get());
+
+        executor.query(update());
+        executor.query(select());
+        Assert.assertEquals(2, selectCount.get());
+    }
+
+    /**
+     * 事务中的修改完成后、提交前缓存的查询，在事务结束后失效
+     */
+    @Test
+    public void testInvalidateAfterSessionEnd() {
+        CachingExecutor executor = executor(Duration.ZERO);
+        SqlClient connection = (SqlClient) Proxy.newProxyInstance(
+            SqlClient.class.getClassLoader(),
+            new Class<?>[] { SqlClient.class },
+            (p, method, args) -> null
+        );
+        Promise<Boolean> sessionEnd = Promise.promise();
+        Context.EMPTY
+            .put(Context.SQL_CONNECTION, connection)
+            .put(Context.SESSION_END, sessionEnd.future())
+            .run(() -> executor.query(update()));
+
+        executor.query(select());
+        executor.query(select());
+        Assert.assertEquals(1, selectCount.get());
+
+        sessionEnd.complete(true);
+        executor.query(select());
+        Assert.assertEquals(2, selectCount.get());
+    }
+
+    @Test
+    public void testSkipCacheWithinReplicaLag() {
+        CachingExecutor executor = executor(Duration.ofMinutes(1));
+        executor.query(select());
+        executor.query(select());
+        Assert.assertEquals(1, selectCount.get());
+
+        executor.query(update());
+        executor.query(select());
+        executor.query(select());
+        Assert.assertEquals(3, selectCount.get());
+
+        // 执行过修改语句的上下文中查询走主库，可以缓存
+        Context.EMPTY.put(Context.WRITE_MARK, new AtomicBoolean(true)).run(() -> {
+            executor.query(select());
+            executor.query(select());
+        });
+        Assert.assertEquals(4, selectCount.get());
+    }
+}
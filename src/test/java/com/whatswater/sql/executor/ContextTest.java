@@ -0,0 +1,63 @@
+package com.whatswater.sql.executor;
+
+
+import io.vertx.core.Vertx;
+import io.vertx.core.impl.ContextInternal;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+public class ContextTest {
+    private static final Context.Key<String> KEY = new Context.Key<>("test");
+
+    @Test
+    public void testInstallAndDetach() {
+        Context context = Context.EMPTY.put(KEY, "outer");
+        context.run(() -> {
+            Assert.assertEquals("outer", Context.current().get(KEY));
+            Context previous = Context.install(null);
+            try {
+                Assert.assertNull(Context.current());
+            } finally {
+                Context.restore(previous);
+            }
+            Assert.assertEquals("outer", Context.current().get(KEY));
+        });
+        Assert.assertNull(Context.current());
+    }
+
+    /**
+     * 绑定到duplicated context后，普通Vert.x回调中不需要重新安装也能取到；其他duplicated context中取不到
+     */
+    @Test
+    public void testBindSurvivesAsyncHop() throws Exception {
+        Vertx vertx = Vertx.vertx();
+        try {
+            ContextInternal root = (ContextInternal) vertx.getOrCreateContext();
+            ContextInternal request = root.duplicate();
+            CompletableFuture<String> bound = new CompletableFuture<>();
+            CompletableFuture<Boolean> other = new CompletableFuture<>();
+            request.runOnContext(v -> {
+                Assert.assertTrue(Context.EMPTY.put(KEY, "request").bind());
+                vertx.setTimer(1, id -> {
+                    Context context = Context.current();
+                    bound.complete(context == null ? null : context.get(KEY));
+                });
+            });
+            root.duplicate().runOnContext(v -> other.complete(Context.current() == null));
+
+            Assert.assertEquals("request", bound.get(5, TimeUnit.SECONDS));
+            Assert.assertTrue(other.get(5, TimeUnit.SECONDS));
+        } finally {
+            vertx.close();
+        }
+    }
+
+    @Test
+    public void testBindOutsideDuplicatedContext() {
+        Assert.assertFalse(Context.EMPTY.put(KEY, "value").bind());
+        Assert.assertNull(Context.current());
+    }
+}
@@ -0,0 +1,54 @@
+package com.whatswater.sql.executor;
+
+
+import com.whatswater.sql.dialect.Dialect.SQL;
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowSet;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class SingleFlightExecutorTest {
+    private final List<Promise<RowSet<Row>>> executed = new ArrayList<>();
+    private final SingleFlightExecutor executor = new SingleFlightExecutor(sql -> {
+        Promise<RowSet<Row>> promise = Promise.promise();
+        executed.add(promise);
+        return promise.future();
+    });
+
+    private static SQL select() {
+        return new SQL(new StringBuilder("select * from w_role where id = ?"), new ArrayList<>(Collections.singletonList(1L)))
+            .addTableName("w_role");
+    }
+
+    @Test
+    public void testCoalesce() {
+        Future<RowSet<Row>> first = executor.query(select());
+        Future<RowSet<Row>> second = executor.query(select());
+        Assert.assertEquals(1, executed.size());
+        Assert.assertEquals(1, executor.getCoalesceCount());
+
+        executed.get(0).complete(null);
+        Assert.assertTrue(first.succeeded());
+        Assert.assertTrue(second.succeeded());
+        Assert.assertEquals(0, executor.getInFlightCount());
+    }
+
+    /**
+     * 执行过修改的上下文不加入进行中的查询，单独执行
+     */
+    @Test
+    public void testWriteMarkedNotCoalesced() {
+        executor.query(select());
+        Context.EMPTY.put(Context.WRITE_MARK, new AtomicBoolean(true)).run(() -> executor.query(select()));
+        Context.EMPTY.put(Context.WRITE_MARK, new AtomicBoolean(false)).run(() -> executor.query(select()));
+        Assert.assertEquals(2, executed.size());
+        Assert.assertEquals(1, executor.getCoalesceCount());
+    }
+}
@@ -0,0 +1,85 @@
+package com.whatswater.sql.executor;
+
+
+import io.vertx.core.Future;
+import io.vertx.sqlclient.SqlClient;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.List;
+
+public class SqlSessionAopFactoryTest {
+    public interface CounterService extends ContextService<CounterService> {
+        Future<Long> add(long a, int b);
+        Future<String> join(String prefix, List<String> items, boolean upper, double[] weights);
+        Future<Context> currentContext();
+        String name();
+    }
+
+    public static class CounterServiceImpl implements CounterService {
+        @Override
+        @Transactional
+        public Future<Long> add(long a, int b) {
+            return Future.succeededFuture(a + b);
+        }
+
+        @Override
+        @Transactional
+        public Future<String> join(String prefix, List<String> items, boolean upper, double[] weights) {
+            String value = prefix + String.join(",", items) + weights.length;
+            return Future.succeededFuture(upper ? value.toUpperCase() : value);
+        }
+
+        @Override
+        @Transactional
+        public Future<Context> currentContext() {
+            return Future.succeededFuture(Context.current());
+        }
+
+        @Override
+        public String name() {
+            return "counter";
+        }
+    }
+
+    public interface InvalidService {
+        @Transactional
+        String name();
+    }
+
+    @Test
+    public void testDelegate() {
+        CounterServiceImpl target = new CounterServiceImpl();
+        CounterService proxy = SqlSessionAopFactory.enhance(CounterService.class, target, null);
+
+        Assert.assertEquals("counter", proxy.name());
+        Assert.assertSame(target, proxy.getOriginService());
+        Assert.assertSame(target, target.getOriginService());
+        Assert.assertEquals(SqlSessionAopFactory.proxyClassName(CounterService.class, CounterServiceImpl.class), proxy.getClass().getName());
+        Assert.assertSame(proxy.getClass(), SqlSessionAopFactory.enhance(CounterService.class, new CounterServiceImpl(), null).getClass());
+    }
+
+    @Test
+    public void testJoinCurrentSession() {
+        CounterService proxy = SqlSessionAopFactory.enhance(CounterService.class, new CounterServiceImpl(), null);
+        SqlClient connection = (SqlClient) Proxy.newProxyInstance(
+            SqlClient.class.getClassLoader(),
+            new Class<?>[] { SqlClient.class },
+            (p, method, args) -> null
+        );
+        Context context = Context.EMPTY.put(Context.SQL_CONNECTION, connection);
+
+        context.run(() -> {
+            Assert.assertEquals(Long.valueOf(3L), proxy.add(1L, 2).result());
+            Assert.assertEquals("A:X,Y2", proxy.join("a:", Arrays.asList("x", "y"), true, new double[2]).result());
+            Assert.assertSame(context, proxy.currentContext().result());
+        });
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTransactionalMustReturnFuture() {
+        SqlSessionAopFactory.enhance(InvalidService.class, () -> "invalid", null);
+    }
+}
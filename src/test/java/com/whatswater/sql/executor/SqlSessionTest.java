@@ -0,0 +1,185 @@
+package com.whatswater.sql.executor;
+
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.sqlclient.Pool;
+import io.vertx.sqlclient.SqlClient;
+import io.vertx.sqlclient.SqlConnection;
+import io.vertx.sqlclient.Transaction;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class SqlSessionTest {
+    public interface OrderService extends ContextService<OrderService> {
+        Future<SqlClient> save();
+        Future<String> fail();
+        Future<String> error();
+        Future<OrderService> sibling();
+        Future<Context> currentContext();
+    }
+
+    public static class OrderServiceImpl implements OrderService {
+        private OrderService self;
+
+        @Override
+        @Transactional
+        public Future<SqlClient> save() {
+            return Future.succeededFuture(Context.current().get(Context.SQL_CONNECTION));
+        }
+
+        @Override
+        @Transactional
+        public Future<String> fail() {
+            return Future.failedFuture(new IllegalStateException("fail"));
+        }
+
+        @Override
+        @Transactional
+        public Future<String> error() {
+            throw new IllegalStateException("error");
+        }
+
+        @Override
+        @Transactional
+        public Future<OrderService> sibling() {
+            return Future.succeededFuture(getContextService(self));
+        }
+
+        @Override
+        public Future<Context> currentContext() {
+            return Future.succeededFuture(Context.current());
+        }
+    }
+
+    private final List<String> log = new ArrayList<>();
+    private Future<Void> commitResult = Future.succeededFuture();
+    private Future<Transaction> beginResult;
+
+    private final Transaction transaction = (Transaction) Proxy.newProxyInstance(
+        Transaction.class.getClassLoader(),
+        new Class<?>[] { Transaction.class },
+        (p, method, args) -> {
+            log.add(method.getName());
+            return "commit".equals(method.getName()) ? commitResult : Future.succeededFuture();
+        }
+    );
+    private final SqlConnection connection = (SqlConnection) Proxy.newProxyInstance(
+        SqlConnection.class.getClassLoader(),
+        new Class<?>[] { SqlConnection.class },
+        (p, method, args) -> {
+            log.add(method.getName());
+            if ("begin".equals(method.getName())) {
+                return beginResult == null ? Future.succeededFuture(transaction) : beginResult;
+            }
+            return "close".equals(method.getName()) ? Future.succeededFuture() : null;
+        }
+    );
+    private final Pool pool = (Pool) Proxy.newProxyInstance(
+        Pool.class.getClassLoader(),
+        new Class<?>[] { Pool.class },
+        (p, method, args) -> {
+            log.add("pool." + method.getName());
+            return "getConnection".equals(method.getName()) ? Future.succeededFuture(connection) : null;
+        }
+    );
+
+    private OrderService service() {
+        OrderServiceImpl target = new OrderServiceImpl();
+        OrderService proxy = SqlSessionAopFactory.enhance(OrderService.class, target, pool);
+        target.self = proxy;
+        return proxy;
+    }
+
+    @Test
+    public void testCommit() {
+        Future<SqlClient> result = service().save();
+        Assert.assertTrue(result.succeeded());
+        Assert.assertSame(connection, result.result());
+        Assert.assertEquals(Arrays.asList("pool.getConnection", "begin", "commit", "close"), log);
+        Assert.assertNull(Context.current());
+    }
+
+    @Test
+    public void testRollback() {
+        Future<String> result = service().fail();
+        Assert.assertTrue(result.failed());
+        Assert.assertEquals("fail", result.cause().getMessage());
+        Assert.assertEquals(Arrays.asList("pool.getConnection", "begin", "rollback", "close"), log);
+    }
+
+    /**
+     * 方法抛出异常、开启事务失败、提交失败时都要归还连接
+     */
+    @Test
+    public void testCloseOnFailure() {
+        Future<String> error = service().error();
+        Assert.assertTrue(error.failed());
+        Assert.assertEquals("error", error.cause().getMessage());
+        Assert.assertEquals(Arrays.asList("pool.getConnection", "begin", "rollback", "close"), log);
+
+        log.clear();
+        commitResult = Future.failedFuture(new IllegalStateException("commit"));
+        Future<SqlClient> commit = service().save();
+        Assert.assertTrue(commit.failed());
+        Assert.assertEquals("commit", commit.cause().getMessage());
+        Assert.assertEquals(Arrays.asList("pool.getConnection", "begin", "commit", "close"), log);
+
+        log.clear();
+        beginResult = Future.failedFuture(new IllegalStateException("begin"));
+        Future<SqlClient> begin = service().save();
+        Assert.assertTrue(begin.failed());
+        Assert.assertEquals("begin", begin.cause().getMessage());
+        Assert.assertEquals(Arrays.asList("pool.getConnection", "begin", "close"), log);
+    }
+
+    /**
+     * 会话中取到的兄弟服务绑定了会话，在会话的调用链之外调用仍使用会话连接
+     */
+    @Test
+    public void testSessionBoundSibling() {
+        OrderService service = service();
+        Assert.assertSame(service, service.getContextService(service));
+
+        OrderService sibling = service.sibling().result();
+        Assert.assertNotSame(service, sibling);
+        Assert.assertNull(Context.current());
+        Assert.assertSame(connection, sibling.currentContext().result().get(Context.SQL_CONNECTION));
+        Assert.assertNull(service.currentContext().result());
+
+        // 绑定的会话中已有连接，@Transactional方法加入会话，不再获取连接
+        log.clear();
+        Assert.assertSame(connection, sibling.save().result());
+        Assert.assertTrue(log.isEmpty());
+    }
+
+    /**
+     * 会话中注册的操作在提交后执行，执行时不再带会话连接；回滚时不执行；不在会话中时立即执行
+     */
+    @Test
+    public void testAfterCommit() {
+        List<String> events = new ArrayList<>();
+        SqlSession.afterCommit(() -> events.add("direct"));
+
+        Promise<Boolean> committed = Promise.promise();
+        Promise<Boolean> rolledBack = Promise.promise();
+        Context session = Context.EMPTY
+            .put(Context.TRACE_ID, "trace")
+            .put(Context.SQL_CONNECTION, connection);
+        session.put(Context.SESSION_END, committed.future()).run(() -> SqlSession.afterCommit(() -> {
+            Context context = Context.current();
+            events.add("commit " + context.get(Context.TRACE_ID) + " " + context.get(Context.SQL_CONNECTION));
+        }));
+        session.put(Context.SESSION_END, rolledBack.future()).run(() -> SqlSession.afterCommit(() -> events.add("rollback")));
+        Assert.assertEquals(Arrays.asList("direct"), events);
+
+        committed.complete(true);
+        rolledBack.complete(false);
+        Assert.assertEquals(Arrays.asList("direct", "commit trace null"), events);
+    }
+}
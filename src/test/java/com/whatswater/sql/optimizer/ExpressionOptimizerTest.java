@@ -0,0 +1,98 @@
+package com.whatswater.sql.optimizer;
+
+import com.whatswater.sql.dialect.Dialect.SQL;
+import com.whatswater.sql.dialect.MysqlDialect;
+import com.whatswater.sql.dialect.UserDbColumn;
+import com.whatswater.sql.expression.BoolExpression;
+import com.whatswater.sql.expression.FunctionExpression;
+import com.whatswater.sql.expression.Literal;
+import com.whatswater.sql.expression.arithmetic.Addition;
+import com.whatswater.sql.expression.judge.EqualsTo;
+import com.whatswater.sql.expression.judge.GreaterThan;
+import com.whatswater.sql.expression.judge.InExpression;
+import com.whatswater.sql.expression.judge.InExpression.LiteralList;
+import com.whatswater.sql.expression.literal.BoolValue;
+import com.whatswater.sql.expression.literal.NumberLiteral;
+import com.whatswater.sql.table.ComplexTable;
+import com.whatswater.sql.table.SelectedTable;
+import com.whatswater.sql.table.Table;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class ExpressionOptimizerTest {
+    @Test
+    public void testConstantFolding() {
+        BoolExpression condition = UserDbColumn.status.eq(new Addition(NumberLiteral.ONE, NumberLiteral.TWO))
+            .and(NumberLiteral.ONE.eq(NumberLiteral.ONE));
+
+        BoolExpression result = ExpressionOptimizer.optimize(condition);
+        Assert.assertTrue(result instanceof EqualsTo);
+        Assert.assertEquals(3L, ((NumberLiteral) ((EqualsTo) result).getRight()).getValue());
+    }
+
+    @Test
+    public void testTautologyAndContradiction() {
+        Assert.assertNull(ExpressionOptimizer.optimizeCondition(NumberLiteral.TWO.gt(NumberLiteral.ONE)));
+        Assert.assertSame(BoolValue.FALSE, ExpressionOptimizer.optimize(UserDbColumn.code.eq("1001").and(NumberLiteral.ONE.gt(NumberLiteral.TWO))));
+        Assert.assertSame(BoolValue.FALSE, ExpressionOptimizer.optimize(UserDbColumn.status.inConstValues(new Literal[0])));
+    }
+
+    @Test
+    public void testMergeInList() {
+        BoolExpression union = ExpressionOptimizer.optimize(UserDbColumn.code.eq("a").or(UserDbColumn.code.eq("b"), UserDbColumn.code.in("a", "c")));
+        Assert.assertTrue(union instanceof InExpression);
+        Assert.assertEquals(3, ((LiteralList) ((InExpression) union).getInList()).getLiterals().size());
+
+        BoolExpression intersection = ExpressionOptimizer.optimize(UserDbColumn.status.in(1, 2, 3).and(UserDbColumn.status.in(2, 3, 4)));
+        Assert.assertTrue(intersection instanceof InExpression);
+        Assert.assertEquals(2, ((LiteralList) ((InExpression) intersection).getInList()).getLiterals().size());
+
+        Assert.assertSame(BoolValue.FALSE, ExpressionOptimizer.optimize(UserDbColumn.status.in(1, 2).and(UserDbColumn.status.eq(3))));
+    }
+
+    @Test
+    public void testPushDownAndPrune() {
+        SelectedTable inner = (SelectedTable) UserDbColumn.dbTable
+            .where(UserDbColumn.status.eq(1))
+            .select(UserDbColumn.id, UserDbColumn.code, UserDbColumn.name);
+        ComplexTable outer = new ComplexTable(inner);
+        outer.where(inner.columnReference("code").eq("x")
+            .and(new FunctionExpression("length", inner.columnReference("name")).gt(3)));
+        outer.select(inner.columnReference("id"));
+
+        Table table = TableOptimizer.optimize(outer);
+        Assert.assertSame(outer, table);
+        Assert.assertTrue(outer.getWhere() instanceof GreaterThan);
+        Assert.assertEquals(2, inner.getSelectList().size());
+
+        SQL sql = new MysqlDialect().toSql(table);
+        Assert.assertEquals(Arrays.asList(1, "x", 3), sql.getParams());
+    }
+
+    @Test
+    public void testToSqlKeepsTable() {
+        SelectedTable inner = (SelectedTable) UserDbColumn.dbTable
+            .where(UserDbColumn.status.eq(new Addition(NumberLiteral.ONE, NumberLiteral.ONE)))
+            .select(UserDbColumn.id, UserDbColumn.code, UserDbColumn.name);
+        ComplexTable outer = new ComplexTable(inner);
+        BoolExpression outerWhere = inner.columnReference("code").eq("x")
+            .and(new FunctionExpression("length", inner.columnReference("name")).gt(3));
+        outer.where(outerWhere);
+        outer.select(inner.columnReference("id"));
+        BoolExpression innerWhere = inner.getWhere();
+        Object innerSelectList = inner.getSelectList();
+
+        MysqlDialect dialect = new MysqlDialect();
+        SQL first = dialect.toSql(outer);
+        Assert.assertSame(outerWhere, outer.getWhere());
+        Assert.assertSame(innerWhere, inner.getWhere());
+        Assert.assertSame(innerSelectList, inner.getSelectList());
+        Assert.assertTrue(((EqualsTo) innerWhere).getRight() instanceof Addition);
+
+        SQL second = dialect.toSql(outer);
+        Assert.assertEquals(first.getSqlValue(), second.getSqlValue());
+        Assert.assertEquals(first.getParams(), second.getParams());
+    }
+}
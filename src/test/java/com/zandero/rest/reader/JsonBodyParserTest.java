@@ -0,0 +1,89 @@
+package com.zandero.rest.reader;
+
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import io.netty.buffer.Unpooled;
+import io.vertx.core.buffer.Buffer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+public class JsonBodyParserTest {
+    private static final ObjectReader MAP_READER = new ObjectMapper().readerFor(Map.class);
+
+    private static String largeArray() {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; json.length() <= JsonBodyParser.STREAMING_THRESHOLD; i++) {
+            json.append(i).append(',');
+        }
+        json.setCharAt(json.length() - 1, ']');
+        return json.toString();
+    }
+
+    @Test
+    public void parseTest() {
+        Map<?, ?> map = JsonBodyParser.parse(MAP_READER, Buffer.buffer("{\"name\":\"中文\",\"count\":2}"));
+        Assert.assertEquals("中文", map.get("name"));
+        Assert.assertEquals(2, map.get("count"));
+
+        Assert.assertNull(JsonBodyParser.parse(MAP_READER, null));
+        Assert.assertNull(JsonBodyParser.parse(MAP_READER, Buffer.buffer()));
+        Assert.assertNull(JsonBodyParser.parse(MAP_READER, Buffer.buffer(" \r\n\t")));
+    }
+
+    /**
+     * backing array有偏移时从偏移处开始解析
+     */
+    @Test
+    public void parseSliceTest() {
+        byte[] bytes = "xx{\"a\":1}".getBytes(StandardCharsets.UTF_8);
+        Buffer body = Buffer.buffer(Unpooled.wrappedBuffer(bytes, 2, bytes.length - 2));
+        Map<?, ?> map = JsonBodyParser.parse(MAP_READER, body);
+        Assert.assertEquals(1, map.get("a"));
+    }
+
+    /**
+     * 超过阈值的body以及direct buffer通过InputStream解析，结果与小body相同
+     */
+    @Test
+    public void parseStreamTest() {
+        ObjectReader listReader = new ObjectMapper().readerFor(List.class);
+        String json = largeArray();
+        List<?> list = JsonBodyParser.parse(listReader, Buffer.buffer(json));
+        Assert.assertEquals(0, list.get(0));
+        Assert.assertEquals(list.size() - 1, list.get(list.size() - 1));
+
+        byte[] bytes = "{\"a\":[1,2]}".getBytes(StandardCharsets.UTF_8);
+        Buffer direct = Buffer.buffer(Unpooled.directBuffer(bytes.length).writeBytes(bytes));
+        Map<?, ?> map = JsonBodyParser.parse(MAP_READER, direct);
+        Assert.assertEquals(Arrays.asList(1, 2), map.get("a"));
+    }
+
+    @Test
+    public void parseErrorTest() {
+        try {
+            JsonBodyParser.parse(MAP_READER, Buffer.buffer("{\"a\":"));
+            Assert.fail();
+        } catch (IllegalArgumentException e) {
+            Assert.assertTrue(e.getMessage().startsWith("Given JSON could not be de-serialized."));
+        }
+    }
+
+    /**
+     * 错误信息中显示body内容，过长时截断并注明长度
+     */
+    @Test
+    public void previewTest() {
+        Assert.assertEquals("null", JsonBodyParser.preview(null));
+        Assert.assertEquals("{\"a\":", JsonBodyParser.preview(Buffer.buffer("{\"a\":")));
+
+        String json = largeArray();
+        String preview = JsonBodyParser.preview(Buffer.buffer(json));
+        Assert.assertEquals(json.substring(0, JsonBodyParser.PREVIEW_LENGTH) + "... (" + json.length() + " bytes)", preview);
+    }
+}